@@ -0,0 +1,164 @@
+package org.dwbzen.music.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares JMH results (-rf json) to a baseline and reports the benchmarks that regressed
+ * by more than a threshold percentage, either in time (or throughput) or in bytes allocated per operation
+ * (the gc profiler's gc.alloc.rate.norm).<br>
+ * Usage: BenchmarkComparator -baseline src/jmh/baseline.json -results build/reports/jmh/results.json -threshold 10<br>
+ * Exits with status 1 if there are any regressions, so gradlew jmhCompare fails.
+ * Benchmarks that aren't in both files are listed but not compared.
+ *
+ * @author don_bacon
+ *
+ */
+public class BenchmarkComparator {
+
+	public static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+	public static final double DEFAULT_THRESHOLD = 10.0;
+
+	private double threshold = DEFAULT_THRESHOLD;	// percent
+	private PrintStream out = System.out;
+
+	public static void main(String... args) throws IOException {
+		String baselineFile = "src/jmh/baseline.json";
+		String resultsFile = "build/reports/jmh/results.json";
+		BenchmarkComparator comparator = new BenchmarkComparator();
+		for(int i = 0; i<args.length; i++) {
+			if(args[i].equalsIgnoreCase("-baseline")) {
+				baselineFile = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-results")) {
+				resultsFile = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-threshold")) {
+				comparator.setThreshold(Double.parseDouble(args[++i]));
+			}
+		}
+		List<String> regressions = comparator.compare(read(baselineFile), read(resultsFile));
+		if(!regressions.isEmpty()) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reads a JMH JSON result file
+	 * @param fileName
+	 * @return Map of benchmark name (with any parameters) to its result
+	 * @throws IOException
+	 */
+	public static Map<String, JsonNode> read(String fileName) throws IOException {
+		Map<String, JsonNode> results = new TreeMap<String, JsonNode>();
+		for(JsonNode result : new ObjectMapper().readTree(new File(fileName))) {
+			results.put(getName(result), result);
+		}
+		return results;
+	}
+
+	/**
+	 *
+	 * @param result a JMH result
+	 * @return the benchmark name followed by any parameters, as in org.dwbzen.music.benchmark.ScorePartBenchmark.scoreInstrument:instrumentName=Flute
+	 */
+	public static String getName(JsonNode result) {
+		StringBuilder sb = new StringBuilder(result.get("benchmark").asText());
+		JsonNode params = result.get("params");
+		if(params != null) {
+			Map<String, String> sorted = new TreeMap<String, String>();
+			params.fields().forEachRemaining(e -> sorted.put(e.getKey(), e.getValue().asText()));
+			sorted.forEach((k, v) -> sb.append(":").append(k).append("=").append(v));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Compares results to the baseline and prints a line for each benchmark.
+	 * @param baseline
+	 * @param results
+	 * @return the names of the benchmarks that regressed
+	 */
+	public List<String> compare(Map<String, JsonNode> baseline, Map<String, JsonNode> results) {
+		List<String> regressions = new ArrayList<String>();
+		for(String name : results.keySet()) {
+			JsonNode result = results.get(name);
+			JsonNode base = baseline.get(name);
+			if(base == null) {
+				out.println("NEW        " + name);
+				continue;
+			}
+			boolean higherIsBetter = result.get("mode").asText().equals("thrpt");
+			double baseScore = base.get("primaryMetric").get("score").asDouble();
+			double score = result.get("primaryMetric").get("score").asDouble();
+			double timeChange = percentChange(baseScore, score) * (higherIsBetter ? -1 : 1);
+			double allocationChange = 0.0;
+			double baseAllocation = getAllocation(base);
+			double allocation = getAllocation(result);
+			if(baseAllocation >= 0 && allocation >= 0) {
+				allocationChange = percentChange(Math.max(baseAllocation, 1.0), Math.max(allocation, 1.0));
+			}
+			boolean regressed = timeChange > threshold || allocationChange > threshold;
+			if(regressed) {
+				regressions.add(name);
+			}
+			out.println(String.format("%-10s %s  %s %+.1f%%  alloc %+.1f%%", regressed ? "REGRESSION" : "OK", name,
+					result.get("primaryMetric").get("scoreUnit").asText(), timeChange, allocationChange));
+		}
+		for(String name : baseline.keySet()) {
+			if(!results.containsKey(name)) {
+				out.println("MISSING    " + name);
+			}
+		}
+		out.println(regressions.size() + " regressions above " + threshold + "%");
+		return regressions;
+	}
+
+	/**
+	 *
+	 * @param result
+	 * @return bytes allocated per operation, -1 if not profiled
+	 */
+	static double getAllocation(JsonNode result) {
+		JsonNode secondaryMetrics = result.get("secondaryMetrics");
+		if(secondaryMetrics != null) {
+			Iterator<String> names = secondaryMetrics.fieldNames();
+			while(names.hasNext()) {
+				String name = names.next();
+				if(name.endsWith(ALLOCATION_METRIC)) {
+					return secondaryMetrics.get(name).get("score").asDouble();
+				}
+			}
+		}
+		return -1.0;
+	}
+
+	static double percentChange(double from, double to) {
+		return from == 0.0 ? 0.0 : (to - from) * 100.0 / from;
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	public PrintStream getOut() {
+		return out;
+	}
+
+	public void setOut(PrintStream out) {
+		this.out = out;
+	}
+}
@@ -0,0 +1,168 @@
+package org.dwbzen.music.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.dwbzen.music.ProductionFlow;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
+
+/**
+ * Fixed inputs for the benchmarks, built from the bundled fractal data and songs.<br>
+ * Anything chosen at random is chosen with SEED so every run measures the same work.
+ * The benchmarks are run from the project directory (gradlew jmh) so the data is read from src/main/resources/data.
+ *
+ * @author don_bacon
+ *
+ */
+public class BenchmarkData {
+
+	public static final long SEED = 20201231L;
+	public static final int MEASURES = 20;
+	public static final String FRACTAL_PATH = "src/main/resources/data/fractal/";
+	public static final String SONGS_PATH = "src/main/resources/data/music/songs";
+	public static final String[] INSTRUMENTS = {"Flute", "Clarinet", "Oboe"};
+	public static final String[] DATA_SETS = {"sierpinski_small", "Apo7X_170131_small", "Apo7X_180911-2"};
+
+	private static Configuration configuration = null;
+	private static final AtomicInteger flowNumber = new AtomicInteger();
+	private static final ObjectMapper mapper = new ObjectMapper();
+	static {
+		mapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+	}
+
+	private BenchmarkData() {}
+
+	/**
+	 * The configuration files with the benchmark settings:
+	 * each instrument reads a fractal data file, in-process transport, no encoding-date.
+	 * @return a new copy of the benchmark Configuration
+	 */
+	public static synchronized Configuration getConfiguration() {
+		if(configuration == null) {
+			configuration = Configuration.getInstance(ProductionFlow.CONFIG_FILENAME);
+			configuration.addConfiguration(Configuration.getInstance(ProductionFlow.ORCHESTRA_CONFIG_FILENAME));
+			Properties configProperties = configuration.getProperties();
+			configProperties.setProperty("score.instruments", String.join(",", INSTRUMENTS));
+			configProperties.setProperty("dataSource", "file");
+			configProperties.setProperty("dataSource.file.path", FRACTAL_PATH);
+			configProperties.setProperty("dataSource.file.cache", "false");
+			for(int i=0; i<INSTRUMENTS.length; i++) {
+				configProperties.setProperty("dataSource." + INSTRUMENTS[i], DATA_SETS[i]);
+			}
+			configProperties.setProperty("dataSource.transport", "local");
+			configProperties.setProperty("score.encoding.date", "none");
+		}
+		return configuration.copy();
+	}
+
+	/**
+	 *
+	 * @return a configured ProductionFlow with its own transport queues
+	 * @throws Exception
+	 */
+	public static ProductionFlow createProductionFlow() throws Exception {
+		Configuration flowConfiguration = getConfiguration();
+		flowConfiguration.getProperties().setProperty("dataSource.transport.local.namespace", "benchmark" + flowNumber.incrementAndGet() + ".");
+		ProductionFlow productionFlow = new ProductionFlow(flowConfiguration);
+		productionFlow.setMeasures(MEASURES);
+		return productionFlow;
+	}
+
+	/**
+	 * Creates and transforms a Score from the fractal data with SEED.
+	 * @return Score
+	 * @throws Exception
+	 */
+	public static Score createScore() throws Exception {
+		ProductionFlow productionFlow = createProductionFlow();
+		SeededRandom.run(new SeededRandom(SEED), () -> productionFlow.run(true, true, false));
+		return productionFlow.getScore();
+	}
+
+	/**
+	 * Reads the Point2D records of a fractal data file.
+	 * @param dataSetName for example "sierpinski_small"
+	 * @return List of {x, y}
+	 */
+	public static List<double[]> loadPoints(String dataSetName) {
+		List<double[]> points = new ArrayList<double[]>();
+		try {
+			for(String line : Files.readAllLines(Paths.get(FRACTAL_PATH, dataSetName + ".json"))) {
+				if(line.isBlank()) {
+					continue;
+				}
+				JsonNode node = mapper.readTree(line);
+				if("Point2D".equals(node.path("type").asText())) {
+					points.add(new double[] {node.get("x").asDouble(), node.get("y").asDouble()});
+				}
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return points;
+	}
+
+	/**
+	 *
+	 * @return the distinct pitch names in the bundled songs (as "Bb4"), shuffled with SEED
+	 */
+	public static List<String> songPitchNames() {
+		return songValues("pitch");
+	}
+
+	/**
+	 *
+	 * @return the distinct chord names in the bundled songs (as "F#m7"), shuffled with SEED
+	 */
+	public static List<String> songChordNames() {
+		return songValues("chord");
+	}
+
+	private static List<String> songValues(String fieldName) {
+		TreeSet<String> values = new TreeSet<String>();
+		try(DirectoryStream<Path> songFiles = Files.newDirectoryStream(Paths.get(SONGS_PATH), "*.json")) {
+			for(Path songFile : songFiles) {
+				for(String value : mapper.readTree(songFile.toFile()).findValuesAsText(fieldName)) {
+					if(!value.equals("0") && !value.equalsIgnoreCase("NC") && !value.isBlank()) {
+						values.add(value);
+					}
+				}
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		List<String> list = new ArrayList<String>(values);
+		Collections.shuffle(list, new SeededRandom(SEED));
+		return list;
+	}
+
+	/**
+	 *
+	 * @param size
+	 * @param origin
+	 * @param bound
+	 * @return size ints in [origin, bound) from SEED
+	 */
+	public static int[] randomInts(int size, int origin, int bound) {
+		return new SplittableRandom(SEED).ints(size, origin, bound).toArray();
+	}
+}
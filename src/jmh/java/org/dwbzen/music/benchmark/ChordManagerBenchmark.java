@@ -0,0 +1,73 @@
+package org.dwbzen.music.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.dwbzen.music.element.Key;
+import org.dwbzen.music.element.song.ChordFormula;
+import org.dwbzen.music.element.song.HarmonyChord;
+import org.dwbzen.util.music.ChordManager;
+
+/**
+ * ChordManager lookups of the chords in the bundled songs: by chord name (as SongManager does)
+ * and by formula number.
+ *
+ * @author don_bacon
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChordManagerBenchmark {
+
+	static final int SIZE = 1024;		// a power of 2
+	static final int MASK = SIZE - 1;
+
+	private ChordManager chordManager;
+	private String[] chordNames = new String[SIZE];
+	private int[] formulaNumbers = new int[SIZE];
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		chordManager = new ChordManager();
+		List<String> names = new ArrayList<String>();
+		List<Integer> numbers = new ArrayList<Integer>();
+		for(String chordName : BenchmarkData.songChordNames()) {
+			HarmonyChord harmonyChord = chordManager.createHarmonyChord(chordName, Key.C_MAJOR);
+			if(harmonyChord != null) {
+				names.add(chordName);
+				numbers.add(harmonyChord.getChordFormula().getFormulaNumber());
+			}
+		}
+		for(int i=0; i<SIZE; i++) {
+			chordNames[i] = names.get(i % names.size());
+			formulaNumbers[i] = numbers.get(i % numbers.size());
+		}
+	}
+
+	@Benchmark
+	public HarmonyChord createHarmonyChord() {
+		return chordManager.createHarmonyChord(chordNames[index++ & MASK], Key.C_MAJOR);
+	}
+
+	@Benchmark
+	public ChordFormula findByFormulaNumber() {
+		return chordManager.find(formulaNumbers[index++ & MASK]);
+	}
+}
@@ -0,0 +1,57 @@
+package org.dwbzen.music.benchmark;
+
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.audiveris.proxymusic.ScorePartwise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.musicxml.MusicXMLHelper;
+
+/**
+ * MusicXMLHelper.convert and marshall of a Score created from the fractal data with BenchmarkData.SEED.
+ *
+ * @author don_bacon
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MusicXMLBenchmark {
+
+	private Score score;
+	private Properties configProperties;
+	private MusicXMLHelper converted;
+
+	@Setup
+	public void setup() throws Exception {
+		score = BenchmarkData.createScore();
+		configProperties = score.getConfiguration().getProperties();
+		converted = new MusicXMLHelper(score, configProperties);
+		converted.convert();
+	}
+
+	@Benchmark
+	public ScorePartwise convert() {
+		return new MusicXMLHelper(score, configProperties).convert();
+	}
+
+	@Benchmark
+	public void marshall() {
+		converted.marshall(OutputStream.nullOutputStream());
+	}
+}
@@ -0,0 +1,93 @@
+package org.dwbzen.music.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.dwbzen.music.element.Alteration;
+import org.dwbzen.music.element.Pitch;
+
+/**
+ * Pitch parsing, transposition and comparison using the pitches of the bundled songs.
+ *
+ * @author don_bacon
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PitchBenchmark {
+
+	static final int SIZE = 1024;		// a power of 2
+	static final int MASK = SIZE - 1;
+
+	private String[] names = new String[SIZE];
+	private Pitch[] pitches = new Pitch[SIZE];
+	private int[] steps;
+	private int[] midiNumbers;
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		List<String> pitchNames = new ArrayList<String>();
+		for(String name : BenchmarkData.songPitchNames()) {
+			try {
+				new Pitch(name);
+				pitchNames.add(name);
+			}
+			catch(RuntimeException e) {
+				// not a pitch, for example a rest
+			}
+		}
+		for(int i=0; i<SIZE; i++) {
+			names[i] = pitchNames.get(i % pitchNames.size());
+			pitches[i] = new Pitch(names[i]);
+		}
+		steps = BenchmarkData.randomInts(SIZE, -12, 13);
+		midiNumbers = BenchmarkData.randomInts(SIZE, 36, 96);
+	}
+
+	@Benchmark
+	public Pitch parse() {
+		return new Pitch(names[index++ & MASK]);
+	}
+
+	@Benchmark
+	public Pitch transpose() {
+		int i = index++ & MASK;
+		return new Pitch(pitches[i], steps[i]);
+	}
+
+	@Benchmark
+	public Pitch plus() {
+		int i = index++ & MASK;
+		return pitches[i].plus(steps[i]);
+	}
+
+	@Benchmark
+	public Pitch fromMidiNumber() {
+		return Pitch.fromMidiNumber(midiNumbers[index++ & MASK], Alteration.NONE);
+	}
+
+	@Benchmark
+	public int compareAndDifference() {
+		int i = index++ & MASK;
+		Pitch pitch = pitches[i];
+		Pitch other = pitches[(i + 1) & MASK];
+		return pitch.compareTo(other) + pitch.difference(other);
+	}
+}
@@ -0,0 +1,83 @@
+package org.dwbzen.music.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.dwbzen.music.action.DurationScaler;
+import org.dwbzen.music.action.PitchScaler;
+import org.dwbzen.music.element.Duration;
+import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.instrument.Instrument;
+
+/**
+ * PitchScaler.scale and DurationScaler.scaleToRhythmScale of the Clarinet fractal data points.
+ *
+ * @author don_bacon
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScalerBenchmark {
+
+	static final int SIZE = 1024;		// a power of 2
+	static final int MASK = SIZE - 1;
+
+	private PitchScaler pitchScaler;
+	private DurationScaler durationScaler;
+	private double[] x = new double[SIZE];
+	private double[] y = new double[SIZE];
+	private int index = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		Instrument instrument = BenchmarkData.createProductionFlow().getInstruments().get("Clarinet");
+		List<double[]> points = BenchmarkData.loadPoints("Apo7X_170131_small");
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for(int i=0; i<SIZE; i++) {
+			double[] point = points.get(i % points.size());
+			x[i] = point[0];
+			y[i] = point[1];
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		pitchScaler = instrument.getPitchScaler();
+		pitchScaler.setMinVal(minX);
+		pitchScaler.setMaxVal(maxX);
+		durationScaler = instrument.getDurationScaler();
+		durationScaler.setMinVal(minY);
+		durationScaler.setMaxVal(maxY);
+	}
+
+	@Benchmark
+	public Pitch pitchScale() {
+		return pitchScaler.scale(x[index++ & MASK]);
+	}
+
+	@Benchmark
+	public Duration scaleToRhythmScale() {
+		return durationScaler.scaleToRhythmScale(y[index++ & MASK]);
+	}
+
+	@Benchmark
+	public double scaleToRhythmScaleUnits() {
+		return durationScaler.scaleToRhythmScaleUnits(y[index++ & MASK]);
+	}
+}
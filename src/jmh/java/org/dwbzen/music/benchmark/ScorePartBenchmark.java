@@ -0,0 +1,79 @@
+package org.dwbzen.music.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.dwbzen.common.math.Point2D;
+import org.dwbzen.common.math.PointSet;
+import org.dwbzen.music.ProductionFlow;
+import org.dwbzen.music.ScorePart;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.util.SeededRandom;
+
+/**
+ * ScorePart.createScorePart, which scales the points and then scores them into Measures (scoreInstrument),
+ * for each instrument's fractal data. A new ScorePart is created for each invocation.
+ *
+ * @author don_bacon
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScorePartBenchmark {
+
+	@Param({"Flute", "Clarinet", "Oboe"})
+	public String instrumentName;
+
+	private Score score;
+	private Instrument instrument;
+	private List<double[]> points;
+	private ScorePart scorePart;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws Exception {
+		ProductionFlow productionFlow = BenchmarkData.createProductionFlow();
+		score = new Score(BenchmarkData.getConfiguration(), "benchmark");
+		instrument = productionFlow.getInstruments().get(instrumentName);
+		for(int i=0; i<BenchmarkData.INSTRUMENTS.length; i++) {
+			if(BenchmarkData.INSTRUMENTS[i].equals(instrumentName)) {
+				points = BenchmarkData.loadPoints(BenchmarkData.DATA_SETS[i]);
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() throws Exception {
+		scorePart = new ScorePart(score, instrumentName, instrument);
+		scorePart.setMaxMeasures(BenchmarkData.MEASURES);
+		scorePart.configure();
+		PointSet<Double> scorePartData = scorePart.getScorePartData();
+		for(double[] point : points) {
+			scorePartData.add(new Point2D<Double>(point[0], point[1]));
+		}
+	}
+
+	@Benchmark
+	public List<Measure> scoreInstrument() {
+		SeededRandom.run(new SeededRandom(BenchmarkData.SEED), scorePart::createScorePart);
+		return scorePart.getMeasures();
+	}
+}
@@ -1,5 +1,6 @@
 package org.dwbzen.music;
 
+import java.util.Iterator;
 import java.util.Properties;
 
 import javax.jms.JMSException;
@@ -9,8 +10,12 @@ import javax.jms.Session;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.dwbzen.common.math.CommandMessage;
 import org.dwbzen.music.ScorePart.State;
 import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
+import org.dwbzen.util.messaging.MessageProducerImpl;
+import org.dwbzen.util.metrics.MetricsRegistry;
 import org.dwbzen.util.mongo.MongoDBDataSource;
 import org.dwbzen.util.music.DataSource;
 import org.dwbzen.util.music.FileDataSource;
@@ -26,6 +31,8 @@ public class DataLoader  implements Runnable {
 	private Configuration configuration = null;
 	private int nrec = 0;
 	private Session session = null;
+	private SeededRandom random = null;		// this loader's, derived from the creating thread's SeededRandom
+	private MetricsRegistry metrics = null;	// the creating thread's
 	
 	private ScorePart.State state = State.UNKNOWN;
 	
@@ -46,6 +53,8 @@ public class DataLoader  implements Runnable {
 		configProperties = configuration.getProperties();
 		this.session = session;
 		this.dataSourceName = dataSourceName;
+		random = SeededRandom.current().derive("DataLoader." + instrumentName);
+		metrics = MetricsRegistry.current();
 	}
 	
 	public ScorePart.State getState() {
@@ -54,6 +63,10 @@ public class DataLoader  implements Runnable {
 
 	@Override
 	public void run() {
+		SeededRandom.run(random, () -> metrics.timer("dataLoader.load", "instrument", instrumentName).time(this::loadData));
+	}
+
+	private void loadData() {
 		log.info("DataLoader(" +instrumentName + ")");
 		try {
 			updateState(State.WORKING);
@@ -88,28 +101,55 @@ public class DataLoader  implements Runnable {
 				// ds = new IfsDataSource(configuration, instrumentName);
 			}
 			
-			ds.stream().forEach(rec ->{
+			Iterator<String> records = ds.stream().iterator();
+			while(records.hasNext()) {
+				String rec = records.next();
 				try {
 					producer.send(session.createTextMessage(rec));
 					nrec++;
 				} catch (JMSException e) {
-					// this is bad, this is VERY bad
+					// this is bad, this is VERY bad - most likely the ScorePart closed its queue, so stop sending
 					log.error("JMSException " + e.toString() + " rec: " + rec);
 					log.error(" instrument: " + instrumentName);
-					return;
+					ds.close();
+					throw e;
 				}
-			});
+			}
 			ds.close();
+			if(producer instanceof MessageProducerImpl) {
+				// send any partial batch queued by the in-process transport
+				((MessageProducerImpl)producer).flush();
+			}
 			updateState(State.COMPLETE);
+			metrics.counter("dataLoader.messages", "instrument", instrumentName).add(nrec);
 			log.info(nrec + " records read");
 		} catch (Exception e) {
 			log.error("loadData exception: " +e.toString());
 			e.printStackTrace(System.err);
 			updateState(State.ERROR);
+		} finally {
+			if(state != State.COMPLETE) {
+				sendShutdown();
+			}
 		}
 		return;
 	}
 	
+	/**
+	 * The data source ends its stream with a SHUTDOWN command. If it failed before getting there
+	 * the ScorePart consuming this queue would wait for it forever, so send one here.
+	 */
+	private void sendShutdown() {
+		try {
+			producer.send(session.createTextMessage(new CommandMessage(instrumentName, ScorePartMessageListener.SHUTDOWN_COMMAND).toJson()));
+			if(producer instanceof MessageProducerImpl) {
+				((MessageProducerImpl)producer).flush();
+			}
+		} catch (JMSException e) {
+			log.error("Could not send SHUTDOWN for " + instrumentName + ": " + e.toString());
+		}
+	}
+	
 	synchronized void updateState(State s) {
 		state = s;
 	}
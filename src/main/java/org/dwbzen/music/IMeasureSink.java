@@ -0,0 +1,57 @@
+package org.dwbzen.music;
+
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.ScorePartEntity;
+
+/**
+ * Receives the Measures of a part as a ScorePart completes them, when scoring in streaming mode.<br>
+ * For each part the sink gets startPart, accept for each Measure in order, and endPart.
+ * A Measure is complete when it's accepted, including any tie to the next Measure.<br>
+ * Each ScorePart has its own sink and parts may run concurrently,
+ * so a sink shared by several parts must be thread-safe.
+ *
+ * @author don_bacon
+ *
+ */
+@FunctionalInterface
+public interface IMeasureSink {
+
+	/**
+	 * Adds each Measure to its ScorePartEntity, as a ScorePart does when not streaming.
+	 */
+	static final IMeasureSink COLLECT = (scorePartEntity, measure) -> scorePartEntity.addMeasure(measure);
+
+	default void startPart(ScorePartEntity scorePartEntity) {
+	}
+
+	void accept(ScorePartEntity scorePartEntity, Measure measure);
+
+	default void endPart(ScorePartEntity scorePartEntity) {
+	}
+
+	/**
+	 *
+	 * @param next
+	 * @return a sink that passes each Measure to this sink, then to next
+	 */
+	default IMeasureSink andThen(IMeasureSink next) {
+		IMeasureSink first = this;
+		return new IMeasureSink() {
+			@Override
+			public void startPart(ScorePartEntity scorePartEntity) {
+				first.startPart(scorePartEntity);
+				next.startPart(scorePartEntity);
+			}
+			@Override
+			public void accept(ScorePartEntity scorePartEntity, Measure measure) {
+				first.accept(scorePartEntity, measure);
+				next.accept(scorePartEntity, measure);
+			}
+			@Override
+			public void endPart(ScorePartEntity scorePartEntity) {
+				first.endPart(scorePartEntity);
+				next.endPart(scorePartEntity);
+			}
+		};
+	}
+}
@@ -1,7 +1,10 @@
 package org.dwbzen.music;
 
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -16,30 +19,48 @@ import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.bson.Document;
 import org.dwbzen.music.ScorePart.State;
 import org.dwbzen.music.action.ScoreAnalyzer;
 import org.dwbzen.music.element.IRhythmScale;
 import org.dwbzen.music.element.Score;
 import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.midi.MidiFileWriter;
+import org.dwbzen.music.midi.MidiPlayer;
+import org.dwbzen.music.midi.NullReceiver;
 import org.dwbzen.music.musicxml.MusicXMLHelper;
+import org.dwbzen.music.musicxml.MusicXMLStreamWriter;
+import org.dwbzen.music.musicxml.MxlWriter;
+import org.dwbzen.music.transform.IPartTransformer;
 import org.dwbzen.music.transform.ITransformer;
+import org.dwbzen.music.transform.ITransformer.Scope;
 import org.dwbzen.music.transform.Layer;
+import org.dwbzen.music.transform.PartTransformerSink;
+import org.dwbzen.music.transform.TransformerPipeline;
 import org.dwbzen.util.Configuration;
 import org.dwbzen.util.ConfigurationException;
+import org.dwbzen.util.ConfigurationSnapshot;
+import org.dwbzen.util.messaging.LocalTransport;
 import org.dwbzen.util.messaging.MessageProducerImpl;
 import org.dwbzen.util.messaging.SessionImpl;
+import org.dwbzen.util.metrics.CountingOutputStream;
+import org.dwbzen.util.metrics.MetricsRegistry;
+import org.dwbzen.util.metrics.Timer;
+import org.dwbzen.util.mongo.DocumentStores;
+import org.dwbzen.util.mongo.MongoClientPool;
+import org.dwbzen.util.mongo.ScoreRepository;
+import org.dwbzen.util.music.ComponentRegistry;
 import org.dwbzen.util.music.DataLoadException;
-import org.dwbzen.util.music.IRhythmScaleFactory;
 import org.dwbzen.util.music.RhythmScaleFactory;
 
-import com.mongodb.MongoClient;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
 
 /**
  * This creates and executes a workflow to produce a MusicXML file.</p>
@@ -53,10 +74,18 @@ import com.mongodb.client.MongoDatabase;
  * <dt>-analyzeFile filename</dt>  <dd>output analysis to this file.</dd>
  * <dt>-rand[dom]  true|false</dt> <dd>random selection of data from the specified file. Default is false.</dd>
  * <dt>-xml filename</dt> <dd>writes musicXML score to filename</dd>
+ * <dt>-mxl filename</dt> <dd>writes compressed musicXML score to filename, for example score20200910.mxl</dd>
+ * <dt>-midi filename</dt> <dd>writes the score as a Standard MIDI File to filename, for example score20200910.mid</dd>
  * <dt>-save  true|false</dt> <dd>save JSON score for import into MongoDB</dd>
  * <dt>-score  true|false</dt>  <dd>if false, do not produce score files. Default is true.</dd>
  * <dt>-load  true|false</dt>  <dd>if false, do not load data. Default is true.</dd>
  * <dt>-show  true|false</dt>  <dd>if true, show the generated score in MuseScore3</dd>
+ * <dt>-metrics  true|false</dt>  <dd>collect stage timings and counts and print a summary at the end. Default is metrics.enabled.</dd>
+ * <dt>-metricsFile filename</dt>  <dd>also write the metrics to filename, JSON if it ends in .json otherwise Prometheus text.
+ * Sets -metrics true.</dd>
+ * <dt>-streaming  true|false</dt>  <dd>transform and save each measure as it's scored. Default is score.streaming.</dd>
+ * <dt>-play  true|false</dt>  <dd>play the score on the default MIDI device, measure by measure as it's scored if streaming.
+ * Prints the playback jitter and latency at the end. Default is false.</dd>
  * </dl>
  * In order to use the "-show true" option, MuseScore must be installed locally<br>
  * and the path to the executable set in the config parameter 'musicxmlPath',<br>
@@ -107,6 +136,13 @@ public class ProductionFlow implements Runnable {
     private int measures = 0;
     private String analyzeFileName = null;
     private boolean saveIntermediateXML = false;		// to save, use -saveintermediate true
+    private boolean compressXML = false;				// write compressed .mxl, use -mxl filename
+    private String midiFileName = null;				// write a MIDI file, use -midi filename
+    private boolean play = false;					// play the score, use -play true
+    private MidiPlayer player = null;
+    private MetricsRegistry metrics = MetricsRegistry.DISABLED;	// metrics.enabled or -metrics true
+    private String metricsFileName = null;			// metrics.file or -metricsFile filename
+    private boolean streaming = false;				// score.streaming or -streaming true
     
     /*
      * Transport attributes
@@ -126,6 +162,14 @@ public class ProductionFlow implements Runnable {
      * Transformers mapped by Instrument
      */
     private Map<Instrument, ITransformer> transformerMap = new HashMap<Instrument, ITransformer>();
+    /**
+     * In streaming mode, the transformers applied to each Measure as it's scored
+     * and those applied to the Score after
+     */
+    private List<ITransformer> streamedTransformers = new ArrayList<ITransformer>();
+    private List<ITransformer> remainingTransformers = new ArrayList<ITransformer>();
+    private boolean collectMeasures = true;
+    private ScoreRepository streamRepository = null;
     
     private String title;
     private String workNumber;
@@ -142,7 +186,7 @@ public class ProductionFlow implements Runnable {
      */
     private String dataSourceName = null;
     private String dataSourceTransport = null;
-	private MongoClient mongoClient  = null;
+	private ScoreRepository scoreRepository = null;	// shared by several flows, otherwise one per save
 	private String host;
 	private int port;
     
@@ -161,11 +205,17 @@ public class ProductionFlow implements Runnable {
     	String analyzeFileName = null;
     	String host = defaultHost;
     	String xmlFileName = null;
+    	String midiFileName = null;
+    	boolean play = false;
     	boolean randomSelection = false;
     	int port = defaultPort;
     	int measures = 0;
     	String dataSourceName = null;
     	boolean saveintermediate = false;
+    	boolean compressXML = false;
+    	Boolean metrics = null;
+    	String metricsFileName = null;
+    	Boolean streaming = null;
     	if(args.length > 0) {
     		for(int i = 0; i<args.length; i++) {
     			if(args[i].equalsIgnoreCase("-load")) {
@@ -181,6 +231,17 @@ public class ProductionFlow implements Runnable {
     				createXML = true;
     				xmlFileName = args[++i];
     			}
+    			else if(args[i].equalsIgnoreCase("-mxl")) {
+    				createXML = true;
+    				compressXML = true;
+    				xmlFileName = args[++i];
+    			}
+    			else if(args[i].equalsIgnoreCase("-midi")) {
+    				midiFileName = args[++i];
+    			}
+    			else if(args[i].equalsIgnoreCase("-play")) {
+    				play = args[++i].equalsIgnoreCase("true");
+    			}
     			else if(args[i].equalsIgnoreCase("-show")) {
     				// display the score in MuseScore3, if createXML is also true
     				showScore = true;
@@ -212,6 +273,17 @@ public class ProductionFlow implements Runnable {
     				analyze = true;
     				analyzeFileName = args[++i];
     			}
+    			else if(args[i].equalsIgnoreCase("-metrics")) {
+    				metrics = args[++i].equalsIgnoreCase("true");
+    			}
+    			else if(args[i].equalsIgnoreCase("-metricsFile")) {
+    				metrics = true;
+    				metricsFileName = args[++i];
+    			}
+    			else if(args[i].equalsIgnoreCase("-streaming")) {
+    				// transform and save each measure as it's scored
+    				streaming = args[++i].equalsIgnoreCase("true");
+    			}
     		}	
     	}
 
@@ -220,15 +292,27 @@ public class ProductionFlow implements Runnable {
     	pf.setPort(port);
     	pf.setSaveScore(saveScore);
     	pf.setSaveIntermediateXML(saveintermediate);
+    	pf.setCompressXML(compressXML);
     	if(xmlFileName != null) {
     		pf.setXmlFileName(xmlFileName);
     	}
+    	pf.setMidiFileName(midiFileName);
+    	pf.setPlay(play);
      	pf.setRandomSelection(randomSelection);
     	if(measures > 0) { pf.setMeasures(measures); }
     	pf.setAnalyzeMode(analyze);
     	pf.setAnalyzeFileName(analyzeFileName);
     	pf.setCreateXML(createXML);
     	pf.setShowScore(showScore);
+    	if(metrics != null) {
+    		pf.setMetricsEnabled(metrics);
+    	}
+    	if(metricsFileName != null) {
+    		pf.setMetricsFileName(metricsFileName);
+    	}
+    	if(streaming != null) {
+    		pf.setStreaming(streaming);
+    	}
     	pf.run(loadData, createScore, createXML);
     }
     
@@ -238,36 +322,89 @@ public class ProductionFlow implements Runnable {
 		configure();
 	}
 
+	/**
+	 * Creates a ProductionFlow from a Configuration already loaded from config.properties and orchestra.properties.
+	 * This ProductionFlow sets properties in it, so use a copy if the Configuration is shared.
+	 * @param configuration
+	 * @throws Exception
+	 */
+	public ProductionFlow(Configuration configuration) throws Exception {
+		this.configuration = configuration;
+		configure();
+	}
+
 	@Override
 	public void run() {
 		run(true, true, true);
 	}
 	
+	/**
+	 * Runs the flow with this flow's MetricsRegistry as the current one, 
+	 * then prints and writes the metrics if they're enabled.
+	 * @param loadData
+	 * @param createScore
+	 * @param createXML
+	 */
 	public void run(boolean loadData, boolean createScore, boolean createXML) {
+		MetricsRegistry.run(metrics, () -> runFlow(loadData, createScore, createXML));
+		if(metrics.isEnabled()) {
+			metrics.printSummary(System.out);
+			if(metricsFileName != null) {
+				try {
+					metrics.write(metricsFileName);
+				}
+				catch(IOException e) {
+					log.error("Could not write metrics to " + metricsFileName + " because " + e.toString());
+				}
+			}
+		}
+	}
+
+	private void runFlow(boolean loadData, boolean createScore, boolean createXML) {
+		Timer runTimer = metrics.timer("flow.run");
+		long runStart = runTimer.start();
 		if(loadData) {
-			loadData();
+			metrics.timer("flow.loadData").time(this::loadData);
 			log.info("*** Data loaded ***");
 		}
 		Layer layer = null;
 		if(createScore) {
+			if(streaming) {
+				startStreaming(createXML);
+			}
 			layer = new Layer("Layer 1");
+			Timer timer = metrics.timer("flow.createScore");
+			long start = timer.start();
 			score = createScore();
+			timer.stop(start);
 			layer.setScore(score);
 			log.info("*** Score created ***");
 			/*
 			 * Do any transformation(s)
 			 */
-			applyTransformations(layer);
+			Layer transformLayer = layer;
+			if(streaming) {
+				metrics.timer("flow.transform").time(() -> applyRemainingTransformations(transformLayer));
+			}
+			else {
+				metrics.timer("flow.transform").time(() -> applyTransformations(transformLayer));
+			}
+			if(play) {
+				playScore();
+			}
 		}
 		if(createXML) {
-			createXML(xmlFileName);
+			metrics.timer("flow.createXML").time(() -> createXML(xmlFileName));
 			if(showScore) {
 				String command = configProperties.getProperty("musicxmlPath", "");
 				displayMusicXML(command, xmlFileName);
 			}
 		}
+		if(midiFileName != null && score != null) {
+			metrics.timer("flow.createMIDI").time(() -> createMIDI(midiFileName));
+		}
 		if(saveScore) {
-			saveCollection();
+			metrics.timer("flow.saveCollection").time(this::saveCollection);
 			log.info("*** score saved to " + scoreName + " ***");
 		}
 		if(analyzeMode) {
@@ -282,15 +419,21 @@ public class ProductionFlow implements Runnable {
 					log.warn(analyzeFileName + " not available. Writing to System.out");
 				}			
 			}
+			Timer timer = metrics.timer("flow.analyze");
+			long start = timer.start();
 			ScoreAnalyzer analyzer = new ScoreAnalyzer(this.score);
 			analyzer.analyze();
+			timer.stop(start);
 			analyzer.displayAnalysis(printStream);
 		}
 		try {
-			connection.close();
+			if(connection != null) {
+				connection.close();
+			}
 		} catch (JMSException e) {
 			log.error("JMS Exception on close");
 		}
+		runTimer.stop(runStart);
 	}
 
 	public static void displayMusicXML(String musicxmlProgram, String xmlFileName) {
@@ -310,8 +453,10 @@ public class ProductionFlow implements Runnable {
 	}
 
 	private void createXML(String filename) {
-		MusicXMLHelper helper = new MusicXMLHelper(score, configProperties);
-		helper.convert();	// creates and returns a com.audiveris.proxymusic.ScorePartwise
+		if(compressXML && filename != null) {
+			createMXL(filename);
+			return;
+		}
 		PrintStream ps = System.out;
 		if(xmlFileName != null) {
 			try {
@@ -321,59 +466,274 @@ public class ProductionFlow implements Runnable {
 				log.warn(filename + " not available. Writing to System.out");
 			}
 		}
-		helper.marshall(ps);	// marshals the ScorePartwise instance to an XML file
+		writeXML(ps);
 		if(filename != null) {
 			ps.close();
 		}
 		log.info("*** MusicXML created *** " + filename);
 	}
 
+	/**
+	 * Streams the score XML straight into a compressed .mxl archive.
+	 * The compression level is score.mxl.compressionLevel, 0 to 9, default -1 (Deflater default).
+	 * @param filename .mxl file name
+	 */
+	private void createMXL(String filename) {
+		int level = Integer.parseInt(configProperties.getProperty("score.mxl.compressionLevel", "-1").trim());
+		try(MxlWriter mxl = new MxlWriter(new BufferedOutputStream(new FileOutputStream(filename)), MxlWriter.getRootFileName(filename), level)) {
+			writeXML(mxl.getOutputStream());
+		}
+		catch(IOException e) {
+			log.error("Could not write " + filename + " because " + e.toString());
+			return;
+		}
+		log.info("*** MusicXML created *** " + filename);
+	}
+
+	/**
+	 * Writes the score as a Type 1 Standard MIDI File.
+	 * @param filename .mid file name
+	 */
+	private void createMIDI(String filename) {
+		try(OutputStream os = new BufferedOutputStream(new FileOutputStream(filename))) {
+			new MidiFileWriter(score, configProperties).write(os);
+		}
+		catch(IOException | InvalidMidiDataException e) {
+			log.error("Could not write " + filename + " because " + e.toString());
+			return;
+		}
+		log.info("*** MIDI file created *** " + filename);
+	}
+
+	private void writeXML(OutputStream os) {
+		if(metrics.isEnabled()) {
+			os = new CountingOutputStream(os, metrics.counter("musicxml.bytes"));
+		}
+		if(MusicXMLStreamWriter.isConfigured(configProperties)) {
+			Timer timer = metrics.timer("musicxml.write");
+			long start = timer.start();
+			try {
+				new MusicXMLStreamWriter(score, configProperties).write(os);	// writes the Score measure by measure
+			}
+			catch(XMLStreamException e) {
+				log.error("Could not write MusicXML because " + e.toString());
+			}
+			timer.stop(start);
+		}
+		else {
+			MusicXMLHelper helper = new MusicXMLHelper(score, configProperties);
+			Timer timer = metrics.timer("musicxml.convert");
+			long start = timer.start();
+			helper.convert();	// creates and returns a com.audiveris.proxymusic.ScorePartwise
+			timer.stop(start);
+			OutputStream xmlStream = os;
+			metrics.timer("musicxml.marshall").time(() -> helper.marshall(xmlStream));	// marshals the ScorePartwise instance to an XML file
+		}
+	}
+
 	public void applyTransformations(Layer layer) {
 		/*
 		 * Save XML pre-transformers
 		 */
 		if(saveIntermediateXML && createXML) {
-			createXML(xmlBaseFileName + "_raw.xml");
+			createXML(xmlBaseFileName + "_raw" + getXmlFileExtension());
 		}
 		/*
-		 * Apply instrument-specific Transformers
+		 * Instrument-specific Transformers then the Transformers that apply to ALL instruments.
+		 * Part transformers are fused into one traversal of each part and the parts transformed in parallel.
 		 */
-		for(ITransformer t : transformerMap.values()) {
-			t.accept(layer);
-		}
+		boolean parallel = configProperties.getProperty("score.transformers.parallel", "true").equalsIgnoreCase("true");
+		TransformerPipeline pipeline = new TransformerPipeline(transformerMap.values());
+		pipeline.setParallel(parallel);
 		if(saveIntermediateXML && createXML) {
-			createXML(xmlBaseFileName + "_t1.xml");
+			// the intermediate XML needs the instrument-specific Transformers done first
+			pipeline.accept(layer);
+			createXML(xmlBaseFileName + "_t1" + getXmlFileExtension());
+			pipeline = new TransformerPipeline();
+			pipeline.setParallel(parallel);
 		}
-		/*
-		 * Apply the Transformers that apply to ALL instruments
-		 */
 		for(ITransformer t : transformers) {
 			log.info("Apply transformer: " + t.getClass().getName());
-			t.accept(layer);
 		}
+		pipeline.addAll(transformers);
+		pipeline.accept(layer);
+	}
+
+	/**
+	 * Sets up streaming mode for the next createScore.<br>
+	 * The part transformers are streamed, in the order applyTransformations applies them, up to the first one
+	 * that can't transform a Measure on its own part's thread: a SCORE transformer or one that isn't for a single instrument.
+	 * The streamed transformers of a part are applied a Measure at a time, so a part can only have more than one
+	 * if they're all independent - otherwise streaming stops at the second.
+	 * That one and the rest are applied to the Score once it's created, so the Measures are kept in the Score only
+	 * if there are any, or if they're needed for the XML, MIDI file or analysis.
+	 * If there are any the Measures aren't saved as they're scored either, as they'd be saved untransformed:
+	 * saveCollection saves the whole Score once they've been applied.
+	 * @param createXML
+	 */
+	private void startStreaming(boolean createXML) {
+		streamedTransformers.clear();
+		remainingTransformers.clear();
+		List<ITransformer> ordered = new ArrayList<ITransformer>(transformerMap.values());
+		ordered.addAll(transformers);
+		for(ITransformer t : ordered) {
+			if(remainingTransformers.isEmpty() && isStreamable(t) && canFuse(t)) {
+				streamedTransformers.add(t);
+			}
+			else {
+				remainingTransformers.add(t);
+			}
+		}
+		collectMeasures = createXML || analyzeMode || midiFileName != null || !remainingTransformers.isEmpty();
+		if(play && remainingTransformers.isEmpty()) {
+			player = createPlayer();	// otherwise the Score is played once it's transformed
+			player.assignChannels(instruments.values());	// in the order ScoreFactory adds the parts
+		}
+		else if(play) {
+			collectMeasures = true;
+		}
+		if(!saveScore || !remainingTransformers.isEmpty()) {
+			streamRepository = null;
+		}
+		else if(scoreRepository == null) {
+			String databaseName = configProperties.getProperty("mongodb.scores.db.name", "test");
+			streamRepository = new ScoreRepository(DocumentStores.open(configProperties, MongoClientPool.uri(host, port), databaseName), configProperties);
+		}
+		else {
+			streamRepository = scoreRepository;
+		}
+		log.info("Streaming " + streamedTransformers.size() + " transformers, " + remainingTransformers.size() + " applied after");
+	}
+
+	private static boolean isStreamable(ITransformer transformer) {
+		return transformer instanceof IPartTransformer && transformer.getScope() != Scope.SCORE && transformer.getInstrument() != null;
 	}
 
 	/**
-	 * Save the Json score to a MongoDB Collection
-	 * TODO complete the implementation
 	 * 
+	 * @param transformer a streamable transformer
+	 * @return true if it's the first streamed for its instrument, or it and those already streamed for the instrument are independent
+	 */
+	private boolean canFuse(ITransformer transformer) {
+		for(ITransformer t : streamedTransformers) {
+			if(t.getInstrument().equals(transformer.getInstrument())
+					&& !(((IPartTransformer)t).isIndependent() && ((IPartTransformer)transformer).isIndependent())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the IMeasureSink for a ScorePart in streaming mode: the streamed transformers for its instrument,
+	 * then saving each Measure if saving the score, then adding it to the Score if the Measures are kept.
+	 * @param scorePart
+	 * @return IMeasureSink
+	 */
+	IMeasureSink createMeasureSink(ScorePart scorePart) {
+		IMeasureSink sink = null;
+		if(saveScore && streamRepository != null) {
+			sink = streamRepository.measureSink(scoreName);
+		}
+		if(player != null) {
+			sink = (sink == null) ? player : sink.andThen(player);
+		}
+		if(collectMeasures) {
+			sink = (sink == null) ? IMeasureSink.COLLECT : sink.andThen(IMeasureSink.COLLECT);
+		}
+		if(sink == null) {
+			sink = (scorePartEntity, measure) -> {};
+		}
+		List<IPartTransformer> stages = new ArrayList<IPartTransformer>();
+		for(ITransformer t : streamedTransformers) {
+			IPartTransformer transformer = (IPartTransformer)t;
+			if(transformer.appliesTo(scorePart.getScorePartEntity())) {
+				stages.add(transformer);
+			}
+		}
+		return stages.isEmpty() ? sink : new PartTransformerSink(stages, sink);
+	}
+
+	/**
+	 * Applies the transformers that weren't streamed, in order.
+	 * @param layer
+	 */
+	public void applyRemainingTransformations(Layer layer) {
+		if(remainingTransformers.isEmpty()) {
+			return;
+		}
+		for(ITransformer t : remainingTransformers) {
+			log.info("Apply transformer: " + t.getClass().getName());
+		}
+		TransformerPipeline pipeline = new TransformerPipeline(remainingTransformers);
+		pipeline.setParallel(configProperties.getProperty("score.transformers.parallel", "true").equalsIgnoreCase("true"));
+		pipeline.accept(layer);
+	}
+
+	/**
+	 * Plays the score, or the end of it if it was played as it was scored, and prints the playback statistics.
+	 */
+	private void playScore() {
+		if(player == null) {
+			player = createPlayer();
+			player.play(score);
+		}
+		player.close();
+		player.printStatistics(System.out);
+		player.getReceiver().close();
+		player = null;
+	}
+
+	/**
+	 * Creates a MidiPlayer for the default MIDI Receiver, or a NullReceiver if score.playback.receiver=none
+	 * or there isn't one. The look-ahead is score.playback.lookAhead milliseconds.
+	 * @return MidiPlayer
+	 */
+	private MidiPlayer createPlayer() {
+		Receiver receiver = null;
+		if(!configProperties.getProperty("score.playback.receiver", "default").equalsIgnoreCase("none")) {
+			try {
+				receiver = MidiSystem.getReceiver();
+			}
+			catch(MidiUnavailableException e) {
+				log.warn("No MIDI Receiver available, playing to a NullReceiver: " + e.toString());
+			}
+		}
+		if(receiver == null) {
+			receiver = new NullReceiver();
+		}
+		long lookAhead = Long.parseLong(configProperties.getProperty("score.playback.lookAhead", String.valueOf(MidiPlayer.DEFAULT_LOOK_AHEAD_MILLIS)).trim());
+		return new MidiPlayer(receiver, lookAhead, metrics);
+	}
+
+	/**
+	 * Save the Json score to a MongoDB (or file DocumentStore) Collection.<br>
+	 * If a ScoreRepository has been set the score is added to its bulk writes and inserted with those of other scores.
+	 * Otherwise it's saved with a ScoreRepository of its own, in the configured DocumentStore (MongoDB at host and port by default).<br>
+	 * In streaming mode the Measures have already been added, so only the score document is,
+	 * unless transformers were applied after the Score was created. Then the whole Score is saved.
 	 */
 	public void saveCollection() {
-		MongoDatabase database = null;
-		MongoCollection<Document> collection = null;
-		try {
-			mongoClient = new MongoClient(host, port);
-			database = mongoClient.getDatabase("test");
-			collection = database.getCollection("scores");
+		score.setName(scoreName);
+		if(streaming && streamRepository != null) {
+			streamRepository.saveHeader(score);
+			if(streamRepository != scoreRepository) {
+				streamRepository.close();
+			}
+			streamRepository = null;
+			return;
+		}
+		if(scoreRepository != null) {
+			scoreRepository.save(score);
+			return;
+		}
+		String databaseName = configProperties.getProperty("mongodb.scores.db.name", "test");
+		try(ScoreRepository repository = new ScoreRepository(DocumentStores.open(configProperties, MongoClientPool.uri(host, port), databaseName), configProperties)) {
+			repository.save(score);
 		} catch (Exception e) {
 			log.error("saveCollection Exception: " + e.toString());
 			e.printStackTrace();
-			return;
 		}
-		score.setName(scoreName);
-		Document scoreDoc = new Document(scoreName, score.toJson());
-		collection.insertOne(scoreDoc);
-		mongoClient.close();
 	}
 
 	/**
@@ -383,7 +743,10 @@ public class ProductionFlow implements Runnable {
 	 */
 	public Score createScore() {
 		log.debug("createScore()");
-		IScoreFactory scoreFactory = new ScoreFactory(configuration, instruments, measures, title, workNumber);				
+		ScoreFactory scoreFactory = new ScoreFactory(configuration, instruments, measures, title, workNumber);
+		if(streaming) {
+			scoreFactory.setMeasureSinks(this::createMeasureSink);
+		}
 		score = scoreFactory.createScore(true);
 
 		return score;
@@ -402,15 +765,18 @@ public class ProductionFlow implements Runnable {
 	 * This depends on setting of sequentialSelection (if false, use random selection)
 	 * @throws DataLoadException (RuntimeException)
 	 * 
-	 * TODO - make Async
+	 * When the transport is in-process (not activeMQ) the queues are bounded
+	 * so loadData returns without waiting. The DataLoaders run concurrently with
+	 * the ScoreParts that consume their data and block when a consumer falls behind.
 	 */
 	public void loadData() throws DataLoadException  {
 		log.debug("loadData()");
-		DataLoader dataLoader = null;
+		Map<String, DataLoader> dataLoaders = new HashMap<String, DataLoader>();
 		try {
 			for(String instrumentName : instrumentNames) {
 				MessageProducer producer = producers.get(instrumentName);
-				dataLoader = new DataLoader(instrumentName, configuration, producer, dataSourceName, session);
+				DataLoader dataLoader = new DataLoader(instrumentName, configuration, producer, dataSourceName, session);
+				dataLoaders.put(instrumentName, dataLoader);
 				Thread thread = new Thread(dataLoader);
 				thread.start();
 			}
@@ -418,6 +784,9 @@ public class ProductionFlow implements Runnable {
 			log.error("loadData exception: " +e.toString());
 			throw(new DataLoadException("loadData exception: " +e.toString()));
 		}
+		if(!dataSourceTransport.equalsIgnoreCase("activemq")) {
+			return;
+		}
 		/*
 		 * wait for threads to complete
 		 */
@@ -425,7 +794,7 @@ public class ProductionFlow implements Runnable {
 		do {
 			complete = true;
 			for(String instrumentName : instrumentNames) {
-				State state = dataLoader.getState();
+				State state = dataLoaders.get(instrumentName).getState();
 				log.trace(instrumentName + " state: " + state);
 				complete &= (state.equals(State.COMPLETE) || state.equals(State.ERROR));
 				if(state.equals(State.ERROR)) {
@@ -456,6 +825,9 @@ public class ProductionFlow implements Runnable {
     	ProductionFlowConfigurator configurator = new ProductionFlowConfigurator(this);
     	configurator.configure(configuration);
 		configProperties = configuration.getProperties();
+		metrics = MetricsRegistry.configure(configProperties);
+		metricsFileName = configProperties.getProperty("metrics.file");
+		streaming = configProperties.getProperty("score.streaming", "false").equalsIgnoreCase("true");
 		
 		// properties passed on the command line
 		configProperties.setProperty("measures", "" + measures);
@@ -510,9 +882,10 @@ public class ProductionFlow implements Runnable {
 			        }
 	   		}
 	   		else {
+	   			LocalTransport.configure(configProperties);
 	   			session = new SessionImpl();
 		        for(String name:instrumentNames) {
-		        	Destination dest = session.createQueue(name + ".queue");
+		        	Destination dest = session.createQueue(LocalTransport.queueName(configProperties, name + ".queue"));
 		        	destinations.put(name, dest);
 		        	MessageProducer mp = session.createProducer(dest);
 		        	producers.put(name, mp);
@@ -527,6 +900,7 @@ public class ProductionFlow implements Runnable {
 
 	/**
      * Creates and assigns the appropriate RhythmScales and ExpressionSelector for each instrument.
+     * These are changed for this score, so they're new ones rather than the registry's shared prototypes.
      */
 	void createRhythmScales() {
 		IRhythmScale allRhythmScale = null;
@@ -539,8 +913,8 @@ public class ProductionFlow implements Runnable {
 			rhythmScaleName = RhythmScaleFactory.DEFAULT_RHYTHM_SCALE_NAME;
 		}
 		
-		IRhythmScaleFactory factory = RhythmScaleFactory.getRhythmScaleFactory(rhythmScaleName);
-		allRhythmScale = factory.createRhythmScale(rhythmScaleName);
+		ComponentRegistry registry = ComponentRegistry.getInstance();
+		allRhythmScale = registry.newRhythmScale(rhythmScaleName);
 		
 		/*
 		 * configure individual instruments
@@ -556,8 +930,7 @@ public class ProductionFlow implements Runnable {
     		String key = "score.rhythmScale.instrument." + instrumentName;
     		if(configProperties.containsKey(key)) {
     			String rsName = configProperties.getProperty(key);
-    			factory = RhythmScaleFactory.getRhythmScaleFactory(rsName);
-    			IRhythmScale rs = factory.createRhythmScale(rsName);
+    			IRhythmScale rs = registry.newRhythmScale(rsName);
     			instrument.setRhythmScale(rs);
     			if(rs.isChordal()) {
     				rs.setChordalTextureProbability(chordalProbability);
@@ -574,23 +947,19 @@ public class ProductionFlow implements Runnable {
     	}
 	}
 
-	@SuppressWarnings("unchecked")
 	void createTransformers() throws ConfigurationException {
-		Class<ITransformer> tclass = null;
+		ComponentRegistry registry = ComponentRegistry.getInstance();
 		ITransformer transformer = null;
-		String[] tforms = null;
+		ConfigurationSnapshot transformerConfig = configuration.getSnapshot().subset("score.transformers.");
 		try {
 	    	/*
 	    	 * Get & configure transformers for individual instruments
 	    	 * Each instrument gets its own ScaleTransformer if needed so it knows the Range
 	    	 */
 	    	for(String instrumentName:instrumentNames) {
-	    		String key = "score.transformers." + instrumentName;
-	    		if(configProperties.containsKey(key)) {
-	    			tforms = configProperties.getProperty(key).split(",");
-	        		for(String tclassname : tforms) {
-	        			tclass = (Class<ITransformer>)Class.forName(tclassname);
-	        			transformer = tclass.getDeclaredConstructor().newInstance();
+	    		if(transformerConfig.containsKey(instrumentName)) {
+	        		for(String tclassname : transformerConfig.getList(instrumentName)) {
+	        			transformer = registry.newTransformer(tclassname);
 	        			Instrument instrument = instruments.get(instrumentName);
 	        			transformer.configure(configProperties, instrument);
 	        			transformer.setInstrument(instrument);
@@ -605,8 +974,8 @@ public class ProductionFlow implements Runnable {
 			 * not configured with their own transformer
 			 * Each instrument gets its own Transformer so it knows the Range
 			 */
-			if(configProperties.containsKey("score.transformers.default")) {
-	    		tforms = configProperties.getProperty("score.transformers.default").split(",");	// can specify more than one
+			if(transformerConfig.containsKey("default")) {
+				List<String> tforms = transformerConfig.getList("default");	// can specify more than one
 	    		for(Instrument instrument : instruments.values()) {
 		    		for(String tclassname : tforms) {
 		    			/*
@@ -617,8 +986,7 @@ public class ProductionFlow implements Runnable {
 		    				String tcname = transformerMap.get(instrument).getTransformerClassName();
 		    				continue;
 		    			}
-		    			tclass = (Class<ITransformer>)Class.forName(tclassname);
-		    			transformer = tclass.getDeclaredConstructor().newInstance();
+		    			transformer = registry.newTransformer(tclassname);
 		    			transformer.configure(configProperties, instrument);
 		    			transformers.add(transformer);
 		    		}
@@ -768,6 +1136,14 @@ public class ProductionFlow implements Runnable {
 		return scoreName;
 	}
 
+	/**
+	 * 
+	 * @return the Score created by run(), null if none was created
+	 */
+	public Score getScore() {
+		return score;
+	}
+
 	public void setScoreName(String scoreName) {
 		this.scoreName = scoreName;
 	}
@@ -816,6 +1192,86 @@ public class ProductionFlow implements Runnable {
 		return fieldNames;
 	}
 
+	public boolean isCompressXML() {
+		return compressXML;
+	}
+
+	public void setCompressXML(boolean compressXML) {
+		this.compressXML = compressXML;
+	}
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * 
+	 * @param streaming if true, transform and save each Measure as it's scored
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public String getMidiFileName() {
+		return midiFileName;
+	}
+
+	/**
+	 * 
+	 * @param midiFileName write the score as a MIDI file to midiFileName, or null for no MIDI file
+	 */
+	public void setMidiFileName(String midiFileName) {
+		this.midiFileName = midiFileName;
+	}
+
+	public boolean isPlay() {
+		return play;
+	}
+
+	/**
+	 * 
+	 * @param play if true, play the score on the default MIDI device
+	 */
+	public void setPlay(boolean play) {
+		this.play = play;
+	}
+
+	public ScoreRepository getScoreRepository() {
+		return scoreRepository;
+	}
+
+	/**
+	 * 
+	 * @param scoreRepository a ScoreRepository to save the score with, which the caller closes
+	 */
+	public void setScoreRepository(ScoreRepository scoreRepository) {
+		this.scoreRepository = scoreRepository;
+	}
+
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Replaces the MetricsRegistry with a new one, or DISABLED
+	 * @param enabled
+	 */
+	public void setMetricsEnabled(boolean enabled) {
+		metrics = enabled ? new MetricsRegistry() : MetricsRegistry.DISABLED;
+	}
+
+	public String getMetricsFileName() {
+		return metricsFileName;
+	}
+
+	public void setMetricsFileName(String metricsFileName) {
+		this.metricsFileName = metricsFileName;
+	}
+
+	public String getXmlFileExtension() {
+		return compressXML ? ".mxl" : ".xml";
+	}
+
 	public boolean isSaveIntermediateXML() {
 		return saveIntermediateXML;
 	}
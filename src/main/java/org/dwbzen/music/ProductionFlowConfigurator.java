@@ -10,11 +10,12 @@ import org.apache.logging.log4j.Logger;
 
 import org.dwbzen.music.element.Key;
 import org.dwbzen.music.element.Measure;
-import org.dwbzen.music.instrument.IInstrument;
 import org.dwbzen.music.instrument.Instrument;
 import org.dwbzen.util.Configuration;
 import org.dwbzen.util.ConfigurationException;
+import org.dwbzen.util.ConfigurationSnapshot;
 import org.dwbzen.util.Configurator;
+import org.dwbzen.util.music.ComponentRegistry;
 
 public class ProductionFlowConfigurator implements Configurator {
 	private ProductionFlow productionFlow = null;
@@ -27,9 +28,10 @@ public class ProductionFlowConfigurator implements Configurator {
 	}
 	
 	@Override
-    @SuppressWarnings("unchecked")
 	public void configure(Configuration configuration) throws ConfigurationException {
 		Properties configProperties = configuration.getProperties();
+		ComponentRegistry registry = ComponentRegistry.getInstance();
+		ConfigurationSnapshot instrumentConfig = configuration.getSnapshot().subset("score.instruments.");
 		instrumentNames = productionFlow.getInstrumentNames();
 		instruments = productionFlow.getInstruments();
 	   	/*
@@ -44,12 +46,11 @@ public class ProductionFlowConfigurator implements Configurator {
   
     	for(String name:instrumentNames) {
     		try {
-	    		String classname = configProperties.getProperty("score.instruments." + name + ".class");
-	    		Class<Instrument> instrumentClass = (Class<Instrument>) Class.forName(classname);
-	    		Instrument instrument = (org.dwbzen.music.instrument.Instrument)instrumentClass.getDeclaredConstructor().newInstance();
-	    		instrument.setPitchRange(IInstrument.getConfiguredPitchRange(configProperties, classname));
+	    		String classname = instrumentConfig.getString(name + ".class");
+	    		Instrument instrument = registry.newInstrument(classname);
+	    		instrument.setPitchRange(registry.getPitchRange(configProperties, classname));
 	    		instrument.setName(name);
-	    		instrument.setInstrumentName(configProperties.getProperty("score.instruments." + name + "instrument-name", name));
+	    		instrument.setInstrumentName(instrumentConfig.getString(name + "instrument-name", name));
 	    		instrument.configure(configuration);
 	    		// if not set by the Instrument when initialized (transposing instruments should do this), default key is C-Major
 	    		if(instrument.getKey() == null) {
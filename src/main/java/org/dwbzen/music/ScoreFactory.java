@@ -1,20 +1,55 @@
 package org.dwbzen.music;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.music.ScorePart.State;
 import org.dwbzen.music.element.Score;
 import org.dwbzen.music.instrument.Instrument;
 import org.dwbzen.util.Configuration;
+import org.dwbzen.util.ConfigurationException;
 
 /**
  * Creates a Score.
+ * <p>
+ * ScoreParts are run one at a time (ExecutionMode.SEQUENTIAL) or concurrently
+ * on a bounded thread pool (ExecutionMode.PARALLEL). The execution mode is configured as:<br>
+ * <code>score.execution.mode=sequential | parallel</code><br>
+ * <code>score.execution.parallelism=n</code>  maximum #threads, 0 (the default) uses the available processors<br>
+ * <code>score.execution.partTimeout=seconds</code>  time to wait for each ScorePart, 0 (the default) waits indefinitely<br>
+ * In PARALLEL mode a ScorePart that fails or times out is left out of the Score
+ * and the remaining parts are unaffected. Parts are always added to the Score
+ * in instrument order regardless of the order they complete.
+ * The partTimeout of each part runs from when it's submitted, so no part is waited for
+ * longer than partTimeout however many parts there are. A part that times out is cancelled,
+ * which closes its queue so its DataLoader stops.
+ * </p>
+ * <p>
+ * If a measure sink function is set, each ScorePart is given its own IMeasureSink
+ * and scored in streaming mode.
+ * </p>
  * 
  * @author don_bacon
  *
  */
 public class ScoreFactory implements IScoreFactory, Runnable, Supplier<Score> {
+	static final Logger log = LogManager.getLogger(ScoreFactory.class);
+	
+	public enum ExecutionMode {SEQUENTIAL, PARALLEL};
 	
 	private Map<String, Instrument> instruments;
 	private Configuration configuration;
@@ -22,6 +57,10 @@ public class ScoreFactory implements IScoreFactory, Runnable, Supplier<Score> {
 	private int numberOfMeasures;
 	private String title = null;
 	private String opus = null;
+	private ExecutionMode executionMode = ExecutionMode.SEQUENTIAL;
+	private int parallelism = 0;			// 0 means use availableProcessors
+	private long partTimeout = 0;			// seconds, 0 means no timeout
+	private Function<ScorePart, IMeasureSink> measureSinks = null;	// streaming mode if set
 	
 	/**
 	 * 
@@ -37,6 +76,15 @@ public class ScoreFactory implements IScoreFactory, Runnable, Supplier<Score> {
 		numberOfMeasures = nMeasures;
 		this.title = title;
 		this.opus = opus;
+		Properties configProperties = configuration.getProperties();
+		String mode = configProperties.getProperty("score.execution.mode", "sequential");
+		try {
+			executionMode = ExecutionMode.valueOf(mode.trim().toUpperCase());
+		} catch(IllegalArgumentException e) {
+			throw new ConfigurationException("score.execution.mode must be one of " + Arrays.toString(ExecutionMode.values()).toLowerCase() + ": " + mode);
+		}
+		parallelism = Integer.parseInt(configProperties.getProperty("score.execution.parallelism", "0"));
+		partTimeout = Long.parseLong(configProperties.getProperty("score.execution.partTimeout", "0"));
 	}
 	
 	public ScoreFactory(Configuration configuration, Map<String, Instrument> instruments, int nMeasures) {
@@ -52,6 +100,9 @@ public class ScoreFactory implements IScoreFactory, Runnable, Supplier<Score> {
 		score.addCreator("arranger", configProperties.getProperty("creator.arranger", "No Arranger"));
 		score.addCreator("lyricist", configProperties.getProperty("creator.lyricist", "No Lyricist"));
 
+		if(runFlag && executionMode.equals(ExecutionMode.PARALLEL)) {
+			return createScoreParallel(configProperties);
+		}
 		for(String instrumentName : instruments.keySet()) {
 			Instrument instrument = instruments.get(instrumentName);
 			score.getInstrumentNames().add(instrumentName);
@@ -63,13 +114,103 @@ public class ScoreFactory implements IScoreFactory, Runnable, Supplier<Score> {
 			 */
 			if(runFlag) {
 				scorePart.setMaxMeasures(numberOfMeasures);
+				setMeasureSink(scorePart);
 				scorePart.run();
 			}
 			score.addPart(scorePart);
 		}
 		return score;
 	}
-
+	
+	/**
+	 * Runs each ScorePart as a separate task on a fixed thread pool.
+	 * The pool size is the smaller of the configured parallelism and the number of instruments.
+	 * Completed parts are merged into the Score in instrument order.
+	 * 
+	 * @param configProperties
+	 * @return Score instance
+	 */
+	private Score createScoreParallel(Properties configProperties) {
+		Map<String, ScorePart> scoreParts = new LinkedHashMap<>();
+		for(String instrumentName : instruments.keySet()) {
+			String partName = configProperties.getProperty(instrumentName + ".partName", instrumentName);
+			ScorePart scorePart = new ScorePart(score, partName, instruments.get(instrumentName));
+			scorePart.setMaxMeasures(numberOfMeasures);
+			setMeasureSink(scorePart);
+			scoreParts.put(instrumentName, scorePart);
+		}
+		int nThreads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		nThreads = Math.max(1, Math.min(nThreads, scoreParts.size()));
+		log.info("Running " + scoreParts.size() + " ScoreParts on " + nThreads + " threads");
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		List<Future<?>> futures = new ArrayList<>();
+		List<Long> deadlines = new ArrayList<>();
+		try {
+			for(ScorePart scorePart : scoreParts.values()) {
+				futures.add(executor.submit(scorePart));
+				deadlines.add(System.nanoTime() + TimeUnit.SECONDS.toNanos(partTimeout));
+			}
+			int index = 0;
+			for(String instrumentName : scoreParts.keySet()) {
+				ScorePart scorePart = scoreParts.get(instrumentName);
+				Future<?> future = futures.get(index);
+				long deadline = deadlines.get(index++);
+				if(awaitScorePart(scorePart, future, deadline)) {
+					score.getInstrumentNames().add(instrumentName);
+					score.addPart(scorePart);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return score;
+	}
+	
+	/**
+	 * Waits for a ScorePart to complete.
+	 * @param scorePart
+	 * @param future
+	 * @param deadline System.nanoTime() to wait until if there's a partTimeout
+	 * @return true if the ScorePart completed normally, false if it failed, timed out or was interrupted
+	 */
+	private boolean awaitScorePart(ScorePart scorePart, Future<?> future, long deadline) {
+		boolean completed = false;
+		String partName = scorePart.getPartName();
+		try {
+			if(partTimeout > 0) {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+			else {
+				future.get();
+			}
+			completed = scorePart.getState().equals(State.COMPLETE);
+			if(!completed) {
+				log.error("ScorePart " + partName + " ended in state " + scorePart.getState());
+			}
+		}
+		catch(TimeoutException e) {
+			log.error("ScorePart " + partName + " timed out after " + partTimeout + " seconds");
+			future.cancel(true);
+		}
+		catch(ExecutionException e) {
+			log.error("ScorePart " + partName + " failed: " + e.getCause());
+		}
+		catch(InterruptedException e) {
+			log.error("Interrupted waiting for ScorePart " + partName);
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+		}
+		return completed;
+	}
+	
+	private void setMeasureSink(ScorePart scorePart) {
+		if(measureSinks != null) {
+			scorePart.setMeasureSink(measureSinks.apply(scorePart));
+		}
+	}
+	
 	@Override
 	public void run() {
 		score = createScore(true);
@@ -111,6 +252,42 @@ public class ScoreFactory implements IScoreFactory, Runnable, Supplier<Score> {
 		this.opus = opus;
 	}
 
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	public void setExecutionMode(ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public long getPartTimeout() {
+		return partTimeout;
+	}
+
+	public void setPartTimeout(long partTimeout) {
+		this.partTimeout = partTimeout;
+	}
+
+	public Function<ScorePart, IMeasureSink> getMeasureSinks() {
+		return measureSinks;
+	}
+
+	/**
+	 * 
+	 * @param measureSinks creates the IMeasureSink for each ScorePart, or null to not stream
+	 */
+	public void setMeasureSinks(Function<ScorePart, IMeasureSink> measureSinks) {
+		this.measureSinks = measureSinks;
+	}
+
 	public Score getScore() {
 		return score;
 	}
@@ -0,0 +1,289 @@
+package org.dwbzen.music;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
+
+/**
+ * Produces a batch of scores concurrently, each from its own seed so that any one of them can be reproduced.</p>
+ * The seed of each score is derived from a master seed, so running again with the same master seed
+ * and options produces the same scores byte for byte.
+ * config.properties and orchestra.properties are read once. Each score is produced by its own ProductionFlow
+ * with a copy of that Configuration, its own in-process transport queues and its own SeededRandom.
+ * The MusicXML is written by MusicXMLStreamWriter without an encoding-date, and the seed is written
+ * as a miscellaneous-field in the identification.</p>
+ * For each score n the files are &lt;name&gt;_nnnn.xml (or .mxl, or .mid) and &lt;name&gt;_nnnn.json.
+ * &lt;name&gt;_seeds.csv lists the master seed and the seed of each score.</p>
+ * Example usage: </p>
+ * <code>ScoreFarm -count 20 -seed 1234 -threads 4 -measures 30 -dir C:/Music/Scores/farm -name farm</code></p>
+ * <dl>
+ * <dt>-count</dt> <dd>number of scores to produce. Default is 10.</dd>
+ * <dt>-seed</dt> <dd>master seed. If not given a random one is used, and written to the seeds file.</dd>
+ * <dt>-threads</dt> <dd>number of scores produced at the same time. Default is the number of processors.</dd>
+ * <dt>-measures</dt> <dd>number of measures in each score</dd>
+ * <dt>-dir</dt> <dd>output directory. Default is the current directory.</dd>
+ * <dt>-name</dt> <dd>output file name prefix. Default is "score".</dd>
+ * <dt>-mxl true|false</dt> <dd>write compressed .mxl files. Default is false.</dd>
+ * <dt>-midi true|false</dt> <dd>write Standard MIDI Files (.mid) instead of MusicXML. Default is false.</dd>
+ * <dt>-json true|false</dt> <dd>also write each Score as JSON. Default is true.</dd>
+ * <dt>-rand true|false</dt> <dd>random selection of data source points, as in ProductionFlow. Default is false.</dd>
+ * </dl>
+ * All the random numbers a score uses, including the normal distributions of RandomDataSource
+ * and PitchSet tone rows, come from its SeededRandom.
+ *
+ * @author don_bacon
+ *
+ */
+public class ScoreFarm {
+	static final Logger log = LogManager.getLogger(ScoreFarm.class);
+
+	private Configuration configuration = null;	// loaded once, each score gets a copy
+	private long masterSeed;
+	private int count = 10;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int measures = 0;
+	private File outputDirectory = new File(".");
+	private String name = "score";
+	private boolean compressXML = false;
+	private boolean writeMidi = false;
+	private boolean writeJson = true;
+	private boolean randomSelection = false;
+
+	public static void main(String... args) throws Exception {
+		ScoreFarm scoreFarm = new ScoreFarm(new SplittableRandom().nextLong());
+		for(int i = 0; i<args.length; i++) {
+			if(args[i].equalsIgnoreCase("-count")) {
+				scoreFarm.setCount(Integer.parseInt(args[++i]));
+			}
+			else if(args[i].equalsIgnoreCase("-seed")) {
+				scoreFarm.setMasterSeed(Long.parseLong(args[++i]));
+			}
+			else if(args[i].equalsIgnoreCase("-threads")) {
+				scoreFarm.setThreads(Integer.parseInt(args[++i]));
+			}
+			else if(args[i].equalsIgnoreCase("-measures")) {
+				scoreFarm.setMeasures(Integer.parseInt(args[++i]));
+			}
+			else if(args[i].equalsIgnoreCase("-dir")) {
+				scoreFarm.setOutputDirectory(new File(args[++i]));
+			}
+			else if(args[i].equalsIgnoreCase("-name")) {
+				scoreFarm.setName(args[++i]);
+			}
+			else if(args[i].equalsIgnoreCase("-mxl")) {
+				scoreFarm.setCompressXML(args[++i].equalsIgnoreCase("true"));
+			}
+			else if(args[i].equalsIgnoreCase("-midi")) {
+				scoreFarm.setWriteMidi(args[++i].equalsIgnoreCase("true"));
+			}
+			else if(args[i].equalsIgnoreCase("-json")) {
+				scoreFarm.setWriteJson(args[++i].equalsIgnoreCase("true"));
+			}
+			else if(args[i].startsWith("-rand")) {
+				scoreFarm.setRandomSelection(args[++i].equalsIgnoreCase("true"));
+			}
+		}
+		int failed = scoreFarm.run();
+		if(failed > 0) {
+			log.error(failed + " scores failed");
+		}
+	}
+
+	public ScoreFarm(long masterSeed) {
+		configuration = Configuration.getInstance(ProductionFlow.CONFIG_FILENAME);
+		configuration.addConfiguration(Configuration.getInstance(ProductionFlow.ORCHESTRA_CONFIG_FILENAME));
+		this.masterSeed = masterSeed;
+	}
+
+	/**
+	 *
+	 * @return the seed of each score, the first count longs of a SplittableRandom seeded with the master seed
+	 */
+	public long[] getSeeds() {
+		SplittableRandom random = new SplittableRandom(masterSeed);
+		long[] seeds = new long[count];
+		for(int i=0; i<count; i++) {
+			seeds[i] = random.nextLong();
+		}
+		return seeds;
+	}
+
+	/**
+	 * Produces the scores on a pool of threads and writes the seeds file when they're all done.
+	 * @return the number of scores that failed
+	 * @throws IOException if the seeds file can't be written
+	 * @throws InterruptedException
+	 */
+	public int run() throws IOException, InterruptedException {
+		long[] seeds = getSeeds();
+		outputDirectory.mkdirs();
+		log.info("Producing " + count + " scores, master seed " + masterSeed + ", " + threads + " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, count)));
+		List<Future<String>> futures = new ArrayList<>();
+		for(int i=0; i<count; i++) {
+			int scoreNumber = i + 1;
+			long seed = seeds[i];
+			futures.add(executor.submit(() -> SeededRandom.call(new SeededRandom(seed), () -> produce(scoreNumber, seed))));
+		}
+		executor.shutdown();
+		int failed = 0;
+		try(PrintStream ps = new PrintStream(new FileOutputStream(new File(outputDirectory, name + "_seeds.csv")))) {
+			ps.println("masterSeed," + masterSeed);
+			ps.println("score,seed,file");
+			for(int i=0; i<count; i++) {
+				String fileName = null;
+				try {
+					fileName = futures.get(i).get();
+				}
+				catch(ExecutionException e) {
+					log.error("score " + (i + 1) + " failed: " + e.getCause().toString());
+					fileName = "failed";
+					failed++;
+				}
+				ps.println((i + 1) + "," + seeds[i] + "," + fileName);
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Produces one score. This runs with the score's SeededRandom as the current thread's.
+	 * @param scoreNumber
+	 * @param seed
+	 * @return the MusicXML (or MIDI) file name
+	 * @throws Exception
+	 */
+	private String produce(int scoreNumber, long seed) throws Exception {
+		String baseName = String.format("%s_%04d", name, scoreNumber);
+		Configuration scoreConfiguration = configuration.copy();
+		Properties configProperties = scoreConfiguration.getProperties();
+		configProperties.setProperty("dataSource.transport", "local");
+		configProperties.setProperty("dataSource.transport.local.namespace", baseName + ".");
+		configProperties.setProperty("score.musicxml.writer", "stream");
+		configProperties.setProperty("score.encoding.date", "none");
+		configProperties.setProperty("score.seed", String.valueOf(seed));
+
+		ProductionFlow productionFlow = new ProductionFlow(scoreConfiguration);
+		File xmlFile = new File(outputDirectory, baseName + (writeMidi ? ".mid" : compressXML ? ".mxl" : ".xml"));
+		productionFlow.setScoreName(baseName);
+		productionFlow.setRandomSelection(randomSelection);
+		if(measures > 0) {
+			productionFlow.setMeasures(measures);
+		}
+		if(writeMidi) {
+			productionFlow.setMidiFileName(xmlFile.getPath());
+		}
+		else {
+			productionFlow.setCompressXML(compressXML);
+			productionFlow.setXmlFileName(xmlFile.getPath());
+		}
+		productionFlow.setCreateXML(!writeMidi);
+		productionFlow.run(true, true, !writeMidi);
+
+		Score score = productionFlow.getScore();
+		if(writeJson && score != null) {
+			score.setName(baseName);
+			File jsonFile = new File(outputDirectory, baseName + ".json");
+			Files.write(jsonFile.toPath(), score.toJson().getBytes(StandardCharsets.UTF_8));
+		}
+		log.info("score " + scoreNumber + " seed " + seed + " written to " + xmlFile.getName());
+		return xmlFile.getName();
+	}
+
+	public long getMasterSeed() {
+		return masterSeed;
+	}
+
+	public void setMasterSeed(long masterSeed) {
+		this.masterSeed = masterSeed;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getMeasures() {
+		return measures;
+	}
+
+	public void setMeasures(int measures) {
+		this.measures = measures;
+	}
+
+	public File getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	public void setOutputDirectory(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public boolean isCompressXML() {
+		return compressXML;
+	}
+
+	public void setCompressXML(boolean compressXML) {
+		this.compressXML = compressXML;
+	}
+
+	public boolean isWriteMidi() {
+		return writeMidi;
+	}
+
+	public void setWriteMidi(boolean writeMidi) {
+		this.writeMidi = writeMidi;
+	}
+
+	public boolean isWriteJson() {
+		return writeJson;
+	}
+
+	public void setWriteJson(boolean writeJson) {
+		this.writeJson = writeJson;
+	}
+
+	public boolean isRandomSelection() {
+		return randomSelection;
+	}
+
+	public void setRandomSelection(boolean randomSelection) {
+		this.randomSelection = randomSelection;
+	}
+}
@@ -1,11 +1,13 @@
 package org.dwbzen.music;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ThreadLocalRandom;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
@@ -49,9 +51,24 @@ import org.dwbzen.music.instrument.Instrument;
 import org.dwbzen.music.transform.ITransformer.Preference;
 import org.dwbzen.util.Configuration;
 import org.dwbzen.util.Ratio;
+import org.dwbzen.util.SeededRandom;
+import org.dwbzen.util.messaging.LocalTransport;
 import org.dwbzen.util.messaging.SessionImpl;
+import org.dwbzen.util.metrics.Counter;
+import org.dwbzen.util.metrics.Histogram;
+import org.dwbzen.util.metrics.MetricsRegistry;
+import org.dwbzen.util.metrics.Timer;
 
 /**
+ * Creates the music for one part (Instrument) of a Score from the points in its queue.<br>
+ * By default all the points are collected, scaled to Notes, and then the Notes scored into Measures
+ * that are added to the ScorePartEntity.<br>
+ * If a measureSink is set the part is scored in streaming mode: the messages are read one at a time
+ * as the scorer needs Notes, and each Measure is passed to the IMeasureSink as soon as it's complete.
+ * Only the Measure being scored (and the previous one until a tie across the bar line is resolved)
+ * and the Notes of the latest point are kept, so memory doesn't grow with the length of the piece.
+ * Points are scaled with the bounds in the stats message, which the data sources send before the points.
+ * Any points that arrive before it are held until it does.
  * 
  * @author don_bacon
  *
@@ -61,7 +78,6 @@ public class ScorePart implements Serializable, Runnable {
 	private static final long serialVersionUID = -8550433867242770122L;
 	static final Logger log = LogManager.getLogger(ProductionFlow.class);
 	
-	private ThreadLocalRandom random = ThreadLocalRandom.current();
 	private ScorePartEntity	scorePartEntity = null;
 	private Measure currentMeasure;
 	private PointSet<Double> scorePartData = null;
@@ -85,6 +101,16 @@ public class ScorePart implements Serializable, Runnable {
 	private State state = State.UNKNOWN;
 	private Tempo tempo = null;		// set from config as in score.tempo=90
 	private Key scoreKey = null;	// set from configuration as in: score.key=F-Major
+	private SeededRandom random = null;		// this part's, derived from the creating thread's SeededRandom
+	private MetricsRegistry metrics = null;	// the creating thread's
+	private IMeasureSink measureSink = null;	// streaming mode if set
+	private Deque<Note> pendingNotes = new ArrayDeque<Note>();		// streaming: notes not scored yet
+	private List<Measure> openMeasures = new ArrayList<Measure>();	// streaming: not passed to the measureSink yet
+	private boolean scaling = false;	// streaming: scalers have the bounds of the data
+	private boolean scored = false;		// streaming: all the measures have been scored
+	private int pointCount = 0;
+	private int noteCount = 0;
+	private int measureCount = 0;
 	public enum State {UNKNOWN, INIT, WORKING, COMPLETE, ERROR};
 	
 	public ScorePart(Score score, String pname, Instrument instr) {
@@ -95,6 +121,8 @@ public class ScorePart implements Serializable, Runnable {
 		configuration = score.getConfiguration();
 		partName = pname;
 		instrument = instr;
+		random = SeededRandom.current().derive("ScorePart." + pname);
+		metrics = MetricsRegistry.current();
 		if(instrument.getRhythmScale() != null) {
 			rhythmScale = instrument.getRhythmScale();
 			divsPerMeasure = rhythmScale.getRoot();
@@ -104,27 +132,69 @@ public class ScorePart implements Serializable, Runnable {
 		}
 	}
 	
+	/**
+	 * Runs with this part's SeededRandom as the current thread's,
+	 * so a seeded score is the same however the parts are scheduled.
+	 */
 	@Override
 	public void run() {
+		SeededRandom.run(random, this::runScorePart);
+	}
+
+	private void runScorePart() {
 		state = State.WORKING;
 		log.info("Running ScorePart " + scorePartEntity.getPartName());
 		try {
-			configure();
-			collectScorePartData();
-			log.info("collectScorePartData completed.");
-		} catch (Exception e) {
-			log.error("exception: " + e.toString());
-			e.printStackTrace();
+			scoreScorePart();
 		}
-		/*
-		 * Turn score part data into music
-		 */
-		log.info("Creating ScorePart " + partName);
-		createScorePart();
+		catch(RuntimeException e) {
+			state = State.ERROR;
+			throw e;
+		}
+		finally {
+			closeTransport();
+		}
+	}
+	
+	private void scoreScorePart() {
+		if(isStreaming()) {
+			metrics.timer("scorePart.stream", "part", partName).time(this::streamScorePart);
+		}
+		else {
+			Timer collectTimer = metrics.timer("scorePart.collect", "part", partName);
+			long start = collectTimer.start();
+			try {
+				configure();
+				collectScorePartData();
+				log.info("collectScorePartData completed.");
+			} catch (Exception e) {
+				log.error("exception: " + e.toString());
+				e.printStackTrace();
+			}
+			collectTimer.stop(start);
+			/*
+			 * Turn score part data into music
+			 */
+			log.info("Creating ScorePart " + partName);
+			metrics.timer("scorePart.create", "part", partName).time(this::createScorePart);
+		}
+		recordMetrics();
 		log.info("ScorePart " + partName + " complete");
 		state = State.COMPLETE;
+	}
+	
+	/**
+	 * Closes the transport, whether or not this part completed. Closing the in-process queue
+	 * makes a DataLoader still sending to it fail, rather than block forever.
+	 */
+	private void closeTransport() {
 		try {
-			connection.close();
+			if(connection != null) {
+				connection.close();
+			}
+			else if(session != null) {
+				session.close();	// releases the in-process queue
+			}
 		} catch (JMSException e) {
 			System.err.println("JMSException on close " + e.toString());
 			e.printStackTrace();
@@ -137,7 +207,52 @@ public class ScorePart implements Serializable, Runnable {
 	 * Use configured RhythmScale for this instrument to set duration units
 	 */
 	public void createScorePart() {
-    	List<Point2D<Double>> points = scorePartData.getPoints();
+    	setScalers();
+    	for(Point2D<Double> point: scorePartData.getPoints()) {
+    		addNotes(point, notes);
+    	}
+    	metrics.timer("scorePart.scoreInstrument", "part", partName).time(this::scoreInstrument);
+	}
+
+	/**
+	 * Scores this part as its data arrives. The scorer reads messages as it needs Notes
+	 * and each Measure is passed to the measureSink once it's complete.
+	 * When the part has been scored any remaining messages are read and the points ignored,
+	 * so the DataLoader isn't left blocked on the queue.
+	 */
+	private void streamScorePart() {
+		try {
+			configure();
+		} catch (Exception e) {
+			log.error("exception: " + e.toString());
+			e.printStackTrace();
+		}
+		messageListener = new ScorePartMessageListener(this, consumer);
+		measureSink.startPart(scorePartEntity);
+		scoreInstrument();
+		emitMeasures(0);
+		measureSink.endPart(scorePartEntity);
+		scored = true;
+		pendingNotes.clear();
+		while(messageListener.isMore()) {
+			receiveMessage();
+		}
+		log.info("streamScorePart completed after " + messageListener.getMessageCount() + " messages");
+	}
+
+	private void receiveMessage() {
+		try {
+			messageListener.receive();
+		} catch (Exception e) {
+			log.error("receive exception: " + e.toString());
+			messageListener.setMore(false);
+		}
+	}
+
+	/**
+	 * Sets the pitch and duration scalers to the bounds of the data.
+	 */
+	private void setScalers() {
     	PitchScaler ps = instrument.getPitchScaler();
     	ps.setMinVal(scorePartData.getMinXValue());
     	ps.setMaxVal(scorePartData.getMaxXValue());
@@ -145,47 +260,123 @@ public class ScorePart implements Serializable, Runnable {
     	DurationScaler durationScaler = instrument.getDurationScaler();
     	durationScaler.setMinVal(scorePartData.getMinYValue());
     	durationScaler.setMaxVal(scorePartData.getMaxYValue());
-    	for(Point2D<Double> point: points) {
-    		Pitch pitch = instrument.scale(point.getX().doubleValue());
-    		Duration duration = durationScaler.scaleToRhythmScale(point.getY().doubleValue());
-    		double rawUnits = duration.getRawDuration();
-
-    		// scale raw point value to RhythmScale units
-    		// set dots after determining the expression to use for these units
-    		int units = rhythmScale.findClosestUnits(rawUnits, Preference.Up);
-
-    		// use RhythmScale factors to get the Durations (units & dots) for scaled units
-    		List<Duration> factors =  rhythmScale.getFactors(units);
-    		if(factors == null) {
-    			System.err.println("Null factors for " + units + " units, rawUnits= " + rawUnits);
-    			continue;
-    		}
-    		/*
-    		 *  more than 1 factor indicates tied notes.
-    		 *  TODO this needs to be refactored to NOT tie notes in situ
-    		 *  as this complicates chord processing. Add the factors to the note
-    		 *  instead and let note processing deal with creating ties.
-    		 */
-    		int nFactors = factors.size();
-    		Note previousNote = null;
-    		for(int i = 0; i<nFactors; i++) {
-    			Duration df = factors.get(i);
-        		Note note = new Note(pitch, df);
-        		note.setPoint(point);
-        		log.trace(instrument.getAbreviation() + ": " + note);
-    			if(i > 0) {
-    				note.setTiedFrom(previousNote);
-    				previousNote.setTiedTo(note);
-    			}
-        		notes.add(note);
-        		previousNote = note;
+	}
+
+	/**
+	 * Streaming mode: sets the scalers and scales any points that have been held waiting for the bounds.
+	 */
+	private void startScaling() {
+		setScalers();
+		scaling = true;
+		for(Point2D<Double> point : scorePartData.getPoints()) {
+			addNotes(point, pendingNotes);
+		}
+		scorePartData.getPoints().clear();
+	}
+
+	/**
+	 * Scales a point to a Note, or to tied Notes if its duration has more than 1 factor.
+	 * @param point
+	 * @param notes the Notes to add to
+	 */
+	private void addNotes(Point2D<Double> point, Collection<Note> notes) {
+		Pitch pitch = instrument.scale(point.getX().doubleValue());
+		double rawUnits = instrument.getDurationScaler().scaleToRhythmScaleUnits(point.getY().doubleValue());
+
+		// scale raw point value to RhythmScale units
+		// set dots after determining the expression to use for these units
+		int units = rhythmScale.findClosestUnits(rawUnits, Preference.Up);
+
+		// use RhythmScale factors to get the Durations (units & dots) for scaled units
+		List<Duration> factors =  rhythmScale.getFactors(units);
+		if(factors == null) {
+			System.err.println("Null factors for " + units + " units, rawUnits= " + rawUnits);
+			return;
+		}
+		/*
+		 *  more than 1 factor indicates tied notes.
+		 *  TODO this needs to be refactored to NOT tie notes in situ
+		 *  as this complicates chord processing. Add the factors to the note
+		 *  instead and let note processing deal with creating ties.
+		 */
+		int nFactors = factors.size();
+		Note previousNote = null;
+		for(int i = 0; i<nFactors; i++) {
+			Duration df = factors.get(i);
+    		Note note = new Note(pitch, df);
+    		note.setPoint(point);
+    		log.trace(instrument.getAbreviation() + ": " + note);
+			if(i > 0) {
+				note.setTiedFrom(previousNote);
+				previousNote.setTiedTo(note);
+			}
+    		notes.add(note);
+    		noteCount++;
+    		if(isStreaming() && metrics.isEnabled()) {
+    			metrics.histogram("scorePart.noteUnits", "part", partName).record(df.getDurationUnits());
     		}
-    	}
-    	scoreInstrument();
-    	
+    		previousNote = note;
+		}
+	}
+
+	/**
+	 * Streaming mode: passes the open Measures, all but the last keep of them, to the measureSink.
+	 * @param keep
+	 */
+	private void emitMeasures(int keep) {
+		while(openMeasures.size() > keep) {
+			Measure measure = openMeasures.remove(0);
+			if(metrics.isEnabled()) {
+				recordMeasureMetrics(measure);
+			}
+			measureSink.accept(scorePartEntity, measure);
+		}
+	}
+
+	/**
+	 * Counts the points, messages, notes, measures and ties of this part,
+	 * and records the number of Measurables per Measure and the duration units of each note.
+	 */
+	private void recordMetrics() {
+		if(!metrics.isEnabled()) {
+			return;
+		}
+		metrics.counter("scorePart.points", "part", partName).add(pointCount);
+		if(messageListener != null) {
+			metrics.counter("scorePart.messages", "part", partName).add(messageListener.getMessageCount());
+		}
+		metrics.counter("scorePart.notes", "part", partName).add(noteCount);
+		metrics.counter("scorePart.measures", "part", partName).add(measureCount);
+		if(isStreaming()) {
+			return;		// notes and measures were recorded as they were scored
+		}
+		Histogram noteUnits = metrics.histogram("scorePart.noteUnits", "part", partName);
+		notes.forEach(note -> noteUnits.record(note.getDuration().getDurationUnits()));
+		getMeasures().forEach(this::recordMeasureMetrics);
+	}
+
+	private void recordMeasureMetrics(Measure measure) {
+		Histogram measurables = metrics.histogram("scorePart.measurables", "part", partName);
+		Counter ties = metrics.counter("scorePart.ties", "part", partName);
+		measurables.record(measure.getMeasureables().size());
+		for(Measurable measurable : measure.getMeasureables()) {
+			TieType tieType = measurable.getTieType();
+			if(tieType != null && (tieType.value() & TieType.START.value()) != 0) {
+				ties.increment();		// START or BOTH
+			}
+		}
 	}
 	
 	private Note getNextNote() {
+		if(isStreaming()) {
+			while(pendingNotes.isEmpty() && messageListener.isMore()) {
+				receiveMessage();
+			}
+			if(pendingNotes.isEmpty() && !scaling && !scorePartData.getPoints().isEmpty()) {
+				startScaling();		// no stats message, so scale the points held with their own bounds
+			}
+			return pendingNotes.poll();
+		}
 		Note n = noteIterator.hasNext() ? noteIterator.next() : null;
 		return n;
 	}
@@ -199,6 +390,8 @@ public class ScorePart implements Serializable, Runnable {
      * If expression is EXTRAMETRIC, as in a tuplet, need to gather more notes to
      * create that tuplet. It uses the Pitch in each note added (to the tuplet),
      * but not the #units (so it's somewhat wasteful in that regard).
+     * In streaming mode, the Notes are scaled as they're needed and each Measure
+     * is passed to the measureSink once the next one has been started, with any tie to it.
      * 
      */
     public void scoreInstrument() {
@@ -344,7 +537,7 @@ public class ScorePart implements Serializable, Runnable {
 	    					+ " unitsThisMeasure: " + unitsThisMeasure );
 	    			
 	    			// tie across the bar line determined by tieProbability for this instrument
-	    			boolean tieToNote = random.nextDouble() <= tieProbability;
+	    			boolean tieToNote = selector.getRandom().nextDouble() <= tieProbability;
 	    			
 	    			if(chordal) {
 	    				chord.setTupletType(TupletType.NONE);
@@ -365,7 +558,12 @@ public class ScorePart implements Serializable, Runnable {
 	    			tupletGroup = null;
 	    			unitsCount = unitsNextMeasure;
 	    		}
+	    		emitMeasures(1);
 	    	}	// end if(Notes)
+	    	else {
+	    		log.warn(partName + " ran out of notes in measure " + measureCounter);
+	    		break;
+	    	}
     	} while(measureCounter <= maxMeasures);
     	
     	if(unitsCount < unitsPerMeasure) {
@@ -458,7 +656,14 @@ public class ScorePart implements Serializable, Runnable {
     	}
     	currentMeasure = newMeasure;
     	Label l = new Label(newMeasure.getNumber(), "");
-    	addMeasure(l, newMeasure);
+    	if(isStreaming()) {
+    		newMeasure.setLabel(l);
+    		openMeasures.add(newMeasure);
+    	}
+    	else {
+    		addMeasure(l, newMeasure);
+    	}
+    	measureCount++;
     	log.debug("created measure# " + newMeasure.getNumber());
     	return newMeasure;
     }
@@ -514,7 +719,13 @@ public class ScorePart implements Serializable, Runnable {
        	else if(type.equals(Point2D.ObjectType)) {				// "Point2D"
        		Point2D<Double> point = (Point2D<Double>)jsonObj;
        		log.trace(" point for " + getPartName() + ": " + point.toJson());
-       		if(scorePartData != null) {
+       		pointCount++;
+       		if(isStreaming() && (scaling || scored)) {
+       			if(!scored) {
+       				addNotes(point, pendingNotes);
+       			}
+       		}
+       		else if(scorePartData != null) {
        			scorePartData.add(point);
        		}
        		else {
@@ -525,6 +736,9 @@ public class ScorePart implements Serializable, Runnable {
        		PointSetStats<Double> stats = (PointSetStats<Double>)jsonObj;
        		scorePartData.setStats(stats);
        		log.debug("pointSet for " + getPartName() + ": " + scorePartData.toJson());
+       		if(isStreaming() && !scaling && !scored) {
+       			startScaling();
+       		}
        	}
        	else if(type.equals(IteratedFunctionSystem.objectType)) {	// "IFS"
        		IteratedFunctionSystem ifs = (IteratedFunctionSystem)jsonObj;
@@ -572,7 +786,7 @@ public class ScorePart implements Serializable, Runnable {
 		}
    		else {
    			session = new SessionImpl();
-   			destination = session.createQueue(getPartName() + ".queue");
+   			destination = session.createQueue(LocalTransport.queueName(configProperties, getPartName() + ".queue"));
    			consumer = session.createConsumer(destination);
    		}
 	}
@@ -638,4 +852,32 @@ public class ScorePart implements Serializable, Runnable {
 		return divsPerMeasure;
 	}
 
+	public IMeasureSink getMeasureSink() {
+		return measureSink;
+	}
+
+	/**
+	 * Sets the sink for streaming mode. Must be set before the ScorePart is run.
+	 * @param measureSink IMeasureSink, or null to collect the whole part before scoring it
+	 */
+	public void setMeasureSink(IMeasureSink measureSink) {
+		this.measureSink = measureSink;
+	}
+
+	public boolean isStreaming() {
+		return measureSink != null;
+	}
+
+	public int getPointCount() {
+		return pointCount;
+	}
+
+	public int getNoteCount() {
+		return noteCount;
+	}
+
+	public int getMeasureCount() {
+		return measureCount;
+	}
+
 }
@@ -32,22 +32,7 @@ public class ScorePartMessageListener implements Runnable, MessageListener, Exce
 		
 		try {
 			while(more) {	// messages in the instrument queue
-				Message message = consumer.receive();
-				log.trace("Received a message " +  message.toString());
-				if(message instanceof TextMessage)  {
-					String messageText = getTextMessage(message);
-					processMessageText(messageText);
-				}
-				else if(message instanceof  ActiveMQMapMessage) {
-					ActiveMQMapMessage mapmsg = (ActiveMQMapMessage)message;
-					try {
-						Map<String, Object> contentMap = mapmsg.getContentMap();
-						processMapMessage(contentMap);
-					} catch (JMSException e) {
-						log.error("JMSException: " + e.toString());
-						log.error("message: ", message);
-					}
-				}
+				receive();
 			}
 		} catch(Exception e) {
 			log.error("Exception: " + e.toString());
@@ -55,6 +40,36 @@ public class ScorePartMessageListener implements Runnable, MessageListener, Exce
 		}
 	}
 
+	/**
+	 * Receives and processes the next message in the instrument queue.
+	 * In streaming mode the ScorePart calls this as it needs more notes.
+	 * @return true if there are more messages, false once SHUTDOWN is received or the queue is closed
+	 * @throws JMSException
+	 */
+	public boolean receive() throws JMSException {
+		Message message = consumer.receive();
+		if(message == null) {		// consumer closed
+			more = false;
+			return more;
+		}
+		log.trace("Received a message " +  message.toString());
+		if(message instanceof TextMessage)  {
+			String messageText = getTextMessage(message);
+			processMessageText(messageText);
+		}
+		else if(message instanceof  ActiveMQMapMessage) {
+			ActiveMQMapMessage mapmsg = (ActiveMQMapMessage)message;
+			try {
+				Map<String, Object> contentMap = mapmsg.getContentMap();
+				processMapMessage(contentMap);
+			} catch (JMSException e) {
+				log.error("JMSException: " + e.toString());
+				log.error("message: ", message);
+			}
+		}
+		return more;
+	}
+
 	private String getTextMessage(Message message) {
 		String messageText = null;
 		try {
@@ -0,0 +1,156 @@
+package org.dwbzen.music.action;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Walker's alias method (Vose's variant) for sampling a discrete probability distribution in constant time.<br>
+ * The table is built once from the outcome probabilities, after which each sample
+ * takes one random number, one array lookup and one comparison, and allocates nothing.
+ *
+ * <p>See <a href="https://en.wikipedia.org/wiki/Alias_method">Alias method</a> on Wikipedia.</p>
+ *
+ * @author don_bacon
+ *
+ * @param <T> outcome type. A null outcome is allowed.
+ */
+public class AliasTable<T> {
+
+	private final Object[] outcomes;
+	private final double[] probability;
+	private final int[] alias;
+
+	/**
+	 *
+	 * @param outcomes List of outcomes
+	 * @param weights weight of each outcome, must be >= 0 and not all 0
+	 */
+	public AliasTable(List<T> outcomes, double[] weights) {
+		int n = outcomes.size();
+		if(n == 0 || weights.length != n) {
+			throw new IllegalArgumentException("AliasTable needs one weight for each outcome");
+		}
+		double total = 0;
+		for(double w : weights) {
+			total += w;
+		}
+		if(total <= 0) {
+			throw new IllegalArgumentException("AliasTable weights must sum to > 0");
+		}
+		this.outcomes = outcomes.toArray();
+		probability = new double[n];
+		alias = new int[n];
+
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int nsmall = 0;
+		int nlarge = 0;
+		for(int i=0; i<n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if(scaled[i] < 1.0) {
+				small[nsmall++] = i;
+			}
+			else {
+				large[nlarge++] = i;
+			}
+		}
+		while(nsmall > 0 && nlarge > 0) {
+			int s = small[--nsmall];
+			int l = large[--nlarge];
+			probability[s] = scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+			if(scaled[l] < 1.0) {
+				small[nsmall++] = l;
+			}
+			else {
+				large[nlarge++] = l;
+			}
+		}
+		// whatever is left over is 1 give or take rounding error
+		while(nlarge > 0) {
+			int l = large[--nlarge];
+			probability[l] = 1.0;
+			alias[l] = l;
+		}
+		while(nsmall > 0) {
+			int s = small[--nsmall];
+			probability[s] = 1.0;
+			alias[s] = s;
+		}
+	}
+
+	/**
+	 * Creates an AliasTable that selects from a Map of probabilities exactly as a cumulative probability search does:<br>
+	 * walking the keys in iteration order, an outcome is selected if a uniform random number r satisfies
+	 * cumProb <= r < cumProb + prob.<br>
+	 * So probabilities past a cumulative 1.0 are never selected and if the probabilities sum to less than 1.0,
+	 * the remainder selects null.
+	 *
+	 * @param probabilities Map of outcome to probability
+	 * @param filter only outcomes that pass the filter are included
+	 * @return AliasTable or null if no outcome can be selected
+	 */
+	public static <T> AliasTable<T> fromCumulativeProbabilities(Map<T, Double> probabilities, Predicate<T> filter) {
+		List<T> outcomes = new ArrayList<T>();
+		List<Double> weights = new ArrayList<Double>();
+		double cumProb = 0;
+		double total = 0;
+		for(T key : probabilities.keySet()) {
+			if(filter.test(key)) {
+				double prob = probabilities.get(key).doubleValue();
+				double weight = Math.min(cumProb + prob, 1.0) - Math.max(cumProb, 0.0);
+				if(weight > 0) {
+					outcomes.add(key);
+					weights.add(weight);
+					total += weight;
+				}
+				cumProb += prob;
+			}
+		}
+		if(outcomes.isEmpty()) {
+			return null;
+		}
+		if(total < 1.0) {
+			outcomes.add(null);
+			weights.add(1.0 - total);
+		}
+		double[] w = new double[weights.size()];
+		for(int i=0; i<w.length; i++) {
+			w[i] = weights.get(i);
+		}
+		return new AliasTable<T>(outcomes, w);
+	}
+
+	/**
+	 *
+	 * @param random source of uniform random numbers
+	 * @return a randomly selected outcome
+	 */
+	public T sample(Random random) {
+		return sample(random.nextDouble());
+	}
+
+	/**
+	 *
+	 * @param u a uniform random number in the range [0, 1)
+	 * @return the outcome selected by u
+	 */
+	@SuppressWarnings("unchecked")
+	public T sample(double u) {
+		double x = u * outcomes.length;
+		int i = (int)x;
+		if(i >= outcomes.length) {
+			i = outcomes.length - 1;
+		}
+		return (T)((x - i < probability[i]) ? outcomes[i] : outcomes[alias[i]]);
+	}
+
+	public int size() {
+		return outcomes.length;
+	}
+}
@@ -49,14 +49,20 @@ public class DurationScaler extends Scaler {
 	 * @return new Duration with rawValue set to the scaled value
 	 */
 	public Duration scaleToRhythmScale(Number num) {
+		return new Duration(scaleToRhythmScaleUnits(num.doubleValue()));
+	}
+	
+	/**
+	 * Scales a raw number to the instrument's RhythmScale range without creating a Duration.
+	 * @param num - number to scale
+	 * @return the scaled value (raw units)
+	 */
+	public double scaleToRhythmScaleUnits(double num) {
 		if(drange == null) {
 			drange = maxVal  - minVal ;
 		} 
-		Duration duration = null;
-		double scaleFactor = rhythmScale.getRange() / drange;
-		double numScaled = scaleFactor * (num.doubleValue() - minVal);
-		duration= new Duration(numScaled);
-		return duration;
+		double scaleFactor = rhythmScale.getRange() / drange.doubleValue();
+		return scaleFactor * (num - minVal.doubleValue());
 	}
 
 	public IRhythmScale getRhythmScale() {
@@ -1,9 +1,10 @@
 package org.dwbzen.music.action;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,17 +12,25 @@ import org.dwbzen.common.util.IJson;
 import org.dwbzen.music.element.IRhythmExpression;
 import org.dwbzen.music.element.IRhythmScale;
 import org.dwbzen.music.element.TextureType;
+import org.dwbzen.util.SeededRandom;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+/**
+ * Selects the TextureType and RhythmExpression for a number of units according to configured probabilities.<br>
+ * The probabilities are compiled into alias tables indexed by units, so each selection is a constant time lookup.
+ * Compiling is done when the RhythmScale is created, and again after any probability is changed.
+ * 
+ * @author don_bacon
+ *
+ */
 public class ExpressionSelector implements Serializable, IJson, Comparable<Object> {
 
 	private static final long serialVersionUID = 5907780760878594744L;
 	protected static final Logger log = LogManager.getLogger(ExpressionSelector.class);
 
 	@JsonIgnore	private IRhythmScale rhythmScale = null;
-	@JsonIgnore	private ThreadLocalRandom random = ThreadLocalRandom.current();
 
 	/**
 	 * Probability of TextureType for a given #units
@@ -35,6 +44,16 @@ public class ExpressionSelector implements Serializable, IJson, Comparable<Objec
 	
 	@JsonProperty("tieAcrossBarline")		private double tieAcrossBarlineProbability = 0.0;	// configurable as music.instrument.<instrument>.tieAcrossBarline
 	
+	/**
+	 * Source of random numbers. If null, the current thread's SeededRandom is used. Set a seeded Random for reproducible selections.
+	 */
+	@JsonIgnore	private Random random = null;
+	
+	/**
+	 * Compiled probabilities indexed by units, null until compiled or after a probability changes
+	 */
+	@JsonIgnore	private transient volatile UnitsSelector[] unitsSelectors = null;
+	
 	public ExpressionSelector(IRhythmScale rs) {
 		rhythmScale = rs;
 		rs.setExpressionSelector(this);
@@ -42,63 +61,106 @@ public class ExpressionSelector implements Serializable, IJson, Comparable<Objec
 
 	public TextureType selectTextureType(int units) {
 		TextureType tt = null;
-		 double rand = 0;
-		 Map<TextureType, Double> pm = textureProbabilityMap.get(units);
-		 if(pm == null) {
-			 tt = TextureType.MONOPHONIC;	// sensible default
-		 }
-		 else {
-			 if(pm.size() == 1) {
-				 tt = pm.keySet().iterator().next();
-			 }
-			 else{
-				 rand = random.nextDouble();
-				 double cumProb = 0;
-				 for(TextureType mtt : pm.keySet()) {
-					 double prob = pm.get(mtt).doubleValue();
-					 if(rand >= cumProb && rand < cumProb + prob) {
-						 tt = mtt;
-						 break;
-					 }
-					 cumProb += prob;
-				 }
-			 }
+		UnitsSelector us = getUnitsSelector(units);
+		if(us == null || us.textureTypes == null) {
+			tt = TextureType.MONOPHONIC;	// sensible default
+		}
+		else {
+			tt = us.textureTypes.sample(getRandom());
 		}
 		if(tt == null) {
-			log.error("ExpressionSelector null TextureType " + rand + " units " + units );
+			log.error("ExpressionSelector null TextureType units " + units );
 		}
 		return tt;
 	}
 	
 	public IRhythmExpression selectRhythmExpression(int units, TextureType textureType) {
 		IRhythmExpression re = null;
-		double rand = 0;
-		Map<IRhythmExpression, Double> rep = rhythmicUnitTypeProbabilityMap.get(units);
-		if(rep == null) {
+		UnitsSelector us = getUnitsSelector(units);
+		if(us == null || us.rhythmExpressions == null) {
 			// this should not happen unless RhythmScaleFactory has a bug
 			throw new NullPointerException("No RhythmExpression for " + units + " units");
 		}
-		if(rep.size() == 1) {
-			re = rep.keySet().iterator().next();
+		AliasTable<IRhythmExpression> table = us.rhythmExpressions[textureType.ordinal()];
+		if(table != null) {
+			re = table.sample(getRandom());
 		}
-		else {
-			rand = random.nextDouble();
-			double cumProb = 0;
-			for(IRhythmExpression r : rep.keySet()) {
-				if(r.getTextureType().equals(textureType)) {
-					double prob = rep.get(r).doubleValue();
-					if(rand >= cumProb && rand < cumProb + prob) {
-						re = r;
-						break;
-					}
-					cumProb += prob;
+		if(re == null) {
+			log.error("NULL? units " + units );
+		}
+		return re;
+	}
+	
+	/**
+	 * Compiles the texture type and rhythm expression probabilities into alias tables indexed by units.<br>
+	 * Selections are the same as a cumulative probability search of the probability maps in key order.
+	 * This is called automatically after a probability is set with a setter, but must be called
+	 * if the probability maps are changed directly.
+	 */
+	public synchronized void compile() {
+		int maxUnits = 0;
+		for(Integer units : textureProbabilityMap.keySet()) {
+			maxUnits = Math.max(maxUnits, units);
+		}
+		for(Integer units : rhythmicUnitTypeProbabilityMap.keySet()) {
+			maxUnits = Math.max(maxUnits, units);
+		}
+		UnitsSelector[] selectors = new UnitsSelector[maxUnits + 1];
+		TextureType[] textureTypes = TextureType.values();
+		for(int units = 0; units <= maxUnits; units++) {
+			Map<TextureType, Double> pm = textureProbabilityMap.get(units);
+			Map<IRhythmExpression, Double> rep = rhythmicUnitTypeProbabilityMap.get(units);
+			if(pm == null && rep == null) {
+				continue;
+			}
+			UnitsSelector us = new UnitsSelector();
+			if(pm != null && pm.size() > 0) {
+				us.textureTypes = (pm.size() == 1) ? single(pm.keySet().iterator().next()) : orNull(AliasTable.fromCumulativeProbabilities(pm, t -> true));
+			}
+			if(rep != null && rep.size() > 0) {
+				us.rhythmExpressions = newTableArray(textureTypes.length);
+				for(TextureType textureType : textureTypes) {
+					us.rhythmExpressions[textureType.ordinal()] = (rep.size() == 1) ?
+							single(rep.keySet().iterator().next()) :
+							orNull(AliasTable.fromCumulativeProbabilities(rep, r -> r.getTextureType().equals(textureType)));
 				}
 			}
+			selectors[units] = us;
 		}
-		if(re == null) {
-			log.error("NULL? " + rand + " units " + units );
+		unitsSelectors = selectors;
+	}
+	
+	private UnitsSelector getUnitsSelector(int units) {
+		UnitsSelector[] selectors = unitsSelectors;
+		if(selectors == null) {
+			compile();
+			selectors = unitsSelectors;
 		}
-		return re;
+		return (units >= 0 && units < selectors.length) ? selectors[units] : null;
+	}
+	
+	private static <T> AliasTable<T> single(T outcome) {
+		return new AliasTable<T>(Collections.singletonList(outcome), new double[] {1.0});
+	}
+	
+	/**
+	 * A table that always selects null, for when none of the probabilities can be selected
+	 */
+	private static <T> AliasTable<T> orNull(AliasTable<T> table) {
+		return (table != null) ? table : single(null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static AliasTable<IRhythmExpression>[] newTableArray(int size) {
+		return (AliasTable<IRhythmExpression>[]) new AliasTable<?>[size];
+	}
+	
+	/**
+	 * Compiled selections for a number of units
+	 */
+	private static final class UnitsSelector {
+		AliasTable<TextureType> textureTypes = null;				// null if no TextureType probabilities
+		AliasTable<IRhythmExpression>[] rhythmExpressions = null;	// indexed by TextureType ordinal, null if no RhythmExpressions
 	}
 	
 	public void setTextureTypeProbability(int units, TextureType tt, double prob) {
@@ -108,6 +170,7 @@ public class ExpressionSelector implements Serializable, IJson, Comparable<Objec
 			 textureProbabilityMap.put(units, ttp);
 		 }
 		 ttp.put(tt, prob);
+		 unitsSelectors = null;
 	}
 	
 	public Double getTextureTypeProbability(int units, TextureType tt) {
@@ -127,6 +190,7 @@ public class ExpressionSelector implements Serializable, IJson, Comparable<Objec
 			rhythmicUnitTypeProbabilityMap.put(units, rep);
 		}
 		rep.put(re, prob);
+		unitsSelectors = null;
 	}
 	
 	public double getRhythmicUnitTypeProbability(int units, IRhythmExpression re) {
@@ -154,6 +218,22 @@ public class ExpressionSelector implements Serializable, IJson, Comparable<Objec
 		return rhythmicUnitTypeProbabilityMap;
 	}
 
+	/**
+	 * 
+	 * @return the Random used for selections, the current thread's SeededRandom if none has been set
+	 */
+	public Random getRandom() {
+		return (random != null) ? random : SeededRandom.current();
+	}
+
+	/**
+	 * Sets the source of random numbers. Use a seeded Random for reproducible selections.
+	 * @param random Random or null to use the current thread's SeededRandom
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
 	public double getTieAcrossBarlineProbability() {
 		return tieAcrossBarlineProbability;
 	}
@@ -168,7 +248,7 @@ public class ExpressionSelector implements Serializable, IJson, Comparable<Objec
 			log.info("No chordal depth for " + rhythmExpression.getUnits() + " units. Returning 1.");
 			return 1;
 		}
-		int index = random.nextInt(depthArray.length);
+		int index = getRandom().nextInt(depthArray.length);
 		return (Integer)depthArray[index];
 	}
 
@@ -1,5 +1,7 @@
 package org.dwbzen.music.action;
 
+import java.util.List;
+
 import org.apache.log4j.Logger;
 
 import org.dwbzen.common.math.Point2D;
@@ -26,6 +28,11 @@ public class PitchScaler extends Scaler {
 	private Pitch root = Pitch.C;
 	private Rounder rounder = Rounder.ROUND;
 	private int transposeSteps = 0;
+	/*
+	 * the instrument notes transposed by transposeSteps, created the first time they're needed
+	 */
+	private Pitch[] scaledPitches = null;
+	private List<Pitch> scaledNotes = null;
 	
 	public PitchScaler(Instrument inst, Number maxX, Number minX) {
 		super(inst, maxX, minX);
@@ -41,8 +48,8 @@ public class PitchScaler extends Scaler {
 		return scale(dval.getX());
 	}
 	
-	public Pitch scale(double dval) {
-		return scale(Double.valueOf(dval));
+	public Pitch scale(Number num) {
+		return scale(num.doubleValue());
 	}
 	
 	/**
@@ -55,10 +62,12 @@ public class PitchScaler extends Scaler {
 	 * An instrument with a single-note range, such as Cymbals or Snare Drum,
 	 * is special cased since the step range is 0.
 	 * 
-	 * @param num a Number in the range [maxVal, minVal]
+	 * The Pitch returned is shared and immutable, so copy it (new Note does) before changing it.
+	 * 
+	 * @param num a number in the range [maxVal, minVal]
 	 * @return a Pitch in the PitchRange of the associated Instrument suitably rounded
 	 */
-	public Pitch scale(Number num) {
+	public Pitch scale(double num) {
 		Pitch p = null;
 		if(drange == null) {
 			drange = maxVal  - minVal ;
@@ -67,9 +76,11 @@ public class PitchScaler extends Scaler {
 		int sr = pr.getStepRange();
 		int stepRange =sr == 0 ? 0 : sr - 1;
 		double m = stepRange/drange.doubleValue();
-		double d = m * ( num.doubleValue() - minVal.doubleValue());
+		double d = m * ( num - minVal.doubleValue());
 		p = round(d);	// rounds and transposes if needed for transposing instrument
-		log.debug(" num: " + num + " d: " + d + "  pitch: " + p);
+		if(log.isDebugEnabled()) {
+			log.debug(" num: " + num + " d: " + d + "  pitch: " + p);
+		}
 		if(p.compareTo(pr.getLow()) < 0) {
 			log.warn("PitchScaler for " + instrument.getName() + " out of bounds " + num);
 		}
@@ -90,10 +101,26 @@ public class PitchScaler extends Scaler {
 			rangeNote = (int)Math.round(d);
 			break;
 		};
-		if(rangeNote == 5) {
-			log.debug("stop");
+		return getScaledPitches()[rangeNote];
+	}
+	
+	/**
+	 * The instrument notes transposed by transposeSteps as shared, immutable Pitches.
+	 * Rebuilt if the Key or the instrument notes change.
+	 * @return Pitch[] indexed by range note
+	 */
+	private Pitch[] getScaledPitches() {
+		List<Pitch> notes = getInstrument().getNotes();
+		Pitch[] pitches = scaledPitches;
+		if(pitches == null || notes != scaledNotes || pitches.length != notes.size()) {
+			pitches = new Pitch[notes.size()];
+			for(int i=0; i<pitches.length; i++) {
+				pitches[i] = notes.get(i).plus(transposeSteps);
+			}
+			scaledPitches = pitches;
+			scaledNotes = notes;
 		}
-		return new Pitch(getInstrument().getNotes().get(rangeNote), transposeSteps);
+		return pitches;
 	}
 	
 
@@ -125,6 +152,7 @@ public class PitchScaler extends Scaler {
 		this.key = key;
 		root = key.getRoot();
 		transposeSteps = 0;
+		scaledPitches = null;
 		if(!Key.transpositions.containsKey(key)) {
 			log.warn("Unsupport instrument Key: " + key + " no transposition set");
 		}
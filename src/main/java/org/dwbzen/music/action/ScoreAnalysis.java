@@ -6,10 +6,14 @@ import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
 
+import org.dwbzen.music.element.Alteration;
+import org.dwbzen.music.element.Chord;
+import org.dwbzen.music.element.Duration;
 import org.dwbzen.music.element.Interval;
-import org.dwbzen.music.element.Interval.Direction;
 import org.dwbzen.music.element.Note;
 import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.element.Step;
+import org.dwbzen.util.Ratio;
 
 /**
  * ScoreAnalysis consists of two interval maps, Note and Pitch frequencies, and Durations.<br>
@@ -57,6 +61,16 @@ import org.dwbzen.music.element.Pitch;
  * Derived statistics such as %usage, std. dev. etc. not included as that kind of data
  * can be obtained easily by importing into a spreadsheet.<br>
  * 
+ * Chords are analyzed vertically as well:<br>
+ * Chord intervals - the #occurrences of the interval (in steps) between each pair of notes in a chord.<br>
+ * Pitch class sets - the #occurrences of each set of pitch classes sounding in a chord, for example C E G,12
+ * </p>
+ * The counts are kept in int arrays indexed by interval, MIDI note number or pitch class,
+ * so adding a Note allocates nothing. The Maps returned by the getters are created from the arrays when called.<br>
+ * Notes are counted by MIDI number and spelled with flats, so Cb4 for example is counted as B3.<br>
+ * Analyses can be merged, so each part can be analyzed independently (and in parallel)
+ * and the results merged into the Score analysis.
+ * </p>
  * partName is "Score" if the analysis is for the Score as a whole,
  * or the name of the part from the configuration, as in Clarinet.partName=Clarinet for example
  * 
@@ -64,23 +78,56 @@ import org.dwbzen.music.element.Pitch;
 public class ScoreAnalysis {
 	protected static final org.apache.log4j.Logger log = Logger.getLogger(ScoreAnalysis.class);
 	
+	public static final int DOWN = 0;
+	public static final int UP = 1;
+	public static final int NILL = 2;
+	public static final int TOTAL = 3;
+	public static final int MAX_STEPS = 128;
+	public static final int PITCH_CLASS_SETS = 1 << 12;
+	
 	/**
-	 * map of intervals within an octave (0 - 11)
+	 * counts of intervals within an octave (0 - 11) by direction
 	 * so diff C0 to E1 would be 4, diff E1 to C0 is -4 (down 4 steps)
 	 */
-	private Map<Integer,Integer[]> intervals = new TreeMap<Integer, Integer[]>();
+	private int[][] intervals = new int[12][4];
 	
 	/**
-	 * map of intervals taking octave differences into account
+	 * counts of intervals taking octave differences into account
 	 * so diff C0 to E1 would be 12 + 4 = 16
 	 */
-	private Map<Integer, Integer[]> absoluteIntervals = new TreeMap<Integer, Integer[]>();
+	private int[][] absoluteIntervals = new int[MAX_STEPS][4];
+	
+	/**
+	 * counts of notes by MIDI number
+	 */
+	private int[] noteCounts = new int[MAX_STEPS];
+	
+	/**
+	 * counts of notes by pitch class, 0 = C to 11 = B
+	 */
+	private int[] pitchCounts = new int[12];
+	
+	private int restCount = 0;
+	
+	/**
+	 * Unique Durations are few, so they're kept in parallel arrays and searched by key.
+	 */
+	private long[] durationKeys = new long[16];
+	private Duration[] durations = new Duration[16];
+	private int[] durationCounts = new int[16];
+	private int numberOfDurations = 0;
 	
-	private Map<String, Integer> pitchCounts = new TreeMap<String, Integer>();
+	/**
+	 * counts of the intervals between each pair of notes in a chord
+	 */
+	private int[] chordIntervals = new int[MAX_STEPS];
 	
-	private Map<String, Integer> noteCounts = new TreeMap<String, Integer>();
+	/**
+	 * counts of chord pitch class sets, indexed by a 12-bit mask (bit 0 = C)
+	 */
+	private int[] pitchClassSets = new int[PITCH_CLASS_SETS];
 	
-	private Map<String, Integer> durationCounts = new TreeMap<String, Integer>();
+	private int chordCount = 0;
 	
 	private String partName = null;
 	
@@ -102,171 +149,307 @@ public class ScoreAnalysis {
 	}
 	
 	protected void addAll(ScoreAnalysis sa) {
-		addAllIntervals(sa.intervals, intervals);
-		addAllIntervals(sa.absoluteIntervals, intervals);
-		addAllCounts(sa.pitchCounts, pitchCounts);
-		addAllCounts(sa.noteCounts, noteCounts);
-		addAllCounts(sa.durationCounts, durationCounts);
-	}
-	
-	void addAllIntervals(Map<Integer, Integer[]> other, Map<Integer, Integer[]> intervalMap) {
-		for(Integer key : other.keySet()) {
-			Integer[] othercounts = other.get(key);
-			Integer[] counts = null;
-			if(intervalMap.containsKey(key)) {
-				counts = intervalMap.get(key);
-			}
-			else {
-				counts = new Integer[4];
-				Arrays.fill(counts, 0);
-			}
-			for(int i=0; i<othercounts.length; i++) {
-				counts[i] += othercounts[i];
-			}
-			intervalMap.put(key, counts);
+		merge(sa);
+	}
+	
+	/**
+	 * Adds the counts of another analysis to this one.
+	 * @param sa
+	 * @return this ScoreAnalysis
+	 */
+	public ScoreAnalysis merge(ScoreAnalysis sa) {
+		addAll(sa.intervals, intervals);
+		addAll(sa.absoluteIntervals, absoluteIntervals);
+		addAll(sa.noteCounts, noteCounts);
+		addAll(sa.pitchCounts, pitchCounts);
+		addAll(sa.chordIntervals, chordIntervals);
+		addAll(sa.pitchClassSets, pitchClassSets);
+		restCount += sa.restCount;
+		chordCount += sa.chordCount;
+		for(int i=0; i<sa.numberOfDurations; i++) {
+			addDuration(sa.durationKeys[i], sa.durations[i], sa.durationCounts[i]);
 		}
+		return this;
 	}
 	
-	void addAllCounts(Map<String, Integer> other, Map<String, Integer> countsMap) {
-		for(String key : other.keySet()) {
-			Integer otherCounts = other.get(key);
-			Integer counts = 0;
-			if(countsMap.containsKey(key)) {
-				counts = countsMap.get(key);
-			}
-			counts += otherCounts;
-			countsMap.put(key, counts);
+	static void addAll(int[][] other, int[][] counts) {
+		for(int i=0; i<other.length; i++) {
+			addAll(other[i], counts[i]);
+		}
+	}
+	
+	static void addAll(int[] other, int[] counts) {
+		for(int i=0; i<other.length; i++) {
+			counts[i] += other[i];
 		}
 	}
 	
 	/**
-	 * Change sharps to flats when adding Note
+	 * Counts the Note pitch and duration
 	 * @param note
 	 */
 	public void addNote(Note note) {
 		Pitch p = note.getPitch();
-		int alt = p.getAlteration();
-		Pitch pitch = (alt > 0) ? p.setEnharmonicEquivalent(alt) : p;
-
-		String noteKey = pitch.toString();			// step + octave as in "C#4"
-		String pitchKey = pitch.toString(-1);		// just the step as in "C" or "Eb"
-		//System.out.println(pitchKey + "    " + noteKey);
-		int pitchCount = 1;
-		int noteCount = 1;
-		int durCount = 1;
-		if(pitchCounts.containsKey(pitchKey)) {
-			pitchCount = 1+ pitchCounts.get(pitchKey).intValue();
+		if(p.getStep() == Step.SILENT) {
+			restCount++;
 		}
-		pitchCounts.put(pitchKey, Integer.valueOf(pitchCount));
-		
-		if(noteCounts.containsKey(noteKey)) {
-			noteCount = 1+ noteCounts.get(noteKey).intValue();
-		}
-		noteCounts.put(noteKey, Integer.valueOf(noteCount));
-		String durKey = note.getDuration().toJson();
-		if(durationCounts.containsKey(durKey)) {
-			durCount = 1 + durationCounts.get(durKey);
+		else {
+			noteCounts[midiIndex(p)]++;
+			pitchCounts[p.getRangeStep() % 12]++;
 		}
-		durationCounts.put(durKey, durCount);
+		addDuration(note.getDuration());
 	}
 	
-	public void addInterval(Interval pd) {
-		Integer[] counts = null;
-		Integer iv = pd.getInterval();
-		Interval.Direction dir = pd.getDirection();
-		if(intervals.containsKey(iv)) {
-			counts = intervals.get(iv);
-			if(dir.equals(Direction.Down)) {
-				counts[0]++;
-			}
-			else if(dir.equals(Direction.Up)){
-				counts[1]++;
-			}
-			else {
-				counts[2]++;
+	/**
+	 * Counts the notes of a Chord, the intervals between each pair of notes and the pitch class set.
+	 * @param chord
+	 */
+	public void addChord(Chord chord) {
+		int[] steps = new int[chord.getNotes().size()];
+		int i = 0;
+		int pcset = 0;
+		for(Note note : chord.getNotes()) {
+			addNote(note);
+			if(note.getPitch().getStep() != Step.SILENT) {
+				steps[i++] = note.getPitch().getRangeStep();
+				pcset |= 1 << (note.getPitch().getRangeStep() % 12);
 			}
-			counts[3]++;
 		}
-		else {
-			counts = new Integer[4];
-			if(dir.equals(Direction.Down)) {
-				counts[0] = 1;
-				counts[1] = 0;
-				counts[2] = 0;
-			}
-			else if(dir.equals(Direction.Up)){
-				counts[0] = 0;
-				counts[1] = 1;
-				counts[2] = 0;
-			}
-			else {
-				counts[0] = 0;
-				counts[1] = 0;
-				counts[2] = 1;
+		for(int j=0; j<i; j++) {
+			for(int k=j+1; k<i; k++) {
+				chordIntervals[Math.min(Math.abs(steps[k] - steps[j]), MAX_STEPS - 1)]++;
 			}
-			counts[3] = 1;
-			intervals.put(iv, counts);
 		}
-		addAbsoluteInterval(pd);
+		if(pcset != 0) {
+			pitchClassSets[pcset]++;
+		}
+		chordCount++;
+	}
+	
+	public void addInterval(Interval pd) {
+		addInterval(pd.toSteps());
+	}
+	
+	/**
+	 * Counts a relative and absolute interval
+	 * @param steps number of steps from one note to the next, < 0 if down
+	 */
+	public void addInterval(int steps) {
+		int dir = steps < 0 ? DOWN : (steps > 0 ? UP : NILL);
+		int absSteps = Math.abs(steps);
+		int[] counts = intervals[absSteps % 12];
+		counts[dir]++;
+		counts[TOTAL]++;
+		counts = absoluteIntervals[Math.min(absSteps, MAX_STEPS - 1)];
+		counts[dir]++;
+		counts[TOTAL]++;
 	}
 
 	public void addAbsoluteInterval(Interval pd) {
-		Integer[] counts = null;
 		int steps = pd.toSteps();
-		Integer absSteps = Math.abs(steps);
-		if(absoluteIntervals.containsKey(absSteps)) {
-			counts = absoluteIntervals.get(absSteps);
-			if(steps < 0) {
-				counts[0]++;
-			}
-			else if(steps > 0) {
-				counts[1]++;
-			}
-			else {
-				counts[2]++;
+		int[] counts = absoluteIntervals[Math.min(Math.abs(steps), MAX_STEPS - 1)];
+		counts[steps < 0 ? DOWN : (steps > 0 ? UP : NILL)]++;
+		counts[TOTAL]++;
+	}
+	
+	private void addDuration(Duration duration) {
+		addDuration(durationKey(duration), duration, 1);
+	}
+	
+	private void addDuration(long key, Duration duration, int count) {
+		for(int i=0; i<numberOfDurations; i++) {
+			if(durationKeys[i] == key) {
+				durationCounts[i] += count;
+				return;
 			}
-			counts[3]++;
 		}
-		else {
-			counts = new Integer[4];
-			if(steps < 0) {
-				counts[0] = 1;
-				counts[1] = 0;
-				counts[2] = 0;
-			}
-			else if(steps > 0){
-				counts[0] = 0;
-				counts[1] = 1;
-				counts[2] = 0;
+		if(numberOfDurations == durationKeys.length) {
+			int size = 2 * numberOfDurations;
+			durationKeys = Arrays.copyOf(durationKeys, size);
+			durations = Arrays.copyOf(durations, size);
+			durationCounts = Arrays.copyOf(durationCounts, size);
+		}
+		durationKeys[numberOfDurations] = key;
+		durations[numberOfDurations] = duration;
+		durationCounts[numberOfDurations++] = count;
+	}
+	
+	/**
+	 * Packs the fields that appear in Duration.toJson() into a long:
+	 * units (20 bits), baseUnits (20 bits), ratio beats and timeOf (10 bits each), dots (4 bits)
+	 * @param duration
+	 * @return duration key
+	 */
+	static long durationKey(Duration duration) {
+		Ratio ratio = duration.getRatio();
+		long beats = (ratio == null || ratio.getBeats() == null) ? 0 : ratio.getBeats();
+		long timeOf = (ratio == null || ratio.getTimeOf() == null) ? 0 : ratio.getTimeOf();
+		return ((duration.getDurationUnits() & 0xFFFFFL) << 44) | ((duration.getBaseUnits() & 0xFFFFFL) << 24)
+				| ((beats & 0x3FF) << 14) | ((timeOf & 0x3FF) << 4) | (duration.getDots() & 0xF);
+	}
+	
+	static int midiIndex(Pitch pitch) {
+		return Math.max(0, Math.min(pitch.getMidiNumber(), MAX_STEPS - 1));
+	}
+	
+	/**
+	 * 
+	 * @param pcset 12-bit pitch class set
+	 * @return the pitch classes spelled with flats, as in "C Eb G"
+	 */
+	public static String pitchClassSetToString(int pcset) {
+		StringBuilder sb = new StringBuilder();
+		for(int pc=0; pc<12; pc++) {
+			if((pcset & (1 << pc)) != 0) {
+				if(sb.length() > 0) {
+					sb.append(' ');
+				}
+				sb.append(Pitch.valueOf(pc, Alteration.FLAT).toString(-1));
 			}
-			else {
-				counts[0] = 0;
-				counts[1] = 0;
-				counts[2] = 1;				
+		}
+		return sb.toString();
+	}
+	
+	private static Map<Integer, Integer[]> toMap(int[][] counts) {
+		Map<Integer, Integer[]> map = new TreeMap<Integer, Integer[]>();
+		for(int i=0; i<counts.length; i++) {
+			if(counts[i][TOTAL] > 0) {
+				Integer[] c = new Integer[4];
+				for(int j=0; j<4; j++) {
+					c[j] = counts[i][j];
+				}
+				map.put(i, c);
 			}
-			counts[3] = 1;
-			absoluteIntervals.put(absSteps, counts);
+		}
+		return map;
+	}
+	
+	private static void increment(Map<String, Integer> map, String key, int count) {
+		if(count > 0) {
+			map.merge(key, count, Integer::sum);
 		}
 	}
 
+	/**
+	 * 
+	 * @return Map of relative interval (0 - 11) to counts, intervals that don't occur are omitted
+	 */
 	public Map<Integer, Integer[]> getIntervals() {
-		return intervals;
+		return toMap(intervals);
 	}
 
+	/**
+	 * 
+	 * @return Map of absolute interval to counts, intervals that don't occur are omitted
+	 */
 	public Map<Integer, Integer[]> getAbsoluteIntervals() {
-		return absoluteIntervals;
+		return toMap(absoluteIntervals);
 	}
 
+	/**
+	 * 
+	 * @return Map of pitch ("C", "Db" etc.) to count
+	 */
 	public Map<String, Integer> getPitchCounts() {
-		return pitchCounts;
+		Map<String, Integer> map = new TreeMap<String, Integer>();
+		for(int pc=0; pc<12; pc++) {
+			increment(map, Pitch.valueOf(pc, Alteration.FLAT).toString(-1), pitchCounts[pc]);
+		}
+		increment(map, Pitch.SILENT.toString(-1), restCount);
+		return map;
 	}
 
+	/**
+	 * 
+	 * @return Map of note ("C4", "Db4" etc.) to count
+	 */
 	public Map<String, Integer> getNoteCounts() {
-		return noteCounts;
+		Map<String, Integer> map = new TreeMap<String, Integer>();
+		for(int midi=0; midi<MAX_STEPS; midi++) {
+			increment(map, Pitch.fromMidiNumber(midi, Alteration.FLAT).toString(), noteCounts[midi]);
+		}
+		increment(map, Pitch.SILENT.toString(), restCount);
+		return map;
 	}
 
+	/**
+	 * 
+	 * @return Map of Duration JSON to count
+	 */
 	public Map<String, Integer> getDurationCounts() {
-		return durationCounts;
+		Map<String, Integer> map = new TreeMap<String, Integer>();
+		for(int i=0; i<numberOfDurations; i++) {
+			increment(map, durations[i].toJson(), durationCounts[i]);
+		}
+		return map;
+	}
+	
+	/**
+	 * 
+	 * @return Map of the interval between two notes of a chord to count
+	 */
+	public Map<Integer, Integer> getChordIntervals() {
+		Map<Integer, Integer> map = new TreeMap<Integer, Integer>();
+		for(int i=0; i<MAX_STEPS; i++) {
+			if(chordIntervals[i] > 0) {
+				map.put(i, chordIntervals[i]);
+			}
+		}
+		return map;
+	}
+	
+	/**
+	 * 
+	 * @return Map of 12-bit pitch class set to count
+	 */
+	public Map<Integer, Integer> getPitchClassSets() {
+		Map<Integer, Integer> map = new TreeMap<Integer, Integer>();
+		for(int i=0; i<PITCH_CLASS_SETS; i++) {
+			if(pitchClassSets[i] > 0) {
+				map.put(i, pitchClassSets[i]);
+			}
+		}
+		return map;
+	}
+	
+	public int[][] getIntervalCounts() {
+		return intervals;
+	}
+	
+	public int[][] getAbsoluteIntervalCounts() {
+		return absoluteIntervals;
+	}
+	
+	/**
+	 * 
+	 * @return counts indexed by MIDI note number
+	 */
+	public int[] getNoteHistogram() {
+		return noteCounts;
+	}
+	
+	/**
+	 * 
+	 * @return counts indexed by pitch class, 0 = C
+	 */
+	public int[] getPitchHistogram() {
+		return pitchCounts;
+	}
+	
+	public int[] getChordIntervalHistogram() {
+		return chordIntervals;
+	}
+	
+	public int[] getPitchClassSetHistogram() {
+		return pitchClassSets;
+	}
+	
+	public int getRestCount() {
+		return restCount;
+	}
+	
+	public int getChordCount() {
+		return chordCount;
 	}
 
 	public String getPartName() {
@@ -1,8 +1,11 @@
 package org.dwbzen.music.action;
 
 import java.io.PrintStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,9 +22,11 @@ import org.dwbzen.music.element.ScorePartEntity;
  * Analyzes a complete Score instance.
  * Outputs stats and information in comma-separated (.csv) format
  * The output order is relative intervals (0 to 11), followed by absolute.
- * Creates a ScoreAnalysis for the entire score,
- * and a ScoreAnalysis for each instrument saved as a Map<String, ScoreAnalysis> 
- * TODO add CHORDAL analysis
+ * Creates a ScoreAnalysis for each instrument saved as a Map<String, ScoreAnalysis>,
+ * and a ScoreAnalysis for the entire score that merges them.<br>
+ * Parts are independent so they're analyzed in parallel unless parallel is set to false.<br>
+ * The melodic intervals of a part with chords are taken from the lowest note of each chord.
+ * Chords are also analyzed vertically - the intervals between chord notes and the pitch class sets.
  * 
  * @author don_bacon
  * @see music.action.ScoreAnalysis
@@ -30,13 +35,14 @@ public class ScoreAnalyzer {
 	protected static final Logger log = LogManager.getLogger(ScoreAnalyzer.class);
 	private Score score;
 	private ScoreAnalysis scoreAnalysis =  new ScoreAnalysis();		// Score level analysis
-	private Map<String, ScoreAnalysis> instrumentAnalysisMap = new HashMap<String, ScoreAnalysis>();
-	private Measurable prev;
+	private Map<String, ScoreAnalysis> instrumentAnalysisMap = new LinkedHashMap<String, ScoreAnalysis>();
+	private boolean parallel = true;
 	private boolean showDurations = false;
 	private boolean showPitchFrequency = true;
 	private boolean showNoteFrequency = false;
 	private boolean showIntervals = true;
 	private boolean showAbsoluteIntervals = false;
+	private boolean showChords = true;
 	
 	public ScoreAnalyzer(Score score){
 		this.score = score;
@@ -44,52 +50,93 @@ public class ScoreAnalyzer {
 	
 	public void analyze() {
 		Map<String, ScorePartEntity> parts = score.getParts();
-		for(String partName : parts.keySet()) {
-			ScoreAnalysis partAnalysis = new ScoreAnalysis();
-			ScorePartEntity scorePartEntity = parts.get(partName);
-			log.info("Analyzing " + partName);
-			prev = null;
-			for(Measure measure : scorePartEntity.getMeasures()) {
-				analyzeMeasure(partAnalysis, partName, measure);
-			}
-			scoreAnalysis.addAll(partAnalysis);
-			partAnalysis.setPartName(partName);
-			instrumentAnalysisMap.put(partName, partAnalysis);
+		List<String> partNames = new ArrayList<String>(parts.keySet());
+		List<ScoreAnalysis> partAnalyses = (parallel ? partNames.parallelStream() : partNames.stream())
+				.map(partName -> analyzePart(partName, parts.get(partName)))
+				.collect(Collectors.toList());
+		// merge in part order
+		for(ScoreAnalysis partAnalysis : partAnalyses) {
+			scoreAnalysis.merge(partAnalysis);
+			instrumentAnalysisMap.put(partAnalysis.getPartName(), partAnalysis);
+		}
+	}
+	
+	/**
+	 * Analyzes a single part. Has no side effects so parts can be analyzed concurrently.
+	 * @param partName
+	 * @param scorePartEntity
+	 * @return ScoreAnalysis of the part
+	 */
+	public static ScoreAnalysis analyzePart(String partName, ScorePartEntity scorePartEntity) {
+		ScoreAnalysis partAnalysis = new ScoreAnalysis(partName);
+		log.info("Analyzing " + partName);
+		Measurable prev = null;
+		for(Measure measure : scorePartEntity.getMeasures()) {
+			prev = analyzeMeasure(partAnalysis, measure, prev);
 		}
+		return partAnalysis;
 	}
 
-	private void analyzeMeasure(ScoreAnalysis partAnalysis, String partName, Measure measure) {
-		Note note = null;
-		Note prevNote = null;
-		Chord chord = null;
-		Chord prevChord = null;
+	/**
+	 * 
+	 * @param partAnalysis
+	 * @param measure
+	 * @param prev the last Measurable of the previous Measure, or null
+	 * @return the last Measurable of this Measure
+	 */
+	private static Measurable analyzeMeasure(ScoreAnalysis partAnalysis, Measure measure, Measurable prev) {
 		log.trace("measure: " + measure.getNumber());
 		for(Measurable measurable : measure.getMeasureables()) {
+			Note note = getLowestNote(measurable);
+			if(note == null) {
+				continue;		// empty Chord
+			}
+			if(prev != null && !isTied(prev, measurable)) {
+				Note prevNote = getLowestNote(prev);
+				Interval diff = prevNote.getInterval(note);
+				if(diff.getInterval() == 0) {
+					log.trace("prev: " + prevNote + ", note: " + note + diff);
+				}
+				partAnalysis.addInterval(diff);
+			}
 			if(measurable instanceof Note) {
-				note = (Note)measurable;
+				partAnalysis.addNote(note);
 			}
 			else {
-				chord = (Chord)measurable;
+				partAnalysis.addChord((Chord)measurable);
 			}
-			if(prev != null) {
-				if(prev instanceof Note) {
-					prevNote = (Note)prev;
-					if(!prevNote.isTiedTo(note)) {
-						Interval diff = prevNote.getInterval(note);
-						if(diff.getInterval() == 0) {
-							log.trace("prev: " + prevNote + ", note: " + note + diff);
-						}
-						partAnalysis.addInterval(diff);
-					}
-				}
-				else {
-					// TODO: chord
-					prevChord = (Chord)prev;
-				}
+			prev = measurable;
+		}
+		return prev;
+	}
+	
+	/**
+	 * 
+	 * @param measurable a Note or Chord
+	 * @return the Note, or the lowest note of a Chord (null if the Chord is empty)
+	 */
+	static Note getLowestNote(Measurable measurable) {
+		if(measurable instanceof Note) {
+			return (Note)measurable;
+		}
+		Note lowest = null;
+		for(Note note : ((Chord)measurable).getNotes()) {
+			if(lowest == null || note.getPitch().getRangeStep() < lowest.getPitch().getRangeStep()) {
+				lowest = note;
 			}
-			partAnalysis.addNote(note);
-			prev = note;
 		}
+		return lowest;
+	}
+	
+	static boolean isTied(Measurable prev, Measurable measurable) {
+		if(prev instanceof Note && measurable instanceof Note) {
+			return ((Note)prev).isTiedTo((Note)measurable);
+		}
+		if(prev instanceof Chord && measurable instanceof Chord) {
+			Chord tiedTo = ((Chord)prev).getTiedTo();
+			return tiedTo != null && tiedTo.equals(measurable);
+		}
+		return false;
 	}
 	
 	
@@ -139,6 +186,18 @@ public class ScoreAnalyzer {
 				printStream.println(d + ", " + durCounts.get(d));
 			}
 		}
+		if(showChords && sa.getChordCount() > 0) {
+			Map<Integer, Integer> chordIntervals = sa.getChordIntervals();
+			Map<Integer, Integer> pitchClassSets = sa.getPitchClassSets();
+			printStream.println(partName + " chord intervals");
+			for(Integer i : chordIntervals.keySet()) {
+				printStream.println(i + "," + chordIntervals.get(i));
+			}
+			printStream.println(partName + " pitch class sets");
+			for(Integer pcset : pitchClassSets.keySet()) {
+				printStream.println(ScoreAnalysis.pitchClassSetToString(pcset) + "," + pitchClassSets.get(pcset));
+			}
+		}
 	}
 
 	public Score getScore() {
@@ -188,5 +247,25 @@ public class ScoreAnalyzer {
 	public void setShowAbsoluteIntervals(boolean showAbsoluteIntervals) {
 		this.showAbsoluteIntervals = showAbsoluteIntervals;
 	}
+
+	public boolean isShowChords() {
+		return showChords;
+	}
+
+	public void setShowChords(boolean showChords) {
+		this.showChords = showChords;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public Map<String, ScoreAnalysis> getInstrumentAnalysisMap() {
+		return instrumentAnalysisMap;
+	}
 	
 }
@@ -26,11 +26,14 @@ import org.dwbzen.util.music.SongManager;
  * Records #occurrences of each for lengths of 2,3,4,5
  * occurrences has 2 dimensions: #occurrences overall, and #songs
  * A given HarmonyChord progression may occur for example 6 times, but only in 1 song.
+ * analyze() counts the songs in parallel with a SongNGramEngine and adds the results to the
+ * analysis maps. analyze(Song) and analyze(Section) collect a single Song or Section directly.
  * Example query strings:
  *   -query "artist:The Beatles"
  *   -query "name:Penny Lane"
  *   -query "name:With A Little Help From My Friends"
  *   -query "album:"Sergeant Pepper's Lonely Hearts Club Band"
+ * Use -top n to display the n most frequent progressions of each type and length instead of all of them.
  */
 public class SongAnalyzer {
 	protected static final Logger log = LogManager.getLogger(SongAnalyzer.class);
@@ -76,6 +79,8 @@ public class SongAnalyzer {
 	 * The current Song under analysis
 	 */
 	private Song currentSong = null;
+	
+	private SongNGramEngine engine = null;
 
 	public SongAnalyzer(Map<String, Song> songMap) {
 		this.songMap = songMap;
@@ -95,7 +100,7 @@ public class SongAnalyzer {
 	}
 	
 	/**
-	 * Syntax:  SongAnalyzer [-file filename | -collection collectionName  [-query queryString] ]
+	 * Syntax:  SongAnalyzer [-file filename | -collection collectionName  [-query queryString] ] [-top n]
 	 * example: SongAnalyzer -collection songs -query "artist:The Beatles"
 	 * 
 	 * @param args
@@ -106,6 +111,7 @@ public class SongAnalyzer {
 		String songCollectionName = null;
 		boolean quiet = false;
 		String query = null;
+		int top = 0;
 		for(int i=0; i<args.length; i++) {
 			if(args[i].startsWith("-collection")) {
 				songCollectionName = args[++i];
@@ -120,6 +126,9 @@ public class SongAnalyzer {
 				// don't output the results
 				quiet = true;
 			}
+			else if(args[i].equalsIgnoreCase("-top")) {
+				top = Integer.parseInt(args[++i]);
+			}
 		}
 		SongManager songMgr = new SongManager(songCollectionName, songInputFile, query);
 		songMgr.loadSongs();
@@ -128,7 +137,12 @@ public class SongAnalyzer {
 		SongAnalyzer songAnalyzer = new SongAnalyzer(songMap);
 		songAnalyzer.analyze();
 		if(!quiet) {
-			songAnalyzer.displayResults();
+			if(top > 0) {
+				songAnalyzer.displayTopResults(top);
+			}
+			else {
+				songAnalyzer.displayResults();
+			}
 		}
 	}
 	
@@ -163,14 +177,69 @@ public class SongAnalyzer {
 		}
 	}
 
+	/**
+	 * Display the k most frequent keys of each type and length, comma-separated for spreadsheet.
+	 * @param k
+	 */
+	public void displayTopResults(int k) {
+		System.out.println("Key Type,Key,Key Length,Count, Songs");
+		for(KeyType atype : analysisTypes) {
+			for(int keylen=mininumMemeLength; keylen <= maximumMemeLength; keylen++) {
+				for(SongNGramEngine.NGram ngram : topK(atype, keylen, k)) {
+					System.out.println(atype + "," + ngram.getKey() + "," + keylen + "," + ngram.getCount() + "," + ngram.getNumberOfSongs());
+				}
+			}
+		}
+	}
+
 	public void analyze() {
 		log.info("Start analysis");
-		for(Song sm : songMap.values()) {
-			Song song = (Song)sm;
-			analyze(song);
+		engine = new SongNGramEngine(analysisTypes, mininumMemeLength, maximumMemeLength);
+		engine.analyze(songMap.values());
+		for(KeyType atype : analysisTypes) {
+			for(int mlen = mininumMemeLength; mlen<=maximumMemeLength; mlen++) {
+				addResults(atype, mlen, engine.getNGrams(atype, mlen));
+			}
 		}
 		log.info("song analysis complete");
 	}
+	
+	/**
+	 * Adds n-gram counts and songs to the analysis maps
+	 */
+	private void addResults(KeyType keyType, int mlen, Map<String, SongNGramEngine.NGram> ngrams) {
+		TreeMap<String, Integer> memeCollectionMap = memeKeyTypeMap.get(keyType).get(mlen);
+		TreeMap<String, List<Song>> memeCollectionSongMap = memeKeyTypeBySongMap.get(keyType).get(mlen);
+		for(SongNGramEngine.NGram ngram : ngrams.values()) {
+			String key = ngram.getKey();
+			memeCollectionMap.merge(key, ngram.getCount(), Integer::sum);
+			List<Song> songList = memeCollectionSongMap.get(key);
+			if(songList == null) {
+				memeCollectionSongMap.put(key, ngram.getSongs());
+			}
+			else {
+				for(Song song : ngram.getSongs()) {
+					if(!songList.contains(song)) {
+						songList.add(song);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the k most frequent keys of a KeyType and length from the last analyze()
+	 * @param keyType
+	 * @param mlen key length
+	 * @param k
+	 * @return List of NGram, most frequent first
+	 */
+	public List<SongNGramEngine.NGram> topK(KeyType keyType, int mlen, int k) {
+		if(engine == null) {
+			throw new IllegalStateException("analyze() has not been run");
+		}
+		return engine.topK(keyType, mlen, k);
+	}
 
 	public void analyze(Song song) {
 		currentSong = song;
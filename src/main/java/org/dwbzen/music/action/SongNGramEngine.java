@@ -0,0 +1,433 @@
+package org.dwbzen.music.action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.dwbzen.music.action.SongAnalyzer.KeyType;
+import org.dwbzen.music.element.song.HarmonyList;
+import org.dwbzen.music.element.song.Section;
+import org.dwbzen.music.element.song.Song;
+import org.dwbzen.util.LongCountMap;
+
+/**
+ * Counts the chord progression n-grams ("memes") of a collection of Songs for SongAnalyzer.<br>
+ * Each analysis key of a Harmony (Harmony.getAnalysisKey) is encoded as an int token, one dictionary per KeyType.
+ * An n-gram of up to 5 tokens is packed into a long key and counted in a LongCountMap for that KeyType and length.
+ * Each token gets 64 / maximum length bits, so at least 12 (4096 distinct keys).
+ * A KeyType with more distinct keys than that is counted by String key instead, which is slower but has no limit.
+ * The songs an n-gram occurs in are kept as a BitSet of song numbers.<br>
+ * The analysis keys of the songs are encoded first, which builds the dictionaries, then the songs are counted
+ * in parallel with fork-join: each task counts a range of songs and the partial counts are merged as the tasks join.<br>
+ * The string keyed results (getNGrams) are exactly the same as those collected by SongAnalyzer.memeCollector.
+ *
+ * @author don_bacon
+ *
+ */
+public class SongNGramEngine {
+	protected static final Logger log = LogManager.getLogger(SongNGramEngine.class);
+
+	public static final int BITS_PER_TOKEN = 12;	// the fewest, at the maximum length
+	public static final int MAX_NGRAM_LENGTH = Long.SIZE / BITS_PER_TOKEN;
+	public static final String TOKEN_SEPARATOR = "   ";	// as in HarmonyList.getAnalysisKey
+	static int songsPerTask = 4;
+
+	/**
+	 * An n-gram rendered as its String key
+	 */
+	public class NGram {
+		private String key;
+		private int count = 0;
+		private BitSet songs = new BitSet();
+
+		NGram(String key) {
+			this.key = key;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 *
+		 * @return the Songs this n-gram occurs in, in the order analyzed
+		 */
+		public List<Song> getSongs() {
+			List<Song> songList = new ArrayList<Song>(songs.cardinality());
+			songs.stream().forEach(i -> songList.add(songArray[i]));
+			return songList;
+		}
+
+		public int getNumberOfSongs() {
+			return songs.cardinality();
+		}
+
+		public String toString() {
+			return key + "," + count + "," + getNumberOfSongs();
+		}
+	}
+
+	/**
+	 * The analysis keys of a Section, encoded
+	 */
+	private static class EncodedSection {
+		private int songNumber;
+		private int[][] ids;	// ids[keyType ordinal][harmony index]
+
+		EncodedSection(int songNumber, int[][] ids) {
+			this.songNumber = songNumber;
+			this.ids = ids;
+		}
+	}
+
+	/**
+	 * The counts of a range of songs, or all of them:
+	 * counts[keyType ordinal][length] if the KeyType is packed, ngrams[keyType ordinal][length] if it's String keyed.
+	 */
+	private class Counts {
+		private LongCountMap[][] counts = new LongCountMap[KeyType.values().length][maximumLength + 1];
+		@SuppressWarnings("unchecked")
+		private Map<String, NGram>[][] ngrams = new Map[KeyType.values().length][maximumLength + 1];
+
+		Counts() {
+			for(KeyType keyType : keyTypes) {
+				for(int mlen = minimumLength; mlen <= maximumLength; mlen++) {
+					counts[keyType.ordinal()][mlen] = new LongCountMap();
+					ngrams[keyType.ordinal()][mlen] = new HashMap<String, NGram>();
+				}
+			}
+		}
+
+		void merge(Counts from) {
+			for(KeyType keyType : keyTypes) {
+				for(int mlen = minimumLength; mlen <= maximumLength; mlen++) {
+					counts[keyType.ordinal()][mlen].merge(from.counts[keyType.ordinal()][mlen]);
+					addAll(from.ngrams[keyType.ordinal()][mlen], ngrams[keyType.ordinal()][mlen]);
+				}
+			}
+		}
+	}
+
+	private KeyType[] keyTypes;
+	private int minimumLength;
+	private int maximumLength;
+	private int bitsPerToken;
+	private int maxTokens;
+	private boolean[] stringKeyed = new boolean[KeyType.values().length];
+	private Song[] songArray = new Song[0];
+	private Map<Song, Integer> songNumbers = new IdentityHashMap<Song, Integer>();
+	private List<Map<String, Integer>> tokenMaps = new ArrayList<Map<String, Integer>>();
+	private List<List<String>> tokens = new ArrayList<List<String>>();
+
+	private Counts counts;
+
+	public SongNGramEngine(KeyType[] keyTypes, int minimumLength, int maximumLength) {
+		this(keyTypes, minimumLength, maximumLength, Math.min(Integer.SIZE - 1, Long.SIZE / Math.max(1, maximumLength)));
+	}
+
+	/**
+	 * 
+	 * @param keyTypes
+	 * @param minimumLength
+	 * @param maximumLength
+	 * @param bitsPerToken the bits of a packed token, 1 to 31. A KeyType with more than 2^bitsPerToken distinct keys is String keyed
+	 */
+	public SongNGramEngine(KeyType[] keyTypes, int minimumLength, int maximumLength, int bitsPerToken) {
+		if(minimumLength < 1 || maximumLength > MAX_NGRAM_LENGTH || minimumLength > maximumLength) {
+			throw new IllegalArgumentException("n-gram lengths must be in the range 1 to " + MAX_NGRAM_LENGTH);
+		}
+		if(bitsPerToken < 1 || bitsPerToken >= Integer.SIZE || bitsPerToken * maximumLength > Long.SIZE) {
+			throw new IllegalArgumentException("can't pack " + maximumLength + " tokens of " + bitsPerToken + " bits");
+		}
+		this.keyTypes = keyTypes;
+		this.minimumLength = minimumLength;
+		this.maximumLength = maximumLength;
+		this.bitsPerToken = bitsPerToken;
+		maxTokens = 1 << bitsPerToken;
+		for(int i=0; i<KeyType.values().length; i++) {
+			tokenMaps.add(new ConcurrentHashMap<String, Integer>());
+			tokens.add(new ArrayList<String>());
+		}
+		counts = new Counts();
+	}
+
+	/**
+	 * Analyzes the Songs, adding to any previous results.
+	 * @param songs
+	 */
+	public void analyze(Collection<Song> songs) {
+		int start = songArray.length;
+		songArray = Arrays.copyOf(songArray, start + songs.size());
+		for(Song song : songs) {
+			songNumbers.putIfAbsent(song, start);
+			songArray[start++] = song;
+		}
+		int from = songArray.length - songs.size();
+		List<List<EncodedSection>> encoded = new ArrayList<List<EncodedSection>>();
+		for(int i=from; i<songArray.length; i++) {
+			encoded.add(null);
+		}
+		IntStream.range(from, songArray.length).parallel().forEach(i -> encoded.set(i - from, encode(songArray[i], i)));
+		for(KeyType keyType : keyTypes) {
+			if(!stringKeyed[keyType.ordinal()] && getNumberOfTokens(keyType) > maxTokens) {
+				unpack(keyType);
+			}
+		}
+		Counts result = ForkJoinPool.commonPool().invoke(new SongTask(encoded, 0, encoded.size()));
+		counts.merge(result);
+	}
+
+	private class SongTask extends RecursiveTask<Counts> {
+		private static final long serialVersionUID = 1L;
+		private List<List<EncodedSection>> encoded;
+		private int from;
+		private int to;
+
+		SongTask(List<List<EncodedSection>> encoded, int from, int to) {
+			this.encoded = encoded;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Counts compute() {
+			if(to - from <= songsPerTask) {
+				Counts partial = new Counts();
+				for(int i=from; i<to; i++) {
+					for(EncodedSection section : encoded.get(i)) {
+						analyze(section, partial);
+					}
+				}
+				return partial;
+			}
+			int mid = (from + to) >>> 1;
+			SongTask left = new SongTask(encoded, from, mid);
+			left.fork();
+			Counts right = new SongTask(encoded, mid, to).compute();
+			Counts result = left.join();
+			result.merge(right);
+			return result;
+		}
+	}
+
+	private List<EncodedSection> encode(Song song, int songNumber) {
+		log.debug("analyzing song '" + song.getName() + "'");
+		List<EncodedSection> sections = new ArrayList<EncodedSection>();
+		for(Section section : song.getSections()) {
+			// memberships are recorded for the Section's Song, as SongAnalyzer does
+			Integer sectionSongNumber = songNumbers.get(section.getSong());
+			HarmonyList harmonyList = new HarmonyList();
+			harmonyList.addAll(section.getSongMeasures());
+			int numberOfChords = harmonyList.size();
+			int[][] ids = new int[KeyType.values().length][];
+			for(KeyType keyType : keyTypes) {
+				ids[keyType.ordinal()] = new int[numberOfChords];
+				for(int i=0; i<numberOfChords; i++) {
+					ids[keyType.ordinal()][i] = encode(keyType, harmonyList.get(i).getAnalysisKey(keyType));
+				}
+			}
+			sections.add(new EncodedSection(sectionSongNumber != null ? sectionSongNumber : songNumber, ids));
+		}
+		return sections;
+	}
+
+	private void analyze(EncodedSection section, Counts partial) {
+		for(KeyType keyType : keyTypes) {
+			int[] ids = section.ids[keyType.ordinal()];
+			int numberOfChords = ids.length;
+			boolean packed = !stringKeyed[keyType.ordinal()];
+			LongCountMap[] maps = partial.counts[keyType.ordinal()];
+			Map<String, NGram>[] ngramMaps = partial.ngrams[keyType.ordinal()];
+			List<String> tokenList = packed ? null : tokens.get(keyType.ordinal());
+			for(int index=0; index<numberOfChords; index++) {
+				long key = 0;
+				StringBuilder sb = packed ? null : new StringBuilder();
+				for(int mlen = 1; mlen <= maximumLength; mlen++) {
+					int endIndex = index + mlen - 1;
+					// HarmonyList.getAnalysisKey never includes the last Harmony
+					if(endIndex >= numberOfChords - 1) {
+						break;
+					}
+					if(packed) {
+						key = (key << bitsPerToken) | ids[endIndex];
+						if(mlen >= minimumLength) {
+							maps[mlen].increment(key, section.songNumber);
+						}
+					}
+					else {
+						sb.append(tokenList.get(ids[endIndex])).append(TOKEN_SEPARATOR);
+						String skey = sb.toString().trim();
+						if(mlen >= minimumLength && skey.length() > 0) {
+							NGram ngram = ngramMaps[mlen].computeIfAbsent(skey, NGram::new);
+							ngram.count++;
+							ngram.songs.set(section.songNumber);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the packed counts of a KeyType to its String keyed n-grams, it has too many tokens to pack.
+	 * @param keyType
+	 */
+	private void unpack(KeyType keyType) {
+		log.info(keyType + " has " + getNumberOfTokens(keyType) + " distinct analysis keys, more than " + maxTokens + ". Counting by String key");
+		for(int mlen = minimumLength; mlen <= maximumLength; mlen++) {
+			addAll(getNGrams(keyType, mlen), counts.ngrams[keyType.ordinal()][mlen]);
+			counts.counts[keyType.ordinal()][mlen] = new LongCountMap();
+		}
+		stringKeyed[keyType.ordinal()] = true;
+	}
+
+	private static void addAll(Map<String, NGram> from, Map<String, NGram> to) {
+		for(NGram ngram : from.values()) {
+			NGram total = to.get(ngram.key);
+			if(total == null) {
+				to.put(ngram.key, ngram);
+			}
+			else {
+				total.count += ngram.count;
+				total.songs.or(ngram.songs);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param keyType
+	 * @param token a Harmony analysis key
+	 * @return the token number
+	 */
+	int encode(KeyType keyType, String token) {
+		String t = String.valueOf(token);		// a null key is appended as "null"
+		Integer id = tokenMaps.get(keyType.ordinal()).get(t);
+		if(id == null) {
+			List<String> tokenList = tokens.get(keyType.ordinal());
+			id = tokenMaps.get(keyType.ordinal()).computeIfAbsent(t, k -> {
+				synchronized(tokenList) {
+					tokenList.add(k);
+					return tokenList.size() - 1;
+				}
+			});
+		}
+		return id;
+	}
+
+	/**
+	 *
+	 * @param keyType
+	 * @param mlen n-gram length
+	 * @param key packed n-gram
+	 * @return the String key, as HarmonyList.getAnalysisKey creates it
+	 */
+	public String decode(KeyType keyType, int mlen, long key) {
+		List<String> tokenList = tokens.get(keyType.ordinal());
+		StringBuilder sb = new StringBuilder();
+		for(int i=mlen-1; i>=0; i--) {
+			sb.append(tokenList.get((int)(key >>> (i * bitsPerToken)) & (maxTokens - 1)));
+			sb.append(TOKEN_SEPARATOR);
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Renders the n-grams of a KeyType and length with their String keys.
+	 * Empty keys are omitted, and n-grams having the same String key are combined, as they are in SongAnalyzer.
+	 * @param keyType
+	 * @param mlen n-gram length
+	 * @return TreeMap of String key to NGram
+	 */
+	public TreeMap<String, NGram> getNGrams(KeyType keyType, int mlen) {
+		TreeMap<String, NGram> ngrams = new TreeMap<String, NGram>();
+		LongCountMap map = counts.counts[keyType.ordinal()][mlen];
+		if(map != null) {
+			map.forEach((key, count, songs) -> {
+				String skey = decode(keyType, mlen, key);
+				if(skey.length() > 0) {
+					NGram ngram = ngrams.computeIfAbsent(skey, NGram::new);
+					ngram.count += count;
+					ngram.songs.or(songs);
+				}
+			});
+			for(NGram counted : counts.ngrams[keyType.ordinal()][mlen].values()) {
+				NGram ngram = ngrams.computeIfAbsent(counted.key, NGram::new);
+				ngram.count += counted.count;
+				ngram.songs.or(counted.songs);
+			}
+		}
+		return ngrams;
+	}
+
+	/**
+	 * Gets the k most frequent n-grams of a KeyType and length.
+	 * Ties are ordered by key. Keys for no harmony ("NONE" or "0") are excluded.
+	 * @param keyType
+	 * @param mlen n-gram length
+	 * @param k
+	 * @return List of up to k NGram, most frequent first
+	 */
+	public List<NGram> topK(KeyType keyType, int mlen, int k) {
+		List<NGram> top = new ArrayList<NGram>();
+		for(NGram ngram : getNGrams(keyType, mlen).values()) {
+			if(!isNoHarmony(ngram.getKey())) {
+				top.add(ngram);
+			}
+		}
+		top.sort(Comparator.comparingInt(NGram::getCount).reversed().thenComparing(NGram::getKey));
+		return top.size() > k ? new ArrayList<NGram>(top.subList(0, k)) : top;
+	}
+
+	public static boolean isNoHarmony(String key) {
+		return key.equalsIgnoreCase("none") || key.equals("0");
+	}
+
+	/**
+	 *
+	 * @param keyType
+	 * @return the number of distinct analysis keys of a KeyType
+	 */
+	public int getNumberOfTokens(KeyType keyType) {
+		return tokens.get(keyType.ordinal()).size();
+	}
+
+	public int getMinimumLength() {
+		return minimumLength;
+	}
+
+	public int getMaximumLength() {
+		return maximumLength;
+	}
+
+	public int getBitsPerToken() {
+		return bitsPerToken;
+	}
+
+	/**
+	 *
+	 * @param keyType
+	 * @return true if the KeyType has too many distinct analysis keys to pack, and is counted by String key
+	 */
+	public boolean isStringKeyed(KeyType keyType) {
+		return stringKeyed[keyType.ordinal()];
+	}
+}
@@ -19,6 +19,7 @@ import org.dwbzen.util.music.ChordManager;
 
 /**
  * Produces ChordProgressions from the results of HarmonyChordCollector and a starting seed ChordProgression.
+ * If a CompiledMarkovChain is set, progressions are generated from that instead of the MarkovChain.
  * 
  * @author Don_Bacon
  *
@@ -35,6 +36,7 @@ public class ChordProgressionProducer
 	private ChordProgression originalSeed;
 	private int order; 
 	private MarkovChain<HarmonyChord, ChordProgression, Song> markovChain = null;
+	private CompiledMarkovChain compiledChain = null;
 	private int numberToGenerate;		// number to produce
 	private boolean reuseSeed = false;
 	private boolean statisticalPick = true;
@@ -108,6 +110,9 @@ public class ChordProgressionProducer
 		if(trace) {
 			log.info("initial seed: " + seed);
 		}
+		if(compiledChain != null) {
+			return applyCompiled();
+		}
 		ChordProgression generatedChordProgression = new ChordProgression(seed);	// deep copy constructor
 		HarmonyChord nextHarmonyChord = null;
 		do {
@@ -122,6 +127,29 @@ public class ChordProgressionProducer
 		return generatedChordProgression;
 	}
 	
+	/**
+	 * Generates a ChordProgression from the CompiledMarkovChain.
+	 * Same as apply() but each step is a table lookup, nothing is allocated other than the result.
+	 * @return ChordProgression
+	 */
+	private ChordProgression applyCompiled() {
+		ChordProgression generatedChordProgression = new ChordProgression(seed);
+		int state = compiledChain.getState(nextSeed != null ? nextSeed : seed);
+		HarmonyChord nextHarmonyChord = null;
+		do {
+			int transition = compiledChain.nextTransition(state, random, statisticalPick);
+			nextHarmonyChord = compiledChain.getChord(transition);
+			state = compiledChain.getNextState(transition);
+			if(!nextHarmonyChord.isTerminalOrNull() ) {
+				generatedChordProgression.add(nextHarmonyChord);
+				if(trace) {
+					log.info("added: "  + nextHarmonyChord + " chordProgression: " + generatedChordProgression);
+				}
+			}
+		} while(!nextHarmonyChord.isTerminalOrNull() && generatedChordProgression.length() < maximumLength);
+		return generatedChordProgression;
+	}
+	
 	private HarmonyChord getNextHarmonyChord() {
 		HarmonyChord nextChord = null;
 		CollectorStats<HarmonyChord, ChordProgression, Song> cstats  = markovChain.get(nextSeed);
@@ -170,6 +198,12 @@ public class ChordProgressionProducer
 	}
 	
 	private ChordProgression pickSeed() {
+		if(compiledChain != null) {
+			int state = compiledChain.pickSeedState(random);
+			if(state >= 0) {
+				return compiledChain.getProgression(state);
+			}
+		}
 		ChordProgression cp =  null; 
 		do {
 			cp = markovChain.pickSeed();
@@ -285,6 +319,16 @@ public class ChordProgressionProducer
 	public void setMaximumLength(int maximumLength) {
 		this.maximumLength = maximumLength;
 	}
+	public CompiledMarkovChain getCompiledChain() {
+		return compiledChain;
+	}
+	/**
+	 * Generate progressions from a CompiledMarkovChain of the MarkovChain, or from the MarkovChain if null.
+	 * @param compiledChain
+	 */
+	public void setCompiledChain(CompiledMarkovChain compiledChain) {
+		this.compiledChain = compiledChain;
+	}
 	public boolean isTrace() {
 		return trace;
 	}
@@ -21,6 +21,7 @@ public class ChordProgressionProducerRunner {
 	/**
 	 * -seed : the chord names to use as a seed for production. For example, "G7 C".
 	 * 		   The #chords must equal keylen specified.
+	 * -compiled : generate from a CompiledMarkovChain
 	 * @param args
 	 */
 	public static void main(String...args) {
@@ -43,6 +44,7 @@ public class ChordProgressionProducerRunner {
 		int maxlength = 0;
 		boolean enableDisplay = true;
 		boolean trace = false;
+		boolean compiled = false;
 		
 		for(int i=0; i<args.length; i++) {
 			if(args[i].startsWith("-song")) {
@@ -99,6 +101,9 @@ public class ChordProgressionProducerRunner {
 			else if(args[i].equalsIgnoreCase("-trace")) {
 				trace = args[++i].equalsIgnoreCase("true") ? true : false;
 			}
+			else if(args[i].equalsIgnoreCase("-compiled")) {
+				compiled = true;
+			}
 		}
 		
 		if(debug) {
@@ -131,6 +136,9 @@ public class ChordProgressionProducerRunner {
 		log.debug("seed ChordProgression: " + seedProgression.toString());
 		
 		ChordProgressionProducer chordProgressionProducer = ChordProgressionProducer.getChordProgressionProducer(order, markovChain, seedProgression);
+		if(compiled) {
+			chordProgressionProducer.setCompiledChain(CompiledMarkovChain.compile(markovChain, order));
+		}
 		chordProgressionProducer.setNumberToGenerate(num);
 		chordProgressionProducer.setSortedResult(sort);
 		chordProgressionProducer.setStatisticalPick(statistical);
@@ -0,0 +1,284 @@
+package org.dwbzen.music.cp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.music.action.AliasTable;
+import org.dwbzen.music.element.song.ChordProgression;
+import org.dwbzen.music.element.song.HarmonyChord;
+import org.dwbzen.music.element.song.Song;
+
+/**
+ * A compact, read-only form of a HarmonyChord MarkovChain for ChordProgressionProducer.<br>
+ * HarmonyChords are interned by name and numbered. A state (a ChordProgression of length order)
+ * is packed into a long, and the states are kept sorted so a ChordProgression's state is found by binary search.<br>
+ * Transitions are stored CSR style: the transitions of state s are at indexes rowStart[s] to rowStart[s+1]-1
+ * of the chord and nextState arrays. nextState is the state reached after the transition (the state shifted by one chord),
+ * or -1 if there isn't one, so generating a progression needs no lookups.
+ * Each state has an AliasTable of its transitions weighted by #occurrences.<br>
+ * So each step takes constant time and allocates nothing.
+ *
+ * @author don_bacon
+ *
+ */
+public class CompiledMarkovChain {
+	protected static final Logger log = LogManager.getLogger(CompiledMarkovChain.class);
+
+	private int order;
+	private int bitsPerChord;
+	private HarmonyChord[] chords;
+	private Map<String, Integer> chordIds = new HashMap<String, Integer>();
+	private long[] stateKeys;
+	private int[] rowStart;
+	private int[] chord;
+	private int[] nextState;
+	private AliasTable<Integer>[] transitionTables;
+	private int[] seedStates;	// states that can start a progression
+
+	private CompiledMarkovChain() {
+	}
+
+	/**
+	 * Compiles a MarkovChain created by HarmonyChordCollector
+	 * @param markovChain
+	 * @param order the MarkovChain order (the length of the ChordProgression keys). Keys of any other length are skipped.
+	 * @return CompiledMarkovChain
+	 */
+	public static CompiledMarkovChain compile(MarkovChain<HarmonyChord, ChordProgression, Song> markovChain, int order) {
+		CompiledMarkovChain compiled = new CompiledMarkovChain();
+		compiled.order = order;
+		Map<String, Integer> chordIds = compiled.chordIds;
+		List<HarmonyChord> chordList = new ArrayList<HarmonyChord>();
+		List<ChordProgression> keys = new ArrayList<ChordProgression>();
+		for(ChordProgression key : markovChain.keySet()) {
+			if(key.size() != order) {
+				log.warn("skipping " + key + ", length is not " + order);
+				continue;
+			}
+			keys.add(key);
+			for(HarmonyChord hc : key) {
+				intern(hc, chordIds, chordList);
+			}
+			for(HarmonyChord hc : markovChain.get(key).getOccurrenceProbabilityMap().keySet()) {
+				intern(hc, chordIds, chordList);
+			}
+		}
+		compiled.chords = chordList.toArray(new HarmonyChord[chordList.size()]);
+		if(chordList.isEmpty()) {
+			log.warn("MarkovChain has no keys of length " + order);	// compiles to a chain with no states
+		}
+		compiled.bitsPerChord = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, chordList.size()) - 1));
+		if(compiled.bitsPerChord * order > 63) {
+			throw new IllegalArgumentException("Can't compile: " + chordList.size() + " HarmonyChords of order " + order + " won't fit in a long key");
+		}
+
+		// states in key order
+		int nstates = keys.size();
+		long[] packed = new long[nstates];
+		for(int i=0; i<nstates; i++) {
+			packed[i] = compiled.pack(keys.get(i), chordIds);
+		}
+		Integer[] sorted = new Integer[nstates];
+		for(int i=0; i<nstates; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, (a, b) -> Long.compare(packed[a], packed[b]));
+		compiled.stateKeys = new long[nstates];
+		for(int s=0; s<nstates; s++) {
+			compiled.stateKeys[s] = packed[sorted[s]];
+		}
+
+		// transitions
+		compiled.rowStart = new int[nstates + 1];
+		List<int[]> rows = new ArrayList<int[]>();
+		List<double[]> weights = new ArrayList<double[]>();
+		int ntransitions = 0;
+		for(int s=0; s<nstates; s++) {
+			ChordProgression key = keys.get(sorted[s]);
+			CollectorStats<HarmonyChord, ChordProgression, Song> cstats = markovChain.get(key);
+			Map<HarmonyChord, OccurrenceProbability> occurrenceProbabilityMap = cstats.getOccurrenceProbabilityMap();
+			int[] row = new int[occurrenceProbabilityMap.size()];
+			double[] w = new double[row.length];
+			int j = 0;
+			for(HarmonyChord hc : occurrenceProbabilityMap.keySet()) {
+				int[] range = occurrenceProbabilityMap.get(hc).getRange();
+				row[j] = chordIds.get(hc.getName());
+				w[j++] = range[CollectorStats.HIGH] - range[CollectorStats.LOW] + 1;
+			}
+			rows.add(row);
+			weights.add(w);
+			compiled.rowStart[s] = ntransitions;
+			ntransitions += row.length;
+		}
+		compiled.rowStart[nstates] = ntransitions;
+		compiled.chord = new int[ntransitions];
+		compiled.nextState = new int[ntransitions];
+		compiled.transitionTables = newTableArray(nstates);
+		List<Integer> seeds = new ArrayList<Integer>();
+		long mask = (1L << (compiled.bitsPerChord * (compiled.order - 1))) - 1;
+		for(int s=0; s<nstates; s++) {
+			int[] row = rows.get(s);
+			List<Integer> outcomes = new ArrayList<Integer>(row.length);
+			for(int j=0; j<row.length; j++) {
+				int t = compiled.rowStart[s] + j;
+				compiled.chord[t] = row[j];
+				compiled.nextState[t] = compiled.chords[row[j]].isTerminalOrNull() ? -1 :
+					compiled.findState(((compiled.stateKeys[s] & mask) << compiled.bitsPerChord) | row[j]);
+				outcomes.add(t);
+			}
+			if(row.length > 0) {
+				compiled.transitionTables[s] = new AliasTable<Integer>(outcomes, weights.get(s));
+			}
+			if(!compiled.chords[compiled.lastChord(s)].isTerminalOrNull()) {
+				seeds.add(s);
+			}
+		}
+		compiled.seedStates = seeds.stream().mapToInt(Integer::intValue).toArray();
+		log.info("compiled " + nstates + " states, " + ntransitions + " transitions, " + compiled.chords.length + " HarmonyChords");
+		return compiled;
+	}
+
+	private static void intern(HarmonyChord hc, Map<String, Integer> chordIds, List<HarmonyChord> chordList) {
+		if(!chordIds.containsKey(hc.getName())) {
+			chordIds.put(hc.getName(), chordList.size());
+			chordList.add(hc);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static AliasTable<Integer>[] newTableArray(int size) {
+		return (AliasTable<Integer>[]) new AliasTable<?>[size];
+	}
+
+	private long pack(List<HarmonyChord> progression, Map<String, Integer> chordIds) {
+		long key = 0;
+		for(HarmonyChord hc : progression) {
+			key = (key << bitsPerChord) | chordIds.get(hc.getName());
+		}
+		return key;
+	}
+
+	private int findState(long key) {
+		int s = Arrays.binarySearch(stateKeys, key);
+		return s >= 0 ? s : -1;
+	}
+
+	private int lastChord(int state) {
+		return (int)(stateKeys[state] & ((1L << bitsPerChord) - 1));
+	}
+
+	/**
+	 *
+	 * @param progression
+	 * @return the state of the last order HarmonyChords of progression, or -1 if there isn't one
+	 */
+	public int getState(List<HarmonyChord> progression) {
+		int size = progression.size();
+		if(size < order) {
+			return -1;
+		}
+		long key = 0;
+		for(int i=size-order; i<size; i++) {
+			int id = getChordId(progression.get(i));
+			if(id < 0) {
+				return -1;
+			}
+			key = (key << bitsPerChord) | id;
+		}
+		return findState(key);
+	}
+
+	/**
+	 *
+	 * @param hc
+	 * @return the number of a HarmonyChord (by name) or -1 if not in this chain
+	 */
+	public int getChordId(HarmonyChord hc) {
+		Integer id = chordIds.get(hc.getName());
+		return id != null ? id : -1;
+	}
+
+	/**
+	 *
+	 * @param state
+	 * @return the ChordProgression of a state
+	 */
+	public ChordProgression getProgression(int state) {
+		ChordProgression cp = new ChordProgression();
+		long chordMask = (1L << bitsPerChord) - 1;
+		for(int i=order-1; i>=0; i--) {
+			cp.add(chords[(int)((stateKeys[state] >>> (i * bitsPerChord)) & chordMask)]);
+		}
+		return cp;
+	}
+
+	/**
+	 * Picks a transition from a state
+	 * @param state
+	 * @param random
+	 * @param statisticalPick if true, transitions are weighted by #occurrences, otherwise they're equally likely
+	 * @return transition index, -1 if state is -1 or has no transitions
+	 */
+	public int nextTransition(int state, Random random, boolean statisticalPick) {
+		if(state < 0 || transitionTables[state] == null) {
+			return -1;
+		}
+		if(statisticalPick) {
+			return transitionTables[state].sample(random);
+		}
+		return rowStart[state] + random.nextInt(rowStart[state + 1] - rowStart[state]);
+	}
+
+	/**
+	 *
+	 * @param transition
+	 * @return the HarmonyChord of a transition, TERMINAL_HARMONY_CHORD if transition is -1
+	 */
+	public HarmonyChord getChord(int transition) {
+		return transition < 0 ? HarmonyChord.TERMINAL_HARMONY_CHORD : chords[chord[transition]];
+	}
+
+	/**
+	 *
+	 * @param transition
+	 * @return the state after a transition, or -1
+	 */
+	public int getNextState(int transition) {
+		return transition < 0 ? -1 : nextState[transition];
+	}
+
+	/**
+	 * Picks a random state that doesn't end in a terminal HarmonyChord
+	 * @param random
+	 * @return state, or -1 if there are none
+	 */
+	public int pickSeedState(Random random) {
+		return seedStates.length == 0 ? -1 : seedStates[random.nextInt(seedStates.length)];
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public int getNumberOfStates() {
+		return stateKeys.length;
+	}
+
+	public int getNumberOfTransitions() {
+		return chord.length;
+	}
+
+	public int getNumberOfChords() {
+		return chords.length;
+	}
+}
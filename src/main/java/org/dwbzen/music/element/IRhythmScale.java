@@ -38,6 +38,10 @@ public interface IRhythmScale extends IJson, INameable {
 
 	 Map<Integer, List<Duration>> getFactorMap();
 	 List<Duration> getFactors(Integer units);
+	 
+	 default List<Duration> getFactors(int units) {
+		 return getFactors(Integer.valueOf(units));
+	 }
 	 String getNoteType(Note note);
 	 
 	 /**
@@ -27,7 +27,11 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * So Cb4 is one semitone down from C4 which is B3.
  * Similarly, B#4 is the same pitch as C5.</p>
  * 
- * Use copy constructors or clone() to create new pitches from existing.
+ * Use copy constructors or clone() to create new pitches from existing.</p>
+ * 
+ * Pitches returned by valueOf(), fromMidiNumber(), plus() and intern() are shared, immutable instances
+ * taken from a table of every range step spelled with sharps, flats or mixed accidentals.
+ * Calling a setter on one of these throws UnsupportedOperationException - use clone() to get a Pitch that can be changed.
  * 
  * <p>See <a href="https://en.wikipedia.org/wiki/Scientific_pitch_notation">Scientific Pitch Notation</a> on Wikipedia.</p>
  */
@@ -133,6 +137,16 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 	
 	public static int pitchRange = 120;	// C0 to C9
 	
+	/**
+	 * MIDI note number of C0. Middle-C (C4) is MIDI note 60.
+	 */
+	public static final int MIDI_C0 = 12;
+	
+	/**
+	 * true if this is one of the shared instances and can't be changed
+	 */
+	@JsonIgnore	private boolean interned = false;
+	
 	public Pitch() {
 		pitchElementType = PitchElementType.PITCH;
 	}
@@ -327,14 +341,7 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 	public void increment(int n)  {
 		if (n != 0) {
 			int rs = rangeStep + n;
-			Pitch temp = null;
-			if(rs >= 0 && rs <= 120) {		// otherwise out of bounds
-				temp = allPitchesMap.get(alteration <= 0 ? Alteration.FLAT : Alteration.SHARP).getPitch(rs);
-			}
-			else {
-				temp = (rs < 0) ? minPitch : maxPitch;
-			}
-			copy(temp);
+			copy(InternedPitches.get(rs, alteration));
 		}
 	}
 	
@@ -378,14 +385,7 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 	public void decrement(int n) {
 		if (n != 0) {
 			int rs = this.rangeStep - n;
-			Pitch temp = null;
-			if(rs >= 0 && rs <= 120) {		// otherwise out of bounds
-				temp = allPitchesMap.get(alteration <= 0 ? Alteration.FLAT : Alteration.SHARP).getPitch(rs);
-			}
-			else {
-				temp = (rs < 0) ? minPitch : maxPitch;
-			}
-			copy(temp);
+			copy(InternedPitches.get(rs, alteration));
 		}
 	}
 	
@@ -404,6 +404,73 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 		return p;
 	}
 
+	/**
+	 * Gets the shared, immutable Pitch for a range step.
+	 * Range steps outside of C0 to C9 are clamped to C0 or C9 as with increment().
+	 * @param rangeStep number of steps from C0
+	 * @param spelling SHARP (or UP_ONE etc.) for sharps, FLAT (or DOWN_ONE etc.) for flats, NONE for mixed (C#, Eb, F#, G#, Bb)
+	 * @return interned Pitch
+	 */
+	public static Pitch valueOf(int rangeStep, Alteration spelling) {
+		return InternedPitches.get(rangeStep, spelling);
+	}
+	
+	/**
+	 * Gets the shared, immutable Pitch for a MIDI note number. Middle-C (C4) is 60.
+	 * @param midiNumber MIDI note number, 12 (C0) to 120 (C9)
+	 * @param spelling SHARP, FLAT or NONE for mixed
+	 * @return interned Pitch
+	 */
+	public static Pitch fromMidiNumber(int midiNumber, Alteration spelling) {
+		return valueOf(midiNumber - MIDI_C0, spelling);
+	}
+	
+	/**
+	 * 
+	 * @return the MIDI note number of this Pitch, 60 for middle-C (C4)
+	 */
+	@JsonIgnore public int getMidiNumber() {
+		return rangeStep + MIDI_C0;
+	}
+	
+	/**
+	 * The same as increment(n) but this is not changed and nothing is allocated:
+	 * the result is the shared, immutable Pitch n steps from this, spelled the way increment() would spell it.
+	 * @param n number of steps to add. If < 0, subtracts that amount.
+	 * @return interned Pitch
+	 */
+	public Pitch plus(int n) {
+		return n == 0 ? intern() : InternedPitches.get(rangeStep + n, alteration);
+	}
+	
+	/**
+	 * Gets the shared, immutable Pitch having the same step, alteration and octave as this.<br>
+	 * Spellings that aren't in the tables (E#, Fb, double sharps or flats) and octave-neutral pitches
+	 * get an immutable copy instead.
+	 * @return interned Pitch
+	 */
+	public Pitch intern() {
+		if(interned) {
+			return this;
+		}
+		Pitch p = InternedPitches.find(this);
+		if(p == null) {
+			p = new Pitch(this);
+			p.interned = true;
+		}
+		return p;
+	}
+	
+	@JsonIgnore public boolean isInterned() {
+		return interned;
+	}
+	
+	private void checkMutable() {
+		if(interned) {
+			throw new UnsupportedOperationException("Pitch " + toString() + " is immutable, use clone()");
+		}
+	}
+
 	/**
 	 * Adjusts this Pitch by the number of steps indicated
 	 * @param numberOfSteps
@@ -464,20 +531,24 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 	}
 
 	public void setStep(Step step) {
+		checkMutable();
 		this.step = step;
 	}
 
 	@Override
 	public void setOctave(int octave) {
+		checkMutable();
 		this.octave = octave;
 		setRangeStep();
 	}
 
 	public void setAlteration(int alteration) {
+		checkMutable();
 		this.alteration = alteration;
 	}
 
 	public void setRangeStep(int rangeStep) {
+		checkMutable();
 		this.rangeStep = rangeStep;
 	}
 
@@ -673,6 +744,7 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 	}
 	
 	private void setEnharmonicEquivalent() {
+		checkMutable();
 		if(alteration > 0) {
 			// make a sharp a flat (or natural)
 			alteration *= -1;
@@ -855,6 +927,73 @@ public final class Pitch  extends PitchElement implements Comparable<Pitch> {
 	public int size() {
 		return 1;
 	}
+	
+	/**
+	 * Tables of shared, immutable Pitches - one per range step for each of sharps, flats and mixed spelling.<br>
+	 * The tables are copies of PitchSet.allPitches so they are spelled, and ordered, exactly the same.
+	 * Kept in a holder class so they are built the first time they're used and not while Pitch and PitchSet are initializing.
+	 */
+	private static final class InternedPitches {
+		static final int FLATS = 0;
+		static final int SHARPS = 1;
+		static final int MIXED = 2;
+		static final Pitch[][] tables = new Pitch[3][];
+		static {
+			tables[FLATS] = createTable(Alteration.FLAT);
+			tables[SHARPS] = createTable(Alteration.SHARP);
+			tables[MIXED] = createTable(Alteration.NONE);
+		}
+		
+		static Pitch[] createTable(Alteration pref) {
+			List<Pitch> pitches = PitchSet.getAllPitches(pref).getPitches();
+			Pitch[] table = new Pitch[pitches.size()];
+			for(int i=0; i<table.length; i++) {
+				table[i] = new Pitch(pitches.get(i));
+				table[i].interned = true;
+			}
+			return table;
+		}
+		
+		static int spellingIndex(Alteration spelling) {
+			int alt = (spelling != null) ? spelling.value() : 0;
+			return alt < 0 ? FLATS : alt > 0 ? SHARPS : MIXED;
+		}
+		
+		/**
+		 * Gets a Pitch from the flats table if alteration <= 0, otherwise from the sharps table. Same as increment().
+		 */
+		static Pitch get(int rangeStep, int alteration) {
+			return get(tables[alteration <= 0 ? FLATS : SHARPS], rangeStep);
+		}
+		
+		static Pitch get(int rangeStep, Alteration spelling) {
+			return get(tables[spellingIndex(spelling)], rangeStep);
+		}
+		
+		/**
+		 * Out of bounds range steps are clamped to C0 or C9
+		 */
+		static Pitch get(Pitch[] table, int rangeStep) {
+			if(rangeStep < 0) {
+				return table[0];
+			}
+			return rangeStep <= pitchRange ? table[rangeStep] : table[table.length - 1];
+		}
+		
+		static Pitch find(Pitch p) {
+			int rs = p.rangeStep;
+			if(p.isOctaveNeutral() || rs < 0 || rs > pitchRange) {
+				return null;
+			}
+			for(Pitch[] table : tables) {
+				Pitch ip = table[rs];
+				if(ip.step == p.step && ip.alteration == p.alteration && ip.octave == p.octave) {
+					return ip;
+				}
+			}
+			return null;
+		}
+	}
 	 
 
 }
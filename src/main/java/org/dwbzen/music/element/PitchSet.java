@@ -1,14 +1,14 @@
 package org.dwbzen.music.element;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ThreadLocalRandom;
 
-import org.dwbzen.common.data.RandomGenerator;
+import org.dwbzen.util.SeededRandom;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -41,7 +41,6 @@ public class PitchSet extends PitchElement implements Comparable<PitchSet> {
 	@JsonIgnore		private Set<Pitch> pitchSet = null;		// created dynamically when needed
 	@JsonIgnore		private boolean octaveNeutral = true;
 	
-	static ThreadLocalRandom random = ThreadLocalRandom.current();
 	
 	private static PitchSet allPitchesSharps = new PitchSet();	// all pitches in the range C0 to C9, generated dynamically using sharps
 	private static PitchSet allPitchesFlats = new PitchSet();		// all pitches in the range C0 to C9, generated dynamically using flats
@@ -167,7 +166,7 @@ public class PitchSet extends PitchElement implements Comparable<PitchSet> {
 		PitchSet pc = new PitchSet();
 		int lowRangeStep = lowPitch.getRangeStep();
 		int highRangeStep = highPitch.getRangeStep() + 1;
-		
+		SeededRandom random = SeededRandom.current();
 		for(int i = 1; i<=n; i++) {
 			int rangeStep = random.nextInt(lowRangeStep, highRangeStep);
 			Pitch p = new Pitch(getAllPitches().getPitch(rangeStep));
@@ -178,8 +177,11 @@ public class PitchSet extends PitchElement implements Comparable<PitchSet> {
 	
 	public static PitchSet generateToneRow(Pitch origin) {
 		PitchSet pc = new PitchSet();
-		RandomGenerator rand = new RandomGenerator();
-		List<Integer> steps = rand.randomIntegers(0, 12, 12, true);
+		List<Integer> steps = new ArrayList<Integer>();
+		for(int step=0; step<12; step++) {
+			steps.add(step);
+		}
+		Collections.shuffle(steps, SeededRandom.current());
 		for(Integer step : steps) {
 			Pitch p = origin.increment(step, -1);
 			pc.addPitch(p);
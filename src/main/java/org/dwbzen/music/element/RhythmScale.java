@@ -102,6 +102,11 @@ public class RhythmScale  implements IRhythmScale {
 	 * 
 	 */
 	@JsonIgnore protected Map<Integer, List<Duration>> factorMap = new HashMap<Integer, List<Duration>>();
+	
+	/**
+	 * Array-backed copies of baseUnits, factorMap and note types, created by compile()
+	 */
+	@JsonIgnore private transient volatile CompiledRhythmScale compiled = null;
 
 	public RhythmScale() {
 	}
@@ -128,6 +133,7 @@ public class RhythmScale  implements IRhythmScale {
 	@Override
 	public void setRoot(int root) {
 		this.root = root;
+		compiled = null;
 	}
 
 	@Override
@@ -166,48 +172,74 @@ public class RhythmScale  implements IRhythmScale {
 	}
 	
 	/**
-	 * Round raw units to this RhythmScale. Use Preference to break ties.
+	 * Round raw units to this RhythmScale. Use Preference to break ties.<br>
+	 * Raw units below the smallest (or above the largest) base unit round to that unit.
 	 * @param double rawUnits
 	 * @param Preference pref
-	 * @return int units - closest unit value
+	 * @return int units - closest unit value, 0 if there are no base units
 	 */
 	@Override
 	public int findClosestUnits(double rawUnits, Preference pref) {
-		int nunits = -1;
-		double diffLow = -999;
-		double diffHigh = 999;
-		double diff = 0;
-		int low = 0;
-		int high = 0;
-		for(Integer bunits : baseUnits) {	// example:  {60, 120, 180, 240, 300, 360, 420, 480}
-			diff = bunits.doubleValue() - rawUnits;
-			if(diff == 0) {
-				nunits = bunits;
-				low = high = nunits;
-				break;
-			}
-			if(diff >= 0) {
-				if(diff < diffHigh) {
-					diffHigh = diff;
-					high = bunits;
-				}
+		int[] units = getCompiled().units;	// example:  {60, 120, 180, 240, 300, 360, 420, 480}
+		int n = units.length;
+		if(n == 0) {
+			return 0;
+		}
+		// binary search for the first unit >= rawUnits
+		int lo = 0;
+		int hi = n;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(units[mid] < rawUnits) {
+				lo = mid + 1;
 			}
-			else if(diff < 0) {
-				if(diff > diffLow) {
-					diffLow = diff;
-					low = bunits;
-				}
+			else {
+				hi = mid;
 			}
 		}
-		if(diffLow + diffHigh == 0) {	// equidistant
-			nunits = (pref == Preference.Down) ? low : high;
+		int nunits = 0;
+		if(lo == 0) {
+			nunits = units[0];
+		}
+		else if(lo == n) {
+			nunits = units[n - 1];
 		}
 		else {
-			nunits = (Math.abs(diffLow) < Math.abs(diffLow)) ? low : high;
+			int low = units[lo - 1];
+			int high = units[lo];
+			double diffLow = rawUnits - low;
+			double diffHigh = high - rawUnits;
+			if(diffLow == diffHigh) {	// equidistant
+				nunits = (pref == Preference.Down) ? low : high;
+			}
+			else {
+				nunits = (diffLow < diffHigh) ? low : high;
+			}
+		}
+		if(log.isTraceEnabled()) {
+			log.trace("closest units to " + rawUnits + " = " + nunits);
 		}
-		log.trace("closest units to " + rawUnits + " = " + nunits);
 		return nunits;
 	}
+	
+	/**
+	 * Creates the array-backed lookup tables used by findClosestUnits, getFactors and getNoteType.<br>
+	 * Called by the RhythmScaleFactory once the RhythmScale is complete, and again automatically
+	 * after a factor is added or the root is changed. Must be called if the base units
+	 * or factor map are changed directly.
+	 */
+	public void compile() {
+		compiled = new CompiledRhythmScale(this);
+	}
+	
+	private CompiledRhythmScale getCompiled() {
+		CompiledRhythmScale cr = compiled;
+		if(cr == null) {
+			cr = new CompiledRhythmScale(this);
+			compiled = cr;
+		}
+		return cr;
+	}
 
 	public Map<Integer, List<Duration>> getFactorMap() {
 		return factorMap;
@@ -224,6 +256,7 @@ public class RhythmScale  implements IRhythmScale {
 			dlist.add(duration);
 			factorMap.put(units, dlist);
 		}
+		compiled = null;
 		return dlist;
 	}
 
@@ -240,6 +273,7 @@ public class RhythmScale  implements IRhythmScale {
 			dlist.add(duration2);
 			factorMap.put(units, dlist);
 		}
+		compiled = null;
 		return dlist;
 	}
 	
@@ -258,16 +292,36 @@ public class RhythmScale  implements IRhythmScale {
 			dlist.add(duration3);
 			factorMap.put(units, dlist);
 		}
+		compiled = null;
 		return dlist;
 	}
 	
 	@Override
 	public List<Duration> getFactors(Integer units) {
+		return getFactors(units.intValue());
+	}
+	
+	@Override
+	public List<Duration> getFactors(int units) {
+		CompiledRhythmScale cr = getCompiled();
+		if(units > 0 && units % cr.factorStep == 0) {
+			int index = units / cr.factorStep;
+			return index < cr.factors.length ? cr.factors[index] : null;
+		}
 		return factorMap.get(units);
 	}
 	
 	@Override
 	public String getNoteType(Note note) {
+		CompiledRhythmScale cr = getCompiled();
+		int baseUnits = note.getDuration().getBaseUnits();
+		if(baseUnits > 0 && baseUnits < cr.noteTypeIndexes.length) {
+			int ind = cr.noteTypeIndexes[baseUnits];
+			if(note.getDuration().getRatio().getBeats() > 1) {
+				++ind;		// a tuplet - same as determineNoteType
+			}
+			return NoteTypes[ind];
+		}
 		return determineNoteType(note, root);
 	}
 	
@@ -292,16 +346,25 @@ public class RhythmScale  implements IRhythmScale {
 	 * @return String note type
 	 */
 	public static String determineNoteType(Note note, int rootUnits) {
-		int baseUnits = note.getDuration().getBaseUnits();
-		double log2root = MathUtil.log2((double)rootUnits);
-		double log2Units = MathUtil.log2((double)baseUnits);
-		int ind = (int)(6 - log2root + log2Units);
+		int ind = noteTypeIndex(note.getDuration().getBaseUnits(), rootUnits);
 		if(note.getDuration().getRatio().getBeats() > 1) {
 			// indicates a tuplet - so select the next highest duration note type
 			++ind;
 		}
 		return NoteTypes[ind];
 	}
+	
+	/**
+	 * 
+	 * @param baseUnits
+	 * @param rootUnits
+	 * @return index into NoteTypes for a non-tuplet note having baseUnits
+	 */
+	static int noteTypeIndex(int baseUnits, int rootUnits) {
+		double log2root = MathUtil.log2((double)rootUnits);
+		double log2Units = MathUtil.log2((double)baseUnits);
+		return (int)(6 - log2root + log2Units);
+	}
 
 	@Override
 	public boolean isChordal() {
@@ -334,4 +397,55 @@ public class RhythmScale  implements IRhythmScale {
 		return null;
 	}
 	
+	/**
+	 * Array-backed, read-only view of a RhythmScale:<br>
+	 * base units as a sorted int[] for binary search,<br>
+	 * factor lists in a dense array indexed by units / factorStep where factorStep is the greatest common divisor of the units,<br>
+	 * and the NoteTypes index for every number of base units up to the root.
+	 */
+	private static final class CompiledRhythmScale {
+		final int[] units;
+		final int factorStep;
+		final List<Duration>[] factors;
+		final int[] noteTypeIndexes;
+		
+		@SuppressWarnings("unchecked")
+		CompiledRhythmScale(RhythmScale rhythmScale) {
+			units = new int[rhythmScale.baseUnits.size()];
+			int i = 0;
+			for(Integer bunits : rhythmScale.baseUnits) {
+				units[i++] = bunits;
+			}
+			int step = 0;
+			int maxUnits = 0;
+			for(Integer funits : rhythmScale.factorMap.keySet()) {
+				if(funits > 0) {
+					step = gcd(step, funits);
+					maxUnits = Math.max(maxUnits, funits);
+				}
+			}
+			factorStep = (step > 0) ? step : 1;
+			factors = (List<Duration>[]) new List<?>[maxUnits/factorStep + 1];
+			for(Integer funits : rhythmScale.factorMap.keySet()) {
+				if(funits > 0) {
+					factors[funits/factorStep] = rhythmScale.factorMap.get(funits);
+				}
+			}
+			int root = rhythmScale.root;
+			noteTypeIndexes = new int[root > 0 ? root + 1 : 0];
+			for(int bunits = 1; bunits < noteTypeIndexes.length; bunits++) {
+				noteTypeIndexes[bunits] = noteTypeIndex(bunits, root);
+			}
+		}
+		
+		static int gcd(int a, int b) {
+			while(b != 0) {
+				int t = a % b;
+				a = b;
+				b = t;
+			}
+			return a;
+		}
+	}
+	
 }
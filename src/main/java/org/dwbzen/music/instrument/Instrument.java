@@ -300,7 +300,7 @@ public abstract class Instrument implements Configurable, IInstrument {
 	}
 	
 	public Pitch scale(double dval) {
-		return getPitchScaler().scale(Double.valueOf(dval));
+		return getPitchScaler().scale(dval);
 	}
 
 	public Duration scaleDuration(Point2D<Double> dval) {
@@ -0,0 +1,406 @@
+package org.dwbzen.music.midi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.music.element.Chord;
+import org.dwbzen.music.element.Dynamics;
+import org.dwbzen.music.element.Key;
+import org.dwbzen.music.element.Measurable;
+import org.dwbzen.music.element.Measurable.TieType;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Note;
+import org.dwbzen.music.element.PitchClass;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.element.Step;
+import org.dwbzen.music.element.Tempo;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.instrument.MidiInstrument;
+
+/**
+ * Writes a Score as a Type 1 Standard MIDI File with javax.sound.midi. No Synthesizer or device is used.<br>
+ * Track 0 is the conductor track: the title, copyright, and the tempo, key and time signature meta events
+ * of the first part, at measure 1 and wherever they change. Each part is a track after that, in score order,
+ * with its name, program change and volume, and the notes on the part's channel.
+ * Channels are assigned in part order skipping channel 10, which unpitched (percussion) parts use.<br>
+ * The resolution is 480 ticks per quarter note. Duration units are converted to ticks with each measure's
+ * divisions and time signature, so a 4/4 measure of 480 units is 1920 ticks. Notes tied together
+ * are merged into a single note on/off pair. Rests only advance the time.
+ * Velocity is from the Measurable's Dynamics, or the Measure's if it doesn't have its own.<br>
+ * Pitches are written as they sound, so transposing instruments are not transposed.
+ * The Score is not modified.
+ *
+ * @author don_bacon
+ *
+ */
+public class MidiFileWriter {
+	static final Logger log = LogManager.getLogger(MidiFileWriter.class);
+
+	public static final int MIDI_FILE_TYPE = 1;
+	public static final int DEFAULT_RESOLUTION = 480;	// ticks per quarter note
+	public static final int PERCUSSION_CHANNEL = 9;		// channel 10
+	public static final int META_TEXT = 0x01;
+	public static final int META_COPYRIGHT = 0x02;
+	public static final int META_TRACK_NAME = 0x03;
+	public static final int META_TEMPO = 0x51;
+	public static final int META_TIME_SIGNATURE = 0x58;
+	public static final int META_KEY_SIGNATURE = 0x59;
+
+	/**
+	 * Note offs sort before note ons at the same tick so a repeated pitch is restarted.
+	 * Everything else at a tick (meta events, program changes) sorts first.
+	 */
+	static final Comparator<MidiEvent> EVENT_ORDER = Comparator.comparingLong(MidiEvent::getTick).thenComparingInt(MidiFileWriter::eventRank);
+
+	private Score score;
+	private Properties configProperties = null;
+	private int resolution = DEFAULT_RESOLUTION;
+
+	public MidiFileWriter(Score score, Properties props) {
+		this.score = score;
+		this.configProperties = props;
+	}
+
+	/**
+	 * Writes the Score as a Type 1 MIDI file. The OutputStream is flushed but not closed.
+	 * @param os OutputStream
+	 * @throws IOException
+	 * @throws InvalidMidiDataException
+	 */
+	public void write(OutputStream os) throws IOException, InvalidMidiDataException {
+		MidiSystem.write(createSequence(), MIDI_FILE_TYPE, os);
+		os.flush();
+	}
+
+	/**
+	 *
+	 * @return a new Sequence of the Score, with a conductor track and a track for each part
+	 * @throws InvalidMidiDataException
+	 */
+	public Sequence createSequence() throws InvalidMidiDataException {
+		Sequence sequence = new Sequence(Sequence.PPQ, resolution);
+		List<ScorePartEntity> parts = new ArrayList<ScorePartEntity>();
+		for(String instrumentName : score.getInstrumentNames()) {
+			ScorePartEntity scorePartEntity = score.getScorePartEntityForInstrument(instrumentName);
+			if(scorePartEntity != null) {
+				parts.add(scorePartEntity);
+			}
+		}
+		addEvents(sequence.createTrack(), conductorEvents(parts.isEmpty() ? null : parts.get(0)));
+		int pitchedParts = 0;
+		for(ScorePartEntity scorePartEntity : parts) {
+			Instrument instrument = scorePartEntity.getInstrument();
+			addEvents(sequence.createTrack(), partEvents(scorePartEntity, channel(instrument, pitchedParts)));
+			if(!isPercussion(instrument)) {
+				pitchedParts++;
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * 
+	 * @param instrument
+	 * @param pitchedParts the number of pitched parts before this one
+	 * @return channel 10 (9) for percussion, otherwise the next channel skipping 10. Parts after the 15th share channel 16
+	 */
+	static int channel(Instrument instrument, int pitchedParts) {
+		if(isPercussion(instrument)) {
+			return PERCUSSION_CHANNEL;
+		}
+		if(pitchedParts >= 15) {
+			log.warn("More than 15 pitched parts, " + instrument.getName() + " shares channel 16");
+			return 15;
+		}
+		return pitchedParts < PERCUSSION_CHANNEL ? pitchedParts : pitchedParts + 1;
+	}
+
+	List<MidiEvent> conductorEvents(ScorePartEntity scorePartEntity) throws InvalidMidiDataException {
+		List<MidiEvent> events = new ArrayList<MidiEvent>();
+		events.add(textEvent(META_TRACK_NAME, score.getTitle(), 0));
+		if(score.getCopyright() != null) {
+			events.add(textEvent(META_COPYRIGHT, score.getCopyright(), 0));
+		}
+		String seed = configProperties == null ? null : configProperties.getProperty("score.seed");
+		if(seed != null) {
+			events.add(textEvent(META_TEXT, "seed " + seed, 0));
+		}
+		if(scorePartEntity == null) {
+			return events;
+		}
+		long tick = 0;
+		Measure previous = null;
+		for(Measure measure : scorePartEntity.getMeasures()) {
+			if(previous == null || !sameTempo(previous.getTempo(), measure.getTempo())) {
+				events.add(tempoEvent(measure.getTempo(), tick));
+			}
+			if(previous == null || previous.getBeats() != measure.getBeats() || previous.getBeatNote() != measure.getBeatNote()) {
+				events.add(timeSignatureEvent(measure, tick));
+			}
+			if(previous == null || !sameKey(previous.getKey(), measure.getKey())) {
+				events.add(keySignatureEvent(measure.getKey(), tick));
+			}
+			tick += ticksPerMeasure(measure);
+			previous = measure;
+		}
+		return events;
+	}
+
+	List<MidiEvent> partEvents(ScorePartEntity scorePartEntity, int channel) throws InvalidMidiDataException {
+		Instrument instrument = scorePartEntity.getInstrument();
+		List<MidiEvent> events = new ArrayList<MidiEvent>();
+		events.add(textEvent(META_TRACK_NAME, scorePartEntity.getPartName(), 0));
+		PartWriter partWriter = new PartWriter(instrument, channel, resolution, events);
+		for(Measure measure : scorePartEntity.getMeasures()) {
+			partWriter.addMeasure(measure);
+		}
+		partWriter.endPart();
+		return events;
+	}
+
+	/**
+	 * Converts the Measurables of a part to MIDI events, one Measure at a time, merging tied notes.
+	 * The events start with the program change and volume of the Instrument, at tick 0.
+	 * A note on is added when a note starts and its note off when the last note tied to it ends,
+	 * so the events of a Measure are complete when it's been added, except for ties into the next Measure.
+	 * Events are added in time order for each staff, not overall.
+	 */
+	static class PartWriter {
+		private Instrument instrument;
+		private int channel;
+		private int resolution;
+		private List<MidiEvent> events;
+		private long measureTick = 0;	// start of the next Measure
+		private Map<Integer, long[]> ties = new HashMap<Integer, long[]>();	// MIDI note number to {start, end} of a note tied to the next
+
+		PartWriter(Instrument instrument, int channel, int resolution, List<MidiEvent> events) throws InvalidMidiDataException {
+			this.instrument = instrument;
+			this.channel = channel;
+			this.resolution = resolution;
+			this.events = events;
+			MidiInstrument midiInstrument = instrument.getMidiInstrument();
+			if(midiInstrument != null) {
+				events.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, channel, clamp(midiInstrument.getMidiProgram() - 1), 0), 0));
+				events.add(new MidiEvent(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, 7, clamp((int)Math.round(midiInstrument.getVolume() * 127 / 100))), 0));
+			}
+		}
+
+		void addMeasure(Measure measure) throws InvalidMidiDataException {
+			long ticks = ticksPerMeasure(measure, resolution);
+			int divisions = measure.getDivisions();
+			for(int staffnum = 1; staffnum <= measure.getNumberOfStaves(); staffnum++) {
+				List<Measurable> measurables = measure.getMeasureables(staffnum);
+				if(measurables == null) {
+					continue;
+				}
+				// each staff starts at the beginning of the measure
+				long units = 0;
+				for(Measurable m : measurables) {
+					int velocity = velocity(m.getDynamics() != null ? m.getDynamics() : measure.getDynamics());
+					long start = measureTick + units * ticks / divisions;
+					units += m.getDuration().getDurationUnits();
+					long end = measureTick + units * ticks / divisions;
+					if(m.getType().equals(Measurable.CHORD)) {
+						for(Note note : ((Chord)m).removeUnisonNotes()) {
+							TieType tieType = note.getTieType() == TieType.NONE ? m.getTieType() : note.getTieType();
+							addNote(note, tieType, start, end, velocity);
+						}
+					}
+					else {
+						Note note = (Note)m;
+						addNote(note, note.getTieType(), start, end, velocity);
+					}
+				}
+			}
+			measureTick += ticks;
+		}
+
+		void addNote(Note note, TieType tieType, long start, long end, int velocity) throws InvalidMidiDataException {
+			if(note.getPitch().getStep().equals(Step.SILENT)) {
+				return;
+			}
+			int key = noteNumber(instrument, note);
+			int tie = tieType == null ? 0 : tieType.value();
+			long[] tiedNote = ((tie & TieType.STOP.value()) != 0) ? ties.remove(key) : null;
+			if(tiedNote == null) {
+				if(ties.containsKey(key)) {
+					noteOff(key, ties.remove(key)[1]);	// tied to a note that isn't there
+				}
+				tiedNote = new long[] {start, end};
+				events.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key, velocity), start));
+			}
+			tiedNote[1] = end;
+			if((tie & TieType.START.value()) != 0) {
+				ties.put(key, tiedNote);
+			}
+			else {
+				noteOff(key, end);
+			}
+		}
+
+		/**
+		 * Ends any notes tied to a note that isn't there
+		 */
+		void endPart() throws InvalidMidiDataException {
+			for(Integer key : ties.keySet()) {
+				noteOff(key, ties.get(key)[1]);
+			}
+			ties.clear();
+		}
+
+		/**
+		 * 
+		 * @return the tick the next Measure starts at
+		 */
+		long getTick() {
+			return measureTick;
+		}
+
+		private void noteOff(int key, long tick) throws InvalidMidiDataException {
+			events.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key, 0), tick));
+		}
+	}
+
+	/**
+	 * Events are sorted once and appended, instead of each being inserted in the Track.
+	 */
+	private static void addEvents(Track track, List<MidiEvent> events) {
+		events.sort(EVENT_ORDER);
+		for(MidiEvent event : events) {
+			track.add(event);
+		}
+	}
+
+	static int eventRank(MidiEvent event) {
+		MidiMessage message = event.getMessage();
+		if(message instanceof ShortMessage) {
+			int command = ((ShortMessage)message).getCommand();
+			if(command == ShortMessage.NOTE_OFF) {
+				return 1;
+			}
+			if(command == ShortMessage.NOTE_ON) {
+				return 2;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 *
+	 * @param measure
+	 * @return the length of the Measure in ticks, from its time signature
+	 */
+	public long ticksPerMeasure(Measure measure) {
+		return ticksPerMeasure(measure, resolution);
+	}
+
+	static long ticksPerMeasure(Measure measure, int resolution) {
+		return (long)resolution * 4 * measure.getBeats() / measure.getBeatNote();
+	}
+
+	/**
+	 *
+	 * @param tempo
+	 * @return microseconds per quarter note
+	 */
+	public static int microsecondsPerQuarter(Tempo tempo) {
+		// a whole note is 4 quarters, a half note 2, an eighth 1/2 ...
+		double quartersPerBeat = 4.0 / (1 << tempo.getBeatUnit().ordinal());
+		return (int)Math.round(60_000_000.0 / (tempo.getBeatsPerMinute() * quartersPerBeat));
+	}
+
+	/**
+	 *
+	 * @param dynamics
+	 * @return the note on velocity for dynamics, 8 (pppppp) to 127, 68 for mf
+	 */
+	public static int velocity(Dynamics dynamics) {
+		return dynamics == null ? 80 : clamp(8 + 6 * dynamics.getDynamic().value());
+	}
+
+	/**
+	 * Percussion uses the instrument's unpitched note if it has one, otherwise the displayed pitch.
+	 */
+	static int noteNumber(Instrument instrument, Note note) {
+		MidiInstrument midiInstrument = instrument.getMidiInstrument();
+		if(isPercussion(instrument) && midiInstrument != null && midiInstrument.getMidiUnpitched() > 0) {
+			return clamp(midiInstrument.getMidiUnpitched() - 1);
+		}
+		return clamp(note.getPitch().getMidiNumber());
+	}
+
+	static boolean isPercussion(Instrument instrument) {
+		return instrument.getPitchClass() == PitchClass.UNPITCHED || instrument.getPitchClass() == PitchClass.DISCRETE_1LINE
+				|| instrument.getPitchClass() == PitchClass.DISCRETE_2LINE;
+	}
+
+	MidiEvent tempoEvent(Tempo tempo, long tick) throws InvalidMidiDataException {
+		int mpq = microsecondsPerQuarter(tempo);
+		byte[] data = {(byte)(mpq >> 16), (byte)(mpq >> 8), (byte)mpq};
+		return new MidiEvent(new MetaMessage(META_TEMPO, data, data.length), tick);
+	}
+
+	MidiEvent timeSignatureEvent(Measure measure, long tick) throws InvalidMidiDataException {
+		int beatNote = measure.getBeatNote();
+		// denominator as a power of 2, 24 MIDI clocks per click, 8 32nds per quarter
+		byte[] data = {(byte)measure.getBeats(), (byte)(31 - Integer.numberOfLeadingZeros(beatNote)), 24, 8};
+		return new MidiEvent(new MetaMessage(META_TIME_SIGNATURE, data, data.length), tick);
+	}
+
+	MidiEvent keySignatureEvent(Key key, long tick) throws InvalidMidiDataException {
+		byte[] data = {(byte)key.getFifths(), (byte)(key.getModeName().equals(Key.MINOR_MODE) ? 1 : 0)};
+		return new MidiEvent(new MetaMessage(META_KEY_SIGNATURE, data, data.length), tick);
+	}
+
+	static MidiEvent textEvent(int type, String text, long tick) throws InvalidMidiDataException {
+		byte[] data = (text == null ? "" : text).getBytes(StandardCharsets.US_ASCII);
+		return new MidiEvent(new MetaMessage(type, data, data.length), tick);
+	}
+
+	private static boolean sameTempo(Tempo t1, Tempo t2) {
+		return t1.getBeatsPerMinute().equals(t2.getBeatsPerMinute()) && t1.getBeatUnit() == t2.getBeatUnit();
+	}
+
+	private static boolean sameKey(Key k1, Key k2) {
+		return k1.getFifths() == k2.getFifths() && k1.getModeName().equals(k2.getModeName());
+	}
+
+	static int clamp(int value) {
+		return Math.max(0, Math.min(127, value));
+	}
+
+	public Score getScore() {
+		return score;
+	}
+
+	public int getResolution() {
+		return resolution;
+	}
+
+	/**
+	 *
+	 * @param resolution ticks per quarter note, default is 480
+	 */
+	public void setResolution(int resolution) {
+		this.resolution = resolution;
+	}
+}
@@ -0,0 +1,521 @@
+package org.dwbzen.music.midi;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.music.IMeasureSink;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.util.metrics.Counter;
+import org.dwbzen.util.metrics.Histogram;
+import org.dwbzen.util.metrics.MetricsRegistry;
+
+/**
+ * Plays a Score in real time by sending its note, program and volume messages to a javax.sound.midi Receiver.<br>
+ * As an IMeasureSink it plays each Measure as a streaming ScorePart completes it, so the parts are heard
+ * as they're scored. play(Score) plays a completed Score the same way, measure by measure,
+ * scheduling the messages of each Measure of all the parts in time order.
+ * Messages are the ones MidiFileWriter writes for the parts, with channels assigned the same way:
+ * in the order of the Score's instruments, set by assignChannels() before the parts start.<br>
+ * Scheduling is done by a dedicated timing thread. Time starts when the first message is scheduled,
+ * plus the look-ahead. A message is scheduled (buffered) up to lookAhead before it's due,
+ * and scheduling blocks until then, so the scorer runs at most lookAhead ahead of playback
+ * and the buffer doesn't grow with the length of the Score.
+ * The timing thread parks until just before the next message is due, then spins, and sends it with a time stamp of -1.<br>
+ * Statistics, in nanoseconds, are kept in the MetricsRegistry:
+ * <dl>
+ * <dt>playback.jitterNanos</dt> <dd>how late each message was sent, from the time it was due</dd>
+ * <dt>playback.latencyNanos</dt> <dd>from the time a message was due to when Receiver.send returned</dd>
+ * <dt>playback.lookAheadNanos</dt> <dd>how long before it was due each message was scheduled</dd>
+ * <dt>playback.underruns</dt> <dd>messages scheduled after they were due, because the scorer fell behind</dd>
+ * </dl>
+ * Histogram percentiles are to within a factor of 2, the mean and maximum are exact.
+ * Use a NullReceiver to measure the scheduling without a device.
+ *
+ * @author don_bacon
+ *
+ */
+public class MidiPlayer implements IMeasureSink, AutoCloseable {
+	static final Logger log = LogManager.getLogger(MidiPlayer.class);
+
+	public static final long DEFAULT_LOOK_AHEAD_MILLIS = 200;
+	static final long SPIN_NANOS = 200_000;			// spin for the last 200 microseconds before a message is due
+	static final long MAX_PARK_NANOS = 1_000_000;		// look at the queue at least every millisecond
+	static final long MAX_WAIT_NANOS = 10_000_000;		// scheduling waits in steps of at most 10 ms
+	static final int ALL_NOTES_OFF = 123;
+
+	private final Receiver receiver;
+	private final long lookAheadNanos;
+	private final int resolution = MidiFileWriter.DEFAULT_RESOLUTION;
+	private final PriorityBlockingQueue<ScheduledMessage> queue = new PriorityBlockingQueue<ScheduledMessage>();
+	private final Map<ScorePartEntity, PartPlayer> parts = new ConcurrentHashMap<ScorePartEntity, PartPlayer>();
+	private final Set<Integer> channels = ConcurrentHashMap.newKeySet();
+	private final Map<String, Integer> assignedChannels = new ConcurrentHashMap<String, Integer>();	// by Instrument name
+	private final AtomicInteger pitchedParts = new AtomicInteger();
+	private final AtomicLong sequenceNumber = new AtomicLong();
+	private final Thread timingThread;
+	private volatile boolean running = true;
+	private volatile boolean started = false;
+	private volatile long origin = 0;		// System.nanoTime() of time 0
+
+	private final MetricsRegistry metrics;
+	private final Histogram jitter;
+	private final Histogram latency;
+	private final Histogram lookAhead;
+	private final Counter underruns;
+	private final Counter messages;
+
+	/**
+	 * A player with the default look-ahead, that keeps its statistics in a MetricsRegistry of its own.
+	 * @param receiver
+	 */
+	public MidiPlayer(Receiver receiver) {
+		this(receiver, DEFAULT_LOOK_AHEAD_MILLIS, MetricsRegistry.DISABLED);
+	}
+
+	/**
+	 *
+	 * @param receiver the Receiver to send the messages to. It's not closed by the player.
+	 * @param lookAheadMillis how long before it's due a message can be scheduled
+	 * @param metrics MetricsRegistry for the statistics. If it's DISABLED the player has its own.
+	 */
+	public MidiPlayer(Receiver receiver, long lookAheadMillis, MetricsRegistry metrics) {
+		this.receiver = receiver;
+		this.lookAheadNanos = lookAheadMillis * 1_000_000;
+		this.metrics = metrics.isEnabled() ? metrics : new MetricsRegistry();
+		jitter = this.metrics.histogram("playback.jitterNanos");
+		latency = this.metrics.histogram("playback.latencyNanos");
+		lookAhead = this.metrics.histogram("playback.lookAheadNanos");
+		underruns = this.metrics.counter("playback.underruns");
+		messages = this.metrics.counter("playback.messages");
+		timingThread = new Thread(this::runTimer, "MidiPlayer");
+		timingThread.setDaemon(true);
+		timingThread.setPriority(Thread.MAX_PRIORITY);
+		timingThread.start();
+	}
+
+	/**
+	 * Plays a completed Score, a Measure of each part at a time. The messages of all the parts for a Measure
+	 * are scheduled in time order, so one part doesn't wait for the whole Measure of another.
+	 * Returns when the last message has been scheduled, about lookAhead before the end.
+	 * Use drain() or close() to wait for the end.
+	 * @param score
+	 */
+	public void play(Score score) {
+		List<ScorePartEntity> scoreParts = new ArrayList<ScorePartEntity>();
+		List<Instrument> instruments = new ArrayList<Instrument>();
+		int nmeasures = 0;
+		for(String instrumentName : score.getInstrumentNames()) {
+			ScorePartEntity scorePartEntity = score.getScorePartEntityForInstrument(instrumentName);
+			if(scorePartEntity != null) {
+				scoreParts.add(scorePartEntity);
+				instruments.add(scorePartEntity.getInstrument());
+				nmeasures = Math.max(nmeasures, scorePartEntity.getMeasures().size());
+			}
+		}
+		assignChannels(instruments);
+		List<TimedEvent> timedEvents = new ArrayList<TimedEvent>();
+		for(ScorePartEntity scorePartEntity : scoreParts) {
+			PartPlayer partPlayer = createPartPlayer(scorePartEntity);
+			if(partPlayer != null) {
+				partPlayer.takeEvents(timedEvents);
+			}
+		}
+		scheduleAll(timedEvents);
+		for(int i = 0; i<nmeasures && running; i++) {
+			for(ScorePartEntity scorePartEntity : scoreParts) {
+				List<Measure> measures = scorePartEntity.getMeasures();
+				PartPlayer partPlayer = parts.get(scorePartEntity);
+				if(i < measures.size() && partPlayer != null && addMeasure(partPlayer, scorePartEntity, measures.get(i))) {
+					partPlayer.takeEvents(timedEvents);
+				}
+			}
+			scheduleAll(timedEvents);
+		}
+		for(ScorePartEntity scorePartEntity : scoreParts) {
+			PartPlayer partPlayer = parts.remove(scorePartEntity);
+			if(partPlayer != null && endPart(partPlayer, scorePartEntity)) {
+				partPlayer.takeEvents(timedEvents);
+			}
+		}
+		scheduleAll(timedEvents);
+	}
+
+	/**
+	 * Assigns the channels of the parts in the order of the Score's instruments, as MidiFileWriter does.
+	 * Streaming ScoreParts start in whatever order their threads run, so this is called before they start.
+	 * A part whose Instrument isn't assigned one gets the next channel when it starts.
+	 * @param instruments in Score order
+	 */
+	public void assignChannels(Collection<Instrument> instruments) {
+		int pitched = 0;
+		for(Instrument instrument : instruments) {
+			assignedChannels.put(instrument.getName(), MidiFileWriter.channel(instrument, pitched));
+			if(!MidiFileWriter.isPercussion(instrument)) {
+				pitched++;
+			}
+		}
+		pitchedParts.set(pitched);
+	}
+
+	/**
+	 *
+	 * @param instrument
+	 * @return the channel assigned to an Instrument, or -1 if it hasn't been
+	 */
+	public int getChannel(Instrument instrument) {
+		return assignedChannels.getOrDefault(instrument.getName(), -1);
+	}
+
+	@Override
+	public void startPart(ScorePartEntity scorePartEntity) {
+		PartPlayer partPlayer = createPartPlayer(scorePartEntity);
+		if(partPlayer != null) {
+			partPlayer.scheduleEvents();
+		}
+	}
+
+	private PartPlayer createPartPlayer(ScorePartEntity scorePartEntity) {
+		Instrument instrument = scorePartEntity.getInstrument();
+		int channel = assignedChannels.computeIfAbsent(instrument.getName(), name ->
+			MidiFileWriter.isPercussion(instrument) ? MidiFileWriter.PERCUSSION_CHANNEL : MidiFileWriter.channel(instrument, pitchedParts.getAndIncrement()));
+		channels.add(channel);
+		try {
+			PartPlayer partPlayer = new PartPlayer(instrument, channel);
+			parts.put(scorePartEntity, partPlayer);
+			return partPlayer;
+		}
+		catch(InvalidMidiDataException e) {
+			log.error("Can't play " + scorePartEntity.getPartName() + " because " + e.toString());
+		}
+		return null;
+	}
+
+	@Override
+	public void accept(ScorePartEntity scorePartEntity, Measure measure) {
+		PartPlayer partPlayer = parts.get(scorePartEntity);
+		if(partPlayer != null && addMeasure(partPlayer, scorePartEntity, measure)) {
+			partPlayer.scheduleEvents();
+		}
+	}
+
+	private static boolean addMeasure(PartPlayer partPlayer, ScorePartEntity scorePartEntity, Measure measure) {
+		try {
+			partPlayer.addMeasure(measure);
+			return true;
+		}
+		catch(InvalidMidiDataException e) {
+			log.error("Can't play measure " + measure.getNumber() + " of " + scorePartEntity.getPartName() + " because " + e.toString());
+		}
+		return false;
+	}
+
+	@Override
+	public void endPart(ScorePartEntity scorePartEntity) {
+		PartPlayer partPlayer = parts.remove(scorePartEntity);
+		if(partPlayer != null && endPart(partPlayer, scorePartEntity)) {
+			partPlayer.scheduleEvents();
+		}
+	}
+
+	private static boolean endPart(PartPlayer partPlayer, ScorePartEntity scorePartEntity) {
+		try {
+			partPlayer.endPart();
+			return true;
+		}
+		catch(InvalidMidiDataException e) {
+			log.error("Can't end " + scorePartEntity.getPartName() + " because " + e.toString());
+		}
+		return false;
+	}
+
+	/**
+	 * Converts a part's Measures to messages with MidiFileWriter.PartWriter and times them.
+	 * Ticks are converted to time with the tempo of the Measure they're in.
+	 */
+	class PartPlayer {
+		private MidiFileWriter.PartWriter partWriter;
+		private List<MidiEvent> events = new ArrayList<MidiEvent>();
+		private long measureTick = 0;
+		private long measureNanos = 0;
+		private double nanosPerTick = 0;
+
+		PartPlayer(Instrument instrument, int channel) throws InvalidMidiDataException {
+			partWriter = new MidiFileWriter.PartWriter(instrument, channel, resolution, events);
+		}
+
+		void addMeasure(Measure measure) throws InvalidMidiDataException {
+			measureNanos += Math.round((partWriter.getTick() - measureTick) * nanosPerTick);
+			measureTick = partWriter.getTick();
+			nanosPerTick = MidiFileWriter.microsecondsPerQuarter(measure.getTempo()) * 1000.0 / resolution;
+			partWriter.addMeasure(measure);
+		}
+
+		void endPart() throws InvalidMidiDataException {
+			partWriter.endPart();
+		}
+
+		/**
+		 * Moves the events added since the last call to timedEvents, with the time each is due.
+		 * @param timedEvents
+		 */
+		void takeEvents(List<TimedEvent> timedEvents) {
+			for(MidiEvent event : events) {
+				timedEvents.add(new TimedEvent(event, measureNanos + Math.round((event.getTick() - measureTick) * nanosPerTick)));
+			}
+			events.clear();
+		}
+
+		void scheduleEvents() {
+			List<TimedEvent> timedEvents = new ArrayList<TimedEvent>();
+			takeEvents(timedEvents);
+			scheduleAll(timedEvents);
+		}
+	}
+
+	/**
+	 * A MidiEvent and the time it's due, in nanoseconds from time 0.
+	 */
+	static class TimedEvent {
+		static final Comparator<TimedEvent> ORDER = Comparator.<TimedEvent>comparingLong(e -> e.nanos)
+				.thenComparingInt(e -> MidiFileWriter.eventRank(e.event));
+		final MidiEvent event;
+		final long nanos;
+
+		TimedEvent(MidiEvent event, long nanos) {
+			this.event = event;
+			this.nanos = nanos;
+		}
+	}
+
+	/**
+	 * Schedules events in time order, note offs before note ons at the same time, and clears the List.
+	 * The events of a Measure are in time order for each staff, and those of several parts are interleaved,
+	 * so they're sorted first.
+	 * @param timedEvents
+	 */
+	private void scheduleAll(List<TimedEvent> timedEvents) {
+		timedEvents.sort(TimedEvent.ORDER);
+		for(TimedEvent timedEvent : timedEvents) {
+			schedule(timedEvent.event, timedEvent.nanos);
+		}
+		timedEvents.clear();
+	}
+
+	/**
+	 * Schedules a message to be sent at time nanos (from time 0), waiting until it's within lookAhead of being due.
+	 * @param event
+	 * @param nanos
+	 */
+	private void schedule(MidiEvent event, long nanos) {
+		long due = getOrigin() + nanos;
+		long now = System.nanoTime();
+		while(running && due - now > lookAheadNanos) {
+			LockSupport.parkNanos(Math.min(due - now - lookAheadNanos, MAX_WAIT_NANOS));
+			now = System.nanoTime();
+		}
+		if(!running) {
+			return;
+		}
+		if(due < now) {
+			underruns.increment();
+		}
+		lookAhead.record(due - now);
+		queue.add(new ScheduledMessage(due, MidiFileWriter.eventRank(event), sequenceNumber.getAndIncrement(), event.getMessage()));
+		LockSupport.unpark(timingThread);
+	}
+
+	private long getOrigin() {
+		if(!started) {
+			synchronized(this) {
+				if(!started) {
+					origin = System.nanoTime() + lookAheadNanos;
+					started = true;
+				}
+			}
+		}
+		return origin;
+	}
+
+	/**
+	 * The timing thread: parks until SPIN_NANOS before the next message is due, spins until it is, then sends it.
+	 * A message scheduled while it's waiting that's due sooner is sent first.
+	 */
+	private void runTimer() {
+		while(running) {
+			ScheduledMessage next = queue.peek();
+			if(next == null) {
+				LockSupport.parkNanos(MAX_PARK_NANOS);
+				continue;
+			}
+			long remaining = next.due - System.nanoTime();
+			if(remaining > SPIN_NANOS) {
+				LockSupport.parkNanos(Math.min(remaining - SPIN_NANOS, MAX_PARK_NANOS));
+				continue;
+			}
+			if(remaining > 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+			next = queue.poll();	// the head, or one even more due
+			long sent = System.nanoTime();
+			try {
+				receiver.send(next.message, -1);
+			}
+			catch(RuntimeException e) {
+				log.error("Receiver failed, playback stopped: " + e.toString());
+				running = false;
+				break;
+			}
+			long done = System.nanoTime();
+			jitter.record(sent - next.due);
+			latency.record(done - next.due);
+			messages.increment();
+		}
+	}
+
+	/**
+	 * Waits until every message scheduled so far has been sent.
+	 * @throws InterruptedException
+	 */
+	public void drain() throws InterruptedException {
+		while(running && !queue.isEmpty()) {
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Stops playback now. Messages not yet sent are discarded and any scheduling in progress returns.
+	 * Sends all notes off on each channel that was used.
+	 */
+	public void stop() {
+		running = false;
+		LockSupport.unpark(timingThread);
+		try {
+			timingThread.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		queue.clear();
+		for(Integer channel : channels) {
+			try {
+				receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0), -1);
+			}
+			catch(InvalidMidiDataException | RuntimeException e) {
+				log.warn("All notes off failed on channel " + channel + ": " + e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Waits for the messages scheduled so far to be sent, then stops.
+	 */
+	@Override
+	public void close() {
+		try {
+			drain();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		stop();
+	}
+
+	/**
+	 * Prints the number of messages, underruns, and the jitter, latency and look-ahead in microseconds.
+	 * @param ps
+	 */
+	public void printStatistics(PrintStream ps) {
+		ps.printf("playback: %d messages, %d underruns%n", messages.getCount(), underruns.getCount());
+		String format = "%-10s %10s %10s %10s %10s%n";
+		ps.printf(format, "(us)", "mean", "p50", "p99", "max");
+		for(Histogram h : List.of(jitter, latency, lookAhead)) {
+			ps.printf(format, h.getKey().substring("playback.".length()).replace("Nanos", ""),
+					micros(h.getMean()), micros(h.getPercentile(0.5)), micros(h.getPercentile(0.99)), micros(h.getMax()));
+		}
+	}
+
+	private static String micros(double nanos) {
+		return String.format("%.1f", nanos / 1.0e3);
+	}
+
+	public Histogram getJitter() {
+		return jitter;
+	}
+
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	public Histogram getLookAhead() {
+		return lookAhead;
+	}
+
+	public long getUnderruns() {
+		return underruns.getCount();
+	}
+
+	public long getMessageCount() {
+		return messages.getCount();
+	}
+
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	public Receiver getReceiver() {
+		return receiver;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * A message and the System.nanoTime() it's due at. Messages due at the same time are sent
+	 * note offs before note ons, then in the order they were scheduled.
+	 */
+	static class ScheduledMessage implements Comparable<ScheduledMessage> {
+		final long due;
+		final int rank;
+		final long sequenceNumber;
+		final MidiMessage message;
+
+		ScheduledMessage(long due, int rank, long sequenceNumber, MidiMessage message) {
+			this.due = due;
+			this.rank = rank;
+			this.sequenceNumber = sequenceNumber;
+			this.message = message;
+		}
+
+		@Override
+		public int compareTo(ScheduledMessage other) {
+			int c = Long.compare(due - other.due, 0);	// nanoTime values are compared by difference
+			if(c == 0) {
+				c = Integer.compare(rank, other.rank);
+			}
+			return c != 0 ? c : Long.compare(sequenceNumber, other.sequenceNumber);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.dwbzen.music.midi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+
+/**
+ * A Receiver that only counts the messages sent to it, for playback without a MIDI device
+ * (headless tests, or measuring the scheduling of a MidiPlayer by itself).
+ *
+ * @author don_bacon
+ *
+ */
+public class NullReceiver implements Receiver {
+
+	private final AtomicLong messageCount = new AtomicLong();
+	private volatile boolean open = true;
+
+	@Override
+	public void send(MidiMessage message, long timeStamp) {
+		if(!open) {
+			throw new IllegalStateException("Receiver is closed");
+		}
+		messageCount.incrementAndGet();
+	}
+
+	@Override
+	public void close() {
+		open = false;
+	}
+
+	public long getMessageCount() {
+		return messageCount.get();
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+}
@@ -0,0 +1,582 @@
+package org.dwbzen.music.musicxml;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Properties;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.log4j.Logger;
+import org.dwbzen.music.element.Chord;
+import org.dwbzen.music.element.Cleff;
+import org.dwbzen.music.element.Duration;
+import org.dwbzen.music.element.Measurable;
+import org.dwbzen.music.element.Measurable.TieType;
+import org.dwbzen.music.element.Measurable.TupletType;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Note;
+import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.element.PitchClass;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.element.Step;
+import org.dwbzen.music.element.Tempo;
+import org.dwbzen.music.element.direction.Metronome;
+import org.dwbzen.music.element.direction.ScoreDirection;
+import org.dwbzen.music.element.direction.ScoreDirection.ScoreDirectionType;
+import org.dwbzen.music.element.direction.Words;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.instrument.MidiInstrument;
+import org.dwbzen.util.Ratio;
+
+/**
+ * Writes a Score as score-partwise MusicXML directly to an XMLStreamWriter.<br>
+ * Unlike MusicXMLHelper this doesn't build a proxymusic ScorePartwise first, so the memory
+ * used is independent of the length of the score - each measure is written as it's visited.
+ * The elements and values are the same as MusicXMLHelper produces, so the output unmarshals
+ * to an equivalent ScorePartwise. The differences are:
+ * <ul>
+ * <li>the identification encoding is this writer's signature instead of the ProxyMusic one</li>
+ * <li>transposing instrument pitches are transposed as they're written. The Score is not modified</li>
+ * <li>rests in transposing instruments stay rests</li>
+ * </ul>
+ * Select with score.musicxml.writer=stream in config.properties.<br>
+ * The encoding-date is today's date unless score.encoding.date is configured, "none" omits it.
+ * If score.seed is set (by ScoreFarm) it's written as a miscellaneous-field named seed.
+ *
+ * @see http://www.musicxml.com/
+ * @author don_bacon
+ *
+ */
+public class MusicXMLStreamWriter {
+	protected static final org.apache.log4j.Logger log = Logger.getLogger(MusicXMLStreamWriter.class);
+
+	public static final String MUSICXML_VERSION = "3.0";
+	public static final String DOCTYPE = "<!DOCTYPE score-partwise PUBLIC \"-//Recordare//DTD MusicXML 3.0 Partwise//EN\" \"http://www.musicxml.org/dtds/partwise.dtd\">";
+	public static final String SOFTWARE = "org.dwbzen music-framework";
+	static final String INDENT = "  ";
+
+	private Score score;
+	private Properties configProperties = null;
+	private boolean scoreMidi = false;
+	private boolean suppressTempoMarking = false;	// suppress the words - Allegro, Presto etc.
+
+	private XMLStreamWriter writer = null;
+	private int depth = 0;
+
+	public MusicXMLStreamWriter(Score score, Properties props) {
+		this.score = score;
+		this.configProperties = props;
+	}
+
+	/**
+	 *
+	 * @param props configuration Properties
+	 * @return true if score.musicxml.writer=stream
+	 */
+	public static boolean isConfigured(Properties props) {
+		return props != null && props.getProperty("score.musicxml.writer", "proxymusic").equalsIgnoreCase("stream");
+	}
+
+	/**
+	 * Writes the Score as MusicXML. The OutputStream is flushed but not closed.
+	 * @param os OutputStream
+	 * @throws XMLStreamException
+	 */
+	public void write(OutputStream os) throws XMLStreamException {
+		writer = XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8");
+		depth = 0;
+		try {
+			writer.writeStartDocument("UTF-8", "1.0");
+			newLine();
+			writer.writeDTD(DOCTYPE);
+			start("score-partwise");
+			writer.writeAttribute("version", MUSICXML_VERSION);
+			writeWork();
+			writeIdentification();
+			writePartList();
+			int partnum = 1;
+			for(String instrumentName : score.getInstrumentNames()) {
+				writePart(score.getScorePartEntityForInstrument(instrumentName), partnum++);
+			}
+			end();
+			newLine();
+			writer.writeEndDocument();
+			writer.flush();
+		}
+		finally {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	private void writeWork() throws XMLStreamException {
+		start("work");
+		element("work-number", score.getWorkNumber());
+		element("work-title", score.getTitle());
+		end();
+	}
+
+	private void writeIdentification() throws XMLStreamException {
+		start("identification");
+		for(String type : score.getCreators().keySet()) {
+			element("creator", score.getCreators().get(type), "type", type);
+		}
+		element("rights", configProperties.getProperty("copywriteNotice"), "type", "rights");
+		start("encoding");
+		element("software", SOFTWARE);
+		String encodingDate = configProperties.getProperty("score.encoding.date", LocalDate.now().toString());
+		if(!encodingDate.equalsIgnoreCase("none")) {
+			element("encoding-date", encodingDate);
+		}
+		end();
+		String seed = configProperties.getProperty("score.seed");
+		if(seed != null) {
+			start("miscellaneous");
+			element("miscellaneous-field", seed, "name", "seed");
+			end();
+		}
+		end();
+	}
+
+	private void writePartList() throws XMLStreamException {
+		start("part-list");
+		int partnum = 1;
+		int midiChannel = 1;
+		for(String instrumentName : score.getInstrumentNames()) {
+			ScorePartEntity scorePartEntity = score.getScorePartEntityForInstrument(instrumentName);
+			Instrument instrument = scorePartEntity.getInstrument();
+			MidiInstrument midiInstrument = instrument.getMidiInstrument();
+			midiInstrument.setMidiChannel(partnum);
+			String partId = scorePartEntity.getPartId();
+			String scoreInstrumentId = partId + "I" + partnum;
+
+			start("score-part");
+			writer.writeAttribute("id", partId);
+			element("part-name", instrument.getPartName());
+			element("part-abbreviation", instrument.getAbreviation());
+			start("score-instrument");
+			writer.writeAttribute("id", scoreInstrumentId);
+			element("instrument-name", instrument.getInstrumentName());
+			element("instrument-abbreviation", instrument.getAbreviation());
+			element("instrument-sound", instrument.getInstrumentSound());
+			start("virtual-instrument");
+			element("virtual-library", instrument.getVirtualLibrary());
+			element("virtual-name", instrument.getVirtualName());
+			end();
+			end();	// score-instrument
+			if(scoreMidi) {
+				start("midi-instrument");
+				writer.writeAttribute("id", scoreInstrumentId);
+				element("midi-channel", String.valueOf(midiChannel++));
+				element("midi-program", String.valueOf(midiInstrument.getMidiProgram()));
+				element("volume", "80");
+				element("pan", "63");
+				end();
+			}
+			end();	// score-part
+			partnum++;
+		}
+		end();
+	}
+
+	private void writePart(ScorePartEntity scorePartEntity, int partnum) throws XMLStreamException {
+		Instrument instrument = scorePartEntity.getInstrument();
+		start("part");
+		writer.writeAttribute("id", scorePartEntity.getPartId());
+		int measNum = 1;
+		for(Measure measure : scorePartEntity.getMeasures()) {
+			writeMeasure(instrument, measure, measNum++, partnum);
+		}
+		end();
+	}
+
+	private void writeMeasure(Instrument instrument, Measure measure, int measNum, int partnum) throws XMLStreamException {
+		int numberOfStaves = instrument.getNumberOfStaves();
+		start("measure");
+		writer.writeAttribute("number", String.valueOf(measNum));
+		if(measNum == 1) {
+			writer.writeAttribute("implicit", "yes");
+		}
+		if(measure.getDisplayInfo() != null) {
+			for(DisplayInfo displayInfo : measure.getDisplayInfo()) {
+				writePrint(displayInfo);
+			}
+		}
+		Tempo tempo = measure.getTempo();
+		if(measNum == 1) {
+			writeAttributes(instrument, measure);
+			if(!suppressTempoMarking && partnum == 1) {
+				start("direction");
+				writer.writeAttribute("placement", "above");
+				start("direction-type");
+				element("words", Tempo.getTempoMarking(tempo.getBeatsPerMinute()));
+				end();
+				element("staff", "1");
+				emptyElement("sound", "tempo", String.valueOf(tempo.getBeatsPerMinute()));
+				end();
+			}
+		}
+		if(measure.getScoreDirections() != null) {
+			for(ScoreDirection  scoreDirection : measure.getScoreDirections()) {
+				writeScoreDirection(scoreDirection, tempo);
+			}
+		}
+		for(int staffnum = 1; staffnum <= numberOfStaves; staffnum++) {
+			for(Measurable m : measure.getMeasureables(staffnum)) {
+				if(m.getType().equals(Measurable.CHORD)) {
+					/*
+					 * notes in a chord indicated by <chord/> in all the notes following the first one
+					 */
+					boolean inChord = false;
+					for(Note note : ((Chord)m).removeUnisonNotes()) {
+						writeNote(instrument, measure, note, inChord);
+						inChord = true;
+					}
+				}
+				else {
+					writeNote(instrument, measure, (Note)m, false);
+				}
+			}
+			if(staffnum == 1 && numberOfStaves >= 2) {
+				// back up a full measure of units to the beginning of the measure
+				start("backup");
+				element("duration", String.valueOf(measure.getDivisions()));
+				end();
+			}
+		}
+		org.dwbzen.music.element.Barline barline = measure.getBarline();
+		if(barline != null) {
+			start("barline");
+			writer.writeAttribute("location", barline.getLocation());
+			element("bar-style", barline.getStyle());
+			end();
+		}
+		end();
+	}
+
+	private void writePrint(DisplayInfo displayInfo) throws XMLStreamException {
+		start("print");
+		writer.writeAttribute("new-system", displayInfo.isNewSystem() ? "yes" : "no");
+		writer.writeAttribute("new-page", displayInfo.isNewPage() ? "yes" : "no");
+		start("system-layout");
+		start("system-margins");
+		element("left-margin", decimal(displayInfo.getSystem_left_margin()));
+		element("right-margin", decimal(displayInfo.getSystem_right_margin()));
+		end();
+		element("system-distance", decimal(displayInfo.getSystem_distance()));
+		end();
+		start("staff-layout");
+		element("staff-distance", decimal(displayInfo.getStaff_distance()));
+		end();
+		end();
+	}
+
+	/**
+	 * Measure 1 sets Attributes, Staff & Cleff info
+	 */
+	private void writeAttributes(Instrument instrument, Measure measure) throws XMLStreamException {
+		org.dwbzen.music.element.Key key = instrument.isTransposes() ? instrument.getKey() :  measure.getKey();
+		start("attributes");
+		element("divisions", String.valueOf(measure.getDivisions() / measure.getBeatNote()));
+		start("key");
+		element("fifths", String.valueOf(key.getFifths()));
+		element("mode", key.getModeName());
+		end();
+		start("time");
+		element("beats", configProperties.getProperty("score.timeSignature.beatsPerMeasure"));
+		element("beat-type", configProperties.getProperty("score.timeSignature.noteThatGetsTheBeat"));
+		end();
+		element("staves", String.valueOf(instrument.getNumberOfStaves()));
+		writeClefs(instrument);
+		start("staff-details");
+		writer.writeAttribute("number", "1");
+		writer.writeAttribute("print-object", "yes");
+		if(instrument.getPitchClass()==PitchClass.UNPITCHED || instrument.getPitchClass()==PitchClass.DISCRETE_1LINE) {
+			element("staff-lines", "1");
+		}
+		else if(instrument.getPitchClass()==PitchClass.DISCRETE_2LINE) {
+			element("staff-lines", "2");
+		}
+		end();
+		if(instrument.isTransposes()) {
+			// same as MusicXMLHelper - the transpose steps are the negative of the instrument's
+			start("transpose");
+			element("diatonic", String.valueOf(-instrument.getTransposeDiatonicSteps()));
+			element("chromatic", String.valueOf(-instrument.getTransposeChromaticSteps()));
+			if(instrument.getTransposeOctaveChange() != 0) {
+				element("octave-change", String.valueOf(instrument.getTransposeOctaveChange()));
+			}
+			end();
+		}
+		end();
+	}
+
+	private void writeClefs(Instrument instrument) throws XMLStreamException {
+		int clefnumber = 1;
+		for(Cleff clef : instrument.getCleffs()) {
+			String sign = null;
+			int line = 0;
+			switch(clef) {
+			case G:
+			case G8va:
+			case G15va:
+				sign = "G";
+				line = 2;
+				break;
+			case F:
+				sign = "F";
+				line = 4;
+				break;
+			case C:
+				sign = "C";
+				line = 3;
+				break;
+			case F8ma:
+			case F15ma:
+				sign = "F";
+				line = 3;
+				break;
+			case PERCUSSION:
+			case PERCUSSION_2LINE:
+				sign = "percussion";
+				line = 2;
+				break;
+			default:
+				log.error("Invalid Cleff: " + clef);
+			}
+			start("clef");
+			writer.writeAttribute("number", String.valueOf(clefnumber++));
+			element("sign", sign);
+			if(sign != null) {
+				element("line", String.valueOf(line));
+			}
+			if(clef.getOctaveShift() != 0) {
+				element("clef-octave-change", String.valueOf(-1 * clef.getOctaveShift()));
+			}
+			end();
+		}
+	}
+
+	private void writeScoreDirection(ScoreDirection scoreDirection, Tempo tempo) throws XMLStreamException {
+		ScoreDirectionType directionType = scoreDirection.getDirectionType().getScoreDirectionType();
+		if(directionType.equals(ScoreDirectionType.WORDS)) {
+			Words wdt = (Words)scoreDirection.getDirectionType();
+			String placement = scoreDirection.getPlacement();
+			start("direction");
+			writer.writeAttribute("placement", (placement != null && placement.equalsIgnoreCase("below")) ? "below" : "above");
+			start("direction-type");
+			element("words", wdt.getText());
+			end();
+			element("staff", "1");
+			end();
+		}
+		else if(directionType.equals(ScoreDirectionType.METRONOME)) {
+			Metronome mdt = (Metronome)scoreDirection.getDirectionType();
+			start("direction");
+			writer.writeAttribute("placement", "above");
+			start("direction-type");
+			start("metronome");
+			element("beat-unit", Duration.BeatUnitNames[ tempo.getBeatUnit().ordinal()]);
+			element("per-minute", "" + mdt.getBeatsPerMinute());
+			end();
+			end();
+			element("staff", "1");
+			end();
+		}
+	}
+
+	private void writeNote(Instrument instrument, Measure measure, Note note, boolean inChord) throws XMLStreamException {
+		Pitch pitch = note.getPitch();
+		boolean silent = pitch.getStep().equals(Step.SILENT);
+		if(instrument.isTransposes() && !silent) {
+			pitch = pitch.plus(instrument.getTranspositionSteps());
+		}
+		PitchClass pitchClass = instrument.getPitchClass();		// PITCHED, UNPITCHED, DISCRETE_2LINE or DISCRETE_5LINE
+		Duration duration = note.getDuration();
+		int units = duration.getDurationUnits();
+		String nt = note.getNoteType();
+		boolean isTuplet = !duration.isRatioSame();
+		int alt = 0;
+
+		start("note");
+		if(inChord) {
+			emptyElement("chord");
+		}
+		switch(pitchClass) {
+			case UNPITCHED:
+			case DISCRETE_1LINE:
+			case DISCRETE_2LINE:
+				start("unpitched");
+				element("display-step", stepValue(pitch.getStep()));
+				element("display-octave", String.valueOf(pitch.getOctave()));
+				end();
+				break;
+			case DISCRETE_5LINE:
+			case PITCHED:
+				if(silent) {
+					emptyElement("rest", "measure", units == measure.getDivisions() ? "yes" : "no");
+				}
+				else {
+					Cleff currentClef = instrument.getCleffs().get(note.getStaff()-1);
+					alt = pitch.getAlteration();
+					start("pitch");
+					element("step", stepValue(pitch.getStep()));
+					element("alter", String.valueOf(alt));
+					// adjust the pitch Octave if 8va, 15va, 8ma, or 15ma
+					element("octave", String.valueOf(pitch.getOctave() + currentClef.getOctaveShift()));
+					end();
+				}
+		}
+		element("duration", String.valueOf(units));
+		TieType tieType = note.getTieType();
+		boolean tieStart = tieType.equals(TieType.START) || tieType.equals(TieType.BOTH);
+		boolean tieStop = tieType.equals(TieType.STOP) || tieType.equals(TieType.BOTH);
+		if(tieStart) {
+			emptyElement("tie", "type", "start");
+		}
+		if(tieStop) {
+			emptyElement("tie", "type", "stop");
+		}
+		element("voice", String.valueOf(note.getVoice()));
+		if(nt != null && !nt.equals("?")) {
+			element("type", nt);
+		}
+		for(int id=0; id<duration.getDots(); id++) {
+			emptyElement("dot");
+		}
+		if(alt != 0) {
+			element("accidental", alt<0 ? "flat" : "sharp");
+		}
+		if(isTuplet) {
+			Ratio ratio = duration.getRatio();
+			start("time-modification");
+			element("actual-notes", String.valueOf(ratio.getNumberOfNotes()));
+			element("normal-notes", String.valueOf(ratio.getTimeOf()));
+			end();
+		}
+		element("staff", String.valueOf(note.getStaff()));
+		/*
+		 * MusicXMLHelper adds the tuplet notations before the tied notations
+		 */
+		if(isTuplet && note.getTupletType().equals(TupletType.START)) {
+			start("notations");
+			boolean bracket = nt.equalsIgnoreCase("half") || nt.equalsIgnoreCase("quarter") || nt.equalsIgnoreCase("whole");
+			emptyElement("tuplet", "type", "start", "bracket", bracket ? "yes" : "no");
+			end();
+		}
+		else if(isTuplet && note.getTupletType().equals(TupletType.STOP)) {
+			start("notations");
+			emptyElement("tuplet", "type", "stop");
+			end();
+		}
+		if(tieStart || tieStop) {
+			start("notations");
+			if(tieStart) {
+				emptyElement("tied", "type", "start");
+			}
+			if(tieStop) {
+				emptyElement("tied", "type", "stop");
+			}
+			end();
+		}
+		end();	// note
+	}
+
+	private static String stepValue(Step step) {
+		org.audiveris.proxymusic.Step _step = MusicXMLHelper.getStep(step);
+		return _step == null ? null : _step.value();
+	}
+
+	/*
+	 * Same representation as a JAXB BigDecimal
+	 */
+	private static String decimal(double d) {
+		return BigDecimal.valueOf(d).toPlainString();
+	}
+
+	/*
+	 * Indented output, INDENT per level. Elements having a null value are omitted as JAXB does.
+	 */
+	private void newLine() throws XMLStreamException {
+		writer.writeCharacters("\n");
+		for(int i=0; i<depth; i++) {
+			writer.writeCharacters(INDENT);
+		}
+	}
+
+	private void start(String name) throws XMLStreamException {
+		newLine();
+		writer.writeStartElement(name);
+		depth++;
+	}
+
+	private void end() throws XMLStreamException {
+		depth--;
+		newLine();
+		writer.writeEndElement();
+	}
+
+	private void element(String name, String value) throws XMLStreamException {
+		if(value != null) {
+			newLine();
+			writer.writeStartElement(name);
+			writer.writeCharacters(value);
+			writer.writeEndElement();
+		}
+	}
+
+	private void element(String name, String value, String attributeName, String attributeValue) throws XMLStreamException {
+		if(value != null) {
+			newLine();
+			writer.writeStartElement(name);
+			writer.writeAttribute(attributeName, attributeValue);
+			writer.writeCharacters(value);
+			writer.writeEndElement();
+		}
+	}
+
+	private void emptyElement(String name, String... attributes) throws XMLStreamException {
+		newLine();
+		writer.writeEmptyElement(name);
+		for(int i=0; i+1<attributes.length; i+=2) {
+			writer.writeAttribute(attributes[i], attributes[i+1]);
+		}
+	}
+
+	public Score getScore() {
+		return score;
+	}
+
+	public void setScore(Score score) {
+		this.score = score;
+	}
+
+	public Properties getConfigProperties() {
+		return configProperties;
+	}
+
+	public void setConfigProperties(Properties configProperties) {
+		this.configProperties = configProperties;
+	}
+
+	public boolean isScoreMidi() {
+		return scoreMidi;
+	}
+
+	public void setScoreMidi(boolean scoreMidi) {
+		this.scoreMidi = scoreMidi;
+	}
+
+	public boolean isSuppressTempoMarking() {
+		return suppressTempoMarking;
+	}
+
+	public void setSuppressTempoMarking(boolean suppressTempoMarking) {
+		this.suppressTempoMarking = suppressTempoMarking;
+	}
+
+}
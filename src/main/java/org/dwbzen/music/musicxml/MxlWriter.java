@@ -0,0 +1,135 @@
+package org.dwbzen.music.musicxml;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes a compressed MusicXML (.mxl) archive.<br>
+ * The archive has the mimetype entry (stored), META-INF/container.xml that names
+ * the root file, and the root file itself. The score XML is written straight into the zip
+ * through getOutputStream(), so the uncompressed document is never held in memory or on disk.
+ * <pre>
+ * try(MxlWriter mxl = new MxlWriter(new FileOutputStream("score.mxl"), "score.xml", 9)) {
+ *     new MusicXMLStreamWriter(score, props).write(mxl.getOutputStream());
+ * }
+ * </pre>
+ *
+ * @see https://www.w3.org/2021/06/musicxml40/tutorial/compressed-mxl-files/
+ * @author don_bacon
+ *
+ */
+public class MxlWriter implements Closeable {
+	protected static final org.apache.log4j.Logger log = Logger.getLogger(MxlWriter.class);
+
+	public static final String MIMETYPE = "application/vnd.recordare.musicxml";
+	public static final String MIMETYPE_ENTRY_NAME = "mimetype";
+	public static final String CONTAINER_ENTRY_NAME = "META-INF/container.xml";
+	public static final String ROOTFILE_MEDIA_TYPE = "application/vnd.recordare.musicxml+xml";
+
+	private ZipOutputStream zos;
+	private OutputStream entryStream;
+	private String rootFileName;
+
+	/**
+	 * Writes the mimetype and container entries and opens the root file entry.
+	 * @param os OutputStream to write the archive to. It's closed when this is closed.
+	 * @param rootFileName name of the score entry in the archive, for example score.xml
+	 * @param compressionLevel 0 to 9, or -1 (Deflater.DEFAULT_COMPRESSION)
+	 * @throws IOException
+	 */
+	public MxlWriter(OutputStream os, String rootFileName, int compressionLevel) throws IOException {
+		this.rootFileName = rootFileName;
+		zos = new ZipOutputStream(os);
+		zos.setLevel(compressionLevel);
+
+		// the mimetype entry must be first and uncompressed
+		byte[] mimetype = MIMETYPE.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(mimetype);
+		ZipEntry mimetypeEntry = new ZipEntry(MIMETYPE_ENTRY_NAME);
+		mimetypeEntry.setMethod(ZipEntry.STORED);
+		mimetypeEntry.setSize(mimetype.length);
+		mimetypeEntry.setCompressedSize(mimetype.length);
+		mimetypeEntry.setCrc(crc.getValue());
+		zos.putNextEntry(mimetypeEntry);
+		zos.write(mimetype);
+		zos.closeEntry();
+
+		zos.putNextEntry(new ZipEntry(CONTAINER_ENTRY_NAME));
+		zos.write(getContainer(rootFileName).getBytes(StandardCharsets.UTF_8));
+		zos.closeEntry();
+
+		zos.putNextEntry(new ZipEntry(rootFileName));
+		// writers may close the stream they're given, that must not close the archive
+		entryStream = new FilterOutputStream(zos) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	public MxlWriter(OutputStream os, String rootFileName) throws IOException {
+		this(os, rootFileName, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public static String getContainer(String rootFileName) {
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<container>\n");
+		sb.append("  <rootfiles>\n");
+		sb.append("    <rootfile full-path=\"").append(rootFileName).append("\" media-type=\"").append(ROOTFILE_MEDIA_TYPE).append("\"/>\n");
+		sb.append("  </rootfiles>\n");
+		sb.append("</container>\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the root file name for an .mxl file name, for example C:/scores/score20200910.mxl gives score20200910.xml
+	 * @param mxlFileName
+	 * @return root file name
+	 */
+	public static String getRootFileName(String mxlFileName) {
+		String name = mxlFileName.replace('\\', '/');
+		name = name.substring(name.lastIndexOf('/') + 1);
+		int ind = name.lastIndexOf('.');
+		return (ind > 0 ? name.substring(0, ind) : name) + ".xml";
+	}
+
+	/**
+	 *
+	 * @return OutputStream for the score XML
+	 */
+	public OutputStream getOutputStream() {
+		return entryStream;
+	}
+
+	public String getRootFileName() {
+		return rootFileName;
+	}
+
+	/**
+	 * Closes the root file entry, finishes the archive and closes the underlying OutputStream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(zos != null) {
+			zos.closeEntry();
+			zos.close();
+			zos = null;
+			log.debug("closed mxl archive " + rootFileName);
+		}
+	}
+}
@@ -8,6 +8,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.log4j.Logger;
 import org.dwbzen.music.IScoreFactory;
 import org.dwbzen.music.ScoreFactory;
@@ -296,9 +298,6 @@ public class ScoreBuilder {
     }
 
 	public static void createXML(String filename, Score score,  Configuration config) {
-		MusicXMLHelper helper = new MusicXMLHelper(score, config.getProperties());
-		helper.setSuppressTempoMarking(true);
-		helper.convert();	// creates and returns a com.audiveris.proxymusic.ScorePartwise
 		PrintStream ps = System.out;
 		if(filename != null) {
 			try {
@@ -308,7 +307,22 @@ public class ScoreBuilder {
 				log.warn(filename + " not available. Marshall to System.out");
 			}
 		}
-		helper.marshall(ps);	// marshals the ScorePartwise instance to an XML file
+		if(MusicXMLStreamWriter.isConfigured(config.getProperties())) {
+			MusicXMLStreamWriter writer = new MusicXMLStreamWriter(score, config.getProperties());
+			writer.setSuppressTempoMarking(true);
+			try {
+				writer.write(ps);
+			}
+			catch(XMLStreamException e) {
+				log.error("Could not write MusicXML because " + e.toString());
+			}
+		}
+		else {
+			MusicXMLHelper helper = new MusicXMLHelper(score, config.getProperties());
+			helper.setSuppressTempoMarking(true);
+			helper.convert();	// creates and returns a com.audiveris.proxymusic.ScorePartwise
+			helper.marshall(ps);	// marshals the ScorePartwise instance to an XML file
+		}
 		if(filename != null) {
 			ps.close();
 		}
@@ -1,12 +1,12 @@
 package org.dwbzen.music.transform;
 
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.log4j.Logger;
 import org.dwbzen.common.math.IntegerPair;
 import org.dwbzen.common.util.IJson;
 import org.dwbzen.music.element.PitchRange;
+import org.dwbzen.util.SeededRandom;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -15,7 +15,6 @@ public abstract class AbstractExploder implements IJson, IExploder {
 
 	protected static final org.apache.log4j.Logger log = Logger.getLogger(ExplodeTransformer.class);
 		
-	@JsonIgnore				private ThreadLocalRandom random = ThreadLocalRandom.current();
 	@JsonProperty("name")		protected String name;
 	@JsonProperty("type")		protected ExploderType exploderType = null;	// ARPEGIO or CHORD
 	@JsonProperty("formula")	protected List<IntegerPair> formula = null;
@@ -70,8 +69,9 @@ public abstract class AbstractExploder implements IJson, IExploder {
 		this.pitchRange = pitchRange;
 	}
 	
-	public ThreadLocalRandom getRandom() {
-		return random;
+	@JsonIgnore
+	public SeededRandom getRandom() {
+		return SeededRandom.current();	// the calling thread's, exploders can be used on more than one thread
 	}
 
 	public String getName() {
@@ -15,9 +15,7 @@ import org.dwbzen.music.element.Measurable;
 import org.dwbzen.music.element.Measurable.TupletType;
 import org.dwbzen.music.element.Measure;
 import org.dwbzen.music.element.Note;
-import org.dwbzen.music.element.Score;
 import org.dwbzen.music.element.ScorePartEntity;
-import org.dwbzen.music.instrument.Instrument;
 import org.dwbzen.music.transform.IExploder.ExploderType;
 import org.dwbzen.util.Configuration;
 
@@ -31,11 +29,15 @@ import org.dwbzen.util.Configuration;
  * @author don_bacon
  *
  */
-public class ExplodeTransformer  extends Transformer {
+public class ExplodeTransformer  extends Transformer implements IPartTransformer {
 	protected static final org.apache.log4j.Logger log = Logger.getLogger(ExplodeTransformer.class);
-	public static Map<ExploderType, Map<String, IExploder>> mappedExploders = new HashMap<ExploderType, Map<String, IExploder>>();
 	public final static String formulaNames = "score.transformers.ExplodeTransformer.formulaNames.";
 	
+	/*
+	 * The builtin (mapped) exploders by ExploderType and name. Each ExplodeTransformer has its own
+	 * so that flows running at the same time don't share them.
+	 */
+	private Map<ExploderType, Map<String, IExploder>> mappedExploders = new HashMap<ExploderType, Map<String, IExploder>>();
 	private List<IExploder> noteExploders = new ArrayList<IExploder>();		// all the NoteExploders
 	/*
 	 * The ARPEGIO NoteExploders that can be selected and applied
@@ -59,12 +61,10 @@ public class ExplodeTransformer  extends Transformer {
 	 *  if true, breaks ties when forming chords
 	 */
 	private boolean breakChordTies = false;
-
 	
-	static {	// initialize the builtin exploder maps
-		mappedExploders.put(ExploderType.ARPEGIO, new HashMap<String, IExploder>());
-		mappedExploders.put(ExploderType.CHORD, new HashMap<String, IExploder>());		
-	}
+	private String partname = null;			// part being transformed
+	private int numberOfMeasures = 0;		// measures transformed in this part
+
 	
 	/**
 	 * Quick test
@@ -85,6 +85,8 @@ public class ExplodeTransformer  extends Transformer {
 	 * Adding to  Map<ExploderType, Map<String, IExploder>> (the String is the exploder name)
 	 */
 	public ExplodeTransformer() {
+		mappedExploders.put(ExploderType.ARPEGIO, new HashMap<String, IExploder>());
+		mappedExploders.put(ExploderType.CHORD, new HashMap<String, IExploder>());
 		addBuiltinExploders();
 		noteExplodersSelectionMap.put(ExploderType.ARPEGIO, noteExplodersSelectionArpegio);
 		noteExplodersSelectionMap.put(ExploderType.CHORD, noteExplodersSelectionChord);
@@ -117,95 +119,96 @@ public class ExplodeTransformer  extends Transformer {
 		return noteExplodersSelectionMap;
 	}
 
+	public Map<ExploderType, Map<String, IExploder>> getMappedExploders() {
+		return mappedExploders;
+	}
+
 	@Override
 	public void transform(Layer layer) {
-		Score score = layer.getScore();
-		Map<String, ScorePartEntity> scoreParts = null;
-		ScorePartEntity scorePartEntity = null;
+		TransformerPipeline.sequential(this).transform(layer);
+	}
+
+	/**
+	 * Exploding inserts Measurables into the Measure.
+	 */
+	@Override
+	public Scope getScope() {
+		return Scope.MEASURE;
+	}
+
+	@Override
+	public void startPart(ScorePartEntity scorePartEntity) {
+		partname = scorePartEntity.getPartName();
+		numberOfMeasures = 0;
+		// PitchRange pitchRange = instrument.getPitchRange();
+		log.info("ExplodeTransformer " + partname + " " + scorePartEntity.getMeasures().size() + " measures.");
+	}
+
+	@Override
+	public void transform(Measure measure) {
 		NoteExploder noteExploder = null;
 		ChordExploder chordExploder = null;
-		if(score != null) {	// if Score layer
-			scoreParts = score.getParts();
-		}
-		else {				// if ScorePartEntity layer
-			scoreParts = new HashMap<String, ScorePartEntity>();
-			scorePartEntity = layer.getScorePartEntity();
-			scoreParts.put(scorePartEntity.getPartName(), scorePartEntity);
-		}
-		for(String partname : scoreParts.keySet()) {
-			scorePartEntity = scoreParts.get(partname);
-			Instrument instrument = scorePartEntity.getInstrument();
-			/*
-			 * Check if transformer is instrument-specific
-			 */
-			if(getInstrument() != null && !getInstrument().equals(instrument)) {
-				continue;	// to next part as this transformer doesn't apply
+		int size = 0;
+		int totalDur = 0;
+		int divisions = measure.getDivisions();
+		int measureNum = measure.getNumber();
+		List<Measurable> measurables = measure.getMeasureables();
+		int measureSize = measurables.size();
+		for(int index=0; index<measureSize; index++) {
+			Measurable measurable = measurables.get(index);
+			Duration duration = measurable.getDuration();
+			int units = duration.getDurationUnits();
+			if(duration.isRatioSame()) {
+				totalDur += duration.getDurationUnits();
 			}
-			// PitchRange pitchRange = instrument.getPitchRange();
-			List<Measure> measures = scorePartEntity.getMeasures();
-			int len = measures.size();
-			log.info("ExplodeTransformer " + partname + " " + len + " measures.");
-			int size = 0;
-			int numberOfMeasures = 0;
-			for(Measure measure : measures) {
-				int totalDur = 0;
-				int divisions = measure.getDivisions();
-				int measureNum = measure.getNumber();
-				List<Measurable> measurables = measure.getMeasureables();
-				int measureSize = measurables.size();
-				for(int index=0; index<measureSize; index++) {
-					Measurable measurable = measurables.get(index);
-					Duration duration = measurable.getDuration();
-					int units = duration.getDurationUnits();
-					if(duration.isRatioSame()) {
-						totalDur += duration.getDurationUnits();
-					}
-					else if (duration.isTuplet() && measurable.getTupletType().equals(TupletType.START)) {
-						// if a tuplet the same duration is in each tuplet note
-						// so only add the duration of the START * #normal notes
-						totalDur += duration.getDurationUnits() * duration.getInTheTimeOfNotes();
+			else if (duration.isTuplet() && measurable.getTupletType().equals(TupletType.START)) {
+				// if a tuplet the same duration is in each tuplet note
+				// so only add the duration of the START * #normal notes
+				totalDur += duration.getDurationUnits() * duration.getInTheTimeOfNotes();
+			}
+			noteExploder = pickNoteExploder();		// could be null
+			size = (noteExploder == null) ? 0 : noteExploder.size();
+			if(size > 0 && units >= size && units%size == 0 ) {
+				if( measurable instanceof Note && noteExploder != null ) {
+					Note note = (Note)measurable;
+					log.debug("explode note " + note.toString());
+					/*
+					 * Explodes the note into an ARPEGIO of n-notes
+					 * or a CHORD in which case notes.size() == 1 and the Measurable is a Chord instance
+					 * The NoteExploders are shared by the parts this ExplodeTransformer may be running on at the same time.
+					 */
+					List<Measurable> notes = null;
+					synchronized(noteExploder) {
+						noteExploder.setBreakChordTies(breakChordTies);	// yes I know it's redundant
+						notes = noteExploder.explode(note, measure);
 					}
-					noteExploder = pickNoteExploder();		// could be null
-					size = (noteExploder == null) ? 0 : noteExploder.size();
-					if(size > 0 && units >= size && units%size == 0 ) {
-						if( measurable instanceof Note && noteExploder != null ) {
-							noteExploder.setBreakChordTies(breakChordTies);	// yes I know it's redundant
-							Note note = (Note)measurable;
-							log.debug("explode note " + note.toString());
-							/*
-							 * Explodes the note into an ARPEGIO of n-notes
-							 * or a CHORD in which case notes.size() == 1 and the Measurable is a Chord instance
-							 */
-							List<Measurable> notes = noteExploder.explode(note, measure);
-							/*
-							 * Possible did not explode this note - depending on the explode rules
-							 * If we did, then insert the notes in place of the exploded one
-							 * Otherwise there's nothing to do
-							 */
-							if(notes.size() > 0) {
-								measureSize+=(notes.size()-1);
-								index = measure.insert(notes, index);
-							}
-						}
-						else if( measurable instanceof Chord && chordExploder != null) {
-							Chord chord = (Chord)measurable;
-							log.debug("explode chord " + chord.toString());
-							// TODO - how DO we explode a chord?
-							// TODO I know - apply the formula to each note in the chord
-							List<Measurable> chords = chordExploder.explode(chord, measure);
-							measureSize+=(chords.size()-1);
-							index = measure.insert(chords, index);
-						}
+					/*
+					 * Possible did not explode this note - depending on the explode rules
+					 * If we did, then insert the notes in place of the exploded one
+					 * Otherwise there's nothing to do
+					 */
+					if(notes.size() > 0) {
+						measureSize+=(notes.size()-1);
+						index = measure.insert(notes, index);
 					}
-				}	// done with this Measure
-				if(divisions != totalDur) {
-					log.warn("ExplodeTransformer divisions don't match for part " + partname + " measure: " +
-							  measureNum + " divisions: " + divisions + " totalDur: " + totalDur);
 				}
-				numberOfMeasures++;
-				log.info("measure " + measure.getNumber() + " complete. #measures: " + numberOfMeasures);
+				else if( measurable instanceof Chord && chordExploder != null) {
+					Chord chord = (Chord)measurable;
+					log.debug("explode chord " + chord.toString());
+					// TODO - how DO we explode a chord?
+					// TODO I know - apply the formula to each note in the chord
+					List<Measurable> chords = chordExploder.explode(chord, measure);
+					measureSize+=(chords.size()-1);
+					index = measure.insert(chords, index);
+				}
 			}
+		}	// done with this Measure
+		if(divisions != totalDur) {
+			log.warn("ExplodeTransformer divisions don't match for part " + partname + " measure: " +
+					  measureNum + " divisions: " + divisions + " totalDur: " + totalDur);
 		}
+		numberOfMeasures++;
+		log.info("measure " + measure.getNumber() + " complete. #measures: " + numberOfMeasures);
 	}
 	
 	public void createAndAddNoteExploder(ExploderType exptype, List<IntegerPair> explodeFormula, int freq, String name) {
@@ -213,7 +216,7 @@ public class ExplodeTransformer  extends Transformer {
 	}
 
 	/**
-	 * Creates a NoteExploder of a given type and adds it to the static 
+	 * Creates a NoteExploder of a given type and adds it to this ExplodeTransformer's
 	 * Map<ExploderType, Map<String, IExploder>> mappedExploders
 	 * @param exptype
 	 * @param explodeFormula
@@ -268,7 +271,7 @@ public class ExplodeTransformer  extends Transformer {
 		 * pick a number from 0 to 99
 		 */
 		List<NoteExploder> noteExplodersSelection = noteExplodersSelectionMap.get(exploderType);
-		int pick = random.nextInt(0, 100);
+		int pick = getRandom().nextInt(0, 100);
 		NoteExploder noteExploder = (pick >= noteExplodersSelection.size()) ? null : noteExplodersSelection.get(pick);
 		return noteExploder;
 	}
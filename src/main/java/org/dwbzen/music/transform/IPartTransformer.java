@@ -0,0 +1,69 @@
+package org.dwbzen.music.transform;
+
+import org.dwbzen.music.element.Measurable;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.ScorePartEntity;
+
+/**
+ * A transformer that works one part at a time, in measure order.<br>
+ * For each part it applies to, the transformer gets startPart, then for each Measure:
+ * startMeasure, transform(Measure) or transform(Measurable, Measure) for each Measurable, endMeasure.
+ * And finally endPart.<br>
+ * A MEASURABLE transformer must not add or remove Measurables - that's a MEASURE transformer.
+ * A transformer only sees one part at a time, but a TransformerPipeline may run
+ * different transformers on different parts concurrently.
+ * 
+ * @author don_bacon
+ *
+ */
+public interface IPartTransformer extends ITransformer {
+
+	/**
+	 * 
+	 * @param scorePartEntity
+	 * @return true if this transformer applies to the part
+	 */
+	default boolean appliesTo(ScorePartEntity scorePartEntity) {
+		return getInstrument() == null || getInstrument().equals(scorePartEntity.getInstrument());
+	}
+	
+	default void startPart(ScorePartEntity scorePartEntity) {
+	}
+	
+	default void startMeasure(Measure measure) {
+	}
+	
+	/**
+	 * Transforms a Measure. Used by MEASURE scope transformers.
+	 * @param measure
+	 */
+	default void transform(Measure measure) {
+	}
+	
+	/**
+	 * Transforms a single Measurable. Used by MEASURABLE scope transformers.
+	 * @param measurable
+	 * @param measure the Measure containing measurable
+	 */
+	default void transform(Measurable measurable, Measure measure) {
+	}
+	
+	default void endMeasure(Measure measure) {
+	}
+	
+	default void endPart(ScorePartEntity scorePartEntity) {
+	}
+	
+	/**
+	 * An independent transformer reads and changes only the Measure (or Measurable) it's given,
+	 * and doesn't draw random numbers. State it keeps from one Measure to the next is its own business.
+	 * Independent transformers can be fused into a single traversal of a part with the same result
+	 * as applying them one after the other. A transformer that looks at the notes tied to or from
+	 * the neighbouring Measures, or uses getRandom(), is not independent.
+	 * @return false by default
+	 */
+	default boolean isIndependent() {
+		return false;
+	}
+
+}
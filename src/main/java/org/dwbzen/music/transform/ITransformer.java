@@ -20,6 +20,22 @@ public interface ITransformer extends Consumer<Layer> {
 	String getTransformerClassName();
 	void setTransformerClassName(String cname);
 	
+	/**
+	 * The unit of work a transformer does. MEASURABLE and MEASURE transformers implement IPartTransformer
+	 * and those that are independent can be fused into a single traversal of each part by a TransformerPipeline.
+	 * @return Scope, SCORE by default
+	 */
+	default Scope getScope() {
+		return Scope.SCORE;
+	}
+	
+	public static enum Scope {
+		MEASURABLE(0), MEASURE(1), SCORE(2);
+		Scope(int val)  { this.value = val;}
+		private final int value;
+	    public int value() { return value; }
+	}
+	
 	public static enum Preference {
 		Up(0), Down(1), Random(2);
 		Preference(int val)  { this.value = val;}
@@ -0,0 +1,59 @@
+package org.dwbzen.music.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dwbzen.music.IMeasureSink;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.ScorePartEntity;
+
+/**
+ * Transforms the Measures of a part as they're scored, then passes them on to the next IMeasureSink.<br>
+ * The transformers are applied the same way TransformerPipeline applies independent transformers to a whole part,
+ * so each must apply to this part only, and if there's more than one they must all be independent.
+ * They run on the ScorePart's thread with its SeededRandom.
+ *
+ * @author don_bacon
+ *
+ */
+public class PartTransformerSink implements IMeasureSink {
+
+	private List<IPartTransformer> stages = new ArrayList<IPartTransformer>();
+	private IMeasureSink next;
+
+	/**
+	 *
+	 * @param stages the IPartTransformers for the part, in the order they're applied
+	 * @param next the sink that gets the transformed Measures
+	 */
+	public PartTransformerSink(List<IPartTransformer> stages, IMeasureSink next) {
+		this.stages.addAll(stages);
+		this.next = next;
+	}
+
+	@Override
+	public void startPart(ScorePartEntity scorePartEntity) {
+		for(IPartTransformer transformer : stages) {
+			transformer.startPart(scorePartEntity);
+		}
+		next.startPart(scorePartEntity);
+	}
+
+	@Override
+	public void accept(ScorePartEntity scorePartEntity, Measure measure) {
+		TransformerPipeline.transformMeasure(measure, stages);
+		next.accept(scorePartEntity, measure);
+	}
+
+	@Override
+	public void endPart(ScorePartEntity scorePartEntity) {
+		for(IPartTransformer transformer : stages) {
+			transformer.endPart(scorePartEntity);
+		}
+		next.endPart(scorePartEntity);
+	}
+
+	public List<IPartTransformer> getStages() {
+		return stages;
+	}
+}
@@ -1,6 +1,7 @@
 package org.dwbzen.music.transform;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -11,6 +12,7 @@ import java.util.TreeMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.dwbzen.common.math.Matrix;
+import org.dwbzen.music.element.Alteration;
 import org.dwbzen.music.element.Chord;
 import org.dwbzen.music.element.Duration;
 import org.dwbzen.music.element.IMeasurableContainer;
@@ -24,7 +26,6 @@ import org.dwbzen.music.element.PitchClass;
 import org.dwbzen.music.element.PitchRange;
 import org.dwbzen.music.element.Scale;
 import org.dwbzen.music.element.Scales;
-import org.dwbzen.music.element.Score;
 import org.dwbzen.music.element.ScorePartEntity;
 import org.dwbzen.music.instrument.Instrument;
 import org.dwbzen.util.music.ScaleManager;
@@ -51,7 +52,7 @@ import org.dwbzen.util.music.ScaleManager;
  * @author don_bacon
  *
  */
-public class ScaleTransformer extends Transformer {
+public class ScaleTransformer extends Transformer implements IPartTransformer {
 	protected static final Logger log = LogManager.getLogger(ScaleTransformer.class);
 	static Map<Integer, List<Pitch>> percussionStaffPitches = new HashMap<Integer, List<Pitch>>();
 	static Pitch E4 = new Pitch("E4");
@@ -68,7 +69,7 @@ public class ScaleTransformer extends Transformer {
 	private Preference preference = Preference.Up;
 	private boolean tied = false;	// global flag to prevent messing up tied notes
 	private Pitch tiedPitch = null;	// global pitch set on START tie
-	private boolean showMappings = true;	// log message showing how a pitch is mapped up/down
+	private boolean showMappings = true;	// debug log message showing how a pitch is mapped up/down
 	/*
 	 * Key to use for a given instrument
 	 * will be the same as transformKey for non-transposing
@@ -77,15 +78,23 @@ public class ScaleTransformer extends Transformer {
 
 
 	private PitchRange pitchRange = null;	// set for each Instrument
+	private String partname = null;			// part being transformed
+	private int totalDur = 0;				// sum of note durations for the current measure
 	
 	/**
-	 * Pitch mapping for UP preference
+	 * Pitch mapping for UP and DOWN preference compiled to tables indexed by MIDI number
+	 * (rangeStep + 12) of the source pitch. Each entry is the MIDI number of the mapped pitch, or -1 if not mapped.
 	 */
-	private Map<Pitch, Pitch> transformMapUP = new TreeMap<Pitch, Pitch>();
+	private int[] transformTableUP = new int[128];
+	private int[] transformTableDOWN = new int[128];
 	/**
-	 * Pitch mapping for DOWN preference
+	 * The spelling (SHARP, FLAT or NONE) of each pitch class (0 = C) of the mapped pitches.
+	 * Mapped pitches that can't be spelled that way - Cb, E#, octave-neutral and so on - are kept
+	 * as is in the spelled arrays, which are null until needed.
 	 */
-	private Map<Pitch, Pitch> transformMapDOWN = new TreeMap<Pitch, Pitch>();
+	private Alteration[] spelling = new Alteration[12];
+	private Pitch[] spelledUP = null;
+	private Pitch[] spelledDOWN = null;
 	
 	/**
 	 * Octave adjustment if any for each Pitch: 0 (none), 1 (+1 octave), -1 (down 1 octave)
@@ -137,117 +146,100 @@ public class ScaleTransformer extends Transformer {
 	
 	@Override
 	public void transform(Layer layer) {
-		Score score = layer.getScore();
-		Map<String, ScorePartEntity> scoreParts = null;
-		ScorePartEntity scorePartEntity = null;
-		if(score != null) {	// if Score layer
-			scoreParts = score.getParts();
-		}
-		else {				// if ScorePartEntity layer
-			scoreParts = new HashMap<String, ScorePartEntity>();
-			scorePartEntity = layer.getScorePartEntity();
-			scoreParts.put(scorePartEntity.getPartName(), scorePartEntity);
-		}
-		for(String partname : scoreParts.keySet()) {
-			scorePartEntity = scoreParts.get(partname);
-			Instrument partInstrument = scorePartEntity.getInstrument();
+		TransformerPipeline.sequential(this).transform(layer);
+	}
+
+	/**
+	 * Each Note and Chord is transformed on its own.
+	 */
+	@Override
+	public Scope getScope() {
+		return Scope.MEASURABLE;
+	}
+
+	/**
+	 * The tiedPitch carried to the next Measure is set by this transformer, so it's independent
+	 * unless the Preference is Random.
+	 */
+	@Override
+	public boolean isIndependent() {
+		return preference != Preference.Random;
+	}
+
+	@Override
+	public void startPart(ScorePartEntity scorePartEntity) {
+		partname = scorePartEntity.getPartName();
+		transformKey = scorePartEntity.getScoreKey();
+		transposeTransformKey = transformKey;	// TODO - handle transposing instruments if needed
+		log.info("ScaleTransformer " + partname + " " + scorePartEntity.getMeasures().size() + " measures. transform scale: " + transformScale);
+	}
+
+	@Override
+	public void startMeasure(Measure measure) {
+		measure.setKey(transposeTransformKey);
+		totalDur = 0;
+	}
+
+	@Override
+	public void transform(Measurable measurable, Measure measure) {
+		Duration duration = measurable.getDuration();
+		totalDur += duration.getDurationUnits();
+		if(measurable instanceof Note) {
+			transformTiedNote((Note)measurable);
+		}
+		else if(measurable instanceof Chord) {
+			Chord chord = (Chord)measurable;
+			log.debug("transform " + chord.toString());
 			/*
-			 * Check if transformer is instrument-specific
+			 * transform each note individually
+			 * Handle ties before transforming the note
+			 * In order to keep tied Pitches consistent
 			 */
-			if(getInstrument() != null && !instrument.equals(partInstrument)) {
-				continue;	// to next part as this transformer doesn't apply
+			Iterator<Note> it = chord.getNotes().iterator();
+			while(it.hasNext()) {
+				transformTiedNote(it.next());
 			}
-			transformKey = scorePartEntity.getScoreKey();
-			transposeTransformKey = transformKey;	// TODO - handle transposing instruments if needed
-			
-			List<Measure> measures = scorePartEntity.getMeasures();
-			int len = measures.size();
-			log.info("ScaleTransformer " + partname + " " + len + " measures. transform scale: " + transformScale);
-			
-			for(Measure measure : measures) {
-				measure.setKey(transposeTransformKey);
-				int totalDur = 0;							// sum of note durations for this measure
-				int divisions = measure.getDivisions();		// units allowed - from RhythmScale
-				int measureNum = measure.getNumber();
-				List<Measurable> measurables = measure.getMeasureables();
-				for(Measurable measurable : measurables) {
-					Duration duration = measurable.getDuration();
-					int durationUnits = duration.getDurationUnits();
-					totalDur += durationUnits;
-					if(measurable instanceof Note) {
-						Note note = (Note)measurable;
-						/*
-						 * Handle ties before transforming the note
-						 */
-						if(note.getTieType().equals(TieType.STOP)) {
-							setTied(false);
-							if(tiedPitch == null) {
-								log.warn("invalid tiedPitch: " + " note: " + note);
-								continue;
-							}
-							note.setPitch(new Pitch(tiedPitch));
-							log.trace(" tied to\t" + note.toString());
-							continue;
-						}
-						else if(note.getTieType().equals(TieType.BOTH)) {
-							note.setPitch(new Pitch(tiedPitch));
-							log.trace(" tied to\t" + note.toString());
-							continue;			
-						}
-						transformNote(note);
-						/*
-						 * Again look at ties
-						 */
-						if(note.getTieType().equals(TieType.START)) {
-							setTied(true);
-							setTiedPitch(note.getPitch());
-						}
-					}
-					else if(measurable instanceof Chord) {
-						Chord chord = (Chord)measurable;
-						log.debug("transform " + chord.toString());
-						/*
-						 * transform each note individually
-						 */
-						Iterator<Note> it = chord.getNotes().iterator();
-						while(it.hasNext()) {
-							Note note = it.next();
-							/*
-							 * Handle ties before transforming the note
-							 * In order to keep tied Pitches consistent
-							 */
-							if(note.getTieType().equals(TieType.STOP)) {
-								if(tiedPitch == null) {
-									log.warn("invalid tiedPitch: " + " note: " + note);
-									continue;
-								}
-								note.setPitch(new Pitch(tiedPitch));
-								log.trace(" tied to\t" + note.toString());
-								continue;
-							}
-							else if(note.getTieType().equals(TieType.BOTH)) {
-								note.setPitch(new Pitch(tiedPitch));
-								log.trace(" tied to\t" + note.toString());
-								continue;							
-							}
-							transformNote(note);
-							/*
-							 * Again look at ties
-							 */
-							if(note.getTieType().equals(TieType.START)) {
-								setTied(true);
-								setTiedPitch(note.getPitch());
-							}
-						}
-						log.debug("--- after: " + chord);
-					}
-				}
-				if(divisions != totalDur) {
-					log.warn("ScaleTransformer incorrect total divisions part " + partname + " measure: " +
-							  measureNum + " divisions: " + divisions + " totalDur: " + totalDur);
-				}
-				log.debug("measure " + measure.getNumber() + " complete");
+			log.debug("--- after: " + chord);
+		}
+	}
+
+	@Override
+	public void endMeasure(Measure measure) {
+		int divisions = measure.getDivisions();		// units allowed - from RhythmScale
+		if(divisions != totalDur) {
+			log.warn("ScaleTransformer incorrect total divisions part " + partname + " measure: " +
+					  measure.getNumber() + " divisions: " + divisions + " totalDur: " + totalDur);
+		}
+		log.debug("measure " + measure.getNumber() + " complete");
+	}
+
+	/**
+	 * Handles ties before and after transforming the note
+	 * @param note
+	 */
+	private void transformTiedNote(Note note) {
+		if(note.getTieType().equals(TieType.STOP)) {
+			setTied(false);
+			if(tiedPitch == null) {
+				log.warn("invalid tiedPitch: " + " note: " + note);
+				return;
 			}
+			note.setPitch(new Pitch(tiedPitch));
+			log.trace(" tied to\t" + note.toString());
+			return;
+		}
+		else if(note.getTieType().equals(TieType.BOTH)) {
+			note.setPitch(new Pitch(tiedPitch));
+			log.trace(" tied to\t" + note.toString());
+			return;
+		}
+		transformNote(note);
+		/*
+		 * Again look at ties
+		 */
+		if(note.getTieType().equals(TieType.START)) {
+			setTied(true);
+			setTiedPitch(note.getPitch());
 		}
 	}
 
@@ -261,44 +253,43 @@ public class ScaleTransformer extends Transformer {
 	public void transformNote(Note note) {
 		
 		Preference pref = preference;
-		if(preference==Preference.Random && random != null) {
-			pref = (random.nextInt(2)==0) ? Preference.Up : Preference.Down;
+		if(preference==Preference.Random) {
+			pref = (getRandom().nextInt(2)==0) ? Preference.Up : Preference.Down;
 		}
 		log.trace("*** transform " + note);
 		Pitch notePitch = note.getPitch();
-		Pitch closestUp = transformMapUP.get(notePitch);
-		Pitch closestDown = transformMapDOWN.get(notePitch);
-		if(closestUp == null) {
-			System.out.println(notePitch.toString());
+		int midi = notePitch.getMidiNumber();
+		if(midi < 0 || midi >= transformTableUP.length || transformTableUP[midi] < 0) {
+			log.warn("no transform mapping for " + notePitch.toString());
+			return;
 		}
-		int diffUp = Math.abs(closestUp.difference(notePitch));
-		int diffDown = Math.abs(closestDown.difference(notePitch));
+		int closestUp = transformTableUP[midi];
+		int closestDown = transformTableDOWN[midi];
+		int diffUp = Math.abs(closestUp - midi);
+		int diffDown = Math.abs(closestDown - midi);
+		int high = pitchRange.getHigh().getMidiNumber();
+		int low = pitchRange.getLow().getMidiNumber();
 
-		Pitch newNotePitch = null;
+		boolean up = false;
 		if(diffUp == diffDown) {	// use Preference to resolve ties
-			if(closestUp.compareTo(pitchRange.getHigh()) > 0) {
-				newNotePitch = closestDown;
+			if(closestUp > high) {
+				up = false;
 			}
-			else if(closestDown.compareTo(pitchRange.getLow()) < 0) {
-				newNotePitch = closestUp;
+			else if(closestDown < low) {
+				up = true;
 			}
 			else {
-				newNotePitch = (pref == Preference.Up) ? closestUp : closestDown;
+				up = (pref == Preference.Up);
 			}
 		}
 		else if(diffUp < diffDown) {
-			newNotePitch = closestUp;
 			// check instrument range
-			if(instrument != null && newNotePitch.compareTo(pitchRange.getHigh()) > 0) {
-				newNotePitch = closestDown;
-			}
+			up = !(instrument != null && closestUp > high);
 		}
 		else {
-			newNotePitch = closestDown;
-			if(instrument != null && newNotePitch.compareTo(pitchRange.getLow()) < 0) {
-				newNotePitch = closestUp;
-			}
+			up = (instrument != null && closestDown < low);
 		}
+		Pitch newNotePitch = up ? getMappedPitch(midi, closestUp, spelledUP) : getMappedPitch(midi, closestDown, spelledDOWN);
 		note.setPitchTo(newNotePitch);
 		IMeasurableContainer<Note> chord = note.getContainer();		// could be null
 
@@ -373,12 +364,103 @@ public class ScaleTransformer extends Transformer {
 		this.tiedPitch = new Pitch(tiedPitch);
 	}
 	
+	/**
+	 * 
+	 * @return the UP mapping as a Map, created from the compiled table
+	 */
 	public Map<Pitch, Pitch> getTransformMapUP() {
-		return transformMapUP;
+		return toMap(transformTableUP, spelledUP);
 	}
 
+	/**
+	 * 
+	 * @return the DOWN mapping as a Map, created from the compiled table
+	 */
 	public Map<Pitch, Pitch> getTransformMapDOWN() {
-		return transformMapDOWN;
+		return toMap(transformTableDOWN, spelledDOWN);
+	}
+
+	public int[] getTransformTableUP() {
+		return transformTableUP;
+	}
+
+	public int[] getTransformTableDOWN() {
+		return transformTableDOWN;
+	}
+
+	private Map<Pitch, Pitch> toMap(int[] table, Pitch[] spelled) {
+		Map<Pitch, Pitch> map = new TreeMap<Pitch, Pitch>();
+		for(int midi=0; midi<table.length; midi++) {
+			if(table[midi] >= 0) {
+				map.put(Pitch.fromMidiNumber(midi, Alteration.NONE), getMappedPitch(midi, table[midi], spelled));
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * 
+	 * @param midi MIDI number of the source pitch
+	 * @param mappedMidi MIDI number of the mapped pitch
+	 * @param spelled
+	 * @return the mapped Pitch, shared and immutable if it has the usual spelling
+	 */
+	private Pitch getMappedPitch(int midi, int mappedMidi, Pitch[] spelled) {
+		if(spelled != null && spelled[midi] != null) {
+			return spelled[midi];
+		}
+		return Pitch.fromMidiNumber(mappedMidi, spelling[mappedMidi % 12]);
+	}
+
+	/**
+	 * Adds a source pitch to target pitch mapping to the compiled tables.
+	 * @param pitch source pitch
+	 * @param mappedUp
+	 * @param mappedDown
+	 */
+	private void addMapping(Pitch pitch, Pitch mappedUp, Pitch mappedDown) {
+		int midi = pitch.getMidiNumber();
+		transformTableUP[midi] = mappedUp.getMidiNumber();
+		transformTableDOWN[midi] = mappedDown.getMidiNumber();
+		if(!isSpelled(mappedUp)) {
+			if(spelledUP == null) {
+				spelledUP = new Pitch[transformTableUP.length];
+			}
+			spelledUP[midi] = new Pitch(mappedUp);
+		}
+		if(!isSpelled(mappedDown)) {
+			if(spelledDOWN == null) {
+				spelledDOWN = new Pitch[transformTableDOWN.length];
+			}
+			spelledDOWN[midi] = new Pitch(mappedDown);
+		}
+		if(showMappings && log.isDebugEnabled()) {
+			log.debug("pitch: " + pitch.toString(true) + " mappedUp, mappedDown: " + mappedUp.toString(true) + " " + mappedDown.toString(true));
+		}
+	}
+
+	/**
+	 * The first mapped pitch of a pitch class sets the spelling of that pitch class.
+	 * @param mapped
+	 * @return true if Pitch.fromMidiNumber gives the mapped pitch using the pitch class spelling
+	 */
+	private boolean isSpelled(Pitch mapped) {
+		int mappedMidi = mapped.getMidiNumber();
+		int pc = mappedMidi % 12;
+		if(spelling[pc] == null) {
+			int alt = mapped.getAlteration();
+			spelling[pc] = (alt < 0) ? Alteration.FLAT : (alt > 0) ? Alteration.SHARP : Alteration.NONE;
+		}
+		Pitch p = Pitch.fromMidiNumber(mappedMidi, spelling[pc]);
+		return p.getStep() == mapped.getStep() && p.getAlteration() == mapped.getAlteration() && p.getOctave() == mapped.getOctave();
+	}
+
+	private void clearTransformTables() {
+		Arrays.fill(transformTableUP, -1);
+		Arrays.fill(transformTableDOWN, -1);
+		Arrays.fill(spelling, null);
+		spelledUP = null;
+		spelledDOWN = null;
 	}
 
 	public Map<Pitch, Integer> getOctaveAdjustMap() {
@@ -469,7 +551,7 @@ public class ScaleTransformer extends Transformer {
 	 * @throws IllegalArgumentException if specified scale name not found
 	 */
 	protected Scale getTransformScale(Properties props, Pitch rootPitch) {
-		ScaleManager scaleManager = new ScaleManager();
+		ScaleManager scaleManager = new ScaleManager(props);
 		Scale scale = scaleManager.getScale(scaleName, rootPitch);
 		
 		if(scale == null) {
@@ -479,9 +561,10 @@ public class ScaleTransformer extends Transformer {
 	}
 	
 	/**
-	 * Creates transform maps - transformMapUP and transformMapDOWN  for pitched instruments. 
+	 * Creates transform maps - transformTableUP and transformTableDOWN  for pitched instruments. 
 	 */
 	protected void createTransformMaps() {
+		clearTransformTables();
 		if(transformScale.getMode() != null && transformScale.getMode().equals(Scales.DISCRETE)) {
 			createTransformMapsForUnpitched();
 			return;
@@ -573,17 +656,13 @@ public class ScaleTransformer extends Transformer {
 			Pitch mpdown = transformMapDOWNTemp.get(pNeutral);
 			Pitch mappedUp = new Pitch(mpup.getStep(),  p.getOctave() + octaveAdjUP, mpup.getAlteration());
 			Pitch mappedDown =  new Pitch(mpdown.getStep(),  p.getOctave() + octaveAdjDOWN, mpdown.getAlteration());
-			if(showMappings) {
-				log.info("pitch: " + p.toString(true) + " mappedUp, mappedDown: " + mappedUp.toString(true) + " " + mappedDown.toString(true));
-			}
-			transformMapUP.put(p, mappedUp);
-			transformMapDOWN.put(p, mappedDown);
+			addMapping(p, mappedUp, mappedDown);
 		}
 		return;
 	}
 
 	/**
-	 * Creates transform maps - transformMapUP and transformMapDOWN for unpitched
+	 * Creates transform maps - transformTableUP and transformTableDOWN for unpitched
 	 * instruments where the transform scale's mode is DISCRETE.
 	 * 
 	 * The Pitches in Discrete scale types, used for unpitched percussion instruments
@@ -607,16 +686,13 @@ public class ScaleTransformer extends Transformer {
 			Pitch mappedUp = null;
 			Pitch mappedDown = null;
 			if(p.compareTo(pitchRange.getLow()) < 0) {
-				transformMapUP.put(p, pitchRange.getLow());
-				transformMapDOWN.put(p, pitchRange.getLow());
+				addMapping(p, pitchRange.getLow(), pitchRange.getLow());
 			}
 			else if(p.compareTo(pitchRange.getHigh()) > 0) {
-				transformMapUP.put(p, pitchRange.getHigh());
-				transformMapDOWN.put(p, pitchRange.getHigh());
+				addMapping(p, pitchRange.getHigh(), pitchRange.getHigh());
 			}
 			else if(instrument.getPitchClass().equals(PitchClass.DISCRETE_1LINE)) {
-				transformMapUP.put(p, E4);
-				transformMapDOWN.put(p, E4);
+				addMapping(p, E4, E4);
 			}
 			else if(instrument.getPitchClass().equals(PitchClass.DISCRETE_2LINE)) {
 				// B3 to D4 for PitchClass.DISCRETE_2LINE
@@ -633,8 +709,7 @@ public class ScaleTransformer extends Transformer {
 				default:
 					mappedUp = mappedDown = G4;
 				}
-				transformMapUP.put(p, mappedUp);
-				transformMapDOWN.put(p, mappedDown);
+				addMapping(p, mappedUp, mappedDown);
 			}
 			else if(instrument.getPitchClass().equals(PitchClass.DISCRETE_5LINE)) {
 				// here's the discrete part - depends on the E4(52) to F5(65) range for 5-line, 
@@ -676,8 +751,7 @@ public class ScaleTransformer extends Transformer {
 					default:
 						mappedUp = mappedDown = F5;
 				}
-				transformMapUP.put(p, mappedUp);
-				transformMapDOWN.put(p, mappedDown);
+				addMapping(p, mappedUp, mappedDown);
 			}
 		}
 		return;
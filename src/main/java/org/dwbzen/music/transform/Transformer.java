@@ -1,13 +1,12 @@
 package org.dwbzen.music.transform;
 
 import java.util.Properties;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.util.SeededRandom;
 
 public abstract class Transformer implements ITransformer {
 
-	protected ThreadLocalRandom random = ThreadLocalRandom.current();
 	/**
 	 * Instrument should be set for all and instrument-specific transformers
 	 */
@@ -25,6 +24,14 @@ public abstract class Transformer implements ITransformer {
 		transform(layer);
 	}
 
+	/**
+	 * Parts may be transformed on different threads, so get the current thread's random.
+	 * @return SeededRandom
+	 */
+	protected SeededRandom getRandom() {
+		return SeededRandom.current();
+	}
+
 	public Instrument getInstrument() {
 		return instrument;
 	}
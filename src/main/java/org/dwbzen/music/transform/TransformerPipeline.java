@@ -0,0 +1,279 @@
+package org.dwbzen.music.transform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.music.element.Measurable;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.transform.ITransformer.Scope;
+import org.dwbzen.util.SeededRandom;
+import org.dwbzen.util.metrics.MetricsRegistry;
+
+/**
+ * Applies a sequence of transformers to a Layer.<br>
+ * Consecutive MEASURABLE and MEASURE transformers (IPartTransformer) form a segment that's applied
+ * to each part in turn. Consecutive independent transformers (see IPartTransformer.isIndependent()) are fused
+ * into one traversal of the part: for each Measure, the transformers are applied in order
+ * and consecutive MEASURABLE transformers share a single pass over the Measurables.
+ * Any other transformer traverses the part by itself, as it would if it were applied on its own,
+ * since it may look at the neighbouring Measures or draw random numbers.
+ * A SCORE transformer ends the segment and is applied to the whole Layer as usual.<br>
+ * Parts are independent, so the parts of a segment are transformed in parallel unless
+ * a transformer in the segment applies to more than one part (it would see several parts at once).
+ * The result is the same as applying each transformer to the Layer in turn.<br>
+ * Each transformer transforms a part with its own SeededRandom, derived by part name from the one it would get
+ * if it were applied by itself, so a seeded score is transformed the same way in parallel or not, fused or not.
+ * Parts are timed as transform.part and SCORE transformers as transform.transformer in the calling thread's MetricsRegistry.
+ *
+ * @author don_bacon
+ *
+ */
+public class TransformerPipeline implements Consumer<Layer> {
+	protected static final Logger log = LogManager.getLogger(TransformerPipeline.class);
+
+	private List<ITransformer> transformers = new ArrayList<ITransformer>();
+	private boolean parallel = true;
+
+	public TransformerPipeline() {
+	}
+
+	public TransformerPipeline(Collection<? extends ITransformer> transformers) {
+		this.transformers.addAll(transformers);
+	}
+
+	/**
+	 * A pipeline of one transformer, parts transformed one after another.
+	 * @param transformer
+	 * @return TransformerPipeline
+	 */
+	public static TransformerPipeline sequential(ITransformer transformer) {
+		TransformerPipeline pipeline = new TransformerPipeline();
+		pipeline.add(transformer);
+		pipeline.setParallel(false);
+		return pipeline;
+	}
+
+	public TransformerPipeline add(ITransformer transformer) {
+		transformers.add(transformer);
+		return this;
+	}
+
+	public TransformerPipeline addAll(Collection<? extends ITransformer> transformers) {
+		this.transformers.addAll(transformers);
+		return this;
+	}
+
+	@Override
+	public void accept(Layer layer) {
+		transform(layer);
+	}
+
+	public void transform(Layer layer) {
+		List<IPartTransformer> segment = new ArrayList<IPartTransformer>();
+		for(ITransformer transformer : transformers) {
+			if(transformer.getScope() != Scope.SCORE && transformer instanceof IPartTransformer) {
+				segment.add((IPartTransformer)transformer);
+			}
+			else {
+				transformSegment(layer, segment);
+				segment.clear();
+				MetricsRegistry.current().timer("transform.transformer", "transformer", transformer.getClass().getSimpleName())
+					.time(() -> transformer.transform(layer));
+			}
+		}
+		transformSegment(layer, segment);
+	}
+
+	/**
+	 *
+	 * @param layer
+	 * @return the parts of a Score Layer, or the ScorePartEntity of a part Layer
+	 */
+	public static Map<String, ScorePartEntity> getParts(Layer layer) {
+		Score score = layer.getScore();
+		Map<String, ScorePartEntity> scoreParts = null;
+		if(score != null) {	// if Score layer
+			scoreParts = score.getParts();
+		}
+		else {				// if ScorePartEntity layer
+			scoreParts = new HashMap<String, ScorePartEntity>();
+			ScorePartEntity scorePartEntity = layer.getScorePartEntity();
+			scoreParts.put(scorePartEntity.getPartName(), scorePartEntity);
+		}
+		return scoreParts;
+	}
+
+	private void transformSegment(Layer layer, List<IPartTransformer> segment) {
+		if(segment.isEmpty()) {
+			return;
+		}
+		/*
+		 * Draw each transformer's SeededRandom in order, as transform(Layer) would for each in turn
+		 */
+		SeededRandom random = SeededRandom.current();
+		Map<IPartTransformer, SeededRandom> randoms = new IdentityHashMap<IPartTransformer, SeededRandom>();
+		for(IPartTransformer transformer : segment) {
+			randoms.put(transformer, random.isSeeded() ? new SeededRandom(random.nextLong()) : random);
+		}
+		MetricsRegistry metrics = MetricsRegistry.current();
+		List<PartWork> work = new ArrayList<PartWork>();
+		Set<IPartTransformer> used = Collections.newSetFromMap(new IdentityHashMap<IPartTransformer, Boolean>());
+		boolean shared = false;
+		for(ScorePartEntity scorePartEntity : getParts(layer).values()) {
+			List<IPartTransformer> stages = new ArrayList<IPartTransformer>();
+			for(IPartTransformer transformer : segment) {
+				if(transformer.appliesTo(scorePartEntity)) {
+					stages.add(transformer);
+					shared |= !used.add(transformer);
+				}
+			}
+			if(!stages.isEmpty()) {
+				work.add(new PartWork(scorePartEntity, fuse(stages), randoms, metrics));
+			}
+		}
+		log.debug("transform " + work.size() + " parts, " + segment.size() + " transformers, parallel: " + (parallel && !shared));
+		if(parallel && !shared && work.size() > 1) {
+			work.parallelStream().forEach(PartWork::run);
+		}
+		else {
+			work.forEach(PartWork::run);
+		}
+	}
+
+	/**
+	 * Groups the stages into traversals of a part: consecutive independent transformers together,
+	 * any other transformer by itself.
+	 * @param stages the IPartTransformers that apply to a part, in order
+	 * @return the stages of each traversal, in order
+	 */
+	public static List<List<IPartTransformer>> fuse(List<IPartTransformer> stages) {
+		List<List<IPartTransformer>> traversals = new ArrayList<List<IPartTransformer>>();
+		List<IPartTransformer> fused = null;
+		for(IPartTransformer transformer : stages) {
+			if(fused != null && transformer.isIndependent() && fused.get(0).isIndependent()) {
+				fused.add(transformer);
+			}
+			else {
+				fused = new ArrayList<IPartTransformer>();
+				fused.add(transformer);
+				traversals.add(fused);
+			}
+		}
+		return traversals;
+	}
+
+	/**
+	 * Applies the transformers to a part, fusing the independent ones.
+	 * @param scorePartEntity
+	 * @param stages the IPartTransformers that apply to this part, in order
+	 */
+	public static void transformPart(ScorePartEntity scorePartEntity, List<IPartTransformer> stages) {
+		for(List<IPartTransformer> fused : fuse(stages)) {
+			traversePart(scorePartEntity, fused);
+		}
+	}
+
+	/**
+	 * Applies the transformers to a part in a single traversal of its Measures.
+	 * @param scorePartEntity
+	 * @param stages a single IPartTransformer, or independent ones, in order
+	 */
+	static void traversePart(ScorePartEntity scorePartEntity, List<IPartTransformer> stages) {
+		for(IPartTransformer transformer : stages) {
+			transformer.startPart(scorePartEntity);
+		}
+		for(Measure measure : scorePartEntity.getMeasures()) {
+			transformMeasure(measure, stages);
+		}
+		for(IPartTransformer transformer : stages) {
+			transformer.endPart(scorePartEntity);
+		}
+	}
+
+	/**
+	 * Applies the transformers to one Measure of a part, after startPart and before endPart.
+	 * Unless there's only one, the transformers must be independent for the result to be the same
+	 * as applying each to the whole part in turn.
+	 * @param measure
+	 * @param stages the IPartTransformers that apply to the part, in order
+	 */
+	public static void transformMeasure(Measure measure, List<IPartTransformer> stages) {
+		int nstages = stages.size();
+		int i = 0;
+		while(i < nstages) {
+			IPartTransformer transformer = stages.get(i);
+			if(transformer.getScope() == Scope.MEASURE) {
+				transformer.startMeasure(measure);
+				transformer.transform(measure);
+				transformer.endMeasure(measure);
+				i++;
+				continue;
+			}
+			// fuse consecutive MEASURABLE transformers
+			int j = i + 1;
+			while(j < nstages && stages.get(j).getScope() == Scope.MEASURABLE) {
+				j++;
+			}
+			List<IPartTransformer> fused = stages.subList(i, j);
+			for(IPartTransformer t : fused) {
+				t.startMeasure(measure);
+			}
+			for(Measurable measurable : measure.getMeasureables()) {
+				for(IPartTransformer t : fused) {
+					t.transform(measurable, measure);
+				}
+			}
+			for(IPartTransformer t : fused) {
+				t.endMeasure(measure);
+			}
+			i = j;
+		}
+	}
+
+	public List<ITransformer> getTransformers() {
+		return transformers;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	private static class PartWork {
+		private ScorePartEntity scorePartEntity;
+		private List<List<IPartTransformer>> traversals;
+		private Map<IPartTransformer, SeededRandom> randoms;
+		private MetricsRegistry metrics;
+
+		PartWork(ScorePartEntity scorePartEntity, List<List<IPartTransformer>> traversals, Map<IPartTransformer, SeededRandom> randoms, MetricsRegistry metrics) {
+			this.scorePartEntity = scorePartEntity;
+			this.traversals = traversals;
+			this.randoms = randoms;
+			this.metrics = metrics;
+		}
+
+		void run() {
+			String partName = scorePartEntity.getPartName();
+			metrics.timer("transform.part", "part", partName).time(() -> {
+				for(List<IPartTransformer> stages : traversals) {
+					// independent transformers don't draw random numbers, so the first one's will do
+					SeededRandom.run(randoms.get(stages.get(0)).derive(partName), () -> traversePart(scorePartEntity, stages));
+				}
+			});
+		}
+	}
+}
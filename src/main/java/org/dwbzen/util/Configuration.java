@@ -2,7 +2,11 @@ package org.dwbzen.util;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,6 +15,14 @@ import org.apache.logging.log4j.Logger;
  * Usage example: 
  * Configuration config = Configuration.getInstance("/config.properties");
  * Properties properties = config.getProperties();
+ * <p>
+ * Each configuration file is parsed once into an immutable ConfigurationSnapshot that's shared by every caller.
+ * getInstance() returns a new Configuration with its own copy of the snapshot's properties, to change as it likes.
+ * Code that only reads the configuration, or that runs concurrently, can share Configuration.snapshot(configFile)
+ * or the getSnapshot() of a Configuration that's been set up. getSnapshot() is created once and kept
+ * until the properties change, through getProperties(), setProperty(), addConfiguration() or reload().
+ * reload(configFile) parses the file again and replaces the snapshot if anything changed.
+ * If the file can't be read the previous snapshot is kept.
  * 
  * @author don_bacon
  *
@@ -19,46 +31,138 @@ public class Configuration {
 	
 	protected static final Logger log = LogManager.getLogger(Configuration.class);
 	private static Configuration _configuration = null;
+	private static Map<String, ConfigurationSnapshot> snapshots = new ConcurrentHashMap<String, ConfigurationSnapshot>();
 	
 	private Properties properties = null;
 	private String configurationFilename = null;
+	private ConfigurationSnapshot snapshot = null;	// of properties, null when they've changed
 	
 	private Configuration() {}
 	private Configuration(String configFilename) {
-		properties = new Properties();
+		properties = new TrackedProperties();
 	}
 	
+	/**
+	 * 
+	 * @param configFile resource name, as in "/config.properties"
+	 * @return a new Configuration having a copy of the file's properties
+	 */
 	public static Configuration getInstance(String configFile) {
-		Configuration configuration = null;
-		synchronized(Configuration.class){
-				configuration = new Configuration(configFile);
-				configuration.configurationFilename = configFile;
-				configuration.loadProperties();
-		}
+		Configuration configuration = new Configuration(configFile);
+		configuration.configurationFilename = configFile;
+		configuration.properties.putAll(snapshot(configFile).asMap());
 		return configuration;
 	}
 	
-	private void loadProperties() {
-        URL url = getClass().getResource(configurationFilename);
+	/**
+	 * 
+	 * @param configFile resource name, as in "/config.properties"
+	 * @return the shared snapshot of the file's properties, parsed the first time it's asked for.
+	 * If the file can't be read it's EMPTY, and the file is parsed again the next time.
+	 */
+	public static ConfigurationSnapshot snapshot(String configFile) {
+		ConfigurationSnapshot snapshot = snapshots.computeIfAbsent(configFile, Configuration::loadSnapshot);
+		return snapshot == null ? ConfigurationSnapshot.EMPTY : snapshot;
+	}
+	
+	/**
+	 * Parses a configuration file again. Configurations already created with getInstance() aren't changed.
+	 * The snapshot is only replaced if the properties changed, and is kept if the file can't be read.
+	 * @param configFile resource name
+	 * @return true if the properties changed, in which case snapshot() and getInstance() use the new ones
+	 */
+	public static boolean reload(String configFile) {
+		ConfigurationSnapshot snapshot = loadSnapshot(configFile);
+		if(snapshot == null) {
+			log.warn(configFile + " not reloaded, keeping the previous properties");
+			return false;
+		}
+		boolean[] changed = {false};
+		snapshots.merge(configFile, snapshot, (previous, loaded) -> {
+			changed[0] = !previous.equals(loaded);
+			return changed[0] ? loaded : previous;
+		});
+		if(changed[0]) {
+			log.info(configFile + " changed");
+		}
+		return changed[0];
+	}
+	
+	/**
+	 * 
+	 * @param configurationFilename resource name
+	 * @return the file's properties, or null if it can't be read
+	 */
+	private static ConfigurationSnapshot loadSnapshot(String configurationFilename) {
+        URL url = Configuration.class.getResource(configurationFilename);
         if(url == null) {
             throw new IllegalArgumentException("Could not load resource: \"" + configurationFilename + "\"");
         }
+        Properties properties = new Properties();
         try(InputStream stream = url.openStream()) {
         	properties.load(stream);
         }
         catch(Exception e) {
         	log.error("Could not load " + configurationFilename + " " + e.toString());
+        	return null;
         }
+        return ConfigurationSnapshot.of(properties);
 	}
 	
 	public void addConfiguration(Configuration someOtherConfiguration) {
 		properties.putAll(someOtherConfiguration.getProperties());
 	}
 	
+	public void setProperty(String key, String value) {
+		properties.setProperty(key, value);
+	}
+	
+	/**
+	 * Replaces these properties with those of the configuration file, parsed again.
+	 * Any changes made to them are lost.
+	 * @return true if the file changed
+	 */
+	public boolean reload() {
+		boolean changed = reload(configurationFilename);
+		synchronized(properties) {
+			properties.clear();
+			properties.putAll(snapshot(configurationFilename).asMap());
+		}
+		return changed;
+	}
+	
+	/**
+	 * 
+	 * @return a new Configuration having a copy of these Properties
+	 */
+	public Configuration copy() {
+		Configuration configuration = new Configuration(configurationFilename);
+		configuration.configurationFilename = configurationFilename;
+		configuration.properties.putAll(properties);
+		return configuration;
+	}
+	
 	public Properties getProperties() {
 		return this.properties;
 	}
 	
+	/**
+	 * 
+	 * @return an immutable snapshot of these Properties as they are now, the same instance until they change
+	 */
+	public ConfigurationSnapshot getSnapshot() {
+		synchronized(properties) {
+			if(snapshot == null) {
+				snapshot = ConfigurationSnapshot.of(properties);
+			}
+			return snapshot;
+		}
+	}
+	
+	public String getConfigurationFilename() {
+		return configurationFilename;
+	}
+	
 	public static Configuration getConfiguration() throws IllegalAccessError {
 		if(_configuration == null) {
 			// not set globally - raise an exception, probably a coding error
@@ -69,4 +173,91 @@ public class Configuration {
 	public static void setConfiguration(Configuration config) {
 		_configuration = config;
 	}
+	
+	/**
+	 * Properties that drop the cached snapshot whenever they're changed through the Map methods
+	 * (changes through the keySet, values or entrySet views aren't seen).
+	 * The changes are synchronized on the Properties, as is getSnapshot().
+	 */
+	private class TrackedProperties extends Properties {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Object put(Object key, Object value) {
+			snapshot = null;
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized void putAll(Map<?, ?> t) {
+			snapshot = null;
+			super.putAll(t);
+		}
+
+		@Override
+		public synchronized Object putIfAbsent(Object key, Object value) {
+			snapshot = null;
+			return super.putIfAbsent(key, value);
+		}
+
+		@Override
+		public synchronized Object remove(Object key) {
+			snapshot = null;
+			return super.remove(key);
+		}
+
+		@Override
+		public synchronized boolean remove(Object key, Object value) {
+			snapshot = null;
+			return super.remove(key, value);
+		}
+
+		@Override
+		public synchronized void clear() {
+			snapshot = null;
+			super.clear();
+		}
+
+		@Override
+		public synchronized Object replace(Object key, Object value) {
+			snapshot = null;
+			return super.replace(key, value);
+		}
+
+		@Override
+		public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+			snapshot = null;
+			return super.replace(key, oldValue, newValue);
+		}
+
+		@Override
+		public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+			snapshot = null;
+			super.replaceAll(function);
+		}
+
+		@Override
+		public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+			snapshot = null;
+			return super.compute(key, remappingFunction);
+		}
+
+		@Override
+		public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+			snapshot = null;
+			return super.computeIfAbsent(key, mappingFunction);
+		}
+
+		@Override
+		public synchronized Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+			snapshot = null;
+			return super.computeIfPresent(key, remappingFunction);
+		}
+
+		@Override
+		public synchronized Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+			snapshot = null;
+			return super.merge(key, value, remappingFunction);
+		}
+	}
 }
@@ -0,0 +1,180 @@
+package org.dwbzen.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable view of configuration properties, with typed getters and prefixed sub-views.<br>
+ * Configuration.snapshot(configFile) parses a properties file once and every caller shares the result,
+ * which is safe because nothing can change it. Configuration.getInstance() starts from the same snapshot,
+ * so a Configuration is no longer loaded from the file each time.<br>
+ * subset(prefix) is the properties starting with prefix, with the prefix removed. Sub-views are created once
+ * and kept, so for example
+ * <pre>
+ * ConfigurationSnapshot transformers = snapshot.subset("score.transformers.");
+ * List&lt;String&gt; classNames = transformers.getList("default");
+ * </pre>
+ * always returns the same view.
+ *
+ * @author don_bacon
+ *
+ */
+public final class ConfigurationSnapshot {
+
+	public static final ConfigurationSnapshot EMPTY = new ConfigurationSnapshot(new TreeMap<String, String>());
+
+	private final NavigableMap<String, String> properties;
+	private final Map<String, ConfigurationSnapshot> subsets = new ConcurrentHashMap<String, ConfigurationSnapshot>();
+
+	private ConfigurationSnapshot(TreeMap<String, String> properties) {
+		this.properties = Collections.unmodifiableNavigableMap(properties);
+	}
+
+	/**
+	 *
+	 * @param properties
+	 * @return a snapshot of the String properties as they are now
+	 */
+	public static ConfigurationSnapshot of(Properties properties) {
+		TreeMap<String, String> map = new TreeMap<String, String>();
+		for(String name : properties.stringPropertyNames()) {
+			map.put(name, properties.getProperty(name));
+		}
+		return new ConfigurationSnapshot(map);
+	}
+
+	/**
+	 *
+	 * @return a new Properties having these properties, that the caller can change
+	 */
+	public Properties toProperties() {
+		Properties props = new Properties();
+		props.putAll(properties);
+		return props;
+	}
+
+	/**
+	 *
+	 * @param prefix as in "score.transformers."
+	 * @return the properties whose names start with prefix, with the prefix removed from the names
+	 */
+	public ConfigurationSnapshot subset(String prefix) {
+		return subsets.computeIfAbsent(prefix, p -> {
+			TreeMap<String, String> map = new TreeMap<String, String>();
+			for(Map.Entry<String, String> entry : properties.tailMap(p, true).entrySet()) {
+				if(!entry.getKey().startsWith(p)) {
+					break;
+				}
+				map.put(entry.getKey().substring(p.length()), entry.getValue());
+			}
+			return map.isEmpty() ? EMPTY : new ConfigurationSnapshot(map);
+		});
+	}
+
+	public boolean containsKey(String name) {
+		return properties.containsKey(name);
+	}
+
+	public String getString(String name) {
+		return properties.get(name);
+	}
+
+	public String getString(String name, String defaultValue) {
+		return properties.getOrDefault(name, defaultValue);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @param defaultValue
+	 * @return the int value, or defaultValue if not set
+	 * @throws ConfigurationException if the value isn't an int
+	 */
+	public int getInt(String name, int defaultValue) {
+		String value = properties.get(name);
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value.trim());
+		}
+		catch(NumberFormatException e) {
+			throw new ConfigurationException(name + " is not an int: " + value);
+		}
+	}
+
+	public long getLong(String name, long defaultValue) {
+		String value = properties.get(name);
+		try {
+			return value == null ? defaultValue : Long.parseLong(value.trim());
+		}
+		catch(NumberFormatException e) {
+			throw new ConfigurationException(name + " is not a long: " + value);
+		}
+	}
+
+	public double getDouble(String name, double defaultValue) {
+		String value = properties.get(name);
+		try {
+			return value == null ? defaultValue : Double.parseDouble(value.trim());
+		}
+		catch(NumberFormatException e) {
+			throw new ConfigurationException(name + " is not a number: " + value);
+		}
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @param defaultValue
+	 * @return true if the value is "true" (any case), defaultValue if not set
+	 */
+	public boolean getBoolean(String name, boolean defaultValue) {
+		String value = properties.get(name);
+		return value == null ? defaultValue : value.trim().equalsIgnoreCase("true");
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return the comma-separated values, empty if not set
+	 */
+	public List<String> getList(String name) {
+		String value = properties.get(name);
+		if(value == null || value.isBlank()) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.stream(value.split(",")).map(String::trim).collect(Collectors.toList()));
+	}
+
+	/**
+	 *
+	 * @return the property names and values, sorted by name
+	 */
+	public NavigableMap<String, String> asMap() {
+		return properties;
+	}
+
+	public int size() {
+		return properties.size();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof ConfigurationSnapshot && properties.equals(((ConfigurationSnapshot)other).properties);
+	}
+
+	@Override
+	public int hashCode() {
+		return properties.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return properties.toString();
+	}
+}
@@ -0,0 +1,163 @@
+package org.dwbzen.util;
+
+import java.util.BitSet;
+
+/**
+ * An open-addressing hash map of long keys to an occurrence count and the set of sources
+ * (songs for example) the key occurs in. The sources are numbered by the caller and kept in a BitSet.<br>
+ * Keys and counts are held in primitive arrays (linear probing), so counting a key allocates nothing
+ * unless the key is new to the map. Maps built independently can be merged.
+ *
+ * @author don_bacon
+ *
+ */
+public class LongCountMap {
+
+	@FunctionalInterface
+	public static interface EntryConsumer {
+		void accept(long key, int count, BitSet sources);
+	}
+
+	private static final float LOAD_FACTOR = 0.5f;
+	private long[] keys;
+	private int[] counts;		// 0 indicates an empty slot
+	private BitSet[] sources;
+	private int size = 0;
+	private int mask;
+
+	public LongCountMap() {
+		this(64);
+	}
+
+	/**
+	 *
+	 * @param expectedSize the initial capacity is sized so that this many keys can be added without rehashing
+	 */
+	public LongCountMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(16, (int)(expectedSize / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		counts = new int[capacity];
+		sources = new BitSet[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private int slot(long key) {
+		int i = hash(key) & mask;
+		while(counts[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Adds 1 to the count of key and records the source.
+	 * @param key
+	 * @param source source number, >= 0
+	 * @return the updated count
+	 */
+	public int increment(long key, int source) {
+		return add(key, 1, source, null);
+	}
+
+	private int add(long key, int count, int source, BitSet otherSources) {
+		int i = slot(key);
+		boolean added = counts[i] == 0;
+		if(added) {
+			keys[i] = key;
+			sources[i] = new BitSet();
+		}
+		int n = counts[i] += count;
+		if(source >= 0) {
+			sources[i].set(source);
+		}
+		if(otherSources != null) {
+			sources[i].or(otherSources);
+		}
+		if(added && ++size > LOAD_FACTOR * keys.length) {
+			rehash();
+		}
+		return n;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		BitSet[] oldSources = sources;
+		allocate(keys.length * 2);
+		for(int j=0; j<oldKeys.length; j++) {
+			if(oldCounts[j] != 0) {
+				int i = slot(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				counts[i] = oldCounts[j];
+				sources[i] = oldSources[j];
+			}
+		}
+	}
+
+	/**
+	 * Adds the counts and sources of another map to this one.
+	 * @param other
+	 * @return this LongCountMap
+	 */
+	public LongCountMap merge(LongCountMap other) {
+		for(int j=0; j<other.keys.length; j++) {
+			if(other.counts[j] != 0) {
+				add(other.keys[j], other.counts[j], -1, other.sources[j]);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the count of key, 0 if not present
+	 */
+	public int get(long key) {
+		int i = slot(key);
+		return counts[i];
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the sources of key, or null if not present
+	 */
+	public BitSet getSources(long key) {
+		int i = slot(key);
+		return sources[i];
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != 0;
+	}
+
+	/**
+	 * Calls the consumer for each key, in no particular order.
+	 * @param consumer
+	 */
+	public void forEach(EntryConsumer consumer) {
+		for(int i=0; i<keys.length; i++) {
+			if(counts[i] != 0) {
+				consumer.accept(keys[i], counts[i], sources[i]);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+}
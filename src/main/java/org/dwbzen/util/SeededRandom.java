@@ -0,0 +1,189 @@
+package org.dwbzen.util;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Source of random numbers for score generation that can be seeded for reproducible results.<br>
+ * The current thread's SeededRandom is returned by current(). Unless one has been set with run() or call(),
+ * that is the shared unseeded instance which delegates to ThreadLocalRandom, so by default nothing changes.<br>
+ * A seeded SeededRandom is backed by a SplittableRandom. Work that runs on other threads
+ * (ScoreParts, DataLoaders, part transformers) gets its own SeededRandom with derive(name), which depends only
+ * on the seed and the name and not on how much of the parent sequence has been used.
+ * So the numbers drawn by each part are the same however the threads are scheduled.<br>
+ * This extends java.util.Random so it can be used wherever a Random is expected (ExpressionSelector, AliasTable),
+ * and adds the ThreadLocalRandom style range methods.
+ * <pre>
+ * SeededRandom.run(new SeededRandom(seed), () -> productionFlow.run());
+ * </pre>
+ *
+ * @author don_bacon
+ *
+ */
+public class SeededRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The unseeded instance, delegates to ThreadLocalRandom
+	 */
+	public static final SeededRandom UNSEEDED = new SeededRandom();
+
+	private static final ThreadLocal<SeededRandom> current = new ThreadLocal<SeededRandom>();
+
+	private final SplittableRandom splittable;
+	private final long seed;
+	private final boolean seeded;
+
+	private SeededRandom() {
+		splittable = null;
+		seed = 0;
+		seeded = false;
+	}
+
+	public SeededRandom(long seed) {
+		this.splittable = new SplittableRandom(seed);
+		this.seed = seed;
+		this.seeded = true;
+	}
+
+	/**
+	 *
+	 * @return the current thread's SeededRandom, UNSEEDED if none has been set
+	 */
+	public static SeededRandom current() {
+		SeededRandom random = current.get();
+		return random != null ? random : UNSEEDED;
+	}
+
+	/**
+	 * Runs a task with random as the current thread's SeededRandom, then restores the previous one.
+	 * @param random
+	 * @param task
+	 */
+	public static void run(SeededRandom random, Runnable task) {
+		SeededRandom previous = current.get();
+		current.set(random);
+		try {
+			task.run();
+		}
+		finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * Calls a task with random as the current thread's SeededRandom, then restores the previous one.
+	 * @param random
+	 * @param task
+	 * @return the task result
+	 * @throws Exception if the task throws one
+	 */
+	public static <T> T call(SeededRandom random, Callable<T> task) throws Exception {
+		SeededRandom previous = current.get();
+		current.set(random);
+		try {
+			return task.call();
+		}
+		finally {
+			restore(previous);
+		}
+	}
+
+	private static void restore(SeededRandom previous) {
+		if(previous == null) {
+			current.remove();
+		}
+		else {
+			current.set(previous);
+		}
+	}
+
+	/**
+	 * Creates an independent SeededRandom for a named part of the work, for example "ScorePart.Piano".
+	 * This doesn't use any numbers from this SeededRandom.
+	 * @param name
+	 * @return a new SeededRandom, or UNSEEDED if this isn't seeded
+	 */
+	public SeededRandom derive(String name) {
+		if(!seeded) {
+			return this;
+		}
+		long h = seed;
+		for(int i=0; i<name.length(); i++) {
+			h = (h ^ name.charAt(i)) * GOLDEN_GAMMA;
+		}
+		return new SeededRandom(new SplittableRandom(h).nextLong());
+	}
+
+	public boolean isSeeded() {
+		return seeded;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return nextInt() >>> (32 - bits);
+	}
+
+	@Override
+	public int nextInt() {
+		return seeded ? splittable.nextInt() : ThreadLocalRandom.current().nextInt();
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		return seeded ? splittable.nextInt(bound) : ThreadLocalRandom.current().nextInt(bound);
+	}
+
+	/**
+	 *
+	 * @param origin least value returned
+	 * @param bound upper bound (exclusive)
+	 * @return random int in the range [origin, bound)
+	 */
+	public int nextInt(int origin, int bound) {
+		return seeded ? splittable.nextInt(origin, bound) : ThreadLocalRandom.current().nextInt(origin, bound);
+	}
+
+	@Override
+	public long nextLong() {
+		return seeded ? splittable.nextLong() : ThreadLocalRandom.current().nextLong();
+	}
+
+	@Override
+	public double nextDouble() {
+		return seeded ? splittable.nextDouble() : ThreadLocalRandom.current().nextDouble();
+	}
+
+	/**
+	 *
+	 * @param origin least value returned
+	 * @param bound upper bound (exclusive)
+	 * @return random double in the range [origin, bound)
+	 */
+	public double nextDouble(double origin, double bound) {
+		return seeded ? splittable.nextDouble(origin, bound) : ThreadLocalRandom.current().nextDouble(origin, bound);
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return seeded ? splittable.nextBoolean() : ThreadLocalRandom.current().nextBoolean();
+	}
+
+	/**
+	 * The seed can only be set by the constructor
+	 */
+	@Override
+	public synchronized void setSeed(long seed) {
+		if(splittable != null) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package org.dwbzen.util.messaging;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+
+/**
+ * In-process transport used by SessionImpl when dataSource.transport is not activeMQ.<br>
+ * Each named Destination maps to a single bounded MessageQueue shared by
+ * all SessionImpl instances in the JVM, so a producer created by ProductionFlow
+ * and a consumer created by a ScorePart connect through the queue name.
+ * When the consumer is closed its queue is closed, so a producer still sending to it fails instead of
+ * blocking forever. The next producer or consumer created for the name gets a new queue.
+ * Configuration parameters:
+ * <dl>
+ * <dt>dataSource.transport.local.capacity</dt> <dd>maximum number of batches in a queue. Default is 64.</dd>
+ * <dt>dataSource.transport.local.batchSize</dt> <dd>number of messages in a batch. Default is 100.</dd>
+ * <dt>dataSource.transport.local.sendTimeout</dt> <dd>milliseconds a producer waits for space, 0 (the default) waits indefinitely.</dd>
+ * <dt>dataSource.transport.local.namespace</dt> <dd>prefix for queue names so that several ProductionFlows can run in the same JVM. Default is none.</dd>
+ * </dl>
+ * 
+ * @author don_bacon
+ *
+ */
+public class LocalTransport {
+	
+	public static final int DEFAULT_CAPACITY = 64;
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	
+	private static Map<String, MessageQueue> queues = new ConcurrentHashMap<String, MessageQueue>();
+	private static int capacity = DEFAULT_CAPACITY;
+	private static int batchSize = DEFAULT_BATCH_SIZE;
+	private static long sendTimeout = 0;
+	
+	private LocalTransport() {}
+	
+	public static void configure(Properties configProperties) {
+		capacity = Integer.parseInt(configProperties.getProperty("dataSource.transport.local.capacity", String.valueOf(DEFAULT_CAPACITY)));
+		batchSize = Integer.parseInt(configProperties.getProperty("dataSource.transport.local.batchSize", String.valueOf(DEFAULT_BATCH_SIZE)));
+		sendTimeout = Long.parseLong(configProperties.getProperty("dataSource.transport.local.sendTimeout", "0"));
+	}
+	
+	/**
+	 * 
+	 * @param configProperties
+	 * @param name queue name, as in piano.queue
+	 * @return the queue name prefixed with the configured namespace
+	 */
+	public static String queueName(Properties configProperties, String name) {
+		return configProperties.getProperty("dataSource.transport.local.namespace", "") + name;
+	}
+	
+	/**
+	 * Gets the MessageQueue for a queue name, creating it if needed.
+	 * A closed queue is returned as is, so sending to it fails.
+	 * @param name queue name
+	 * @return MessageQueue
+	 */
+	public static MessageQueue getQueue(String name) {
+		return queues.computeIfAbsent(name, n -> new MessageQueue(n, capacity, sendTimeout));
+	}
+	
+	/**
+	 * Gets the MessageQueue for a new producer or consumer, replacing the queue if it's been closed.
+	 * @param name queue name
+	 * @return an open MessageQueue
+	 */
+	public static MessageQueue openQueue(String name) {
+		return queues.compute(name, (n, queue) -> (queue == null || queue.isClosed()) ? new MessageQueue(n, capacity, sendTimeout) : queue);
+	}
+	
+	public static MessageQueue openQueue(Destination destination) throws JMSException {
+		return openQueue(queueName(destination));
+	}
+	
+	public static MessageQueue getQueue(Destination destination) throws JMSException {
+		return getQueue(queueName(destination));
+	}
+	
+	private static String queueName(Destination destination) throws JMSException {
+		if(!(destination instanceof Queue)) {
+			throw new JMSException("Unsupported Destination " + destination);
+		}
+		return ((Queue)destination).getQueueName();
+	}
+	
+	/**
+	 * Closes the named queue. Any messages remaining are discarded and producers still sending to it get a JMSException.
+	 * The queue stays closed until a new producer or consumer opens the name again.
+	 * @param name queue name
+	 */
+	public static void release(String name) {
+		MessageQueue queue = queues.get(name);
+		if(queue != null) {
+			queue.close();
+		}
+	}
+	
+	public static int getBatchSize() {
+		return batchSize;
+	}
+
+	public static int getCapacity() {
+		return capacity;
+	}
+
+	public static long getSendTimeout() {
+		return sendTimeout;
+	}
+
+}
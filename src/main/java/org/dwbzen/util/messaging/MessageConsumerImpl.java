@@ -1,55 +1,101 @@
 package org.dwbzen.util.messaging;
 
+import java.util.List;
+
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
 
+/**
+ * Consumes Messages from the in-process LocalTransport queue for a Destination.
+ * Batches are taken from the queue as needed and Messages returned one at a time in the order sent.
+ * 
+ * @author don_bacon
+ *
+ */
 public class MessageConsumerImpl implements MessageConsumer {
 	private Destination destination;
+	private MessageQueue queue = null;
+	private List<Message> batch = null;
+	private int index = 0;
 
-	public MessageConsumerImpl(Destination dest) {
+	public MessageConsumerImpl(Destination dest) throws JMSException {
 		this.destination = dest;
+		queue = LocalTransport.openQueue(dest);
 	}
 
+	/**
+	 * Receives the next Message, blocking until one is available.
+	 */
 	@Override
 	public Message receive() throws JMSException {
-		
-		return null;
+		while(!hasNext()) {
+			nextBatch(queue.take());
+		}
+		return batch.get(index++);
 	}
 	
-
-	/*
-	 * Unimplemented methods
+	/**
+	 * Receives the next Message, waiting up to timeout milliseconds.
+	 * A timeout of 0 waits indefinitely.
+	 * @return the next Message or null if the timeout elapses
 	 */
-	
 	@Override
-	public void close() throws JMSException {
-		// TODO Auto-generated method stub
-		
+	public Message receive(long timeout) throws JMSException {
+		if(timeout == 0) {
+			return receive();
+		}
+		return hasNext() || nextBatch(queue.poll(timeout)) ? batch.get(index++) : null;
 	}
 
+	/**
+	 * @return the next Message if one is immediately available, otherwise null
+	 */
 	@Override
-	public MessageListener getMessageListener() throws JMSException {
-		// TODO Auto-generated method stub
-		return null;
+	public Message receiveNoWait() throws JMSException {
+		return hasNext() || nextBatch(queue.poll(0)) ? batch.get(index++) : null;
 	}
-
+	
+	/**
+	 * Closes the LocalTransport queue for this consumer's Destination.
+	 */
 	@Override
-	public String getMessageSelector() throws JMSException {
-		// TODO Auto-generated method stub
-		return null;
+	public void close() throws JMSException {
+		queue.close();
+		batch = null;
+	}
+	
+	private boolean hasNext() {
+		return batch != null && index < batch.size();
+	}
+	
+	private boolean nextBatch(List<Message> messages) {
+		if(messages == null || messages.isEmpty()) {
+			return false;
+		}
+		batch = messages;
+		index = 0;
+		return true;
+	}
+	
+	public Destination getDestination() {
+		return destination;
 	}
 
+	/*
+	 * Unimplemented methods
+	 */
+	
 	@Override
-	public Message receive(long arg0) throws JMSException {
+	public MessageListener getMessageListener() throws JMSException {
 		// TODO Auto-generated method stub
 		return null;
 	}
 
 	@Override
-	public Message receiveNoWait() throws JMSException {
+	public String getMessageSelector() throws JMSException {
 		// TODO Auto-generated method stub
 		return null;
 	}
@@ -1,12 +1,24 @@
 package org.dwbzen.util.messaging;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageProducer;
 
+/**
+ * Wraps a JMS MessageProducer or, if there isn't one, sends to the in-process
+ * LocalTransport queue for the Destination.<br>
+ * Local messages are sent in batches of LocalTransport.getBatchSize().
+ * Call flush() (or close()) to send a partial batch.
+ * If the consumer closes the queue, sending fails with a JMSException and the batch is dropped.
+ * 
+ * @author don_bacon
+ *
+ */
 public class MessageProducerImpl implements javax.jms.MessageProducer {
 
 	MessageProducer messageProducer = null;
@@ -16,19 +28,41 @@ public class MessageProducerImpl implements javax.jms.MessageProducer {
 	private boolean disableMessageTimestamp = false;
 	private int priority = 0;
 	private long timeToLive = 0;
-	private LinkedList<Message> queue;
+	private List<Message> batch = null;
+	private MessageQueue queue = null;
 	
-	public MessageProducerImpl() {
-		queue = new LinkedList<Message>();
-	}
-	
-	public MessageProducerImpl(Destination dest) {
+	/**
+	 * Creates a producer for the LocalTransport. The queue is opened now so that
+	 * a consumer closing it before the first batch is sent is seen as closed.
+	 * @param dest the Destination
+	 * @throws JMSException if dest isn't a Queue
+	 */
+	public MessageProducerImpl(Destination dest) throws JMSException {
 		this(null, dest);
+		queue = LocalTransport.openQueue(dest);
 	}
 
 	public MessageProducerImpl(MessageProducer producer, Destination dest) {
 		destination = dest;
 		messageProducer = producer;		// could be null
+		if(messageProducer == null) {
+			batch = new ArrayList<Message>(LocalTransport.getBatchSize());
+		}
+	}
+	
+	/**
+	 * Sends any batched local messages. Does nothing for a wrapped MessageProducer.
+	 * @throws JMSException if the queue is closed, in which case the batch is dropped
+	 */
+	public void flush() throws JMSException {
+		if(batch != null && batch.size() > 0) {
+			if(queue == null) {
+				queue = LocalTransport.openQueue(destination);
+			}
+			List<Message> messages = batch;
+			batch = new ArrayList<Message>(LocalTransport.getBatchSize());
+			queue.put(messages);
+		}
 	}
 	
 	public MessageProducer getMessageProducer() {
@@ -44,6 +78,9 @@ public class MessageProducerImpl implements javax.jms.MessageProducer {
 		if(messageProducer != null) {
 			messageProducer.close();
 		}
+		else {
+			flush();
+		}
 	}
 
 	@Override
@@ -82,7 +119,10 @@ public class MessageProducerImpl implements javax.jms.MessageProducer {
 			messageProducer.send(msg);
 		}
 		else {
-			queue.add(msg);
+			batch.add(msg);
+			if(batch.size() >= LocalTransport.getBatchSize()) {
+				flush();
+			}
 		}
 	}
 
@@ -91,6 +131,12 @@ public class MessageProducerImpl implements javax.jms.MessageProducer {
 		if(messageProducer != null) {
 			messageProducer.send(dest, msg);
 		}
+		else if(dest.equals(destination)) {
+			send(msg);
+		}
+		else {
+			LocalTransport.getQueue(dest).put(Collections.singletonList(msg));
+		}
 	}
 
 	@Override
@@ -98,13 +144,19 @@ public class MessageProducerImpl implements javax.jms.MessageProducer {
 		if(messageProducer != null) {
 			messageProducer.send(msg, arg1, arg2, arg3);
 		}
+		else {
+			send(msg);
+		}
 	}
 
 	@Override
 	public void send(Destination dest, Message arg1, int arg2, int arg3, long arg4) throws JMSException {
 		if(messageProducer != null) {
 			messageProducer.send(dest, arg1, arg2, arg3, arg4);
-		}		
+		}
+		else {
+			send(dest, arg1);
+		}
 	}
 
 	@Override
@@ -0,0 +1,124 @@
+package org.dwbzen.util.messaging;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * A bounded, in-process queue for a single Destination.<br>
+ * Messages are queued in batches (List&lt;Message&gt;) to keep producer/consumer
+ * contention low. The queue capacity is the maximum number of batches and a
+ * producer that gets ahead of its consumer blocks until space is available.<br>
+ * When its consumer is closed the queue is closed: the batches in it are discarded
+ * and put() throws a JMSException, so a producer isn't left blocked on a queue nobody reads.
+ * 
+ * @author don_bacon
+ *
+ */
+public class MessageQueue {
+
+	static final long CLOSE_CHECK_MILLIS = 100;	// a blocked put() checks if the queue has been closed this often
+
+	private String name;
+	private BlockingQueue<List<Message>> batches;
+	private long sendTimeout = 0;		// milliseconds, 0 means wait indefinitely
+	private volatile boolean closed = false;
+	
+	public MessageQueue(String name, int capacity, long sendTimeout) {
+		this.name = name;
+		this.sendTimeout = sendTimeout;
+		batches = new LinkedBlockingQueue<List<Message>>(capacity);
+	}
+	
+	/**
+	 * Adds a batch of Messages, blocking if the queue is full.
+	 * @param batch List of Messages to add
+	 * @throws JMSException if the queue is closed, the sendTimeout elapses or the thread is interrupted
+	 */
+	public void put(List<Message> batch) throws JMSException {
+		long deadline = System.currentTimeMillis() + sendTimeout;
+		try {
+			while(!closed) {
+				long wait = CLOSE_CHECK_MILLIS;
+				if(sendTimeout > 0) {
+					wait = Math.min(wait, deadline - System.currentTimeMillis());
+					if(wait <= 0) {
+						throw new JMSException("Timeout sending to " + name + " after " + sendTimeout + " ms");
+					}
+				}
+				if(batches.offer(batch, wait, TimeUnit.MILLISECONDS)) {
+					if(closed) {
+						batches.clear();	// closed while offering
+					}
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted sending to " + name);
+		}
+		throw new JMSException("Queue " + name + " is closed");
+	}
+	
+	/**
+	 * Closes the queue and discards any batches in it.
+	 */
+	public void close() {
+		closed = true;
+		batches.clear();
+	}
+	
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Removes the next batch of Messages, blocking until one is available.
+	 * @return List of Messages
+	 * @throws JMSException if the thread is interrupted
+	 */
+	public List<Message> take() throws JMSException {
+		try {
+			return batches.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted receiving from " + name);
+		}
+	}
+	
+	/**
+	 * Removes the next batch of Messages, waiting up to timeout milliseconds.
+	 * @param timeout milliseconds to wait, if <= 0 does not wait
+	 * @return List of Messages or null if none available
+	 * @throws JMSException if the thread is interrupted
+	 */
+	public List<Message> poll(long timeout) throws JMSException {
+		try {
+			return (timeout > 0) ? batches.poll(timeout, TimeUnit.MILLISECONDS) : batches.poll();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted receiving from " + name);
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * 
+	 * @return the number of batches in the queue
+	 */
+	public int size() {
+		return batches.size();
+	}
+	
+	public boolean isEmpty() {
+		return batches.isEmpty();
+	}
+
+}
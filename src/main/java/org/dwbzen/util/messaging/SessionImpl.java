@@ -1,6 +1,8 @@
 package org.dwbzen.util.messaging;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.jms.BytesMessage;
 import javax.jms.Destination;
@@ -21,13 +23,16 @@ import javax.jms.Topic;
 import javax.jms.TopicSubscriber;
 
 /**
- * A lightweight Session
+ * A lightweight Session backed by the in-process LocalTransport.
+ * Queues are shared by name across SessionImpl instances.
  * 
  * @author don_bacon
  *
  */
 public class SessionImpl implements javax.jms.Session {
 	
+	private List<MessageConsumer> consumers = new ArrayList<MessageConsumer>();
+	
 	@Override
 	public Queue createQueue(String name) throws JMSException {
 		return new DestinationImpl(name);
@@ -41,7 +46,9 @@ public class SessionImpl implements javax.jms.Session {
 
 	@Override
 	public MessageConsumer createConsumer(Destination dest) throws JMSException {
-		return new MessageConsumerImpl(dest);
+		MessageConsumer consumer = new MessageConsumerImpl(dest);
+		consumers.add(consumer);
+		return consumer;
 	}
 
 	@Override
@@ -50,16 +57,21 @@ public class SessionImpl implements javax.jms.Session {
 		return tm;
 	}
 	
-	/*
-	 * unimplemented methods
-	 * 
+	/**
+	 * Closes consumers created by this Session, releasing their queues.
 	 */
-	
 	@Override
 	public void close() throws JMSException {
-		// TODO Auto-generated method stub
-		
+		for(MessageConsumer consumer : consumers) {
+			consumer.close();
+		}
+		consumers.clear();
 	}
+	
+	/*
+	 * unimplemented methods
+	 * 
+	 */
 
 	@Override
 	public void commit() throws JMSException {
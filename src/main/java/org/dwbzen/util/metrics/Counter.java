@@ -0,0 +1,37 @@
+package org.dwbzen.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only increases, such as the number of notes created.
+ * Safe to update from any number of threads.
+ *
+ * @author don_bacon
+ *
+ */
+public class Counter extends Metric {
+
+	static final Counter NOOP = new Counter("noop", null, null, false);
+
+	private final LongAdder count = new LongAdder();
+
+	Counter(String name, String labelName, String labelValue, boolean enabled) {
+		super(name, labelName, labelValue, enabled);
+	}
+
+	public void increment() {
+		if(enabled) {
+			count.increment();
+		}
+	}
+
+	public void add(long n) {
+		if(enabled) {
+			count.add(n);
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+}
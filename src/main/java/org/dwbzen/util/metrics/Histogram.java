@@ -0,0 +1,84 @@
+package org.dwbzen.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of recorded values, for example the number of Measurables in each Measure.<br>
+ * Values are counted in power of 2 buckets (0, 1, 2-3, 4-7 ...) so recording allocates nothing
+ * and percentiles are estimated to within a factor of 2. The count, sum, minimum and maximum are exact.
+ * Negative values are recorded as 0. Safe to update from any number of threads.
+ *
+ * @author don_bacon
+ *
+ */
+public class Histogram extends Metric {
+
+	static final Histogram NOOP = new Histogram("noop", null, null, false);
+	static final int BUCKETS = Long.SIZE;		// bucket i holds values having i significant bits
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	Histogram(String name, String labelName, String labelValue, boolean enabled) {
+		super(name, labelName, labelValue, enabled);
+	}
+
+	public void record(long value) {
+		if(enabled) {
+			long v = Math.max(0, value);
+			buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(v));
+			count.increment();
+			sum.add(v);
+			min.accumulate(v);
+			max.accumulate(v);
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMin() {
+		return getCount() == 0 ? 0 : min.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = getCount();
+		return n == 0 ? 0.0 : (double)getSum() / n;
+	}
+
+	/**
+	 * Estimates a percentile as the upper bound of the bucket it falls in, but no more than the maximum.
+	 * @param quantile 0.0 to 1.0, for example 0.95
+	 * @return estimated value
+	 */
+	public long getPercentile(double quantile) {
+		long n = getCount();
+		if(n == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(quantile * n);
+		long cumulative = 0;
+		for(int i=0; i<BUCKETS; i++) {
+			cumulative += buckets.get(i);
+			if(cumulative >= rank) {
+				long upper = (1L << i) - 1;		// Long.MAX_VALUE for the last bucket
+				return Math.max(getMin(), Math.min(upper, getMax()));
+			}
+		}
+		return getMax();
+	}
+}
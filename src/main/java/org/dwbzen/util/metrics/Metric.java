@@ -0,0 +1,58 @@
+package org.dwbzen.util.metrics;
+
+/**
+ * Base class of the metrics kept by a MetricsRegistry.
+ * A metric has a name, for example "scorePart.notes", and an optional label such as part="Flute".
+ *
+ * @author don_bacon
+ *
+ */
+public abstract class Metric {
+
+	protected final String name;
+	protected final String labelName;
+	protected final String labelValue;
+	protected final boolean enabled;
+
+	protected Metric(String name, String labelName, String labelValue, boolean enabled) {
+		this.name = name;
+		this.labelName = labelName;
+		this.labelValue = labelValue;
+		this.enabled = enabled;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @param labelName may be null
+	 * @param labelValue
+	 * @return the registry key of a metric, as in scorePart.notes{part="Flute"}
+	 */
+	public static String key(String name, String labelName, String labelValue) {
+		return labelName == null ? name : name + "{" + labelName + "=\"" + labelValue + "\"}";
+	}
+
+	public String getKey() {
+		return key(name, labelName, labelValue);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getLabelName() {
+		return labelName;
+	}
+
+	public String getLabelValue() {
+		return labelValue;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public String toString() {
+		return getKey();
+	}
+}
@@ -0,0 +1,264 @@
+package org.dwbzen.util.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Timers, counters and histograms of a ProductionFlow run.<br>
+ * Like SeededRandom the registry in use is the current thread's: ProductionFlow runs with its registry as current(),
+ * and ScoreParts and DataLoaders use the registry that was current when they were created.
+ * If metrics aren't enabled current() is DISABLED, which hands out shared no-op metrics.
+ * So an instrumented stage costs a field read and a branch when metrics are off.<br>
+ * At the end of a run the metrics can be printed as a table (printSummary),
+ * or written as JSON or Prometheus text format (write).
+ * Configuration parameters:
+ * <dl>
+ * <dt>metrics.enabled</dt> <dd>true to collect metrics. Default is false.</dd>
+ * <dt>metrics.file</dt> <dd>file to write the metrics to at the end of the run. A .json file is written as JSON,
+ * anything else in Prometheus text format.</dd>
+ * </dl>
+ *
+ * @author don_bacon
+ *
+ */
+public class MetricsRegistry {
+
+	public static final String PROMETHEUS_PREFIX = "music_";
+
+	/**
+	 * Hands out no-op metrics
+	 */
+	public static final MetricsRegistry DISABLED = new MetricsRegistry(false);
+
+	private static final ThreadLocal<MetricsRegistry> current = new ThreadLocal<MetricsRegistry>();
+
+	private final boolean enabled;
+	private final Map<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	public MetricsRegistry() {
+		this(true);
+	}
+
+	private MetricsRegistry(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 *
+	 * @param configProperties
+	 * @return a new MetricsRegistry if metrics.enabled is true, otherwise DISABLED
+	 */
+	public static MetricsRegistry configure(Properties configProperties) {
+		boolean enabled = configProperties.getProperty("metrics.enabled", "false").equalsIgnoreCase("true");
+		return enabled ? new MetricsRegistry() : DISABLED;
+	}
+
+	/**
+	 *
+	 * @return the current thread's MetricsRegistry, DISABLED if none has been set
+	 */
+	public static MetricsRegistry current() {
+		MetricsRegistry registry = current.get();
+		return registry != null ? registry : DISABLED;
+	}
+
+	/**
+	 * Runs a task with registry as the current thread's MetricsRegistry, then restores the previous one.
+	 * @param registry
+	 * @param task
+	 */
+	public static void run(MetricsRegistry registry, Runnable task) {
+		MetricsRegistry previous = current.get();
+		current.set(registry);
+		try {
+			task.run();
+		}
+		finally {
+			if(previous == null) {
+				current.remove();
+			}
+			else {
+				current.set(previous);
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Counter counter(String name) {
+		return counter(name, null, null);
+	}
+
+	public Counter counter(String name, String labelName, String labelValue) {
+		if(!enabled) {
+			return Counter.NOOP;
+		}
+		return counters.computeIfAbsent(Metric.key(name, labelName, labelValue), k -> new Counter(name, labelName, labelValue, true));
+	}
+
+	public Timer timer(String name) {
+		return timer(name, null, null);
+	}
+
+	public Timer timer(String name, String labelName, String labelValue) {
+		if(!enabled) {
+			return Timer.NOOP;
+		}
+		return timers.computeIfAbsent(Metric.key(name, labelName, labelValue), k -> new Timer(name, labelName, labelValue, true));
+	}
+
+	public Histogram histogram(String name) {
+		return histogram(name, null, null);
+	}
+
+	public Histogram histogram(String name, String labelName, String labelValue) {
+		if(!enabled) {
+			return Histogram.NOOP;
+		}
+		return histograms.computeIfAbsent(Metric.key(name, labelName, labelValue), k -> new Histogram(name, labelName, labelValue, true));
+	}
+
+	/**
+	 * Prints a table of the metrics sorted by key. Times are in milliseconds.
+	 * @param ps
+	 */
+	public void printSummary(PrintStream ps) {
+		String format = "%-10s %-50s %10s %12s %12s %12s %12s%n";
+		ps.printf(format, "type", "metric", "count", "total", "mean", "p95", "max");
+		for(Timer timer : new TreeMap<String, Timer>(timers).values()) {
+			Histogram h = timer.getHistogram();
+			ps.printf(format, "timer(ms)", timer.getKey(), h.getCount(), millis(h.getSum()), millis(h.getMean()),
+					millis(h.getPercentile(0.95)), millis(h.getMax()));
+		}
+		for(Counter counter : new TreeMap<String, Counter>(counters).values()) {
+			ps.printf(format, "counter", counter.getKey(), "", counter.getCount(), "", "", "");
+		}
+		for(Histogram h : new TreeMap<String, Histogram>(histograms).values()) {
+			ps.printf(format, "histogram", h.getKey(), h.getCount(), h.getSum(), String.format("%.2f", h.getMean()),
+					h.getPercentile(0.95), h.getMax());
+		}
+	}
+
+	private static String millis(double nanos) {
+		return String.format("%.3f", nanos / 1.0e6);
+	}
+
+	/**
+	 *
+	 * @return the metrics as JSON: counters, timers (nanoseconds) and histograms by key
+	 */
+	public String toJson() {
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		Map<String, Object> counterMap = new TreeMap<String, Object>();
+		counters.values().forEach(c -> counterMap.put(c.getKey(), c.getCount()));
+		Map<String, Object> timerMap = new TreeMap<String, Object>();
+		timers.values().forEach(t -> timerMap.put(t.getKey(), histogramMap(t.getHistogram())));
+		Map<String, Object> histogramMap = new TreeMap<String, Object>();
+		histograms.values().forEach(h -> histogramMap.put(h.getKey(), histogramMap(h)));
+		json.put("counters", counterMap);
+		json.put("timers", timerMap);
+		json.put("histograms", histogramMap);
+		try {
+			return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(json);
+		}
+		catch(JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Map<String, Object> histogramMap(Histogram h) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("count", h.getCount());
+		map.put("sum", h.getSum());
+		map.put("min", h.getMin());
+		map.put("mean", h.getMean());
+		map.put("p50", h.getPercentile(0.5));
+		map.put("p95", h.getPercentile(0.95));
+		map.put("max", h.getMax());
+		return map;
+	}
+
+	/**
+	 * Formats the metrics as Prometheus text. Counters are counters (_total),
+	 * timers (in seconds) and histograms are summaries with 0.5 and 0.95 quantiles.
+	 * @return Prometheus text exposition format
+	 */
+	public String toPrometheus() {
+		StringBuilder sb = new StringBuilder();
+		List<String> typed = new ArrayList<String>();
+		for(Counter c : new TreeMap<String, Counter>(counters).values()) {
+			String name = prometheusName(c.getName()) + "_total";
+			type(sb, typed, name, "counter");
+			sb.append(name).append(labels(c, null)).append(' ').append(c.getCount()).append('\n');
+		}
+		for(Timer t : new TreeMap<String, Timer>(timers).values()) {
+			summary(sb, typed, prometheusName(t.getName()) + "_seconds", t, t.getHistogram(), 1.0e-9);
+		}
+		for(Histogram h : new TreeMap<String, Histogram>(histograms).values()) {
+			summary(sb, typed, prometheusName(h.getName()), h, h, 1.0);
+		}
+		return sb.toString();
+	}
+
+	private static void summary(StringBuilder sb, List<String> typed, String name, Metric metric, Histogram h, double scale) {
+		type(sb, typed, name, "summary");
+		sb.append(name).append(labels(metric, "quantile=\"0.5\"")).append(' ').append(h.getPercentile(0.5) * scale).append('\n');
+		sb.append(name).append(labels(metric, "quantile=\"0.95\"")).append(' ').append(h.getPercentile(0.95) * scale).append('\n');
+		sb.append(name).append("_sum").append(labels(metric, null)).append(' ').append(h.getSum() * scale).append('\n');
+		sb.append(name).append("_count").append(labels(metric, null)).append(' ').append(h.getCount()).append('\n');
+	}
+
+	private static void type(StringBuilder sb, List<String> typed, String name, String type) {
+		if(!typed.contains(name)) {
+			typed.add(name);
+			sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		}
+	}
+
+	private static String labels(Metric metric, String extra) {
+		List<String> labels = new ArrayList<String>();
+		if(metric.getLabelName() != null) {
+			labels.add(metric.getLabelName() + "=\"" + metric.getLabelValue().replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+		}
+		if(extra != null) {
+			labels.add(extra);
+		}
+		return labels.isEmpty() ? "" : "{" + String.join(",", labels) + "}";
+	}
+
+	/**
+	 *
+	 * @param name a metric name such as "scorePart.notes"
+	 * @return the Prometheus metric name, for example music_scorePart_notes
+	 */
+	static String prometheusName(String name) {
+		return PROMETHEUS_PREFIX + name.replaceAll("[^a-zA-Z0-9_:]", "_");
+	}
+
+	/**
+	 * Writes the metrics to a file, as JSON if the file name ends in .json, otherwise as Prometheus text.
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void write(String fileName) throws IOException {
+		String text = fileName.toLowerCase().endsWith(".json") ? toJson() : toPrometheus();
+		Files.write(new File(fileName).toPath(), text.getBytes(StandardCharsets.UTF_8));
+	}
+}
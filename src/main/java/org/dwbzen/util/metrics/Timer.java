@@ -0,0 +1,81 @@
+package org.dwbzen.util.metrics;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Times a stage of work in nanoseconds, keeping the distribution of times in a Histogram.
+ * <pre>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ * When disabled, start() doesn't read the clock and stop() does nothing.
+ *
+ * @author don_bacon
+ *
+ */
+public class Timer extends Metric {
+
+	static final Timer NOOP = new Timer("noop", null, null, false);
+
+	private final Histogram histogram;
+
+	Timer(String name, String labelName, String labelValue, boolean enabled) {
+		super(name, labelName, labelValue, enabled);
+		histogram = new Histogram(name, labelName, labelValue, enabled);
+	}
+
+	/**
+	 *
+	 * @return the start time to pass to stop()
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Records the time since start
+	 * @param start the value returned by start()
+	 */
+	public void stop(long start) {
+		if(enabled) {
+			histogram.record(System.nanoTime() - start);
+		}
+	}
+
+	public void time(Runnable task) {
+		long start = start();
+		try {
+			task.run();
+		}
+		finally {
+			stop(start);
+		}
+	}
+
+	public <T> T time(Callable<T> task) throws Exception {
+		long start = start();
+		try {
+			return task.call();
+		}
+		finally {
+			stop(start);
+		}
+	}
+
+	/**
+	 *
+	 * @return the times in nanoseconds
+	 */
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+	public long getCount() {
+		return histogram.getCount();
+	}
+
+	public long getTotalNanos() {
+		return histogram.getSum();
+	}
+}
@@ -0,0 +1,170 @@
+package org.dwbzen.util.mongo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+/**
+ * Buffers Documents by collection and inserts them into a DocumentStore batchSize at a time.<br>
+ * If async is true a full batch is inserted on a background thread so the caller can go on producing documents.
+ * Batches are inserted one at a time in the order they filled. close() flushes whatever is left
+ * and waits for all the batches to be inserted.<br>
+ * If an insert fails the batches after it are still inserted, and the next flush() or close()
+ * throws an IllegalStateException whose cause is the first failure.
+ * <pre>
+ * try(BulkWriter writer = new BulkWriter(store, 500, true)) {
+ *     documents.forEach(doc -> writer.add("scores", doc));
+ * }
+ * </pre>
+ *
+ * @author don_bacon
+ *
+ */
+public class BulkWriter implements AutoCloseable {
+	static final Logger log = LogManager.getLogger(BulkWriter.class);
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private DocumentStore documentStore;
+	private int batchSize;
+	private ExecutorService executor = null;		// if async
+	private Map<String, List<Document>> batches = new LinkedHashMap<String, List<Document>>();
+	private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+	private AtomicLong inserted = new AtomicLong();
+	private AtomicLong failed = new AtomicLong();		// documents not inserted since the last flush
+	private AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+	public BulkWriter(DocumentStore documentStore, int batchSize, boolean async) {
+		this.documentStore = documentStore;
+		this.batchSize = Math.max(1, batchSize);
+		if(async) {
+			executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "BulkWriter");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Adds a document to a collection's batch, inserting the batch when it's full.
+	 * @param collectionName
+	 * @param document
+	 */
+	public synchronized void add(String collectionName, Document document) {
+		List<Document> batch = batches.computeIfAbsent(collectionName, c -> new ArrayList<Document>(batchSize));
+		batch.add(document);
+		if(batch.size() >= batchSize) {
+			batches.remove(collectionName);
+			submit(collectionName, batch);
+		}
+	}
+
+	public synchronized void addAll(String collectionName, List<Document> documents) {
+		documents.forEach(document -> add(collectionName, document));
+	}
+
+	/**
+	 * Inserts the partial batches.
+	 * @return a CompletableFuture that completes when every batch added so far has been inserted,
+	 * exceptionally with an IllegalStateException if any of them could not be
+	 */
+	public synchronized CompletableFuture<Void> flushAsync() {
+		batches.forEach(this::submit);
+		batches.clear();
+		return pending.thenRun(this::checkInserted);
+	}
+
+	/**
+	 * Inserts the partial batches and waits until every batch added so far has been inserted.
+	 * @throws IllegalStateException if any documents could not be inserted since the last flush
+	 */
+	public void flush() {
+		try {
+			flushAsync().join();
+		}
+		catch(CompletionException e) {
+			throw (e.getCause() instanceof RuntimeException) ? (RuntimeException)e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Reports a failed insert once.
+	 * @throws IllegalStateException if an insert failed since the last check
+	 */
+	private void checkInserted() {
+		RuntimeException e = failure.getAndSet(null);
+		if(e != null) {
+			throw new IllegalStateException(failed.getAndSet(0) + " documents could not be inserted: " + e.toString(), e);
+		}
+	}
+
+	private void submit(String collectionName, List<Document> batch) {
+		if(executor == null) {
+			insert(collectionName, batch);
+		}
+		else {
+			pending = pending.thenRunAsync(() -> insert(collectionName, batch), executor);
+		}
+	}
+
+	private void insert(String collectionName, List<Document> batch) {
+		try {
+			inserted.addAndGet(documentStore.insert(collectionName, batch));
+			log.debug(collectionName + ": inserted " + batch.size() + " documents");
+		}
+		catch(RuntimeException e) {
+			log.error(collectionName + ": insert of " + batch.size() + " documents failed: " + e.toString());
+			failed.addAndGet(batch.size());
+			if(!failure.compareAndSet(null, e)) {
+				failure.get().addSuppressed(e);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of documents inserted so far
+	 */
+	public long getInsertedCount() {
+		return inserted.get();
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Flushes, waits for the inserts to complete, and stops the background thread.
+	 * The DocumentStore is not closed.
+	 * @throws IllegalStateException if any documents could not be inserted since the last flush
+	 */
+	@Override
+	public void close() {
+		try {
+			flush();
+		}
+		finally {
+			if(executor != null) {
+				executor.shutdown();
+				try {
+					executor.awaitTermination(1, TimeUnit.MINUTES);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
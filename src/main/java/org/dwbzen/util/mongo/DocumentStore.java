@@ -0,0 +1,48 @@
+package org.dwbzen.util.mongo;
+
+import java.util.List;
+
+import org.bson.Document;
+
+/**
+ * Storage for JSON documents by collection name: a MongoDB database (MongoDocumentStore),
+ * an embedded file-based store that needs no server (FileDocumentStore),
+ * or an in-memory stand-in (InMemoryDocumentStore) for testing.<br>
+ * The queries are the ones Find supports: each field of the filter must equal the document's field,
+ * or match it if the filter value is a java.util.regex.Pattern. Use DocumentStores.open() to get the configured store
+ * and DocumentStores.parseQuery() to build a filter from a Find query string.
+ *
+ * @author don_bacon
+ *
+ */
+public interface DocumentStore extends AutoCloseable {
+
+	/**
+	 * Inserts a batch of documents. The order in which they're inserted is not significant.
+	 * @param collectionName
+	 * @param documents
+	 * @return number of documents inserted
+	 */
+	int insert(String collectionName, List<Document> documents);
+
+	/**
+	 * Finds documents, without their _id.
+	 * @param collectionName
+	 * @param filter
+	 * @param limit maximum number of documents returned, 0 for no limit
+	 * @return matching documents in the order they were inserted (MongoDB: natural order)
+	 */
+	List<Document> find(String collectionName, Document filter, int limit);
+
+	/**
+	 *
+	 * @param collectionName
+	 * @param filter
+	 * @return the number of matching documents
+	 */
+	long count(String collectionName, Document filter);
+
+	@Override
+	default void close() {
+	}
+}
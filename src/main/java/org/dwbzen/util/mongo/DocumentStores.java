@@ -0,0 +1,103 @@
+package org.dwbzen.util.mongo;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+
+/**
+ * Opens the configured DocumentStore and builds and applies query filters.<br>
+ * Configuration parameters:
+ * <dl>
+ * <dt>documentStore</dt> <dd>mongodb (the default) or file, the embedded FileDocumentStore which needs no server.</dd>
+ * <dt>documentStore.file.path</dt> <dd>directory of the file store, with a subdirectory for each database. Default is "store".</dd>
+ * </dl>
+ *
+ * @author don_bacon
+ *
+ */
+public class DocumentStores {
+
+	public static final String MONGODB = "mongodb";
+	public static final String FILE = "file";
+	public static final String DEFAULT_FILE_PATH = "store";
+
+	private DocumentStores() {}
+
+	/**
+	 * Opens the configured DocumentStore for a database.
+	 * @param configProperties
+	 * @param mongoURI MongoDB connection URI, used if the store is mongodb
+	 * @param databaseName
+	 * @return DocumentStore
+	 */
+	public static DocumentStore open(Properties configProperties, String mongoURI, String databaseName) {
+		String storeType = configProperties.getProperty("documentStore", MONGODB);
+		if(storeType.equalsIgnoreCase(FILE)) {
+			File directory = new File(configProperties.getProperty("documentStore.file.path", DEFAULT_FILE_PATH), databaseName);
+			return FileDocumentStore.open(directory);
+		}
+		else if(storeType.equalsIgnoreCase(MONGODB)) {
+			return new MongoDocumentStore(mongoURI, databaseName);
+		}
+		throw new IllegalArgumentException("Unknown documentStore " + storeType);
+	}
+
+	/**
+	 * Opens the configured DocumentStore, connecting to MongoDB with dataSource.mongodb.connectionURI
+	 * @param configProperties
+	 * @param databaseName
+	 * @return DocumentStore
+	 */
+	public static DocumentStore open(Properties configProperties, String databaseName) {
+		return open(configProperties, configProperties.getProperty("dataSource.mongodb.connectionURI", MongoClientPool.DEFAULT_URI), databaseName);
+	}
+
+	/**
+	 * Builds a filter from a Find query string.
+	 * Format is field1:value1[,field2:value2 ...] or field1:/regex1/ etc. Commas become "AND".
+	 * @param queryString for example "name:sierpinski, type:stats". null or empty matches everything.
+	 * @return filter Document
+	 */
+	public static Document parseQuery(String queryString) {
+		Document filter = new Document();
+		if(queryString != null && queryString.length() > 0) {
+			for(String fq : queryString.split(",")) {
+				String[] fvals = fq.split(":", 2);
+				String fval = fvals[1].trim();
+				if(fval.length() > 1 && fval.startsWith("/") && fval.endsWith("/")) {
+					filter.append(fvals[0].trim(), Pattern.compile(fval.substring(1, fval.length()-1), Pattern.CASE_INSENSITIVE));
+				}
+				else {
+					filter.append(fvals[0].trim(), fval);
+				}
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 *
+	 * @param document
+	 * @param filter
+	 * @return true if every field in the filter equals (or matches the Pattern of) the document field
+	 */
+	public static boolean matches(Document document, Document filter) {
+		for(Map.Entry<String, Object> entry : filter.entrySet()) {
+			Object value = document.get(entry.getKey());
+			Object expected = entry.getValue();
+			if(expected instanceof Pattern) {
+				if(value == null || !((Pattern)expected).matcher(value.toString()).find()) {
+					return false;
+				}
+			}
+			else if(!Objects.equals(value, expected)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,494 @@
+package org.dwbzen.util.mongo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * An embedded DocumentStore that needs no server: each collection is an append-only log of JSON documents,
+ * one per line, in &lt;directory&gt;/&lt;collection&gt;.jsonl<br>
+ * When a collection is first used its log is scanned once to build an in-memory index of the offset, length,
+ * name and type of every document. A query on name and/or type (the queries MongoDBDataSource makes) is answered
+ * from the index and only the matching documents are read, with positional reads that don't block each other.
+ * Other fields are checked after the document is read.<br>
+ * Inserts append to the log and the index. A partly written last line (the JVM died during an insert) is truncated
+ * when the log is scanned.<br>
+ * There is one FileDocumentStore per directory in a JVM. Another process should not write the same directory.<p>
+ * Importing data, for example a fractal data set for MongoDBDataSource or a directory of songs:<br>
+ * <code>
+ * FileDocumentStore -path store -db music -collection sierpinski_small -file data/fractal/sierpinski_small.json -name sierpinski_small<br>
+ * FileDocumentStore -path store -db music -collection songs -file data/music/songs
+ * </code>
+ * <dl>
+ * <dt>-file</dt> <dd>a file of JSON documents one per line, a file with a single JSON document, or a directory of .json files</dd>
+ * <dt>-name</dt> <dd>optional, replaces the name field of each document</dd>
+ * </dl>
+ *
+ * @author don_bacon
+ *
+ */
+public class FileDocumentStore implements DocumentStore {
+	static final Logger log = LogManager.getLogger(FileDocumentStore.class);
+	public static final String EXTENSION = ".jsonl";
+
+	private static Map<String, FileDocumentStore> stores = new ConcurrentHashMap<String, FileDocumentStore>();
+	private static JsonFactory jsonFactory = new JsonFactory();
+
+	private File directory;
+	private Map<String, DocumentLog> collections = new ConcurrentHashMap<String, DocumentLog>();
+
+	private FileDocumentStore(File directory) {
+		this.directory = directory;
+		directory.mkdirs();
+	}
+
+	/**
+	 * Gets the FileDocumentStore for a directory, creating the directory if needed.
+	 * @param directory
+	 * @return FileDocumentStore
+	 */
+	public static FileDocumentStore open(File directory) {
+		return stores.computeIfAbsent(directory.getAbsolutePath(), path -> new FileDocumentStore(new File(path)));
+	}
+
+	public static void main(String... args) throws IOException {
+		String path = DocumentStores.DEFAULT_FILE_PATH;
+		String db = Find.DBNAME;
+		String collectionName = null;
+		String fileName = null;
+		String name = null;
+		for(int i=0; i<args.length; i++) {
+			if(args[i].equalsIgnoreCase("-path")) {
+				path = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-db")) {
+				db = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-collection")) {
+				collectionName = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-file")) {
+				fileName = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-name")) {
+				name = args[++i];
+			}
+		}
+		if(collectionName == null || fileName == null) {
+			System.err.println("You must specify a collection name and a file!");
+			return;
+		}
+		FileDocumentStore store = open(new File(path, db));
+		List<File> files = new ArrayList<File>();
+		File file = new File(fileName);
+		if(file.isDirectory()) {
+			File[] jsonFiles = file.listFiles((dir, fname) -> fname.endsWith(".json"));
+			Arrays.sort(jsonFiles);
+			files.addAll(Arrays.asList(jsonFiles));
+		}
+		else {
+			files.add(file);
+		}
+		int count = 0;
+		for(File f : files) {
+			List<Document> documents = readDocuments(f);
+			if(name != null) {
+				for(Document document : documents) {
+					document.put("name", name);
+				}
+			}
+			count += store.insert(collectionName, documents);
+		}
+		System.out.println(count + " documents inserted into " + collectionName);
+	}
+
+	/**
+	 * Reads a file of JSON documents one per line, or a file that is a single JSON document.
+	 * Blank lines and lines starting with // are skipped.
+	 * @param file
+	 * @return List of Document
+	 * @throws IOException
+	 */
+	public static List<Document> readDocuments(File file) throws IOException {
+		List<Document> documents = new ArrayList<Document>();
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		try {
+			for(String line : lines) {
+				if(!line.isBlank() && !line.trim().startsWith("//")) {
+					documents.add(Document.parse(line));
+				}
+			}
+		}
+		catch(RuntimeException e) {
+			// not one document per line
+			documents.clear();
+			documents.add(Document.parse(String.join("\n", lines)));
+		}
+		return documents;
+	}
+
+	@Override
+	public int insert(String collectionName, List<Document> documents) {
+		try {
+			return getCollection(collectionName).append(documents);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public List<Document> find(String collectionName, Document filter, int limit) {
+		try {
+			return getCollection(collectionName).find(filter, limit);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public long count(String collectionName, Document filter) {
+		try {
+			return getCollection(collectionName).count(filter);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private DocumentLog getCollection(String collectionName) {
+		return collections.computeIfAbsent(collectionName, c -> {
+			try {
+				return new DocumentLog(new File(directory, c + EXTENSION));
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Closes the files of all the FileDocumentStores. They're opened again if used.
+	 */
+	public static void closeAll() {
+		for(FileDocumentStore store : stores.values()) {
+			for(String collectionName : store.collections.keySet()) {
+				DocumentLog documentLog = store.collections.remove(collectionName);
+				if(documentLog != null) {
+					documentLog.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The log and index of one collection
+	 */
+	static class DocumentLog {
+		private File file;
+		private FileChannel channel;
+		private ReadWriteLock lock = new ReentrantReadWriteLock();
+		private long end = 0;		// where the next document is appended
+		private int size = 0;
+		private long[] offsets = new long[1024];
+		private int[] lengths = new int[1024];
+		private String[] names = new String[1024];
+		private String[] types = new String[1024];
+		private Map<String, Postings> byName = new HashMap<String, Postings>();
+		private Map<String, Postings> byType = new HashMap<String, Postings>();
+
+		DocumentLog(File file) throws IOException {
+			this.file = file;
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			scan();
+		}
+
+		/**
+		 * Indexes the documents in the log, truncating a partly written last line
+		 */
+		private void scan() throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			long lineStart = 0;
+			long position = 0;
+			try(InputStream is = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+				int b;
+				while((b = is.read()) >= 0) {
+					position++;
+					if(b == '\n') {
+						byte[] bytes = line.toByteArray();
+						if(bytes.length > 0) {
+							String[] nameType = readNameType(bytes);
+							add(lineStart, bytes.length, nameType[0], nameType[1]);
+						}
+						line.reset();
+						lineStart = position;
+					}
+					else {
+						line.write(b);
+					}
+				}
+			}
+			catch(IOException e) {
+				throw new IOException("Could not read " + file.getName() + " at offset " + position, e);
+			}
+			end = lineStart;
+			if(position > end) {
+				log.warn(file.getName() + ": truncating " + (position - end) + " bytes of an incomplete document");
+				channel.truncate(end);
+			}
+			log.debug(file.getName() + ": " + size + " documents");
+		}
+
+		/**
+		 * Reads the top level name and type fields without parsing the rest of the document.
+		 * @param bytes a JSON document
+		 * @return {name, type}, either can be null
+		 */
+		private static String[] readNameType(byte[] bytes) throws IOException {
+			String[] nameType = new String[2];
+			try(JsonParser parser = jsonFactory.createParser(bytes)) {
+				if(parser.nextToken() != JsonToken.START_OBJECT) {
+					return nameType;
+				}
+				while(parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					JsonToken token = parser.nextToken();
+					if(token == JsonToken.VALUE_STRING && field.equals("name")) {
+						nameType[0] = parser.getText();
+					}
+					else if(token == JsonToken.VALUE_STRING && field.equals("type")) {
+						nameType[1] = parser.getText();
+					}
+					else {
+						parser.skipChildren();
+					}
+					if(nameType[0] != null && nameType[1] != null) {
+						break;
+					}
+				}
+			}
+			return nameType;
+		}
+
+		private void add(long offset, int length, String name, String type) {
+			if(size == offsets.length) {
+				int capacity = size * 2;
+				offsets = Arrays.copyOf(offsets, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+				names = Arrays.copyOf(names, capacity);
+				types = Arrays.copyOf(types, capacity);
+			}
+			offsets[size] = offset;
+			lengths[size] = length;
+			names[size] = name;
+			types[size] = type;
+			if(name != null) {
+				byName.computeIfAbsent(name, k -> new Postings()).add(size);
+			}
+			if(type != null) {
+				byType.computeIfAbsent(type, k -> new Postings()).add(size);
+			}
+			size++;
+		}
+
+		int append(List<Document> documents) throws IOException {
+			if(documents.isEmpty()) {
+				return 0;
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			int[] documentLengths = new int[documents.size()];
+			for(int i=0; i<documents.size(); i++) {
+				byte[] json = documents.get(i).toJson().getBytes(StandardCharsets.UTF_8);
+				documentLengths[i] = json.length;
+				bytes.write(json);
+				bytes.write('\n');
+			}
+			lock.writeLock().lock();
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+				long position = end;
+				while(buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				long offset = end;
+				for(int i=0; i<documents.size(); i++) {
+					Document document = documents.get(i);
+					add(offset, documentLengths[i], stringValue(document, "name"), stringValue(document, "type"));
+					offset += documentLengths[i] + 1;
+				}
+				end = position;
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+			return documents.size();
+		}
+
+		private static String stringValue(Document document, String field) {
+			Object value = document.get(field);
+			return value instanceof String ? (String)value : null;
+		}
+
+		List<Document> find(Document filter, int limit) throws IOException {
+			List<Document> documents = new ArrayList<Document>();
+			Document remaining = remainingFilter(filter);
+			for(int i : candidates(filter, remaining.isEmpty() ? limit : 0)) {
+				Document document = read(i);
+				if(DocumentStores.matches(document, remaining)) {
+					document.remove("_id");
+					documents.add(document);
+					if(limit > 0 && documents.size() >= limit) {
+						break;
+					}
+				}
+			}
+			return documents;
+		}
+
+		long count(Document filter) throws IOException {
+			Document remaining = remainingFilter(filter);
+			int[] candidates = candidates(filter, 0);
+			if(remaining.isEmpty()) {
+				return candidates.length;
+			}
+			long count = 0;
+			for(int i : candidates) {
+				if(DocumentStores.matches(read(i), remaining)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 *
+		 * @param filter
+		 * @return the fields of the filter that the index can't answer
+		 */
+		private static Document remainingFilter(Document filter) {
+			Document remaining = new Document();
+			filter.forEach((field, value) -> {
+				if(!(value instanceof String && (field.equals("name") || field.equals("type")))) {
+					remaining.put(field, value);
+				}
+			});
+			return remaining;
+		}
+
+		/**
+		 *
+		 * @param filter
+		 * @param limit 0 for no limit
+		 * @return the documents that match the name and type of the filter, from the index
+		 */
+		private int[] candidates(Document filter, int limit) {
+			String name = filter.get("name") instanceof String ? (String)filter.get("name") : null;
+			String type = filter.get("type") instanceof String ? (String)filter.get("type") : null;
+			lock.readLock().lock();
+			try {
+				Postings postings = null;		// null is every document
+				if(name != null) {
+					postings = byName.getOrDefault(name, Postings.EMPTY);
+				}
+				if(type != null) {
+					Postings typePostings = byType.getOrDefault(type, Postings.EMPTY);
+					if(postings == null || typePostings.size < postings.size) {
+						postings = typePostings;
+					}
+				}
+				int total = postings == null ? size : postings.size;
+				int n = limit > 0 ? Math.min(limit, total) : total;
+				int[] candidates = new int[n];
+				int count = 0;
+				for(int j=0; j<total && count<n; j++) {
+					int i = postings == null ? j : postings.ids[j];
+					if((name == null || name.equals(names[i])) && (type == null || type.equals(types[i]))) {
+						candidates[count++] = i;
+					}
+				}
+				return count == n ? candidates : Arrays.copyOf(candidates, count);
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		private Document read(int i) throws IOException {
+			long offset;
+			int length;
+			lock.readLock().lock();
+			try {
+				offset = offsets[i];
+				length = lengths[i];
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			long position = offset;
+			while(buffer.hasRemaining()) {
+				int n = channel.read(buffer, position);
+				if(n < 0) {
+					throw new IOException(file.getName() + ": document at offset " + offset + " is incomplete");
+				}
+				position += n;
+			}
+			return Document.parse(new String(buffer.array(), 0, length, StandardCharsets.UTF_8));
+		}
+
+		void close() {
+			try {
+				channel.close();
+			}
+			catch(IOException e) {
+				log.warn("Could not close " + file.getName() + ": " + e.toString());
+			}
+		}
+	}
+
+	/**
+	 * The documents having a name or type, in the order they were added
+	 */
+	static class Postings {
+		static final Postings EMPTY = new Postings();
+		private int[] ids = new int[16];
+		private int size = 0;
+
+		void add(int id) {
+			if(size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+	}
+}
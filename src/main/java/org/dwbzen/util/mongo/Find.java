@@ -14,7 +14,6 @@ import org.bson.Document;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.MongoClient;
-import com.mongodb.MongoClientURI;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
@@ -22,7 +21,8 @@ import com.mongodb.client.model.Projections;
 
 /**
  * Wrapper for db.collection.find()<br>
- * Uses the legacy version of the MongoDB driver. TODO: update to mongodb-driver-sync <p>
+ * Uses the legacy version of the MongoDB driver. TODO: update to mongodb-driver-sync <br>
+ * Connections come from the shared clients of MongoClientPool, so creating a Find doesn't connect again. <p>
  * <code>
  * Usage: <br>
  *  -db dbname			(optional, default = "test")<br>
@@ -84,8 +84,7 @@ public class Find {
 	
 	public void connect(String databaseName, String cname, String uriString) {
 		try {
-			MongoClientURI clientURI = new MongoClientURI(uriString);
-			mongoClient = new MongoClient(clientURI);
+			mongoClient = MongoClientPool.getClient(uriString);
 			db = mongoClient.getDatabase( databaseName );
 			collectionName = cname;
 			collection = db.getCollection(collectionName);
@@ -99,7 +98,7 @@ public class Find {
 	
 	public void connect(String databaseName, String cname, String hostName, int port) {
 		try {
-			mongoClient = new MongoClient(hostName, port );
+			mongoClient = MongoClientPool.getClient(hostName, port);
 			db = mongoClient.getDatabase(databaseName);
 			collectionName = cname;
 			collection = db.getCollection(collectionName);
@@ -223,8 +222,11 @@ public class Find {
 		return cursor;
 	}
 	
+	/**
+	 * Releases this Find. The pooled MongoClient stays open for other users.
+	 */
 	public void close() {
-		this.mongoClient.close();
+		collection = null;
 	}
 	
 	/**
@@ -0,0 +1,66 @@
+package org.dwbzen.util.mongo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+
+/**
+ * Keeps inserted documents in memory by collection name. A stand-in for MongoDB in tests.
+ * find() returns the inserted Documents themselves, not copies.
+ *
+ * @author don_bacon
+ *
+ */
+public class InMemoryDocumentStore implements DocumentStore {
+
+	private Map<String, List<Document>> collections = new ConcurrentHashMap<String, List<Document>>();
+	private List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+	@Override
+	public int insert(String collectionName, List<Document> documents) {
+		collections.computeIfAbsent(collectionName, c -> Collections.synchronizedList(new ArrayList<Document>())).addAll(documents);
+		batchSizes.add(documents.size());
+		return documents.size();
+	}
+
+	@Override
+	public List<Document> find(String collectionName, Document filter, int limit) {
+		Stream<Document> found = matching(collectionName, filter);
+		return (limit > 0 ? found.limit(limit) : found).collect(Collectors.toList());
+	}
+
+	@Override
+	public long count(String collectionName, Document filter) {
+		return matching(collectionName, filter).count();
+	}
+
+	private Stream<Document> matching(String collectionName, Document filter) {
+		List<Document> collection = getCollection(collectionName);
+		synchronized(collection) {
+			return new ArrayList<Document>(collection).stream().filter(doc -> DocumentStores.matches(doc, filter));
+		}
+	}
+
+	/**
+	 *
+	 * @param collectionName
+	 * @return the documents inserted into a collection, in the order they were inserted
+	 */
+	public List<Document> getCollection(String collectionName) {
+		return collections.getOrDefault(collectionName, Collections.emptyList());
+	}
+
+	/**
+	 *
+	 * @return the size of each batch inserted
+	 */
+	public List<Integer> getBatchSizes() {
+		return batchSizes;
+	}
+}
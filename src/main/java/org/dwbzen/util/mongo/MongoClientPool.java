@@ -0,0 +1,65 @@
+package org.dwbzen.util.mongo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+
+/**
+ * One shared MongoClient per connection URI.<br>
+ * A MongoClient maintains its own connection pool and is safe to use from any number of threads,
+ * so Find, MongoDBDataSource and ScoreRepository share a client instead of connecting every time.
+ * The pool size can be set in the URI, for example mongodb://localhost:27017/?maxPoolSize=20<br>
+ * The clients are closed when the JVM exits, or by closeAll().
+ *
+ * @author don_bacon
+ *
+ */
+public class MongoClientPool {
+	static final Logger log = LogManager.getLogger(MongoClientPool.class);
+	public static final String DEFAULT_URI = "mongodb://localhost:27017";
+
+	private static Map<String, MongoClient> clients = new ConcurrentHashMap<String, MongoClient>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(MongoClientPool::closeAll, "MongoClientPool.closeAll"));
+	}
+
+	private MongoClientPool() {}
+
+	/**
+	 * Gets the shared MongoClient for a connection URI, connecting if needed.
+	 * @param uriString as in mongodb://localhost:27017
+	 * @return MongoClient
+	 */
+	public static MongoClient getClient(String uriString) {
+		return clients.computeIfAbsent(uriString, uri -> {
+			log.debug("connecting to " + uri);
+			return new MongoClient(new MongoClientURI(uri));
+		});
+	}
+
+	public static MongoClient getClient(String host, int port) {
+		return getClient(uri(host, port));
+	}
+
+	public static String uri(String host, int port) {
+		return "mongodb://" + host + ":" + port;
+	}
+
+	/**
+	 * Closes and removes all the clients.
+	 */
+	public static void closeAll() {
+		for(String uri : clients.keySet()) {
+			MongoClient client = clients.remove(uri);
+			if(client != null) {
+				client.close();
+			}
+		}
+	}
+}
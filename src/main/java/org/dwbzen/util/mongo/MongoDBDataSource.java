@@ -2,31 +2,38 @@ package org.dwbzen.util.mongo;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bson.Document;
 
-import com.mongodb.client.MongoCursor;
-
 import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
 import org.dwbzen.util.music.DataSource;
 
+/**
+ * Reads an instrument's data set from the configured DocumentStore: MongoDB,
+ * or with documentStore=file the embedded FileDocumentStore.<br>
+ * The data set is the collection named by dataSource.&lt;instrument&gt;. For each of dataSource.mongodb.queryString
+ * the documents whose name is the collection name and whose type is the query string are read, in that order.
+ * 
+ * @author don_bacon
+ *
+ */
 public class MongoDBDataSource extends DataSource {
 
 	static Logger log = LogManager.getLogger(MongoDBDataSource.class);
 
-	private String[] queryStrings = null;
+	private String[] queryStrings;		// no initializer, configure() is called by the super constructor
 	private String dbname;
 	private int queryLimit;
-	private Find find = null;
+	private DocumentStore documentStore = null;
 	private String collectionName = null;
 	/*
 	 * TODO use Random Predicate to filter stream
 	 */
-	ThreadLocalRandom random = ThreadLocalRandom.current();
 	
 	public MongoDBDataSource(Configuration config, String instrumentName) {
 		super(config, instrumentName);
@@ -34,40 +41,37 @@ public class MongoDBDataSource extends DataSource {
 
 	@Override
 	public void configure() {
-		queryStrings = configProperties.getProperty("mongodb.queryString").split(",");
 		dbname = configProperties.getProperty("dataSource.mongodb.db.name");
 		queryLimit = divisionsPerMeasure * 2 * measures;
 		/*
 		 * mongodb.queryString=stats,point,message
 		 */
-		queryStrings = configProperties.getProperty("mongodb.queryString").split(",");
+		queryStrings = configProperties.getProperty("dataSource.mongodb.queryString", configProperties.getProperty("mongodb.queryString", "stats,point,message")).split(",");
 	}
 
 	@Override
 	public Stream<String> stream() {
 		collectionName = configProperties.getProperty("dataSource." + instrumentName);
-		find = new Find(dbname, collectionName);
-		find.setLimit(queryLimit);
+		documentStore = DocumentStores.open(configProperties, dbname);
 		
 		Collection<String> jsonRecords = readData();
-		// close out the find()
-		find.close();
+		documentStore.close();
 
 		return jsonRecords.stream();
 	}
 	
 	private Collection<String> readData() {
 		Collection<String> jsonRecords = new ArrayList<String>();
+		SeededRandom random = SeededRandom.current();
 		for(String query : queryStrings) {
 			String queryString = NAME + collectionName + "," + TYPE + query;
-			find.setQuery(queryString);
-			find.setLimit(queryLimit);
-			MongoCursor<Document> cursor = find.search();
-			long count = find.count();
+			Document filter = DocumentStores.parseQuery(queryString);
+			long count = documentStore.count(collectionName, filter);
 			log.info(queryString + " count: " + count);
 
 			if(count > 0) {
 				int recnum = 0;
+				Iterator<Document> cursor = documentStore.find(collectionName, filter, queryLimit).iterator();
 				while(cursor.hasNext() && recnum < queryLimit) {
 					Document doc = cursor.next();
 					if(count <=2 || !randomSelection || random.nextBoolean() ) {
@@ -83,7 +87,9 @@ public class MongoDBDataSource extends DataSource {
 
 	@Override
 	public void close() {
-		find.close();
+		if(documentStore != null) {
+			documentStore.close();
+		}
 	}
 
 
@@ -0,0 +1,62 @@
+package org.dwbzen.util.mongo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+
+/**
+ * A MongoDB database, using the shared client of MongoClientPool.<br>
+ * Each batch is a single unordered insertMany, so the server applies it as one bulk write
+ * and a failed document doesn't stop the rest of the batch.
+ *
+ * @author don_bacon
+ *
+ */
+public class MongoDocumentStore implements DocumentStore {
+	static final Logger log = LogManager.getLogger(MongoDocumentStore.class);
+
+	private static final InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+	private MongoDatabase database;
+
+	public MongoDocumentStore(String uriString, String databaseName) {
+		database = MongoClientPool.getClient(uriString).getDatabase(databaseName);
+	}
+
+	@Override
+	public int insert(String collectionName, List<Document> documents) {
+		if(documents.isEmpty()) {
+			return 0;
+		}
+		try {
+			database.getCollection(collectionName).insertMany(documents, unordered);
+			return documents.size();
+		}
+		catch(MongoBulkWriteException e) {
+			int inserted = e.getWriteResult().getInsertedCount();
+			log.error(collectionName + ": " + e.getWriteErrors().size() + " of " + documents.size() + " documents not inserted: " + e.getWriteErrors().get(0).getMessage());
+			return inserted;
+		}
+	}
+
+	@Override
+	public List<Document> find(String collectionName, Document filter, int limit) {
+		return database.getCollection(collectionName).find(filter).projection(Projections.excludeId()).limit(limit).into(new ArrayList<Document>());
+	}
+
+	@Override
+	public long count(String collectionName, Document filter) {
+		return database.getCollection(collectionName).countDocuments(filter);
+	}
+
+	public MongoDatabase getDatabase() {
+		return database;
+	}
+}
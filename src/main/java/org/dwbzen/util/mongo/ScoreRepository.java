@@ -0,0 +1,233 @@
+package org.dwbzen.util.mongo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.dwbzen.music.IMeasureSink;
+import org.dwbzen.music.ScorePart;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.element.song.Song;
+
+/**
+ * Saves Scores and Songs with a BulkWriter.<br>
+ * A Score is saved as a single document (type "score"), unless measuresPerDocument is set.
+ * Then the score document has the score attributes and a list of its parts, and each part is saved
+ * as documents (type "scorePart") of up to measuresPerDocument measures, each with its score name, part name and
+ * the number of its first measure. So a long piece doesn't run into the 16MB document limit.<br>
+ * A Score created in streaming mode is saved the same way, one measure per scorePart document:
+ * measureSink saves each Measure as it's completed and saveHeader saves the score document at the end.<br>
+ * Configuration parameters:
+ * <dl>
+ * <dt>mongodb.scores.collection</dt> <dd>the Score collection. Default is "scores".</dd>
+ * <dt>mongodb.songs.collection</dt> <dd>the Song collection. Default is "songs".</dd>
+ * <dt>mongodb.bulk.batchSize</dt> <dd>documents per insert. Default is 500.</dd>
+ * <dt>mongodb.bulk.async</dt> <dd>insert batches on a background thread. Default is true.</dd>
+ * <dt>mongodb.score.measuresPerDocument</dt> <dd>0 (the default) saves a Score as one document.</dd>
+ * </dl>
+ *
+ * @author don_bacon
+ *
+ */
+public class ScoreRepository implements AutoCloseable {
+	static final Logger log = LogManager.getLogger(ScoreRepository.class);
+	static ObjectMapper mapper = new ObjectMapper();
+
+	public static final String SCORE_TYPE = "score";
+	public static final String SCORE_PART_TYPE = "scorePart";
+
+	private BulkWriter bulkWriter;
+	private String scoreCollectionName = "scores";
+	private String songCollectionName = "songs";
+	private int measuresPerDocument = 0;
+
+	public ScoreRepository(DocumentStore documentStore, Properties configProperties) {
+		int batchSize = Integer.parseInt(configProperties.getProperty("mongodb.bulk.batchSize", String.valueOf(BulkWriter.DEFAULT_BATCH_SIZE)));
+		boolean async = configProperties.getProperty("mongodb.bulk.async", "true").equalsIgnoreCase("true");
+		bulkWriter = new BulkWriter(documentStore, batchSize, async);
+		scoreCollectionName = configProperties.getProperty("mongodb.scores.collection", scoreCollectionName);
+		songCollectionName = configProperties.getProperty("mongodb.songs.collection", songCollectionName);
+		measuresPerDocument = Integer.parseInt(configProperties.getProperty("mongodb.score.measuresPerDocument", "0"));
+	}
+
+	/**
+	 * Adds a Score's documents to the bulk writer. They're inserted when the batch fills, or by flush() or close().
+	 * @param score
+	 */
+	public void save(Score score) {
+		bulkWriter.addAll(scoreCollectionName, toDocuments(score));
+	}
+
+	public void save(Song song) {
+		bulkWriter.add(songCollectionName, toDocument(song.getName(), "song", song.toJson()));
+	}
+
+	public void saveSongs(Collection<Song> songs) {
+		songs.forEach(this::save);
+	}
+
+	/**
+	 *
+	 * @param score
+	 * @return the documents of a Score: one, or a score document followed by the scorePart documents
+	 */
+	public List<Document> toDocuments(Score score) {
+		List<Document> documents = new ArrayList<Document>();
+		if(measuresPerDocument <= 0) {
+			documents.add(toDocument(score.getName(), SCORE_TYPE, score.toJson()));
+			return documents;
+		}
+		List<Map<String, Object>> partList = new ArrayList<Map<String, Object>>();
+		documents.add(toDocument(score.getName(), SCORE_TYPE, scoreFields(score, partList)));
+
+		for(ScorePartEntity scorePartEntity : score.getParts().values()) {
+			List<Measure> measures = scorePartEntity.getMeasures();
+			int ndocuments = 0;
+			for(int from = 0; from < measures.size(); from += measuresPerDocument) {
+				List<Measure> partMeasures = measures.subList(from, Math.min(from + measuresPerDocument, measures.size()));
+				documents.add(toDocument(score.getName(), SCORE_PART_TYPE, partFields(scorePartEntity, from + 1, partMeasures)));
+				ndocuments++;
+			}
+			partList.add(partSummary(scorePartEntity.getPartName(), measures.size(), ndocuments));
+		}
+		return documents;
+	}
+
+	/**
+	 * Saves each Measure of a Score created in streaming mode as it's completed, as a scorePart document
+	 * of one measure. Call saveHeader once the Score is complete.
+	 * @param scoreName
+	 * @return an IMeasureSink that can be shared by the parts of the score
+	 */
+	public IMeasureSink measureSink(String scoreName) {
+		return (scorePartEntity, measure) ->
+			bulkWriter.add(scoreCollectionName, toDocument(scoreName, SCORE_PART_TYPE, partFields(scorePartEntity, measure.getNumber(), List.of(measure))));
+	}
+
+	/**
+	 * Saves the score document of a Score whose Measures were saved by a measureSink.
+	 * @param score
+	 */
+	public void saveHeader(Score score) {
+		List<Map<String, Object>> partList = new ArrayList<Map<String, Object>>();
+		for(ScorePart scorePart : score.getScoreParts().values()) {
+			partList.add(partSummary(scorePart.getPartName(), scorePart.getMeasureCount(), scorePart.getMeasureCount()));
+		}
+		bulkWriter.add(scoreCollectionName, toDocument(score.getName(), SCORE_TYPE, scoreFields(score, partList)));
+	}
+
+	private static Map<String, Object> scoreFields(Score score, List<Map<String, Object>> partList) {
+		Map<String, Object> scoreFields = new LinkedHashMap<String, Object>();
+		scoreFields.put("title", score.getTitle());
+		scoreFields.put("workNumber", score.getWorkNumber());
+		scoreFields.put("copyright", score.getCopyright());
+		scoreFields.put("creators", score.getCreators());
+		scoreFields.put("instruments", score.getInstrumentNames());
+		scoreFields.put("parts", partList);
+		return scoreFields;
+	}
+
+	private static Map<String, Object> partFields(ScorePartEntity scorePartEntity, int firstMeasure, List<Measure> measures) {
+		Map<String, Object> partFields = new LinkedHashMap<String, Object>();
+		partFields.put("partName", scorePartEntity.getPartName());
+		partFields.put("partNumber", scorePartEntity.getPartNumber());
+		partFields.put("partId", scorePartEntity.getPartId());
+		partFields.put("scoreKey", scorePartEntity.getScoreKey());
+		partFields.put("staves", scorePartEntity.getNumberOfStaves());
+		partFields.put("firstMeasure", firstMeasure);
+		partFields.put("measures", measures);
+		return partFields;
+	}
+
+	private static Map<String, Object> partSummary(String partName, int measures, int documents) {
+		Map<String, Object> part = new LinkedHashMap<String, Object>();
+		part.put("partName", partName);
+		part.put("measures", measures);
+		part.put("documents", documents);
+		return part;
+	}
+
+	/**
+	 * Converts an object to a Document with name and type fields first.
+	 * @param name
+	 * @param type
+	 * @param value
+	 * @return Document
+	 */
+	static Document toDocument(String name, String type, Object value) {
+		try {
+			return toDocument(name, type, mapper.writeValueAsString(value));
+		}
+		catch(JsonProcessingException e) {
+			throw new IllegalArgumentException("Could not convert " + type + " " + name + " to JSON: " + e.toString());
+		}
+	}
+
+	static Document toDocument(String name, String type, String json) {
+		Document document = new Document("name", name).append("type", type);
+		Document.parse(json).forEach((k, v) -> document.putIfAbsent(k, v));
+		return document;
+	}
+
+	public CompletableFuture<Void> flushAsync() {
+		return bulkWriter.flushAsync();
+	}
+
+	/**
+	 * Inserts everything saved and waits for it to complete.
+	 * @throws IllegalStateException if any documents could not be inserted since the last flush
+	 */
+	public void flush() {
+		bulkWriter.flush();
+	}
+
+	public long getInsertedCount() {
+		return bulkWriter.getInsertedCount();
+	}
+
+	public int getMeasuresPerDocument() {
+		return measuresPerDocument;
+	}
+
+	public void setMeasuresPerDocument(int measuresPerDocument) {
+		this.measuresPerDocument = measuresPerDocument;
+	}
+
+	public String getScoreCollectionName() {
+		return scoreCollectionName;
+	}
+
+	public String getSongCollectionName() {
+		return songCollectionName;
+	}
+
+	public void setScoreCollectionName(String scoreCollectionName) {
+		this.scoreCollectionName = scoreCollectionName;
+	}
+
+	public void setSongCollectionName(String songCollectionName) {
+		this.songCollectionName = songCollectionName;
+	}
+
+	/**
+	 * Inserts everything saved and waits for it to complete. The DocumentStore is not closed.
+	 * @throws IllegalStateException if any documents could not be inserted since the last flush
+	 */
+	@Override
+	public void close() {
+		bulkWriter.close();
+	}
+}
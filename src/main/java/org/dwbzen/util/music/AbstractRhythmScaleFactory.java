@@ -58,7 +58,8 @@ public abstract class AbstractRhythmScaleFactory  implements IRhythmScaleFactory
 		
 		addChordalExpressions(rhythmScale);
 		
-		createRhythmScaleSelector(rhythmScale);
+		createRhythmScaleSelector(rhythmScale).compile();
+		rhythmScale.compile();
 		return rhythmScale;
 	}
 
@@ -8,10 +8,12 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 import org.apache.log4j.Logger;
@@ -70,12 +72,17 @@ public class ChordManager {
 	static final org.apache.log4j.Logger log = Logger.getLogger(ChordManager.class);
 	static ObjectMapper mapper = new ObjectMapper();
 	static List<Pitch> allRootPitches = new ArrayList<Pitch>();
+	/*
+	 * parsed chord names, for example "D7-5/C". Songs use a small vocabulary of chord names over and over
+	 */
+	private static Map<String, ChordInfo> chordInfoMap = new ConcurrentHashMap<String, ChordInfo>();
 	
 	private List<Pitch> rootPitches = new ArrayList<Pitch>();
 	private Map<String, HarmonyChord> harmonyChords = null;
 	private Map<Pitch, Map<String, HarmonyChord>> harmonyChordsRootMap = new TreeMap<Pitch, Map<String, HarmonyChord>>(new PitchComparator());
 	private Map<String,ChordFormula> chordFormulasMap = new TreeMap<>();
 	private Map<Integer, ChordFormula> chordFormulaNumberMap = new TreeMap<>();		// chord formulas indexed by formulaNumber
+	private Map<Integer, ChordInversion> chordInversionMap = new HashMap<>();		// chord formula inversions indexed by inversion formula number
 	private String resourceFile = null;
 	private String outputFormat = null;
 	private StringBuilder stringBuilder = null;
@@ -192,7 +199,7 @@ public class ChordManager {
 	public HarmonyChord createHarmonyChord(String chordName, Key key) {
 		HarmonyChord hc = null;
 		ChordFormula formula = null;
-		ChordInfo chordInfo = ChordInfo.parseChordName(chordName);
+		ChordInfo chordInfo = parseChordName(chordName);
 		
 		if(chordFormulasMap.containsKey(chordInfo.getChordSymbol())) {
 			formula = chordFormulasMap.get(chordInfo.getChordSymbol());
@@ -204,15 +211,24 @@ public class ChordManager {
 	public static HarmonyChord createHarmonyChord(String chordName, Map<String,ChordFormula> chordFormulaMap) {
 		HarmonyChord hc = null;
 		ChordFormula formula = null;
-		ChordInfo chordInfo =  ChordInfo.parseChordName(chordName);
-		Pitch root = new Pitch( chordInfo.getRootNote());
+		ChordInfo chordInfo = parseChordName(chordName);
 		if(chordFormulaMap.containsKey(chordInfo.getChordSymbol())) {
 			formula = chordFormulaMap.get(chordInfo.getChordSymbol());
-			hc = new HarmonyChord(formula, root);
+			hc = new HarmonyChord(formula, new Pitch(chordInfo.getRootNote()));
 		}
 		return hc;
 	}
 	
+	/**
+	 * Parses a chord name once and remembers the result.
+	 * The ChordInfo returned is shared by all callers and should be treated as read-only.
+	 * @param chordName for example, "D7-5/C"
+	 * @return ChordInfo
+	 */
+	public static ChordInfo parseChordName(String chordName) {
+		return chordInfoMap.computeIfAbsent(chordName, ChordInfo::parseChordName);
+	}
+	
 	public HarmonyChord createHarmonyChord(ChordInfo chordInfo,  Key key) {
 		HarmonyChord hc = null;
 		ChordFormula formula = null;
@@ -492,10 +508,30 @@ public class ChordManager {
     			}
     			chordFormulaNumberMap.put(chordFormula.getFormulaNumber(), chordFormula);
     		}
+    		createInversionIndex();
     	}
 		return;
 	}
 	
+	/**
+	 * Indexes every inversion of every ChordFormula by its inversion formula number,
+	 * which is the pitch-class set of the inversion relative to the bass note.<br>
+	 * Formulas are visited in chordFormulasMap key order and the first one wins,
+	 * so a lookup finds the same formula and inversion the sequential search did.
+	 */
+	private void createInversionIndex() {
+		chordInversionMap.clear();
+		for(String symbol : chordFormulasMap.keySet()) {
+			ChordFormula cf = chordFormulasMap.get(symbol);
+			List<Integer> inversionFormulaNumbers = cf.getInversionFormulaNumbers();
+			int numberOfInversions = inversionFormulaNumbers.size();
+			for(int i = 0; i < numberOfInversions; i++) {
+				chordInversionMap.putIfAbsent(inversionFormulaNumbers.get(i), new ChordInversion(cf, i, numberOfInversions));
+			}
+		}
+		log.debug("indexed " + chordInversionMap.size() + " chord inversions");
+	}
+	
 	private boolean filter(List<String> includeList, List<String> myList) {
 		boolean include = true;
 		if(includeList != null && includeList.size()>0) {
@@ -548,6 +584,10 @@ public class ChordManager {
 		return chordFormulaNumberMap;
 	}
 	
+	public Map<Integer, ChordInversion> getChordInversionMap() {
+		return chordInversionMap;
+	}
+	
 	public ChordFormula find(int formulaNumber) {
 		ChordFormula cf = null;
 		if(chordFormulaNumberMap.containsKey(formulaNumber)) {
@@ -637,29 +677,20 @@ public class ChordManager {
 				/*
 				 * may be an inversion or slash chord
 				 */
-				for(String symbol:chordFormulasMap.keySet()) {
-					ChordFormula cf = chordFormulasMap.get(symbol);
-					List<Integer> inversionFormulaNumbers = cf.getInversionFormulaNumbers();
-					int numberOfInversions = inversionFormulaNumbers.size();
-					for(int i = 0; i < numberOfInversions; i++) {
-						if(formulaNumber.equals(inversionFormulaNumbers.get(i))) {
-							chordFormula = (ChordFormula)cf.clone();
-							if(chordFormula != null) {
-								chordFormula.setSlash(i);
-								Note bassNote = chord.getRoot();
-								Pitch bassPitch = bassNote.getPitch();
-								chord.setBassPitch(bassPitch);
-								int rootPitchIndex = i==0 ? 0 : numberOfInversions - i;
-								Pitch rootPitch = chord.getChordNotes().get(rootPitchIndex).getPitch();
-								Note rootNote = new Note(rootPitch, bassNote.getDuration());
-								chord.setRoot(rootNote);
-								break;
-							}
-						}
-					}
+				ChordInversion chordInversion = chordInversionMap.get(formulaNumber);
+				if(chordInversion != null) {
+					chordFormula = (ChordFormula)chordInversion.getChordFormula().clone();
 					if(chordFormula != null) {
+						int i = chordInversion.getInversion();
+						chordFormula.setSlash(i);
+						Note bassNote = chord.getRoot();
+						Pitch bassPitch = bassNote.getPitch();
+						chord.setBassPitch(bassPitch);
+						int rootPitchIndex = i==0 ? 0 : chordInversion.getNumberOfInversions() - i;
+						Pitch rootPitch = chord.getChordNotes().get(rootPitchIndex).getPitch();
+						Note rootNote = new Note(rootPitch, bassNote.getDuration());
+						chord.setRoot(rootNote);
 						chord.setChordFormula(chordFormula);
-						break;
 					}
 				}
 			}
@@ -668,6 +699,33 @@ public class ChordManager {
 		return chordFormula;
 	}
 
+	/**
+	 * A ChordFormula and one of its inversions (0 is root position).
+	 */
+	public static class ChordInversion {
+		private final ChordFormula chordFormula;
+		private final int inversion;
+		private final int numberOfInversions;
+		
+		ChordInversion(ChordFormula chordFormula, int inversion, int numberOfInversions) {
+			this.chordFormula = chordFormula;
+			this.inversion = inversion;
+			this.numberOfInversions = numberOfInversions;
+		}
+
+		public ChordFormula getChordFormula() {
+			return chordFormula;
+		}
+
+		public int getInversion() {
+			return inversion;
+		}
+
+		public int getNumberOfInversions() {
+			return numberOfInversions;
+		}
+	}
+
 	/**
 	 * 
 	 * @param args
@@ -0,0 +1,190 @@
+package org.dwbzen.util.music;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.element.PitchRange;
+import org.dwbzen.music.element.RhythmScale;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.transform.ITransformer;
+import org.dwbzen.util.ConfigurationException;
+
+/**
+ * Creates Instruments, ITransformers and IRhythmScaleFactories by name without reflection.<br>
+ * Each IComponentProvider found by ServiceLoader registers a constructor (Supplier) for each of its components,
+ * keyed by class name for Instruments and Transformers, as in score.instruments.Flute.class, and by
+ * RhythmScale name for the factories, as in score.rhythmScale.all. StandardComponents registers the ones in this framework.<br>
+ * A class name that isn't registered is looked up with reflection the first time it's asked for,
+ * and its constructor is kept for next time.<br>
+ * Because no classes are scanned and constructors are method references, the registry works
+ * with an AppCDS archive (-XX:ArchiveClassesAtExit) of a production run.<br>
+ * The registry also keeps a prototype RhythmScale for each RhythmScale name, and the parsed pitch ranges
+ * configured for each instrument class, so each is created once.
+ *
+ * @author don_bacon
+ *
+ */
+public class ComponentRegistry {
+	protected static final Logger log = LogManager.getLogger(ComponentRegistry.class);
+
+	private Map<String, Supplier<? extends Instrument>> instruments = new ConcurrentHashMap<>();
+	private Map<String, Supplier<? extends ITransformer>> transformers = new ConcurrentHashMap<>();
+	private Map<String, Supplier<? extends IRhythmScaleFactory>> rhythmScaleFactories = new ConcurrentHashMap<>();
+	private Map<String, RhythmScale> rhythmScales = new ConcurrentHashMap<>();
+	private Map<String, Pitch[]> pitchRanges = new ConcurrentHashMap<>();
+
+	private static class Holder {
+		static final ComponentRegistry instance = load();
+	}
+
+	public ComponentRegistry() {
+	}
+
+	/**
+	 *
+	 * @return the registry of every IComponentProvider on the class path, loaded the first time it's needed
+	 */
+	public static ComponentRegistry getInstance() {
+		return Holder.instance;
+	}
+
+	private static ComponentRegistry load() {
+		ComponentRegistry registry = new ComponentRegistry();
+		for(IComponentProvider provider : ServiceLoader.load(IComponentProvider.class)) {
+			provider.register(registry);
+		}
+		if(registry.rhythmScaleFactories.isEmpty()) {
+			// META-INF/services isn't on the class path
+			new StandardComponents().register(registry);
+		}
+		return registry;
+	}
+
+	public void registerInstrument(Class<? extends Instrument> instrumentClass, Supplier<? extends Instrument> constructor) {
+		instruments.put(instrumentClass.getName(), constructor);
+	}
+
+	public void registerTransformer(Class<? extends ITransformer> transformerClass, Supplier<? extends ITransformer> constructor) {
+		transformers.put(transformerClass.getName(), constructor);
+	}
+
+	public void registerRhythmScaleFactory(String rhythmScaleName, Supplier<? extends IRhythmScaleFactory> constructor) {
+		rhythmScaleFactories.put(rhythmScaleName, constructor);
+	}
+
+	/**
+	 *
+	 * @param className Instrument class name
+	 * @return a new Instrument
+	 * @throws ConfigurationException if className isn't an Instrument
+	 */
+	public Instrument newInstrument(String className) throws ConfigurationException {
+		return instruments.computeIfAbsent(className, c -> reflect(c, Instrument.class)).get();
+	}
+
+	/**
+	 *
+	 * @param className ITransformer class name
+	 * @return a new ITransformer
+	 * @throws ConfigurationException if className isn't an ITransformer
+	 */
+	public ITransformer newTransformer(String className) throws ConfigurationException {
+		return transformers.computeIfAbsent(className, c -> reflect(c, ITransformer.class)).get();
+	}
+
+	/**
+	 *
+	 * @param rhythmScaleName
+	 * @return a new IRhythmScaleFactory or null if there isn't one for rhythmScaleName
+	 */
+	public IRhythmScaleFactory newRhythmScaleFactory(String rhythmScaleName) {
+		Supplier<? extends IRhythmScaleFactory> constructor = rhythmScaleFactories.get(rhythmScaleName);
+		return constructor == null ? null : constructor.get();
+	}
+
+	/**
+	 * Creates a new RhythmScale. Use this when the RhythmScale will be changed,
+	 * for example to set the tie across barline probability of its ExpressionSelector.
+	 *
+	 * @param rhythmScaleName
+	 * @return a new RhythmScale
+	 * @throws ConfigurationException if there's no factory for rhythmScaleName
+	 */
+	public RhythmScale newRhythmScale(String rhythmScaleName) throws ConfigurationException {
+		IRhythmScaleFactory factory = newRhythmScaleFactory(rhythmScaleName);
+		if(factory == null) {
+			throw new ConfigurationException("No RhythmScale factory for " + rhythmScaleName);
+		}
+		return factory.createRhythmScale(rhythmScaleName);
+	}
+
+	/**
+	 * Gets the prototype RhythmScale, created the first time it's asked for and shared after that.
+	 * It must not be changed.
+	 *
+	 * @param rhythmScaleName
+	 * @return the shared RhythmScale
+	 * @throws ConfigurationException if there's no factory for rhythmScaleName
+	 */
+	public RhythmScale getRhythmScale(String rhythmScaleName) throws ConfigurationException {
+		return rhythmScales.computeIfAbsent(rhythmScaleName, this::newRhythmScale);
+	}
+
+	/**
+	 * Same as IInstrument.getConfiguredPitchRange, but the range property is parsed only once for each instrument class.
+	 *
+	 * @param configProperties
+	 * @param className Instrument class name
+	 * @return a new PitchRange from the className.range property, null if there isn't one
+	 */
+	public PitchRange getPitchRange(Properties configProperties, String className) {
+		String range = configProperties.getProperty(className + ".range");
+		if(range == null || range.length() == 0) {
+			return null;
+		}
+		Pitch[] lowHigh = pitchRanges.computeIfAbsent(className + "=" + range, k -> {
+			String[] ra = range.split(",");
+			return new Pitch[] {new Pitch(ra[0]), new Pitch(ra[1])};
+		});
+		// Pitch isn't immutable, so each Instrument gets its own
+		return new PitchRange(new Pitch(lowHigh[0]), new Pitch(lowHigh[1]));
+	}
+
+	public Set<String> getInstrumentClassNames() {
+		return instruments.keySet();
+	}
+
+	public Set<String> getTransformerClassNames() {
+		return transformers.keySet();
+	}
+
+	public Set<String> getRhythmScaleNames() {
+		return rhythmScaleFactories.keySet();
+	}
+
+	private static <T> Supplier<T> reflect(String className, Class<T> type) {
+		try {
+			Constructor<? extends T> constructor = Class.forName(className).asSubclass(type).getDeclaredConstructor();
+			log.info(className + " is not registered by an IComponentProvider");
+			return () -> {
+				try {
+					return constructor.newInstance();
+				}
+				catch(Exception e) {
+					throw new ConfigurationException("Could not create " + className + " " + e.toString());
+				}
+			};
+		}
+		catch(ClassNotFoundException | ClassCastException | NoSuchMethodException e) {
+			throw new ConfigurationException("Not a " + type.getSimpleName() + ": " + className + " " + e.toString());
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package org.dwbzen.util.music;
 
 import java.util.Properties;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.IntSupplier;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -10,6 +9,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
 
 /**
  * DataSource base class. There is a DataSource concrete instance for each
@@ -64,7 +64,7 @@ public abstract class DataSource implements IDataSource {
 		skipFactor = Integer.valueOf( configProperties.getProperty("dataSource.skipFactor", "11")).intValue();
 		divisionsPerMeasure = Integer.parseInt(configProperties.getProperty("score.measure.divisions", "480"));
 		maxSize = measures * skipFactor;
-		randomPredicate = new Random(ThreadLocalRandom.current());
+		randomPredicate = new Random();
 		configure();
 	}
 	
@@ -121,25 +121,21 @@ public abstract class DataSource implements IDataSource {
 	/**
      * Random class is used to filter data points in a Stream for random selection.<br>
      * Does not apply (obviously) to RandomDataSource as that data
-     * is generated on the fly and is already random.
+     * is generated on the fly and is already random.<br>
+     * Numbers are drawn from the calling thread's SeededRandom.
      * 
      * @author don_bacon
      *
      */
     class Random implements Predicate<String>, IntSupplier {
-    	ThreadLocalRandom random = null;
-    	
-    	public Random(ThreadLocalRandom r) {
-    		random = r;
-    	}
 		@Override
 		public boolean test(String testString) {
-			return random.nextBoolean();
+			return SeededRandom.current().nextBoolean();
 		}
 		@Override
 		public int getAsInt() {
 			// How many records to skip for RANDOM selection
-			int skip = random.nextInt(2, skipFactor);
+			int skip = SeededRandom.current().nextInt(2, skipFactor);
 			log.debug("skipping " + skip);
 			return skip;
 		}
@@ -1,15 +1,22 @@
 package org.dwbzen.util.music;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.dwbzen.util.Configuration;
 
 /**
- * Streams text data, line by line with no trailing delimiters from a JSON File
+ * Streams text data, line by line with no trailing delimiters from a JSON File.<br>
+ * The file is read in a single pass. Each line is classified once as a header (IFS or stats),
+ * Point2D or message record and the records streamed in that order.<br>
+ * If dataSource.file.cache=true, a binary PointCache is written alongside the file (or in dataSource.file.cachePath)
+ * the first time it's read and memory-mapped on later runs.
  * 
  * @author don_bacon
  *
@@ -21,6 +28,8 @@ public class FileDataSource extends DataSource {
 	private String filename;
 	private String filePath;
 	private String fileKey;
+	private boolean useCache = false;
+	private Path cachePath = null;
 	
 	public FileDataSource(Configuration config, String instrumentName) {
 		super(config, instrumentName);
@@ -48,26 +57,56 @@ public class FileDataSource extends DataSource {
 		else {
 			throw new IllegalArgumentException("No configured source for instrument: " + fileKey);
 		}
+		useCache = configuration.getProperties().getProperty("dataSource.file.cache", "false").equalsIgnoreCase("true");
+		if(useCache) {
+			String cacheDir = configuration.getProperties().getProperty("dataSource.file.cachePath");
+			String cacheName = path.getFileName().toString() + PointCache.EXTENSION;
+			cachePath = (cacheDir != null) ? FileSystems.getDefault().getPath(cacheDir, cacheName) : path.resolveSibling(cacheName);
+		}
 	}
 
 	@Override
 	public Stream<String> stream()  {
-		Stream<String> stream1 = null;
-		Stream<String> stream2 = null;
-		Stream<String> stream3 = null;
-		try {
-			stream1 = Files.lines(path).filter(w -> (w.contains(filters[0]) || w.contains(filters[3])) );	// "type":"IFS" or "type":"stats"
-			if(randomSelection) {
-				stream2 = Files.lines(path).filter(w -> w.contains(filters[1])).skip(randomPredicate.getAsInt()).limit(maxSize);	// "type":"Point2D"
+		int skip = randomSelection ? randomPredicate.getAsInt() : 0;
+		if(useCache) {
+			PointCache pointCache = PointCache.open(cachePath, path);
+			if(pointCache != null) {
+				log.debug("streaming " + filename + " from " + cachePath);
+				stream = pointCache.stream(skip, maxSize);
+				return stream;
 			}
-			else {
-				stream2 = Files.lines(path).filter(w -> w.contains(filters[1])).limit(maxSize);
+		}
+		List<String> headerLines = new ArrayList<>();
+		List<String> pointLines = new ArrayList<>();
+		List<String> messageLines = new ArrayList<>();
+		/*
+		 * Unless writing the cache, only the points that are streamed need be kept
+		 */
+		long pointsNeeded = useCache ? Long.MAX_VALUE : (long)skip + maxSize;
+		try(BufferedReader reader = Files.newBufferedReader(path)) {
+			String line = null;
+			while((line = reader.readLine()) != null) {
+				if(line.contains(filters[0]) || line.contains(filters[3])) {	// "type":"IFS" or "type":"stats"
+					headerLines.add(line);
+				}
+				else if(line.contains(filters[1])) {							// "type":"Point2D"
+					if(pointLines.size() < pointsNeeded) {
+						pointLines.add(line);
+					}
+				}
+				else if(line.contains(filters[2])) {							// "type":"message"
+					messageLines.add(line);
+				}
 			}
-			stream3 = Files.lines(path).filter(w -> w.contains(filters[2]));	// "type":"message"
-			stream = Stream.concat(Stream.concat(stream1, stream2), stream3);
 		} catch (IOException e) {
 			log.error("IOException: " + e.getMessage());
 		}
+		if(useCache) {
+			PointCache.write(cachePath, path, headerLines, pointLines, messageLines);
+		}
+		int start = Math.min(skip, pointLines.size());
+		int end = (int)Math.min((long)start + maxSize, pointLines.size());
+		stream = Stream.concat(Stream.concat(headerLines.stream(), pointLines.subList(start, end).stream()), messageLines.stream());
 		return stream;
 	}
     
@@ -76,6 +115,8 @@ public class FileDataSource extends DataSource {
 	 * This will also invoke close handlers for input streams
 	 */
 	public void close() {
-		stream.close();
+		if(stream != null) {
+			stream.close();
+		}
 	}
 }
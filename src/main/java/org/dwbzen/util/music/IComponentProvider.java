@@ -0,0 +1,15 @@
+package org.dwbzen.util.music;
+
+/**
+ * Registers Instrument, ITransformer and IRhythmScaleFactory constructors with a ComponentRegistry.<br>
+ * Providers are found with java.util.ServiceLoader, so a jar can add its own components
+ * by listing its provider class in META-INF/services/org.dwbzen.util.music.IComponentProvider
+ * 
+ * @author don_bacon
+ *
+ */
+public interface IComponentProvider {
+
+	void register(ComponentRegistry registry);
+	
+}
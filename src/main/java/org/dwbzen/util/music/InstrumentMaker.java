@@ -10,9 +10,7 @@ import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.dwbzen.music.element.IRhythmScale;
 import org.dwbzen.music.element.Key;
-import org.dwbzen.music.instrument.IInstrument;
 import org.dwbzen.music.instrument.Instrument;
 import org.dwbzen.util.Configuration;
 import org.dwbzen.util.ConfigurationException;
@@ -84,15 +82,14 @@ public class InstrumentMaker  implements Supplier<Map<String, Instrument>> {
 		return instruments.get(name);
 	}
 	
-	@SuppressWarnings("unchecked")
 	private void createInstruments() throws ConfigurationException {
+		ComponentRegistry registry = ComponentRegistry.getInstance();
 		for(String name : getInstrumentNames() ) {
 			if(!instruments.containsKey(name)) {
 	    		try {
 		    		String classname = configProperties.getProperty("score.instruments." + name + ".class");
-		    		Class<Instrument> instrumentClass = (Class<Instrument>) Class.forName(classname);
-		    		Instrument instrument = (org.dwbzen.music.instrument.Instrument)instrumentClass.getDeclaredConstructor().newInstance();
-		    		instrument.setPitchRange(IInstrument.getConfiguredPitchRange(configProperties, classname));
+		    		Instrument instrument = registry.newInstrument(classname);
+		    		instrument.setPitchRange(registry.getPitchRange(configProperties, classname));
 		    		instrument.setName(name);
 		    		instrument.setInstrumentName(configProperties.getProperty("score.instruments." + name + "instrument-name", name));
 		    		instrument.configure(configuration);
@@ -101,15 +98,13 @@ public class InstrumentMaker  implements Supplier<Map<String, Instrument>> {
 		    			instrument.setKey(new Key(configProperties.getProperty("score.key", "C-Major")));
 		    		}
 		    		/*
-		    		 * Create the RhythmScale for this instrument
+		    		 * Instruments with the same RhythmScale share the registry's prototype
 		    		 */
 		    		String key = "score.rhythmScale.instrument." + name;
-		    		String rhythmScaleName = configProperties.contains(key) ?
+		    		String rhythmScaleName = configProperties.containsKey(key) ?
 		    				configProperties.getProperty(key) :
-		    				configProperties.getProperty("score.rhythmScale.all");
-		    		IRhythmScaleFactory factory = RhythmScaleFactory.getRhythmScaleFactory(rhythmScaleName);
-		    		IRhythmScale rhythmScale = factory.createRhythmScale(rhythmScaleName);
-		    		instrument.setRhythmScale(rhythmScale);
+		    				configProperties.getProperty("score.rhythmScale.all", RhythmScaleFactory.DEFAULT_RHYTHM_SCALE_NAME);
+		    		instrument.setRhythmScale(registry.getRhythmScale(rhythmScaleName));
 		    		instruments.put(name, instrument);
 	    		} 
 	    		catch(Exception e) {
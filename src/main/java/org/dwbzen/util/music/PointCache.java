@@ -0,0 +1,236 @@
+package org.dwbzen.util.music;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A compact binary sidecar for a fractal JSON file.<br>
+ * The cache holds the non-point records (IFS, stats and message) as text
+ * and the Point2D records as fixed-width (x, y, count) entries, so later runs
+ * memory-map the file and read only the points needed instead of scanning the JSON.<br>
+ * Layout:
+ * <pre>
+ * int magic, int version
+ * long source length, long source last modified
+ * int #points
+ * String point name, String header lines (IFS, stats), String message lines
+ * #points x (double x, double y, int count)
+ * </pre>
+ * Strings are an int byte length followed by UTF-8 bytes. The cache is stale
+ * (and ignored) if the source file length or last modified time has changed.
+ *
+ * @author don_bacon
+ *
+ */
+public class PointCache {
+	protected static final Logger log = LogManager.getLogger(PointCache.class);
+
+	public static final String EXTENSION = ".pcache";
+	static final int MAGIC = 0x50544331;		// PTC1
+	static final int VERSION = 1;
+	static final int POINT_SIZE = 2 * Double.BYTES + Integer.BYTES;
+	static ObjectMapper mapper = new ObjectMapper();
+
+	private String pointName;
+	private List<String> headerLines;
+	private List<String> messageLines;
+	private int size;
+	private ByteBuffer points;
+
+	private PointCache(String pointName, List<String> headerLines, List<String> messageLines, int size, ByteBuffer points) {
+		this.pointName = pointName;
+		this.headerLines = headerLines;
+		this.messageLines = messageLines;
+		this.size = size;
+		this.points = points;
+	}
+
+	/**
+	 * Memory-maps the cache for a source file.
+	 * @param cachePath path of the cache file
+	 * @param sourcePath path of the JSON source file
+	 * @return PointCache or null if the cache doesn't exist, is stale or can't be read
+	 */
+	public static PointCache open(Path cachePath, Path sourcePath) {
+		if(!Files.isReadable(cachePath)) {
+			return null;
+		}
+		try(FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				log.warn("Ignoring " + cachePath + " - not a point cache");
+				return null;
+			}
+			if(buffer.getLong() != Files.size(sourcePath) || buffer.getLong() != Files.getLastModifiedTime(sourcePath).toMillis()) {
+				log.info("Point cache " + cachePath + " is stale");
+				return null;
+			}
+			int size = buffer.getInt();
+			String name = getString(buffer);
+			List<String> headerLines = getLines(buffer);
+			List<String> messageLines = getLines(buffer);
+			ByteBuffer points = buffer.slice();
+			if(size < 0 || points.remaining() < (long)size * POINT_SIZE) {
+				log.warn("Ignoring " + cachePath + " - truncated");
+				return null;
+			}
+			return new PointCache(name, headerLines, messageLines, size, points);
+		}
+		catch(IOException | RuntimeException e) {
+			// a truncated or corrupt cache can underflow the buffer or have a negative length
+			log.warn("Could not read point cache " + cachePath + " " + e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the cache for a source file. The cache is written to a temporary
+	 * file then moved into place, so concurrent readers never see a partial cache.
+	 * All point lines must have the same name, otherwise the cache is not written.
+	 *
+	 * @param cachePath path of the cache file
+	 * @param sourcePath path of the JSON source file
+	 * @param headerLines IFS and stats lines
+	 * @param pointLines Point2D lines
+	 * @param messageLines message lines
+	 * @return true if the cache was written
+	 */
+	public static boolean write(Path cachePath, Path sourcePath, List<String> headerLines, List<String> pointLines, List<String> messageLines) {
+		String name = null;
+		ByteBuffer points = ByteBuffer.allocate(pointLines.size() * POINT_SIZE);
+		Path tempPath = null;
+		try {
+			for(String line : pointLines) {
+				JsonNode node = mapper.readTree(line);
+				String pname = node.path("name").asText();
+				if(name == null) {
+					name = pname;
+				}
+				else if(!name.equals(pname)) {
+					log.info("Not caching " + sourcePath + " - point names differ");
+					return false;
+				}
+				points.putDouble(node.path("x").asDouble());
+				points.putDouble(node.path("y").asDouble());
+				points.putInt(node.path("count").asInt(1));
+			}
+			points.flip();
+			byte[] nameBytes = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+			byte[] headerBytes = String.join("\n", headerLines).getBytes(StandardCharsets.UTF_8);
+			byte[] messageBytes = String.join("\n", messageLines).getBytes(StandardCharsets.UTF_8);
+			ByteBuffer header = ByteBuffer.allocate(6*Integer.BYTES + 2*Long.BYTES + nameBytes.length + headerBytes.length + messageBytes.length);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.putLong(Files.size(sourcePath)).putLong(Files.getLastModifiedTime(sourcePath).toMillis());
+			header.putInt(pointLines.size());
+			header.putInt(nameBytes.length).put(nameBytes);
+			header.putInt(headerBytes.length).put(headerBytes);
+			header.putInt(messageBytes.length).put(messageBytes);
+			header.flip();
+
+			Path dir = cachePath.toAbsolutePath().getParent();
+			tempPath = Files.createTempFile(dir, cachePath.getFileName().toString(), ".tmp");
+			try(FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+				while(header.hasRemaining()) {
+					channel.write(header);
+				}
+				while(points.hasRemaining()) {
+					channel.write(points);
+				}
+			}
+			Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.info("Wrote point cache " + cachePath + " " + pointLines.size() + " points");
+			return true;
+		}
+		catch(IOException e) {
+			log.warn("Could not write point cache " + cachePath + " " + e.toString());
+			return false;
+		}
+		finally {
+			deleteTempFile(tempPath);
+		}
+	}
+	
+	/**
+	 * Deletes the temporary file if it wasn't moved into place.
+	 * @param tempPath could be null
+	 */
+	private static void deleteTempFile(Path tempPath) {
+		if(tempPath != null) {
+			try {
+				Files.deleteIfExists(tempPath);
+			}
+			catch(IOException e) {
+				log.warn("Could not delete " + tempPath + " " + e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Streams the cached records in the same order as FileDataSource:
+	 * IFS and stats lines, then Point2D lines, then message lines.
+	 * @param skip number of points to skip
+	 * @param limit maximum number of points
+	 * @return Stream<String> of JSON lines
+	 */
+	public Stream<String> stream(int skip, int limit) {
+		int start = Math.min(skip, size);
+		int end = (int)Math.min((long)start + limit, size);
+		Stream<String> pointStream = IntStream.range(start, end).mapToObj(this::getPointJson);
+		return Stream.concat(Stream.concat(headerLines.stream(), pointStream), messageLines.stream());
+	}
+
+	/**
+	 *
+	 * @param index point index
+	 * @return the Point2D JSON line for the point at index
+	 */
+	public String getPointJson(int index) {
+		int offset = index * POINT_SIZE;
+		StringBuilder sb = new StringBuilder("{\"name\":\"").append(pointName).append("\",\"type\":\"Point2D\",\"x\":");
+		sb.append(points.getDouble(offset)).append(",\"y\":").append(points.getDouble(offset + Double.BYTES));
+		sb.append(",\"count\":").append(points.getInt(offset + 2*Double.BYTES)).append("}");
+		return sb.toString();
+	}
+
+	public double getX(int index) {
+		return points.getDouble(index * POINT_SIZE);
+	}
+
+	public double getY(int index) {
+		return points.getDouble(index * POINT_SIZE + Double.BYTES);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static List<String> getLines(ByteBuffer buffer) {
+		String s = getString(buffer);
+		return s.isEmpty() ? new ArrayList<String>() : Arrays.asList(s.split("\n"));
+	}
+
+}
@@ -1,15 +1,15 @@
 package org.dwbzen.util.music;
 
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Stream;
 
 import org.dwbzen.common.math.CommandMessage;
 import org.dwbzen.common.math.Point2D;
 import org.dwbzen.common.math.PointSet;
 import org.dwbzen.common.math.PointSetStats;
-import org.dwbzen.common.math.ProbabilityDensityFunction;
 import org.dwbzen.common.math.ifs.IteratedFunctionSystem;
 import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
+import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.util.Precision;
 
 /**
@@ -26,14 +26,15 @@ import org.apache.commons.math3.util.Precision;
  * Note that there are different PDFs for x and y point values.</p>
  * 
  * For Normal distribution, the rangeX, rangeY values are set to the domainX and domainY values
- * Otherwise, domainX, domainY are not used.
+ * Otherwise, domainX, domainY are not used.<br>
+ * A PDF value is the density at a point drawn uniformly from the domain. The points are drawn
+ * from SeededRandom.current() so a seeded score gets the same data every time.
  * 
- * @see org.dwbzen.common.math.ProbabilityDensityFunction
+ * @see org.apache.commons.math3.distribution.NormalDistribution
  * @author don_bacon
  *
  */
 public class RandomDataSource  extends DataSource {
-	private ThreadLocalRandom random = ThreadLocalRandom.current();
 	private String dataSetName;
 	private int size;
 	private PointSet<Double> pointSet;
@@ -44,8 +45,8 @@ public class RandomDataSource  extends DataSource {
 	String 	rangesx;
 	String 	rangesy;
 	String[] distributions;
-	ProbabilityDensityFunction PDFx;
-	ProbabilityDensityFunction PDFy;
+	NormalDistribution PDFx;
+	NormalDistribution PDFy;
 
 	public RandomDataSource(Configuration config, String instrumentName) {
 		super(config, instrumentName);
@@ -68,7 +69,7 @@ public class RandomDataSource  extends DataSource {
 		distributions = configProperties.getProperty("dataSource.random.distribution", "none,none").split(",");
 		String[] mus = configProperties.getProperty("dataSource.random.mu", "0,0").split(",");
 		String[] sigmas = configProperties.getProperty("dataSource.random.sigma", "1,1").split(",");
-		ProbabilityDensityFunction[] pdfs = new ProbabilityDensityFunction[2];
+		NormalDistribution[] pdfs = new NormalDistribution[2];
 		dataSetName = configProperties.getProperty("dataSource.random.dataSetName","random");
 		for(int i=0; i<2; i++) {
 			pdfs[i] = null;
@@ -76,13 +77,11 @@ public class RandomDataSource  extends DataSource {
 				double mu = Double.parseDouble(mus[i]);
 				double sigma = Double.parseDouble(sigmas[i]);
 				parseRanges(i==0 ? "domainX" : null, i==1? "domainY" : null);
-				pdfs[i] = new ProbabilityDensityFunction(mu, sigma);
+				pdfs[i] = new NormalDistribution(null, mu, sigma);	// only density() is used, so no RandomGenerator
 			}
 		}
 		PDFx = pdfs[0];
 		PDFy = pdfs[1];
-		if(PDFx != null) { PDFx.setRange(randomRangeX); }
-		if(PDFy != null) { PDFy.setRange(randomRangeY); }
 	}
 	
 	private void parseRanges(String keyx, String keyy) {
@@ -121,11 +120,13 @@ public class RandomDataSource  extends DataSource {
 	protected void generatePointSet() {
 		double x;
 		double y;
-		
+		SeededRandom random = SeededRandom.current();
 		Point2D<Double> point = null;
 		for(int i=0; i<size; i++) {
-			x = (PDFx != null) ? PDFx.randomPDF() : random.nextDouble(randomRangeX.getX().doubleValue(), randomRangeX.getY().doubleValue());
-			y = (PDFy != null) ? PDFy.randomPDF() :  random.nextDouble(randomRangeY.getX().doubleValue(), randomRangeY.getY().doubleValue());
+			x = random.nextDouble(randomRangeX.getX().doubleValue(), randomRangeX.getY().doubleValue());
+			y = random.nextDouble(randomRangeY.getX().doubleValue(), randomRangeY.getY().doubleValue());
+			if(PDFx != null) { x = PDFx.density(x); }
+			if(PDFy != null) { y = PDFy.density(y); }
 			double xrounded = Precision.round(x, 4);
 			double yrounded = Precision.round(y,4);
 			point = new Point2D<Double>(xrounded, yrounded);
@@ -0,0 +1,182 @@
+package org.dwbzen.util.music;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.dwbzen.music.element.IFormula;
+import org.dwbzen.music.element.ScaleFormula;
+
+/**
+ * An index of the ScaleFormulas in a scale formula resource (data/music/*_scaleFormulas.json).<br>
+ * Each resource is read once, the first time it's needed, and the index shared by all ScaleManager instances.
+ * ScaleFormulas are indexed by exact name, alternate name and formula number.
+ * The formula number is the pitch-class set of the formula as a 12-bit mask, so scales with the same
+ * pitch classes (Minor and Aeolian for example) have the same formula number.
+ *
+ * @author don_bacon
+ *
+ */
+public class ScaleFormulaIndex {
+	static final Logger log = LogManager.getLogger(ScaleFormulaIndex.class);
+	static ObjectMapper mapper = new ObjectMapper();
+	private static Map<String, ScaleFormulaIndex> indexes = new ConcurrentHashMap<String, ScaleFormulaIndex>();
+
+	private String resource;
+	private Map<String, ScaleFormula> nameMap = new HashMap<String, ScaleFormula>();
+	private Map<String, ScaleFormula> alternateNameMap = new HashMap<String, ScaleFormula>();
+	private Map<String, ScaleFormula> lowerCaseNameMap = new HashMap<String, ScaleFormula>();
+	private Map<Integer, List<ScaleFormula>> formulaNumberMap = new HashMap<Integer, List<ScaleFormula>>();
+
+	static {
+		mapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+	}
+
+	private ScaleFormulaIndex(String resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * Gets the index for a resource, loading it if this is the first use.
+	 * @param resource file name in /data/music, for example common_scaleFormulas.json
+	 * @return ScaleFormulaIndex
+	 */
+	public static ScaleFormulaIndex getInstance(String resource) {
+		return indexes.computeIfAbsent(resource, r -> {
+			ScaleFormulaIndex index = new ScaleFormulaIndex(r);
+			index.load();
+			return index;
+		});
+	}
+
+	/**
+	 * Computes the formula number of a scale formula - the pitch classes as a 12-bit mask.
+	 * For example the Major scale formula [2, 2, 1, 2, 2, 2, 1] has the pitch set [0, 2, 4, 5, 7, 9, 11, 12]
+	 * and formula number 0xAB5 (2741).
+	 * @param formula
+	 * @return formula number
+	 */
+	public static int computeFormulaNumber(List<Integer> formula) {
+		int fnum = 0;
+		for(Integer i : IFormula.formulaToPitchIndexes(formula)) {
+			fnum |= (1 << (i % 12));
+		}
+		return fnum;
+	}
+
+	/**
+	 * Computes the formula number of a pitch-class set, for example [0, 3, 5, 7, 10].
+	 * @param pitchClassSet
+	 * @return formula number
+	 */
+	public static int pitchClassSetToFormulaNumber(List<Integer> pitchClassSet) {
+		int fnum = 0;
+		for(Integer i : pitchClassSet) {
+			fnum |= (1 << (i % 12));
+		}
+		return fnum;
+	}
+
+	/**
+	 * Finds a ScaleFormula by exact name, then by alternate name, then by name ignoring case.
+	 * @param scaleName
+	 * @return ScaleFormula or null if not found
+	 */
+	public ScaleFormula find(String scaleName) {
+		String key = scaleName.trim();
+		ScaleFormula scaleFormula = nameMap.get(key);
+		if(scaleFormula == null) {
+			scaleFormula = alternateNameMap.get(key);
+		}
+		if(scaleFormula == null) {
+			scaleFormula = lowerCaseNameMap.get(key.toLowerCase());
+		}
+		return scaleFormula;
+	}
+
+	/**
+	 *
+	 * @param formulaNumber
+	 * @return unmodifiable List of ScaleFormulas having the formula number, empty if none
+	 */
+	public List<ScaleFormula> find(int formulaNumber) {
+		List<ScaleFormula> formulas = formulaNumberMap.get(formulaNumber);
+		return formulas != null ? Collections.unmodifiableList(formulas) : Collections.emptyList();
+	}
+
+	/**
+	 *
+	 * @param pitchClassSet for example [0, 2, 4, 5, 7, 9, 11]
+	 * @return unmodifiable List of ScaleFormulas having the pitch-class set, empty if none
+	 */
+	public List<ScaleFormula> findByPitchClassSet(List<Integer> pitchClassSet) {
+		return find(pitchClassSetToFormulaNumber(pitchClassSet));
+	}
+
+	public int size() {
+		return nameMap.size();
+	}
+
+	public String getResource() {
+		return resource;
+	}
+
+	/**
+	 * Scale formula resources have one formula per line, optionally
+	 * inside a {"scales":[ ... ]} wrapper.
+	 */
+	private void load() {
+		InputStream is = getClass().getResourceAsStream("/data/music/" + resource);
+		if(is == null) {
+			log.error("Scale formula resource not found: " + resource);
+			return;
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+			String line = null;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if(!line.startsWith("{") || !line.contains("\"formula\"")) {
+					continue;
+				}
+				if(line.endsWith(",")) {
+					line = line.substring(0, line.length() - 1);
+				}
+				try {
+					add(mapper.readValue(line, ScaleFormula.class));
+				} catch (IOException e) {
+					log.error("Cannot deserialize " + line + " because " + e.toString());
+				}
+			}
+		} catch (IOException e) {
+			log.error("Unable to read " + resource + " " + e.toString());
+		}
+		log.debug("Indexed " + nameMap.size() + " scale formulas from " + resource);
+	}
+
+	/**
+	 * The first formula with a given name or alternate name wins, as it did with the sequential search.
+	 */
+	private void add(ScaleFormula scaleFormula) {
+		String name = scaleFormula.getName().trim();
+		nameMap.putIfAbsent(name, scaleFormula);
+		lowerCaseNameMap.putIfAbsent(name.toLowerCase(), scaleFormula);
+		for(String alternateName : scaleFormula.getAlternateNames()) {
+			alternateNameMap.putIfAbsent(alternateName.trim(), scaleFormula);
+		}
+		formulaNumberMap.computeIfAbsent(computeFormulaNumber(scaleFormula.getFormula()), k -> new ArrayList<ScaleFormula>()).add(scaleFormula);
+	}
+}
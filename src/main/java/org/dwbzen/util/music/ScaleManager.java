@@ -1,20 +1,13 @@
 package org.dwbzen.util.music;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.dwbzen.music.element.Pitch;
 import org.dwbzen.music.element.Scale;
 import org.dwbzen.music.element.ScaleFormula;
@@ -24,7 +17,6 @@ import org.dwbzen.util.Configuration;
 public class ScaleManager {
 	static final Logger log = LogManager.getLogger(ScaleManager.class);
 	static final String CONFIG_FILENAME = "/config.properties";
-	private  ObjectMapper mapper = new ObjectMapper();
 	private String dataSourceName;
 	private Properties properties;
 	private Pitch defaultRootPitch = new Pitch("C");
@@ -57,6 +49,7 @@ public class ScaleManager {
 	}
 	
 	public ScaleManager(Properties properties) {
+		this.properties = properties;
 		setDataSourceName(properties.getProperty("dataSource", "file"));
 	}
 	
@@ -130,30 +123,44 @@ public class ScaleManager {
 		return getScale(scaleName, p);
 	}
 	
+	/**
+	 * Finds a ScaleFormula by exact name or alternate name in the given resource.
+	 * The resource is indexed the first time it's used.
+	 * 
+	 * @see ScaleFormulaIndex
+	 * @param scaleName
+	 * @param resource scale formula resource file in /data/music
+	 * @return ScaleFormula or null if not found
+	 */
 	public ScaleFormula findScaleFormula(String scaleName, String resource) {
-		ScaleFormula scaleFormula = null;
-		InputStream is = this.getClass().getResourceAsStream("/data/music/" + resource);
-		/*
-		 * try-with-resource will auto close the stream
-		 */
-		try(Stream<String> stream = new BufferedReader(new InputStreamReader(is)).lines()) {
-
-			Optional<String> optional = stream.filter(s -> s.contains(scaleName)).findFirst();
-			if(optional.isPresent()) {
-				String formulaString = optional.get();
-				try {
-					scaleFormula = mapper.readValue(formulaString, ScaleFormula.class);
-				} catch (IOException e) {
-					log.error("Cannot deserialize " + formulaString + " because " + e.toString());
-				}
-			}
-			else {
-	    		log.error("No such scale: " + scaleName);
-	    	}
+		ScaleFormula scaleFormula = ScaleFormulaIndex.getInstance(resource).find(scaleName);
+		if(scaleFormula == null) {
+    		log.error("No such scale: " + scaleName);
 		}
 		return scaleFormula;
 	}
 	
+	/**
+	 * Finds the ScaleFormulas having the given pitch-class set in the given resource.
+	 * @param pitchClassSet for example [0, 2, 3, 5, 7, 8, 11]
+	 * @param resource scale formula resource file in /data/music
+	 * @return List of ScaleFormula, empty if none found
+	 */
+	public List<ScaleFormula> findScaleFormulas(List<Integer> pitchClassSet, String resource) {
+		return ScaleFormulaIndex.getInstance(resource).findByPitchClassSet(pitchClassSet);
+	}
+	
+	/**
+	 * Finds the ScaleFormulas having the given formula number in the given resource.
+	 * @see ScaleFormulaIndex#computeFormulaNumber(List)
+	 * @param formulaNumber
+	 * @param resource scale formula resource file in /data/music
+	 * @return List of ScaleFormula, empty if none found
+	 */
+	public List<ScaleFormula> findScaleFormulas(int formulaNumber, String resource) {
+		return ScaleFormulaIndex.getInstance(resource).find(formulaNumber);
+	}
+	
 	public Set<String> getMappedScaleNames() {
 		 Map<String, Scale> scaleMap = Scale.getScaleMap();
 		 return scaleMap.keySet();
@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -13,9 +14,6 @@ import org.apache.logging.log4j.Logger;
 import org.bson.Document;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.BasicDBObject;
-import com.mongodb.DBObject;
-import com.mongodb.client.MongoCursor;
 
 import org.dwbzen.music.element.Key;
 import org.dwbzen.music.element.song.ChordFormula;
@@ -27,10 +25,14 @@ import org.dwbzen.music.element.song.Song;
 import org.dwbzen.music.element.song.SongMeasure;
 import org.dwbzen.music.element.song.Songbook;
 import org.dwbzen.util.Configuration;
-import org.dwbzen.util.mongo.Find;
+import org.dwbzen.util.mongo.DocumentStore;
+import org.dwbzen.util.mongo.DocumentStores;
+import org.dwbzen.util.mongo.MongoClientPool;
+import org.dwbzen.util.mongo.ScoreRepository;
 
 /**
  * Statefull song manager. Loads Songs from a JSON text file or a MongoDB collection.
+ * The collection is in the configured DocumentStore, so with documentStore=file no MongoDB server is needed.
  * Maintains a Map<String,ChordFormula> after loading songs.
  * Adds HarmonyChords to Songs in original and optionally a transposition key.
  * @author don_bacon
@@ -68,6 +70,7 @@ public class SongManager {
 	 * -collection <collection name for songs> typically "songs"
 	 * -file <name.json> a single song file in JSON format
 	 * -query <string> 	optional query string for collection
+	 * -save <collection name> save the loaded songs to a MongoDB collection
 	 * 
 	 * @param args
 	 * @throws IOException 
@@ -77,6 +80,7 @@ public class SongManager {
 		String songcollection = null;
 		Songbook songbook = null;
 		String query = null;
+		String saveCollection = null;
 		for(int i=0; i<args.length; i++) {
 			if(args[i].startsWith("-collect")) {
 				songcollection = args[++i];
@@ -87,12 +91,18 @@ public class SongManager {
 			else if(args[i].equalsIgnoreCase("-query")) {
 				query = args[++i];
 			}
+			else if(args[i].equalsIgnoreCase("-save")) {
+				saveCollection = args[++i];
+			}
 		}
 		SongManager songMgr = new SongManager(songcollection, inputFile, query);
 		songMgr.loadSongs();
 		songbook = songMgr.getSongbook();
 		if(songbook != null && songbook.size() > 0) {
 			log.info("#songs loaded: " + songbook.size());
+			if(saveCollection != null) {
+				log.info("#songs saved: " + songMgr.saveSongs(saveCollection));
+			}
 		}
 	}
 	
@@ -140,28 +150,23 @@ public class SongManager {
 	}
 	
 	/**
-	 * Loads Songs from configured MongoDB
+	 * Loads Songs from the configured DocumentStore
 	 * @param songCollectionName the Song collection name
 	 * @param chordFormulaCollectionName the ChordFormula collection name. Defaults to "chord_formulas"
 	 * @return Map<String,IMapped<String>> keyed by song name, available as getSongs().
 	 */
 	void loadSongs(String songCollectionName, String queryString) {
 
-		Find find = new Find(dbname, songCollectionName, host, port);
-		if(queryString != null) {
-			find.setQuery(queryString);
-		}
-		MongoCursor<Document> cursor = find.search();
-		long count = find.getCount();
+		DocumentStore documentStore = DocumentStores.open(configProperties, MongoClientPool.uri(host, port), dbname);
+		List<Document> documents = documentStore.find(songCollectionName, DocumentStores.parseQuery(queryString), 0);
+		long count = documents.size();
 		log.debug(" #songs loaded: " + count);
 		if(count == 0) {
 			log.warn("Nothing found in " + songCollectionName + " collection");
 		}
 
-		while(cursor.hasNext()) {
-			Document doc = cursor.next();
-			DBObject dbObject = new BasicDBObject(doc);
-			String jsonString = dbObject.toString();
+		for(Document doc : documents) {
+			String jsonString = doc.toJson();
 			log.debug("dbObject: " + jsonString);
 			Song song = accept(jsonString);
 			addObjectToMap(song);
@@ -172,7 +177,7 @@ public class SongManager {
 			Key transposedKey = Key.C_MAJOR;
 			addHarmonyChordsToSong(transposedKey, song);
 		}
-		find.close();
+		documentStore.close();
 		
 		return;
 	}
@@ -226,6 +231,21 @@ public class SongManager {
 		}
 	}
 
+	/**
+	 * Saves the loaded Songs to a collection of the configured DocumentStore with unordered bulk inserts.
+	 * @param collectionName
+	 * @return the number of Songs inserted
+	 */
+	public long saveSongs(String collectionName) {
+		DocumentStore documentStore = DocumentStores.open(configProperties, MongoClientPool.uri(host, port), dbname);
+		try(ScoreRepository repository = new ScoreRepository(documentStore, configProperties)) {
+			repository.setSongCollectionName(collectionName);
+			repository.saveSongs(songMap.values());
+			repository.flush();
+			return repository.getInsertedCount();
+		}
+	}
+
 	private void addObjectToMap(Song song) {
 		songMap.put(song.getName(), song);
 	}
@@ -0,0 +1,84 @@
+package org.dwbzen.util.music;
+
+import org.dwbzen.music.instrument.BassClarinet;
+import org.dwbzen.music.instrument.Bassoon;
+import org.dwbzen.music.instrument.Cello;
+import org.dwbzen.music.instrument.Clarinet;
+import org.dwbzen.music.instrument.DoubleBass;
+import org.dwbzen.music.instrument.Flute;
+import org.dwbzen.music.instrument.Harpsichord;
+import org.dwbzen.music.instrument.Koto;
+import org.dwbzen.music.instrument.Oboe;
+import org.dwbzen.music.instrument.Piano;
+import org.dwbzen.music.instrument.PianoLH;
+import org.dwbzen.music.instrument.PianoRH;
+import org.dwbzen.music.instrument.Shakuhachi;
+import org.dwbzen.music.instrument.Shamisen;
+import org.dwbzen.music.instrument.Trombone;
+import org.dwbzen.music.instrument.Viola;
+import org.dwbzen.music.instrument.Violin;
+import org.dwbzen.music.instrument.guitar.AcousticGuitar;
+import org.dwbzen.music.instrument.percussion.Cowbell;
+import org.dwbzen.music.instrument.percussion.Cymbals;
+import org.dwbzen.music.instrument.percussion.SnareDrum;
+import org.dwbzen.music.instrument.percussion.Timpani;
+import org.dwbzen.music.instrument.percussion.WoodBlocks;
+import org.dwbzen.music.instrument.percussion.Xylophone;
+import org.dwbzen.music.instrument.vocal.AltoVoice;
+import org.dwbzen.music.instrument.vocal.BassVoice;
+import org.dwbzen.music.instrument.vocal.SopranoVoice;
+import org.dwbzen.music.instrument.vocal.TenorVoice;
+import org.dwbzen.music.transform.ChordTransformer;
+import org.dwbzen.music.transform.ExplodeTransformer;
+import org.dwbzen.music.transform.ScaleTransformer;
+
+/**
+ * The Instruments, Transformers and RhythmScale factories in this framework.<br>
+ * Add new ones here so they can be created without reflection.
+ * 
+ * @author don_bacon
+ *
+ */
+public class StandardComponents implements IComponentProvider {
+
+	@Override
+	public void register(ComponentRegistry registry) {
+		registry.registerInstrument(BassClarinet.class, BassClarinet::new);
+		registry.registerInstrument(Bassoon.class, Bassoon::new);
+		registry.registerInstrument(Cello.class, Cello::new);
+		registry.registerInstrument(Clarinet.class, Clarinet::new);
+		registry.registerInstrument(DoubleBass.class, DoubleBass::new);
+		registry.registerInstrument(Flute.class, Flute::new);
+		registry.registerInstrument(Harpsichord.class, Harpsichord::new);
+		registry.registerInstrument(Koto.class, Koto::new);
+		registry.registerInstrument(Oboe.class, Oboe::new);
+		registry.registerInstrument(Piano.class, Piano::new);
+		registry.registerInstrument(PianoLH.class, PianoLH::new);
+		registry.registerInstrument(PianoRH.class, PianoRH::new);
+		registry.registerInstrument(Shakuhachi.class, Shakuhachi::new);
+		registry.registerInstrument(Shamisen.class, Shamisen::new);
+		registry.registerInstrument(Trombone.class, Trombone::new);
+		registry.registerInstrument(Viola.class, Viola::new);
+		registry.registerInstrument(Violin.class, Violin::new);
+		registry.registerInstrument(AcousticGuitar.class, AcousticGuitar::new);
+		registry.registerInstrument(Cowbell.class, Cowbell::new);
+		registry.registerInstrument(Cymbals.class, Cymbals::new);
+		registry.registerInstrument(SnareDrum.class, SnareDrum::new);
+		registry.registerInstrument(Timpani.class, Timpani::new);
+		registry.registerInstrument(WoodBlocks.class, WoodBlocks::new);
+		registry.registerInstrument(Xylophone.class, Xylophone::new);
+		registry.registerInstrument(AltoVoice.class, AltoVoice::new);
+		registry.registerInstrument(BassVoice.class, BassVoice::new);
+		registry.registerInstrument(SopranoVoice.class, SopranoVoice::new);
+		registry.registerInstrument(TenorVoice.class, TenorVoice::new);
+		
+		registry.registerTransformer(ScaleTransformer.class, ScaleTransformer::new);
+		registry.registerTransformer(ExplodeTransformer.class, ExplodeTransformer::new);
+		registry.registerTransformer(ChordTransformer.class, ChordTransformer::new);
+		
+		registry.registerRhythmScaleFactory("Monophonic16StandardRhythmScale", Monophonic16StandardRhythmScaleFactory::new);
+		registry.registerRhythmScaleFactory("StandardRhythmScale", StandardRhythmScaleFactory::new);
+		registry.registerRhythmScaleFactory("PolyphonicRhythmScale", PolyphonicRhythmScaleFactory::new);
+	}
+
+}
@@ -0,0 +1,187 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import javax.jms.JMSException;
+
+import junit.framework.TestCase;
+import org.bson.Document;
+import org.dwbzen.music.IMeasureSink;
+import org.dwbzen.music.ScorePart;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.util.mongo.BulkWriter;
+import org.dwbzen.util.mongo.InMemoryDocumentStore;
+import org.dwbzen.util.mongo.ScoreRepository;
+
+public class BulkWriterTest extends TestCase {
+
+	public void testBatches() {
+		InMemoryDocumentStore store = new InMemoryDocumentStore();
+		try(BulkWriter writer = new BulkWriter(store, 4, false)) {
+			for(int i=0; i<10; i++) {
+				writer.add("scores", new Document("name", "score" + i));
+			}
+			assertEquals(8, store.getCollection("scores").size());
+		}
+		assertEquals(Arrays.asList(4, 4, 2), store.getBatchSizes());
+		assertEquals("score9", store.getCollection("scores").get(9).getString("name"));
+	}
+
+	public void testAsyncFlush() {
+		InMemoryDocumentStore store = new InMemoryDocumentStore();
+		BulkWriter writer = new BulkWriter(store, 3, true);
+		for(int i=0; i<7; i++) {
+			writer.add(i % 2 == 0 ? "scores" : "songs", new Document("n", i));
+		}
+		writer.flushAsync().join();
+		assertEquals(4, store.getCollection("scores").size());
+		assertEquals(3, store.getCollection("songs").size());
+		assertEquals(7, writer.getInsertedCount());
+		List<Document> scores = store.getCollection("scores");
+		for(int i=0; i<scores.size(); i++) {
+			assertEquals(i * 2, scores.get(i).getInteger("n").intValue());
+		}
+		writer.close();
+	}
+
+	/**
+	 * A failed insert is reported by the next flush, sync or async, and by close.
+	 * The batches after it are still inserted.
+	 */
+	public void testInsertFails() {
+		for(boolean async : new boolean[] {false, true}) {
+			InMemoryDocumentStore store = new FailingDocumentStore("songs");
+			BulkWriter writer = new BulkWriter(store, 2, async);
+			for(int i=0; i<6; i++) {
+				writer.add(i < 3 ? "songs" : "scores", new Document("n", i));
+			}
+			try {
+				writer.flush();
+				fail("flush succeeded");
+			}
+			catch(IllegalStateException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("3 documents"));
+				assertEquals("songs is down", e.getCause().getMessage());
+				assertEquals(1, e.getCause().getSuppressed().length);
+			}
+			assertEquals(3, writer.getInsertedCount());
+			assertEquals(3, store.getCollection("scores").size());
+			writer.flush();		// reported once
+
+			writer.add("songs", new Document("n", 6));
+			try {
+				writer.close();
+				fail("close succeeded");
+			}
+			catch(IllegalStateException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("1 documents"));
+			}
+		}
+	}
+
+	/**
+	 * ScoreRepository splits a Score into a score document and scorePart documents of up to measuresPerDocument measures.
+	 */
+	public void testScoreDocuments() {
+		Properties configProperties = new Properties();
+		configProperties.setProperty("mongodb.scores.collection", "generated");
+		ScoreRepository repository = new ScoreRepository(new InMemoryDocumentStore(), configProperties);
+		Score score = ScoreFixture.createScore();
+		score.setName("Fixture");
+
+		List<Document> documents = repository.toDocuments(score);
+		assertEquals(1, documents.size());
+		assertEquals(ScoreRepository.SCORE_TYPE, documents.get(0).getString("type"));
+
+		repository.setMeasuresPerDocument(1);
+		documents = repository.toDocuments(score);
+		assertEquals(5, documents.size());
+		assertEquals(List.of(partSummary(ScoreFixture.FLUTE, 2, 2), partSummary(ScoreFixture.SNARE_DRUM, 2, 2)), parts(documents.get(0)));
+		assertEquals(List.of(ScoreFixture.FLUTE + ":1:1", ScoreFixture.FLUTE + ":2:1", ScoreFixture.SNARE_DRUM + ":1:1", ScoreFixture.SNARE_DRUM + ":2:1"),
+				scorePartDocuments(documents.subList(1, documents.size())));
+
+		repository.setMeasuresPerDocument(16);
+		documents = repository.toDocuments(score);
+		assertEquals(3, documents.size());
+		assertEquals(List.of(partSummary(ScoreFixture.FLUTE, 2, 1), partSummary(ScoreFixture.SNARE_DRUM, 2, 1)), parts(documents.get(0)));
+		assertEquals(List.of(ScoreFixture.FLUTE + ":1:2", ScoreFixture.SNARE_DRUM + ":1:2"), scorePartDocuments(documents.subList(1, documents.size())));
+		for(Document document : documents) {
+			assertEquals("Fixture", document.getString("name"));
+		}
+		repository.close();
+	}
+
+	/**
+	 * A streamed part saved by measureSink has a scorePart document per Measure, in order,
+	 * and saveHeader summarizes them.
+	 */
+	public void testMeasureSink() throws JMSException {
+		Properties configProperties = new Properties();
+		configProperties.setProperty("mongodb.scores.collection", "generated");
+		configProperties.setProperty("mongodb.bulk.batchSize", "4");
+		InMemoryDocumentStore store = new InMemoryDocumentStore();
+		ScoreRepository repository = new ScoreRepository(store, configProperties);
+		ScorePart scorePart = MeasureSinkTest.runScorePart(repository.measureSink("streamed").andThen(IMeasureSink.COLLECT), 500, 10);
+		Score score = scorePart.getScorePartEntity().getScore();
+		score.setName("streamed");
+		score.addPart(scorePart);
+		repository.saveHeader(score);
+		repository.close();
+
+		int measures = scorePart.getScorePartEntity().getMeasures().size();
+		assertTrue(measures >= 10);
+		List<Document> documents = store.getCollection("generated");
+		assertEquals(measures + 1, documents.size());
+		List<String> expected = new ArrayList<String>();
+		for(int i=1; i<=measures; i++) {
+			expected.add(MeasureSinkTest.INSTRUMENT + ":" + i + ":1");
+		}
+		assertEquals(expected, scorePartDocuments(documents.subList(0, measures)));
+		Document header = documents.get(measures);
+		assertEquals(ScoreRepository.SCORE_TYPE, header.getString("type"));
+		assertEquals(List.of(partSummary(MeasureSinkTest.INSTRUMENT, measures, measures)), parts(header));
+	}
+
+	static class FailingDocumentStore extends InMemoryDocumentStore {
+		private String failingCollection;
+
+		FailingDocumentStore(String failingCollection) {
+			this.failingCollection = failingCollection;
+		}
+		@Override
+		public int insert(String collectionName, List<Document> documents) {
+			if(collectionName.equals(failingCollection)) {
+				throw new IllegalStateException(collectionName + " is down");
+			}
+			return super.insert(collectionName, documents);
+		}
+	}
+
+	private static String partSummary(String partName, int measures, int documents) {
+		return partName + ":" + measures + ":" + documents;
+	}
+
+	private static List<String> parts(Document scoreDocument) {
+		List<String> parts = new ArrayList<String>();
+		for(Document part : scoreDocument.getList("parts", Document.class)) {
+			parts.add(partSummary(part.getString("partName"), part.getInteger("measures"), part.getInteger("documents")));
+		}
+		return parts;
+	}
+
+	/**
+	 * @param documents scorePart documents
+	 * @return partName:firstMeasure:measures of each
+	 */
+	private static List<String> scorePartDocuments(List<Document> documents) {
+		List<String> parts = new ArrayList<String>();
+		for(Document document : documents) {
+			assertEquals(ScoreRepository.SCORE_PART_TYPE, document.getString("type"));
+			parts.add(partSummary(document.getString("partName"), document.getInteger("firstMeasure"), document.getList("measures", Object.class).size()));
+		}
+		return parts;
+	}
+}
@@ -10,8 +10,12 @@ import org.apache.log4j.Logger;
 import org.junit.Test;
 
 import junit.framework.TestCase;
+import org.dwbzen.music.element.Chord;
+import org.dwbzen.music.element.Key;
 import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.element.song.ChordFormula;
 import org.dwbzen.music.element.song.ChordFormulas;
+import org.dwbzen.music.element.song.ChordInfo;
 import org.dwbzen.music.element.song.HarmonyChord;
 import org.dwbzen.util.music.ChordManager;
 
@@ -68,4 +72,30 @@ public class ChordManagerTest extends TestCase {
 		}
 
 	}
+
+	@Test
+	public void testCreateHarmonyChord() {
+		HarmonyChord hc = chordManager.createHarmonyChord("F#m7", Key.C_MAJOR);
+		assertNotNull(hc);
+		log.debug("F#m7 " + hc.getChordPitches());
+		HarmonyChord slashChord = chordManager.createHarmonyChord("D7-5/C", Key.C_MAJOR);
+		assertNotNull(slashChord);
+		
+		ChordInfo chordInfo = ChordManager.parseChordName("D7-5/C");
+		assertEquals("D", chordInfo.getRootNote());
+		assertEquals("C", chordInfo.getBassNote());
+		assertEquals("7-5", chordInfo.getChordSymbol());
+		assertSame(chordInfo, ChordManager.parseChordName("D7-5/C"));
+	}
+	
+	@Test
+	public void testAddChordFormulaToInvertedChord() {
+		String[] c7FirstInversion = {"E3", "G3", "Bb3", "C4"};		// C7/E
+		Chord chord = Chord.createChord(c7FirstInversion, 1);
+		ChordFormula chordFormula = chordManager.addChordFormulaToChord(chord);
+		assertNotNull(chordFormula);
+		assertNotNull(chord.getChordFormula());
+		log.debug("C7/E " + chord.toString(true));
+		assertFalse(chordManager.getChordInversionMap().isEmpty());
+	}
 }
@@ -0,0 +1,115 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.music.cp.ChordProgressionProducer;
+import org.dwbzen.music.cp.CompiledMarkovChain;
+import org.dwbzen.music.cp.HarmonyChordCollector;
+import org.dwbzen.music.element.song.ChordProgression;
+import org.dwbzen.music.element.song.ChordProgressionComparator;
+import org.dwbzen.music.element.song.HarmonyChord;
+import org.dwbzen.music.element.song.Song;
+import org.dwbzen.util.music.SongManager;
+
+public class CompiledMarkovChainTest extends TestCase {
+	static final String SONG_FILE = "src/main/resources/data/music/songs/Penny Lane.json";
+	static final int ORDER = 2;
+	static final int SAMPLES = 20000;
+
+	/**
+	 * Each state has the same successors as its MarkovChain key, picked with the same probabilities.
+	 */
+	public void testSuccessorProbabilities() {
+		MarkovChain<HarmonyChord, ChordProgression, Song> markovChain = collect(loadSong());
+		CompiledMarkovChain compiled = CompiledMarkovChain.compile(markovChain, ORDER);
+		assertEquals(markovChain.size(), compiled.getNumberOfStates());
+		Random random = new Random(42L);
+		for(ChordProgression key : markovChain.keySet()) {
+			int state = compiled.getState(key);
+			assertTrue(state >= 0);
+			assertEquals(key.toString(), compiled.getProgression(state).toString());
+
+			CollectorStats<HarmonyChord, ChordProgression, Song> cstats = markovChain.get(key);
+			Map<String, Integer> picks = new HashMap<String, Integer>();
+			for(int i=0; i<SAMPLES; i++) {
+				int transition = compiled.nextTransition(state, random, true);
+				HarmonyChord hc = compiled.getChord(transition);
+				picks.merge(hc.getName(), 1, Integer::sum);
+				int nextState = compiled.getNextState(transition);
+				if(nextState >= 0) {
+					assertEquals(new ChordProgression(key.subset(1), hc).toString(), compiled.getProgression(nextState).toString());
+				}
+			}
+			Map<HarmonyChord, OccurrenceProbability> occurrenceProbabilityMap = cstats.getOccurrenceProbabilityMap();
+			assertEquals(occurrenceProbabilityMap.size(), picks.size());
+			for(HarmonyChord hc : occurrenceProbabilityMap.keySet()) {
+				int[] range = occurrenceProbabilityMap.get(hc).getRange();
+				double expected = (range[CollectorStats.HIGH] - range[CollectorStats.LOW] + 1) / (double)cstats.getTotalOccurrance();
+				double actual = picks.getOrDefault(hc.getName(), 0) / (double)SAMPLES;
+				assertEquals(key + " -> " + hc, expected, actual, 0.02);
+			}
+		}
+	}
+
+	/**
+	 * Where each state has a single successor the MarkovChain and the CompiledMarkovChain
+	 * must generate the same ChordProgression.
+	 */
+	public void testSameProgression() {
+		HarmonyChordCollector collector = HarmonyChordCollector.getChordProgressionCollector(loadSong(), ORDER);
+		ChordProgression progression = new ChordProgression();
+		for(String name : new String[] {"C", "Am7", "F", "G7", "C"}) {
+			progression.add(new HarmonyChord(name));
+		}
+		MarkovChain<HarmonyChord, ChordProgression, Song> markovChain = collector.apply(progression);
+
+		ChordProgression expected = generate(markovChain, null, progression.subset(0, ORDER));
+		assertEquals(progression.toString(), expected.toString());
+		CompiledMarkovChain compiled = CompiledMarkovChain.compile(markovChain, ORDER);
+		assertEquals(expected.toString(), generate(markovChain, compiled, progression.subset(0, ORDER)).toString());
+	}
+
+	public void testEmptyChain() {
+		for(int order = 1; order <= 3; order++) {
+			CompiledMarkovChain compiled = CompiledMarkovChain.compile(
+					new MarkovChain<HarmonyChord, ChordProgression, Song>(new ChordProgressionComparator(), order), order);
+			assertEquals(0, compiled.getNumberOfStates());
+			assertEquals(0, compiled.getNumberOfTransitions());
+			assertEquals(0, compiled.getNumberOfChords());
+			List<HarmonyChord> progression = new ArrayList<HarmonyChord>();
+			for(int i=0; i<order; i++) {
+				progression.add(new HarmonyChord("C"));
+			}
+			assertEquals(-1, compiled.getState(progression));
+			assertEquals(-1, compiled.pickSeedState(new Random(42L)));
+			assertEquals(HarmonyChord.TERMINAL_HARMONY_CHORD, compiled.getChord(compiled.nextTransition(-1, new Random(42L), true)));
+		}
+	}
+
+	private static ChordProgression generate(MarkovChain<HarmonyChord, ChordProgression, Song> markovChain, CompiledMarkovChain compiled, ChordProgression seed) {
+		ChordProgressionProducer producer = ChordProgressionProducer.getChordProgressionProducer(ORDER, markovChain, seed);
+		producer.setCompiledChain(compiled);
+		producer.setNextSeed(seed);
+		return producer.apply(markovChain);
+	}
+
+	private static MarkovChain<HarmonyChord, ChordProgression, Song> collect(Song song) {
+		HarmonyChordCollector collector = HarmonyChordCollector.getChordProgressionCollector(song, ORDER);
+		collector.collect();
+		return collector.getMarkovChain();
+	}
+
+	private static Song loadSong() {
+		SongManager songManager = new SongManager(null, SONG_FILE, null);
+		songManager.loadSongs();
+		return songManager.getSongs().values().iterator().next();
+	}
+}
@@ -0,0 +1,51 @@
+package junit;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.element.PitchRange;
+import org.dwbzen.music.element.RhythmScale;
+import org.dwbzen.music.instrument.Flute;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.transform.ITransformer;
+import org.dwbzen.music.transform.ScaleTransformer;
+import org.dwbzen.util.ConfigurationException;
+import org.dwbzen.util.music.ComponentRegistry;
+
+public class ComponentRegistryTest extends TestCase {
+
+	static ComponentRegistry registry = ComponentRegistry.getInstance();
+
+	public void testCreate() {
+		assertTrue(registry.getInstrumentClassNames().contains(Flute.class.getName()));
+		Instrument flute = registry.newInstrument("org.dwbzen.music.instrument.Flute");
+		assertTrue(flute instanceof Flute);
+		assertNotSame(flute, registry.newInstrument("org.dwbzen.music.instrument.Flute"));
+		ITransformer transformer = registry.newTransformer("org.dwbzen.music.transform.ScaleTransformer");
+		assertTrue(transformer instanceof ScaleTransformer);
+		try {
+			registry.newInstrument("org.dwbzen.music.instrument.MidiInstrument");
+			fail("MidiInstrument is not an Instrument");
+		}
+		catch(ConfigurationException e) {
+		}
+	}
+
+	public void testRhythmScales() {
+		RhythmScale rhythmScale = registry.getRhythmScale("StandardRhythmScale");
+		assertSame(rhythmScale, registry.getRhythmScale("StandardRhythmScale"));
+		RhythmScale newRhythmScale = registry.newRhythmScale("StandardRhythmScale");
+		assertNotSame(rhythmScale, newRhythmScale);
+		assertEquals(rhythmScale.getBaseUnits(), newRhythmScale.getBaseUnits());
+		assertNull(registry.newRhythmScaleFactory("NoSuchRhythmScale"));
+	}
+
+	public void testPitchRange() {
+		Properties props = new Properties();
+		props.setProperty("org.dwbzen.music.instrument.Flute.range", "C4,C7");
+		PitchRange range = registry.getPitchRange(props, "org.dwbzen.music.instrument.Flute");
+		assertEquals("C4", range.getLow().toString());
+		assertNotSame(range.getLow(), registry.getPitchRange(props, "org.dwbzen.music.instrument.Flute").getLow());
+		assertNull(registry.getPitchRange(props, "org.dwbzen.music.instrument.Oboe"));
+	}
+}
@@ -0,0 +1,141 @@
+package junit;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.ConfigurationException;
+import org.dwbzen.util.ConfigurationSnapshot;
+
+public class ConfigurationSnapshotTest extends TestCase {
+
+	private static ConfigurationSnapshot snapshot() {
+		Properties props = new Properties();
+		props.setProperty("score.measures", "20");
+		props.setProperty("score.title", "Title");
+		props.setProperty("score.transformers.parallel", "True");
+		props.setProperty("score.transformers.default", "org.dwbzen.music.transform.ScaleTransformer");
+		props.setProperty("score.transformers.Flute", "org.dwbzen.music.transform.ScaleTransformer, org.dwbzen.music.transform.ExplodeTransformer");
+		props.setProperty("score.transformersX", "none");
+		return ConfigurationSnapshot.of(props);
+	}
+
+	public void testSubset() {
+		ConfigurationSnapshot snapshot = snapshot();
+		ConfigurationSnapshot transformers = snapshot.subset("score.transformers.");
+		assertSame(transformers, snapshot.subset("score.transformers."));
+		assertEquals(3, transformers.size());
+		assertTrue(transformers.getBoolean("parallel", false));
+		List<String> classNames = transformers.getList("Flute");
+		assertEquals(2, classNames.size());
+		assertEquals("org.dwbzen.music.transform.ExplodeTransformer", classNames.get(1));
+		assertSame(ConfigurationSnapshot.EMPTY, snapshot.subset("score.instruments."));
+	}
+
+	public void testTypedValues() {
+		ConfigurationSnapshot snapshot = snapshot();
+		assertEquals(20, snapshot.getInt("score.measures", 10));
+		assertEquals(16, snapshot.getInt("score.measure.divisions", 16));
+		assertEquals(20.0, snapshot.getDouble("score.measures", 0), 0.0);
+		assertEquals("Title", snapshot.getString("score.title", "Untitled"));
+		assertTrue(snapshot.getList("score.name").isEmpty());
+		try {
+			snapshot.getInt("score.title", 0);
+			fail("score.title is not an int");
+		}
+		catch(ConfigurationException e) {
+		}
+	}
+
+	public void testImmutable() {
+		Properties props = new Properties();
+		props.setProperty("score.measures", "20");
+		ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(props);
+		props.setProperty("score.measures", "40");
+		assertEquals(20, snapshot.getInt("score.measures", 0));
+		Properties copy = snapshot.toProperties();
+		copy.setProperty("score.measures", "40");
+		assertEquals(20, snapshot.getInt("score.measures", 0));
+		assertEquals(ConfigurationSnapshot.of(props), ConfigurationSnapshot.of(copy));
+		try {
+			snapshot.asMap().put("score.measures", "40");
+			fail("snapshot changed");
+		}
+		catch(UnsupportedOperationException e) {
+		}
+	}
+
+	public void testShared() {
+		ConfigurationSnapshot snapshot = Configuration.snapshot("/config.properties");
+		assertSame(snapshot, Configuration.snapshot("/config.properties"));
+		Configuration configuration = Configuration.getInstance("/config.properties");
+		configuration.getProperties().setProperty("score.title", "Changed");
+		assertEquals(snapshot.getString("score.title"), Configuration.getInstance("/config.properties").getProperties().getProperty("score.title"));
+		assertFalse(Configuration.reload("/config.properties"));
+		assertEquals(snapshot, Configuration.snapshot("/config.properties"));
+	}
+
+	public void testCachedSnapshot() {
+		Configuration configuration = Configuration.getInstance("/config.properties");
+		ConfigurationSnapshot snapshot = configuration.getSnapshot();
+		assertSame(snapshot, configuration.getSnapshot());
+
+		configuration.setProperty("score.title", "Changed");
+		ConfigurationSnapshot changed = configuration.getSnapshot();
+		assertNotSame(snapshot, changed);
+		assertEquals("Changed", changed.getString("score.title"));
+
+		configuration.getProperties().remove("score.title");
+		assertNull(configuration.getSnapshot().getString("score.title"));
+
+		Configuration orchestra = Configuration.getInstance("/orchestra.properties");
+		snapshot = configuration.getSnapshot();
+		configuration.addConfiguration(orchestra);
+		assertEquals(snapshot.size() + orchestra.getSnapshot().size(), configuration.getSnapshot().size());
+
+		snapshot = configuration.getSnapshot();
+		assertFalse(configuration.reload());
+		assertNotSame(snapshot, configuration.getSnapshot());
+		assertEquals(Configuration.snapshot("/config.properties"), configuration.getSnapshot());
+	}
+
+	/**
+	 * reload keeps the snapshot when the file can't be read or hasn't changed, and replaces it when it has.
+	 */
+	public void testReload() throws IOException, URISyntaxException {
+		String configFile = "/ConfigurationSnapshotTest.properties";
+		// a file on the test classpath that can be changed
+		Path path = Paths.get(ConfigurationSnapshotTest.class.getResource("/junit").toURI()).getParent().resolve(configFile.substring(1));
+		try {
+			Files.write(path, List.of("score.title=One"));
+			ConfigurationSnapshot snapshot = Configuration.snapshot(configFile);
+			assertEquals("One", snapshot.getString("score.title"));
+			Configuration configuration = Configuration.getInstance(configFile);
+
+			Files.write(path, List.of("score.title=\\uXYZW"));		// a malformed escape
+			assertFalse(Configuration.reload(configFile));
+			assertSame(snapshot, Configuration.snapshot(configFile));
+			assertFalse(configuration.reload());
+			assertEquals("One", configuration.getProperties().getProperty("score.title"));
+
+			Files.write(path, List.of("score.title = One"));
+			assertFalse(Configuration.reload(configFile));
+			assertSame(snapshot, Configuration.snapshot(configFile));
+
+			Files.write(path, List.of("score.title=Two"));
+			assertTrue(configuration.reload());
+			assertEquals("Two", Configuration.snapshot(configFile).getString("score.title"));
+			assertEquals("Two", configuration.getProperties().getProperty("score.title"));
+			assertEquals("One", snapshot.getString("score.title"));
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
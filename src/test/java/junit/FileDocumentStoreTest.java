@@ -0,0 +1,69 @@
+package junit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.bson.Document;
+import org.dwbzen.util.mongo.DocumentStores;
+import org.dwbzen.util.mongo.FileDocumentStore;
+
+public class FileDocumentStoreTest extends TestCase {
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("store").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		FileDocumentStore.closeAll();
+		Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).map(p -> p.toFile()).forEach(File::delete);
+	}
+
+	private static List<Document> points(String name, int n) {
+		List<Document> documents = new ArrayList<Document>();
+		documents.add(new Document("name", name).append("type", "stats").append("n", n));
+		for(int i=0; i<n; i++) {
+			documents.add(new Document("name", name).append("type", "point").append("x", i).append("y", i * 0.5));
+		}
+		return documents;
+	}
+
+	public void testInsertAndFind() {
+		FileDocumentStore store = FileDocumentStore.open(directory);
+		assertEquals(11, store.insert("fractals", points("sierpinski", 10)));
+		assertEquals(6, store.insert("fractals", points("ifs5", 5)));
+		assertEquals(10, store.count("fractals", DocumentStores.parseQuery("name:sierpinski, type:point")));
+		assertEquals(2, store.count("fractals", DocumentStores.parseQuery("type:stats")));
+		List<Document> found = store.find("fractals", DocumentStores.parseQuery("name:sierpinski,type:point"), 4);
+		assertEquals(4, found.size());
+		assertEquals(3, found.get(3).getInteger("x").intValue());
+		assertEquals(1, store.find("fractals", DocumentStores.parseQuery("name:/^IFS/"), 0).stream().filter(d -> d.getString("type").equals("stats")).count());
+		assertEquals(0, store.count("songs", DocumentStores.parseQuery("artist:The Beatles")));
+	}
+
+	public void testReopen() throws IOException {
+		FileDocumentStore store = FileDocumentStore.open(directory);
+		store.insert("fractals", points("sierpinski", 3));
+		FileDocumentStore.closeAll();
+		// a document only partly written
+		try(FileOutputStream os = new FileOutputStream(new File(directory, "fractals" + FileDocumentStore.EXTENSION), true)) {
+			os.write("{\"name\":\"sierpinski\",\"type\":\"po".getBytes(StandardCharsets.UTF_8));
+		}
+		store = FileDocumentStore.open(directory);
+		assertEquals(4, store.count("fractals", new Document()));
+		store.insert("fractals", points("sierpinski", 1));
+		List<Document> found = store.find("fractals", DocumentStores.parseQuery("name:sierpinski,type:point"), 0);
+		assertEquals(4, found.size());
+		assertEquals(0, found.get(3).getInteger("x").intValue());
+	}
+}
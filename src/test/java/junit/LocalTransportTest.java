@@ -0,0 +1,115 @@
+package junit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.TextMessage;
+
+import junit.framework.TestCase;
+import org.dwbzen.util.messaging.LocalTransport;
+import org.dwbzen.util.messaging.MessageProducerImpl;
+import org.dwbzen.util.messaging.SessionImpl;
+
+public class LocalTransportTest extends TestCase {
+
+	public void testSendReceiveInOrder() throws JMSException {
+		SessionImpl producerSession = new SessionImpl();
+		SessionImpl consumerSession = new SessionImpl();
+		Destination dest = producerSession.createQueue("LocalTransportTest1.queue");
+		MessageProducer producer = producerSession.createProducer(dest);
+		MessageConsumer consumer = consumerSession.createConsumer(consumerSession.createQueue("LocalTransportTest1.queue"));
+		int n = LocalTransport.getBatchSize() * 2 + 7;	// includes a partial batch
+		for(int i=0; i<n; i++) {
+			producer.send(producerSession.createTextMessage("message " + i));
+		}
+		((MessageProducerImpl)producer).flush();
+		for(int i=0; i<n; i++) {
+			Message message = consumer.receive();
+			assertEquals("message " + i, ((TextMessage)message).getText());
+		}
+		assertNull(consumer.receiveNoWait());
+		consumerSession.close();
+	}
+	
+	public void testTimedReceive() throws JMSException {
+		SessionImpl session = new SessionImpl();
+		MessageConsumer consumer = session.createConsumer(session.createQueue("LocalTransportTest2.queue"));
+		long start = System.currentTimeMillis();
+		assertNull(consumer.receive(50));
+		assertTrue(System.currentTimeMillis() - start >= 40);
+		session.close();
+	}
+	
+	public void testConsumerOnAnotherThread() throws Exception {
+		SessionImpl session = new SessionImpl();
+		Destination dest = session.createQueue("LocalTransportTest3.queue");
+		MessageConsumer consumer = session.createConsumer(dest);
+		MessageProducer producer = session.createProducer(dest);
+		int n = LocalTransport.getBatchSize() * LocalTransport.getCapacity() * 2;	// more than the queue holds
+		Thread thread = new Thread(() -> {
+			try {
+				for(int i=0; i<n; i++) {
+					producer.send(session.createTextMessage(String.valueOf(i)));
+				}
+				producer.close();
+			} catch (JMSException e) {
+				fail(e.toString());
+			}
+		});
+		thread.start();
+		for(int i=0; i<n; i++) {
+			TextMessage message = (TextMessage)consumer.receive(5000);
+			assertNotNull(message);
+			assertEquals(String.valueOf(i), message.getText());
+		}
+		thread.join();
+		session.close();
+	}
+	
+	/**
+	 * A producer still sending when its consumer closes must fail rather than block on the full queue.
+	 */
+	public void testConsumerClosedWhileSending() throws Exception {
+		SessionImpl producerSession = new SessionImpl();
+		SessionImpl consumerSession = new SessionImpl();
+		Destination dest = producerSession.createQueue("LocalTransportTest4.queue");
+		MessageConsumer consumer = consumerSession.createConsumer(consumerSession.createQueue("LocalTransportTest4.queue"));
+		MessageProducer producer = producerSession.createProducer(dest);
+		int n = LocalTransport.getBatchSize() * LocalTransport.getCapacity() * 2;	// more than the queue holds
+		AtomicInteger sent = new AtomicInteger();
+		AtomicReference<JMSException> failure = new AtomicReference<JMSException>();
+		Thread thread = new Thread(() -> {
+			try {
+				for(int i=0; i<n; i++) {
+					producer.send(producerSession.createTextMessage(String.valueOf(i)));
+					sent.incrementAndGet();
+				}
+				((MessageProducerImpl)producer).flush();
+			} catch (JMSException e) {
+				failure.set(e);
+			}
+		});
+		thread.start();
+		for(int i=0; i<10; i++) {
+			assertEquals(String.valueOf(i), ((TextMessage)consumer.receive(5000)).getText());
+		}
+		consumerSession.close();
+		thread.join(5000);
+		assertFalse("producer is still blocked", thread.isAlive());
+		assertTrue(failure.get() != null);
+		assertTrue(sent.get() < n);
+		assertTrue(LocalTransport.getQueue("LocalTransportTest4.queue").isClosed());
+		
+		// a new consumer for the name gets a new queue
+		consumerSession = new SessionImpl();
+		consumer = consumerSession.createConsumer(consumerSession.createQueue("LocalTransportTest4.queue"));
+		assertFalse(LocalTransport.getQueue("LocalTransportTest4.queue").isClosed());
+		assertNull(consumer.receiveNoWait());
+		consumerSession.close();
+	}
+}
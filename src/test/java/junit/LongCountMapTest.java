@@ -0,0 +1,47 @@
+package junit;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import org.dwbzen.util.LongCountMap;
+
+public class LongCountMapTest extends TestCase {
+
+	public void testIncrementAndRehash() {
+		LongCountMap map = new LongCountMap(4);
+		int n = 1000;
+		for(int i=0; i<n; i++) {
+			map.increment(i * 4096L, i % 3);
+			map.increment(i * 4096L, 5);
+		}
+		assertEquals(n, map.size());
+		for(int i=0; i<n; i++) {
+			assertEquals(2, map.get(i * 4096L));
+			BitSet sources = map.getSources(i * 4096L);
+			assertTrue(sources.get(i % 3));
+			assertTrue(sources.get(5));
+			assertEquals(2, sources.cardinality());
+		}
+		assertEquals(0, map.get(-1L));
+		assertNull(map.getSources(-1L));
+	}
+
+	public void testMerge() {
+		LongCountMap map1 = new LongCountMap();
+		LongCountMap map2 = new LongCountMap();
+		map1.increment(42L, 0);
+		map1.increment(7L, 0);
+		map2.increment(42L, 1);
+		map2.increment(42L, 1);
+		map2.increment(0L, 2);
+		map1.merge(map2);
+		assertEquals(3, map1.size());
+		assertEquals(3, map1.get(42L));
+		assertEquals(2, map1.getSources(42L).cardinality());
+		assertEquals(1, map1.get(0L));
+		assertTrue(map1.getSources(0L).get(2));
+		int[] total = new int[1];
+		map1.forEach((key, count, sources) -> total[0] += count);
+		assertEquals(5, total[0]);
+	}
+}
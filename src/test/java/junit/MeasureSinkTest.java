@@ -0,0 +1,149 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.IMeasureSink;
+import org.dwbzen.music.ScorePart;
+import org.dwbzen.music.element.Measurable;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
+import org.dwbzen.util.messaging.LocalTransport;
+import org.dwbzen.util.messaging.MessageProducerImpl;
+import org.dwbzen.util.messaging.SessionImpl;
+import org.dwbzen.util.music.InstrumentMaker;
+import org.dwbzen.util.music.RandomDataSource;
+
+public class MeasureSinkTest extends TestCase {
+	static final String INSTRUMENT = "Flute";
+	static final long SEED = 42L;
+	static int runNumber = 0;
+
+	static class RecordingSink implements IMeasureSink {
+		private String name;
+		private List<String> events;
+
+		RecordingSink(String name, List<String> events) {
+			this.name = name;
+			this.events = events;
+		}
+		@Override
+		public void startPart(ScorePartEntity scorePartEntity) {
+			events.add(name + ".start");
+		}
+		@Override
+		public void accept(ScorePartEntity scorePartEntity, Measure measure) {
+			events.add(name + ".accept");
+		}
+		@Override
+		public void endPart(ScorePartEntity scorePartEntity) {
+			events.add(name + ".end");
+		}
+	}
+
+	public void testAndThen() {
+		List<String> events = new ArrayList<String>();
+		IMeasureSink sink = new RecordingSink("a", events).andThen(new RecordingSink("b", events));
+		sink.startPart(null);
+		sink.accept(null, null);
+		sink.accept(null, null);
+		sink.endPart(null);
+		assertEquals(List.of("a.start", "b.start", "a.accept", "b.accept", "a.accept", "b.accept", "a.end", "b.end"), events);
+	}
+
+	public void testDefaults() {
+		List<Measure> measures = new ArrayList<Measure>();
+		IMeasureSink sink = (scorePartEntity, measure) -> measures.add(measure);
+		sink.startPart(null);
+		sink.andThen((scorePartEntity, measure) -> measures.add(measure)).accept(null, null);
+		sink.endPart(null);
+		assertEquals(2, measures.size());
+	}
+
+	/**
+	 * With no transformers a part scored a Measure at a time is the same as one scored
+	 * after all its data has arrived, including the ties across bar lines.
+	 */
+	public void testStreamedSameAsBatch() throws JMSException {
+		ScorePart batch = runScorePart(null, 500, 10);
+		ScorePart streamed = runScorePart(IMeasureSink.COLLECT, 500, 10);
+		List<Measure> batchMeasures = batch.getScorePartEntity().getMeasures();
+		List<Measure> streamedMeasures = streamed.getScorePartEntity().getMeasures();
+		assertTrue(batchMeasures.size() >= 10);
+		assertEquals(batchMeasures.size(), streamedMeasures.size());
+		for(int i=0; i<batchMeasures.size(); i++) {
+			assertEquals(batchMeasures.get(i).getNumber(), streamedMeasures.get(i).getNumber());
+			assertEquals(batchMeasures.get(i).toString(), streamedMeasures.get(i).toString());
+			assertEquals(tieTypes(batchMeasures.get(i)), tieTypes(streamedMeasures.get(i)));
+		}
+	}
+
+	/**
+	 * A part that runs out of notes stops scoring and completes with the Measures it has.
+	 */
+	public void testRunsOutOfNotes() throws JMSException {
+		for(IMeasureSink measureSink : new IMeasureSink[] {null, IMeasureSink.COLLECT}) {
+			ScorePart scorePart = runScorePart(measureSink, 3, 20);
+			assertEquals(ScorePart.State.COMPLETE, scorePart.getState());
+			int measures = scorePart.getScorePartEntity().getMeasures().size();
+			assertTrue(measures >= 1 && measures < 20);
+			assertEquals(3, scorePart.getPointCount());
+		}
+	}
+
+	private static String tieTypes(Measure measure) {
+		return measure.getMeasureables().stream()
+				.map(Measurable::getTieType)
+				.map(String::valueOf)
+				.collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Queues size random points for a new Flute ScorePart and runs it, all with the same seed.
+	 * @param measureSink if not null the part is streamed: the Measures are passed to measureSink as they're completed
+	 * @param size number of points
+	 * @param maxMeasures
+	 * @return the ScorePart
+	 * @throws JMSException
+	 */
+	static ScorePart runScorePart(IMeasureSink measureSink, int size, int maxMeasures) throws JMSException {
+		InstrumentMaker instrumentMaker = new InstrumentMaker(INSTRUMENT);
+		Instrument instrument = instrumentMaker.get().get(INSTRUMENT);
+		Configuration configuration = instrumentMaker.getConfiguration();
+		Properties configProperties = configuration.getProperties();
+		configProperties.setProperty("dataSource.transport", "local");
+		configProperties.setProperty("dataSource.transport.local.namespace", "MeasureSinkTest" + (++runNumber) + ".");
+		Score score = new Score(configuration, "MeasureSinkTest");
+		SeededRandom random = new SeededRandom(SEED);
+		List<String> messages = new ArrayList<String>();
+		SeededRandom.run(random, () -> new RandomDataSource(configuration, INSTRUMENT, size).stream().forEach(messages::add));
+
+		SessionImpl session = new SessionImpl();
+		MessageProducer producer = session.createProducer(session.createQueue(LocalTransport.queueName(configProperties, INSTRUMENT + ".queue")));
+		for(String message : messages) {
+			producer.send(session.createTextMessage(message));
+		}
+		((MessageProducerImpl)producer).flush();
+
+		ScorePart[] scorePart = new ScorePart[1];
+		SeededRandom.run(random, () -> {
+			scorePart[0] = new ScorePart(score, INSTRUMENT, instrument);
+			scorePart[0].setMaxMeasures(maxMeasures);
+			if(measureSink != null) {
+				scorePart[0].setMeasureSink(measureSink);
+			}
+			scorePart[0].run();
+		});
+		return scorePart[0];
+	}
+}
@@ -0,0 +1,67 @@
+package junit;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import org.dwbzen.util.metrics.Histogram;
+import org.dwbzen.util.metrics.MetricsRegistry;
+import org.dwbzen.util.metrics.Timer;
+
+public class MetricsRegistryTest extends TestCase {
+
+	public void testCounter() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.counter("scorePart.notes", "part", "Flute").add(10);
+		metrics.counter("scorePart.notes", "part", "Flute").increment();
+		metrics.counter("scorePart.notes", "part", "Oboe").increment();
+		assertEquals(11, metrics.counter("scorePart.notes", "part", "Flute").getCount());
+		assertEquals(1, metrics.counter("scorePart.notes", "part", "Oboe").getCount());
+	}
+
+	public void testHistogram() {
+		Histogram h = new MetricsRegistry().histogram("scorePart.measurables");
+		for(int i=1; i<=100; i++) {
+			h.record(i);
+		}
+		assertEquals(100, h.getCount());
+		assertEquals(5050, h.getSum());
+		assertEquals(1, h.getMin());
+		assertEquals(100, h.getMax());
+		assertEquals(50.5, h.getMean(), 0.0001);
+		long p50 = h.getPercentile(0.5);
+		assertTrue(p50 >= 50 && p50 <= 100);
+		assertEquals(100, h.getPercentile(1.0));
+	}
+
+	public void testDisabled() {
+		Properties configProperties = new Properties();
+		MetricsRegistry metrics = MetricsRegistry.configure(configProperties);
+		assertTrue(metrics == MetricsRegistry.DISABLED);
+		metrics.counter("flow.run").add(5);
+		assertEquals(0, metrics.counter("flow.run").getCount());
+		Timer timer = metrics.timer("flow.run");
+		timer.stop(timer.start());
+		assertEquals(0, timer.getCount());
+		configProperties.setProperty("metrics.enabled", "true");
+		assertTrue(MetricsRegistry.configure(configProperties).isEnabled());
+	}
+
+	public void testCurrent() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		assertTrue(MetricsRegistry.current() == MetricsRegistry.DISABLED);
+		MetricsRegistry.run(metrics, () -> MetricsRegistry.current().timer("flow.createScore").time(() -> {}));
+		assertEquals(1, metrics.timer("flow.createScore").getCount());
+		assertTrue(MetricsRegistry.current() == MetricsRegistry.DISABLED);
+	}
+
+	public void testPrometheus() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.counter("scorePart.notes", "part", "Flute").add(3);
+		metrics.timer("flow.run").time(() -> {});
+		String text = metrics.toPrometheus();
+		assertTrue(text.contains("# TYPE music_scorePart_notes_total counter\n"));
+		assertTrue(text.contains("music_scorePart_notes_total{part=\"Flute\"} 3\n"));
+		assertTrue(text.contains("# TYPE music_flow_run_seconds summary\n"));
+		assertTrue(text.contains("music_flow_run_seconds_count 1\n"));
+	}
+}
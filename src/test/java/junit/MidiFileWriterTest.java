@@ -0,0 +1,118 @@
+package junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.element.Duration.BeatUnit;
+import org.dwbzen.music.element.Dynamics;
+import org.dwbzen.music.element.Dynamics.Dynamic;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.Tempo;
+import org.dwbzen.music.midi.MidiFileWriter;
+
+public class MidiFileWriterTest extends TestCase {
+
+	public void testTempo() {
+		assertEquals(500000, MidiFileWriter.microsecondsPerQuarter(new Tempo(120)));
+		assertEquals(1000000, MidiFileWriter.microsecondsPerQuarter(new Tempo(120, BeatUnit.EIGHTH)));
+		assertEquals(250000, MidiFileWriter.microsecondsPerQuarter(new Tempo(120, BeatUnit.HALF)));
+		assertEquals(750000, MidiFileWriter.microsecondsPerQuarter(new Tempo(80)));
+	}
+
+	public void testVelocity() {
+		assertEquals(68, MidiFileWriter.velocity(new Dynamics(Dynamic.MF)));
+		assertEquals(8, MidiFileWriter.velocity(new Dynamics(Dynamic.PPPPPP)));
+		assertEquals(127, MidiFileWriter.velocity(new Dynamics(Dynamic.FFFFFF)));
+		assertTrue(MidiFileWriter.velocity(new Dynamics(Dynamic.P)) < MidiFileWriter.velocity(new Dynamics(Dynamic.F)));
+	}
+
+	/**
+	 * Writes the ScoreFixture and reads it back: a conductor track and a track for each part,
+	 * the tempo, time and key signatures at the start, the E4 tied across the bar line as one note,
+	 * and the SnareDrum on the percussion channel.
+	 */
+	public void testRoundTrip() throws Exception {
+		Score score = ScoreFixture.createScore();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new MidiFileWriter(score, score.getConfigProperties()).write(stream);
+		Sequence sequence = MidiSystem.getSequence(new ByteArrayInputStream(stream.toByteArray()));
+		assertEquals(Sequence.PPQ, sequence.getDivisionType());
+		assertEquals(MidiFileWriter.DEFAULT_RESOLUTION, sequence.getResolution());
+		Track[] tracks = sequence.getTracks();
+		assertEquals(3, tracks.length);
+
+		List<Integer> metaTypes = new ArrayList<Integer>();
+		for(MidiEvent event : events(tracks[0])) {
+			if(event.getMessage() instanceof MetaMessage && event.getTick() == 0) {
+				metaTypes.add(((MetaMessage)event.getMessage()).getType());
+			}
+		}
+		assertTrue(metaTypes.contains(MidiFileWriter.META_TEMPO));
+		assertTrue(metaTypes.contains(MidiFileWriter.META_TIME_SIGNATURE));
+		assertTrue(metaTypes.contains(MidiFileWriter.META_KEY_SIGNATURE));
+
+		int quarter = MidiFileWriter.DEFAULT_RESOLUTION;
+		List<Long> noteOn = new ArrayList<Long>();
+		List<Long> noteOff = new ArrayList<Long>();
+		for(ShortMessage message : notes(tracks[1], noteOn, noteOff, 64)) {
+			assertFalse(message.getChannel() == MidiFileWriter.PERCUSSION_CHANNEL);
+		}
+		assertEquals(List.of(2L * quarter), noteOn);
+		assertEquals(List.of(5L * quarter), noteOff);
+
+		List<ShortMessage> drumNotes = notes(tracks[2], new ArrayList<Long>(), new ArrayList<Long>(), -1);
+		assertEquals(10, drumNotes.size());		// 5 notes on and off
+		for(ShortMessage message : drumNotes) {
+			assertEquals(MidiFileWriter.PERCUSSION_CHANNEL, message.getChannel());
+		}
+	}
+
+	private static List<MidiEvent> events(Track track) {
+		List<MidiEvent> events = new ArrayList<MidiEvent>();
+		for(int i=0; i<track.size(); i++) {
+			events.add(track.get(i));
+		}
+		return events;
+	}
+
+	/**
+	 *
+	 * @param track
+	 * @param noteOn ticks of the note ons of key
+	 * @param noteOff ticks of the note offs of key
+	 * @param key MIDI note number, or -1 for all
+	 * @return the note on and note off messages of the track
+	 */
+	private static List<ShortMessage> notes(Track track, List<Long> noteOn, List<Long> noteOff, int key) {
+		List<ShortMessage> notes = new ArrayList<ShortMessage>();
+		for(MidiEvent event : events(track)) {
+			MidiMessage message = event.getMessage();
+			if(!(message instanceof ShortMessage)) {
+				continue;
+			}
+			ShortMessage shortMessage = (ShortMessage)message;
+			int command = shortMessage.getCommand();
+			boolean on = command == ShortMessage.NOTE_ON && shortMessage.getData2() > 0;
+			boolean off = command == ShortMessage.NOTE_OFF || (command == ShortMessage.NOTE_ON && shortMessage.getData2() == 0);
+			if(!on && !off) {
+				continue;
+			}
+			notes.add(shortMessage);
+			if(key < 0 || shortMessage.getData1() == key) {
+				(on ? noteOn : noteOff).add(event.getTick());
+			}
+		}
+		return notes;
+	}
+}
@@ -0,0 +1,129 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.ScorePart;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.instrument.MidiInstrument;
+import org.dwbzen.music.midi.MidiFileWriter;
+import org.dwbzen.music.midi.MidiPlayer;
+import org.dwbzen.music.midi.NullReceiver;
+import org.dwbzen.util.music.InstrumentMaker;
+
+public class MidiPlayerTest extends TestCase {
+
+	public void testNullReceiver() throws InvalidMidiDataException {
+		NullReceiver receiver = new NullReceiver();
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 80), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), -1);
+		assertEquals(2, receiver.getMessageCount());
+		receiver.close();
+		assertFalse(receiver.isOpen());
+		try {
+			receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 80), -1);
+			fail("Receiver is closed");
+		}
+		catch(IllegalStateException e) {
+		}
+	}
+
+	public void testClose() {
+		NullReceiver receiver = new NullReceiver();
+		MidiPlayer player = new MidiPlayer(receiver);
+		assertTrue(player.isRunning());
+		assertTrue(player.getMetrics().isEnabled());
+		player.close();
+		assertFalse(player.isRunning());
+		assertEquals(0, player.getMessageCount());
+		assertEquals(0, player.getJitter().getCount());
+		assertEquals(0, receiver.getMessageCount());	// no channels used, so no all notes off
+	}
+
+	/**
+	 * Plays the two part ScoreFixture: the player sends the messages MidiFileWriter writes for the parts,
+	 * on time, then all notes off on the 2 channels.
+	 */
+	public void testPlayScore() throws InvalidMidiDataException {
+		Score score = ScoreFixture.createScore();
+		Sequence sequence = new MidiFileWriter(score, score.getConfigProperties()).createSequence();
+		int expected = 0;
+		for(Track track : sequence.getTracks()) {
+			for(int i=0; i<track.size(); i++) {
+				if(track.get(i).getMessage() instanceof ShortMessage) {
+					expected++;
+				}
+			}
+		}
+		assertTrue(expected > 0);
+
+		NullReceiver receiver = new NullReceiver();
+		MidiPlayer player = new MidiPlayer(receiver);
+		player.play(score);
+		player.close();
+		assertEquals(expected, player.getMessageCount());
+		assertEquals(expected + 2, receiver.getMessageCount());
+		assertEquals(0, player.getUnderruns());
+		assertEquals(expected, player.getJitter().getCount());
+	}
+
+	/**
+	 * Channels follow the Score's instrument order, whatever order the parts start in.
+	 */
+	public void testAssignChannels() {
+		InstrumentMaker instrumentMaker = new InstrumentMaker("Flute,SnareDrum,Piccolo");
+		Map<String, Instrument> instruments = instrumentMaker.get();
+		Score score = new Score(instrumentMaker.getConfiguration(), "Channels");
+		List<Instrument> scoreOrder = List.of(instruments.get("Flute"), instruments.get("SnareDrum"), instruments.get("Piccolo"));
+		List<ScorePart> scoreParts = new ArrayList<ScorePart>();
+		for(Instrument instrument : scoreOrder) {
+			scoreParts.add(ScoreFixture.addPart(score, instrument));
+		}
+		RecordingReceiver receiver = new RecordingReceiver();
+		MidiPlayer player = new MidiPlayer(receiver);
+		player.assignChannels(scoreOrder);
+		Collections.reverse(scoreParts);
+		scoreParts.forEach(scorePart -> player.startPart(scorePart.getScorePartEntity()));
+		scoreParts.forEach(scorePart -> player.endPart(scorePart.getScorePartEntity()));
+		player.close();
+
+		assertEquals(0, player.getChannel(instruments.get("Flute")));
+		assertEquals(MidiFileWriter.PERCUSSION_CHANNEL, player.getChannel(instruments.get("SnareDrum")));
+		assertEquals(1, player.getChannel(instruments.get("Piccolo")));
+		for(Instrument instrument : scoreOrder) {
+			MidiInstrument midiInstrument = instrument.getMidiInstrument();
+			for(ShortMessage message : receiver.messages) {
+				if(message.getCommand() == ShortMessage.PROGRAM_CHANGE && message.getChannel() == player.getChannel(instrument)) {
+					assertNotNull(midiInstrument);
+					assertEquals(Math.max(0, Math.min(127, midiInstrument.getMidiProgram() - 1)), message.getData1());
+				}
+			}
+		}
+	}
+
+	static class RecordingReceiver implements Receiver {
+		List<ShortMessage> messages = Collections.synchronizedList(new ArrayList<ShortMessage>());
+
+		@Override
+		public void send(MidiMessage message, long timeStamp) {
+			if(message instanceof ShortMessage) {
+				messages.add((ShortMessage)message);
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.musicxml.MusicXMLHelper;
+import org.dwbzen.music.musicxml.MusicXMLStreamWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class MusicXMLStreamWriterTest extends TestCase {
+
+	public void testSameAsMusicXMLHelper() throws Exception {
+		Score score = ScoreFixture.createScore();
+		Properties props = score.getConfigProperties();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new MusicXMLStreamWriter(score, props).write(stream);
+
+		score = ScoreFixture.createScore();		// MusicXMLHelper may change the Score
+		ByteArrayOutputStream proxymusic = new ByteArrayOutputStream();
+		new MusicXMLHelper(score, props).marshall(proxymusic);
+
+		Document expected = parse(proxymusic.toByteArray());
+		Document actual = parse(stream.toByteArray());
+		assertEquals("score-partwise", actual.getDocumentElement().getTagName());
+		assertEquals(2, actual.getElementsByTagName("part").getLength());
+		assertTrue(actual.getElementsByTagName("tie").getLength() > 0);
+		assertTrue(expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+	}
+
+	/**
+	 * Parses without the DTD and removes the identification encoding, which is each writer's
+	 * own signature and date, and the whitespace between elements.
+	 */
+	static Document parse(byte[] xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setValidating(false);
+		factory.setIgnoringComments(true);
+		factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		Document document = builder.parse(new ByteArrayInputStream(xml));
+		NodeList encodings = document.getElementsByTagName("encoding");
+		while(encodings.getLength() > 0) {
+			Node encoding = encodings.item(0);
+			encoding.getParentNode().removeChild(encoding);
+		}
+		removeWhitespace(document.getDocumentElement());
+		document.normalizeDocument();
+		return document;
+	}
+
+	static void removeWhitespace(Node node) {
+		Node child = node.getFirstChild();
+		while(child != null) {
+			Node next = child.getNextSibling();
+			if(child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty()) {
+				node.removeChild(child);
+			}
+			else {
+				removeWhitespace(child);
+			}
+			child = next;
+		}
+	}
+}
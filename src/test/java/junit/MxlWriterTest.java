@@ -0,0 +1,47 @@
+package junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.musicxml.MxlWriter;
+
+public class MxlWriterTest extends TestCase {
+
+	public void testRootFileName() {
+		assertEquals("score20200910.xml", MxlWriter.getRootFileName("C:\\Music\\Scores\\score20200910.mxl"));
+		assertEquals("score.xml", MxlWriter.getRootFileName("/tmp/score.mxl"));
+		assertEquals("score.xml", MxlWriter.getRootFileName("score"));
+	}
+
+	public void testArchiveLayout() throws IOException {
+		String xml = "<score-partwise version=\"3.0\"/>";
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try(MxlWriter mxl = new MxlWriter(bos, "score.xml", 9)) {
+			OutputStream os = mxl.getOutputStream();
+			os.write(xml.getBytes(StandardCharsets.UTF_8));
+			os.close();		// must not close the archive
+		}
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		ZipEntry entry = zis.getNextEntry();
+		assertEquals(MxlWriter.MIMETYPE_ENTRY_NAME, entry.getName());
+		assertEquals(ZipEntry.STORED, entry.getMethod());
+		assertEquals(MxlWriter.MIMETYPE, new String(zis.readAllBytes(), StandardCharsets.US_ASCII));
+
+		entry = zis.getNextEntry();
+		assertEquals(MxlWriter.CONTAINER_ENTRY_NAME, entry.getName());
+		String container = new String(zis.readAllBytes(), StandardCharsets.UTF_8);
+		assertTrue(container.contains("full-path=\"score.xml\""));
+
+		entry = zis.getNextEntry();
+		assertEquals("score.xml", entry.getName());
+		assertEquals(xml, new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+		assertNull(zis.getNextEntry());
+		zis.close();
+	}
+}
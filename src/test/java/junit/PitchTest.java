@@ -256,4 +256,38 @@ public class PitchTest extends TestCase {
 		pitchMap.put(Pitch.G, "G");
 		System.out.println(pitchMap);
 	}
+	
+	@Test
+	public void testInternedPitches() {
+		Pitch c4 = Pitch.fromMidiNumber(60, Alteration.NONE);
+		assertEquals("C4", c4.toString());
+		assertEquals(60, c4.getMidiNumber());
+		assertTrue(c4.isInterned());
+		assertSame(c4, Pitch.valueOf(48, Alteration.NONE));
+		assertEquals("Bb4", Pitch.valueOf(58, Alteration.FLAT).toString());
+		assertEquals("A#4", Pitch.valueOf(58, Alteration.SHARP).toString());
+		
+		// plus() spells and clamps the same as increment()
+		Pitch p = new Pitch(eflat4);
+		p.increment(5);
+		assertEquals(p.toString(), eflat4.plus(5).toString());
+		p = new Pitch(fsharp3);
+		p.increment(-3);
+		assertEquals(p.toString(), fsharp3.plus(-3).toString());
+		assertSame(eflat4.plus(5), eflat4.plus(5));
+		assertEquals("C0", c0.plus(-2).toString());
+		assertSame(eflat4.intern(), new Pitch("Eb4").intern());
+		
+		try {
+			c4.setOctave(5);
+			fail("interned Pitch was changed");
+		}
+		catch(UnsupportedOperationException e) {
+			log.debug(e.getMessage());
+		}
+		Pitch c5 = c4.clone();
+		c5.setOctave(5);
+		assertEquals("C5", c5.toString());
+		assertEquals("C4", c4.toString());
+	}
 }
@@ -0,0 +1,162 @@
+package junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.music.FileDataSource;
+import org.dwbzen.util.music.PointCache;
+
+public class PointCacheTest extends TestCase {
+	static final String NAME = "ifs5";
+	static final double[][] POINTS = { {0.25, -1.5, 1}, {1.0, 2.0, 3}, {-0.125, 0.5, 1}, {3.75, 4.0, 2}, {0.0, -0.0625, 1} };
+
+	private Path directory;
+	private Path source;
+	private Path cache;
+	private List<String> headerLines = new ArrayList<String>();
+	private List<String> pointLines = new ArrayList<String>();
+	private List<String> messageLines = new ArrayList<String>();
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("PointCacheTest");
+		source = directory.resolve("points.json");
+		cache = directory.resolve("points.json" + PointCache.EXTENSION);
+		headerLines.add("{\"name\":\"" + NAME + "\",\"type\":\"IFS\",\"rank\":3}");
+		headerLines.add("{\"name\":\"" + NAME + "\",\"type\":\"stats\",\"n\":" + POINTS.length + "}");
+		for(double[] point : POINTS) {
+			// as PointCache writes them, so the lines can be compared
+			pointLines.add("{\"name\":\"" + NAME + "\",\"type\":\"Point2D\",\"x\":" + point[0] + ",\"y\":" + point[1] + ",\"count\":" + (int)point[2] + "}");
+		}
+		messageLines.add("{\"name\":\"" + NAME + "\",\"type\":\"message\",\"text\":\"SHUTDOWN\"}");
+		List<String> lines = new ArrayList<String>();
+		lines.add(headerLines.get(0));
+		lines.addAll(pointLines);
+		lines.add(headerLines.get(1));
+		lines.addAll(messageLines);
+		Files.write(source, lines);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.walk(directory).sorted(Comparator.reverseOrder()).map(p -> p.toFile()).forEach(File::delete);
+	}
+
+	public void testRoundTrip() {
+		assertTrue(PointCache.write(cache, source, headerLines, pointLines, messageLines));
+		PointCache pointCache = PointCache.open(cache, source);
+		assertTrue(pointCache != null);
+		assertEquals(POINTS.length, pointCache.size());
+		for(int i=0; i<POINTS.length; i++) {
+			assertEquals(POINTS[i][0], pointCache.getX(i));
+			assertEquals(POINTS[i][1], pointCache.getY(i));
+			assertEquals(pointLines.get(i), pointCache.getPointJson(i));
+		}
+		assertEquals(expected(0, POINTS.length), pointCache.stream(0, 100).collect(Collectors.toList()));
+		assertEquals(expected(1, 3), pointCache.stream(1, 2).collect(Collectors.toList()));
+		assertEquals(expected(POINTS.length, POINTS.length), pointCache.stream(10, 2).collect(Collectors.toList()));
+		assertEquals(0, tempFiles());
+	}
+
+	/**
+	 * A FileDataSource streams the same records from the JSON file, while writing the cache and from the cache.
+	 */
+	public void testSameAsUncached() {
+		List<String> uncached = stream(false, 100);
+		assertEquals(expected(0, POINTS.length), uncached);
+		assertFalse(Files.exists(cache));
+		assertEquals(uncached, stream(true, 100));		// writes the cache
+		assertTrue(Files.exists(cache));
+		assertEquals(uncached, stream(true, 100));		// reads it
+		assertEquals(stream(false, 3), stream(true, 3));
+	}
+
+	public void testStaleCache() throws IOException {
+		assertTrue(PointCache.write(cache, source, headerLines, pointLines, messageLines));
+		FileTime lastModified = Files.getLastModifiedTime(source);
+		Files.setLastModifiedTime(source, FileTime.fromMillis(lastModified.toMillis() + 60000));
+		assertNull(PointCache.open(cache, source));
+
+		Files.setLastModifiedTime(source, lastModified);
+		assertTrue(PointCache.open(cache, source) != null);
+		Files.write(source, List.of(pointLines.get(0)), StandardOpenOption.APPEND);
+		Files.setLastModifiedTime(source, lastModified);
+		assertNull(PointCache.open(cache, source));		// longer
+	}
+
+	/**
+	 * A cache cut short anywhere, or with a bad string length, is ignored.
+	 */
+	public void testTruncatedCache() throws IOException {
+		assertTrue(PointCache.write(cache, source, headerLines, pointLines, messageLines));
+		byte[] bytes = Files.readAllBytes(cache);
+		for(int length = 0; length < bytes.length; length++) {
+			try(RandomAccessFile file = new RandomAccessFile(cache.toFile(), "rw")) {
+				file.setLength(length);
+			}
+			assertNull("length " + length, PointCache.open(cache, source));
+		}
+		Files.write(cache, bytes);
+		assertTrue(PointCache.open(cache, source) != null);
+		try(RandomAccessFile file = new RandomAccessFile(cache.toFile(), "rw")) {
+			file.seek(2*Integer.BYTES + 2*Long.BYTES + Integer.BYTES);	// name length
+			file.writeInt(-1);
+		}
+		assertNull(PointCache.open(cache, source));
+	}
+
+	/**
+	 * If the cache can't be moved into place, the temporary file is deleted.
+	 */
+	public void testWriteFails() throws IOException {
+		Files.createDirectory(cache);
+		Files.createFile(cache.resolve("in the way"));
+		assertFalse(PointCache.write(cache, source, headerLines, pointLines, messageLines));
+		assertEquals(0, tempFiles());
+	}
+
+	private List<String> expected(int start, int end) {
+		List<String> lines = new ArrayList<String>(headerLines);
+		lines.addAll(pointLines.subList(start, end));
+		lines.addAll(messageLines);
+		return lines;
+	}
+
+	private List<String> stream(boolean useCache, int maxSize) {
+		Configuration configuration = Configuration.getInstance("/config.properties");
+		Properties configProperties = configuration.getProperties();
+		configProperties.setProperty("dataSource.file.path", directory.toString() + File.separator);
+		configProperties.setProperty("dataSource.Flute", "points");
+		configProperties.setProperty("dataSource.selectionMode", "sequential");
+		configProperties.setProperty("dataSource.file.cache", String.valueOf(useCache));
+		configProperties.remove("dataSource.file.cachePath");
+		FileDataSource dataSource = new FileDataSource(configuration, "Flute");
+		dataSource.setMaxSize(maxSize);
+		try(Stream<String> stream = dataSource.stream()) {
+			return stream.collect(Collectors.toList());
+		}
+	}
+
+	private long tempFiles() {
+		try(Stream<Path> files = Files.list(directory)) {
+			return files.filter(p -> p.getFileName().toString().endsWith(".tmp")).count();
+		}
+		catch(IOException e) {
+			fail(e.toString());
+			return -1;
+		}
+	}
+}
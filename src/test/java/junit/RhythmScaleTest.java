@@ -1,6 +1,7 @@
 package junit;
 
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
@@ -8,11 +9,13 @@ import org.junit.Test;
 
 import junit.framework.TestCase;
 import org.dwbzen.common.math.MathUtil;
+import org.dwbzen.music.action.ExpressionSelector;
 import org.dwbzen.music.element.Duration;
 import org.dwbzen.music.element.IRhythmExpression;
 import org.dwbzen.music.element.Note;
 import org.dwbzen.music.element.Pitch;
 import org.dwbzen.music.element.RhythmScale;
+import org.dwbzen.music.element.TextureType;
 import org.dwbzen.music.element.rhythm.IRhythmTextureMap;
 import org.dwbzen.music.transform.ITransformer.Preference;
 import org.dwbzen.util.Ratio;
@@ -52,6 +55,18 @@ public class RhythmScaleTest extends TestCase  {
 		log.info("Closest units to " + rawUnits + " is (Preference.Down) " + units);
 		assertEquals(300, units);
 		
+		// the lower neighbor when it's closer, and clamped at either end
+		assertEquals(120, rs.findClosestUnits(125, Preference.Up));
+		assertEquals(30, rs.findClosestUnits(10, Preference.Down));
+		assertEquals(480, rs.findClosestUnits(500, Preference.Up));
+	}
+	
+	@Test
+	public void testGetFactors() {
+		for(Integer units : rs.getFactorMap().keySet()) {
+			assertSame(rs.getFactorMap().get(units), rs.getFactors(units));
+			assertSame(rs.getFactorMap().get(units), rs.getFactors(units.intValue()));
+		}
 	}
 	
 	@Test
@@ -93,4 +108,27 @@ public class RhythmScaleTest extends TestCase  {
 			}
 		}
 	}
+	
+	@Test
+	public void testExpressionSelector() {
+		ExpressionSelector selector = rs.getExpressionSelector();
+		int[] selections1 = new int[100];
+		int[] selections2 = new int[100];
+		selector.setRandom(new Random(42L));
+		for(int i=0; i<selections1.length; i++) {
+			TextureType tt = selector.selectTextureType(240);
+			assertEquals(TextureType.MONOPHONIC, tt);
+			IRhythmExpression re = selector.selectRhythmExpression(240, tt);
+			assertNotNull(re);
+			selections1[i] = re.getUnits();
+		}
+		selector.setRandom(new Random(42L));
+		for(int i=0; i<selections2.length; i++) {
+			selections2[i] = selector.selectRhythmExpression(240, selector.selectTextureType(240)).getUnits();
+		}
+		selector.setRandom(null);
+		for(int i=0; i<selections1.length; i++) {
+			assertEquals(selections1[i], selections2[i]);
+		}
+	}
 }
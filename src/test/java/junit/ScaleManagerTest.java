@@ -2,11 +2,16 @@ package junit;
 
 import org.apache.log4j.Logger;
 
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 import org.dwbzen.music.element.Pitch;
 import org.dwbzen.music.element.Scale;
+import org.dwbzen.music.element.ScaleFormula;
 import org.dwbzen.music.element.Scales;
 import org.dwbzen.util.music.PitchCollection;
+import org.dwbzen.util.music.ScaleFormulaIndex;
 import org.dwbzen.util.music.ScaleManager;
 
 public class ScaleManagerTest   extends TestCase {
@@ -75,4 +80,27 @@ public class ScaleManagerTest   extends TestCase {
 		PitchCollection pc = scale.createScaleSevenths(3);
 		System.out.println(pc.toString());
 	}
+	
+	public void testFindScaleFormula() {
+		String resource = "common_scaleFormulas.json";
+		ScaleFormula formula = scaleManager.findScaleFormula("Harmonic minor", resource);
+		assertNotNull(formula);
+		assertEquals("Harmonic minor", formula.getName());
+		// alternate name
+		formula = scaleManager.findScaleFormula("Natural minor", resource);
+		assertNotNull(formula);
+		assertEquals("Minor", formula.getName());
+		// exact match only
+		assertNull(scaleManager.findScaleFormula("Harmonic", resource));
+		assertSame(ScaleFormulaIndex.getInstance(resource), ScaleFormulaIndex.getInstance(resource));
+	}
+	
+	public void testFindScaleFormulasByPitchClassSet() {
+		String resource = "common_scaleFormulas.json";
+		assertEquals(0xAB5, ScaleFormulaIndex.computeFormulaNumber(Arrays.asList(2, 2, 1, 2, 2, 2, 1)));
+		List<ScaleFormula> formulas = scaleManager.findScaleFormulas(Arrays.asList(0, 2, 3, 5, 7, 8, 10), resource);
+		assertTrue(formulas.stream().anyMatch(f -> f.getName().equals("Minor")));
+		formulas = scaleManager.findScaleFormulas(0xAB5, resource);
+		assertTrue(formulas.stream().anyMatch(f -> f.getName().equals("Major")));
+	}
 }
@@ -0,0 +1,279 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+import org.dwbzen.common.math.Matrix;
+import org.dwbzen.music.element.Note;
+import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.element.PitchClass;
+import org.dwbzen.music.element.PitchRange;
+import org.dwbzen.music.element.Scale;
+import org.dwbzen.music.element.Scales;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.transform.ITransformer.Preference;
+import org.dwbzen.music.transform.ScaleTransformer;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.music.InstrumentMaker;
+
+/**
+ * The compiled ScaleTransformer tables must map every pitch C0 to C9 as the TreeMap
+ * mappings they replaced did, spelling included, and transformNote must pick the same pitch,
+ * including where the instrument's range clamps it.
+ */
+public class ScaleTransformerTest extends TestCase {
+	static final String[][] SCALES = {
+			{"Pentatonic minor", "A"},
+			{"Hirajoshi Japan", "A"},
+			{"Major", "C#"},		// spelled with E# and B#
+			{"Major", "Gb"},		// spelled with Cb
+			{"Harmonic minor", "D"}
+	};
+	static final String[] PITCHED = {"Flute", "Bassoon"};		// most of C0 to C9 is out of range, so clamped
+	static final String[] UNPITCHED = {"SnareDrum", "WoodBlocks"};	// as configured
+
+	private Map<String, Instrument> instruments;
+	private Properties configProperties;
+
+	@Override
+	protected void setUp() {
+		InstrumentMaker instrumentMaker = new InstrumentMaker(String.join(",", PITCHED) + "," + String.join(",", UNPITCHED));
+		instruments = instrumentMaker.get();
+		Configuration configuration = instrumentMaker.getConfiguration();
+		configProperties = configuration.getProperties();
+	}
+
+	public void testPitchedScales() {
+		for(String instrumentName : PITCHED) {
+			for(String[] scale : SCALES) {
+				for(Preference preference : new Preference[] {Preference.Up, Preference.Down}) {
+					Properties props = new Properties();
+					props.putAll(configProperties);
+					props.setProperty("score.transformers." + instrumentName + ".ScaleTransformer.scale", scale[0]);
+					props.setProperty("score.transformers." + instrumentName + ".ScaleTransformer.root", scale[1]);
+					props.setProperty("score.transformers." + instrumentName + ".ScaleTransformer.preference", preference.name().toLowerCase());
+					assertSameMappings(instrumentName + " " + scale[0] + " " + scale[1] + " " + preference, props, instruments.get(instrumentName));
+				}
+			}
+		}
+	}
+
+	public void testUnpitched() {
+		for(String instrumentName : UNPITCHED) {
+			Properties props = new Properties();
+			props.putAll(configProperties);
+			props.setProperty("score.transformers." + instrumentName + ".ScaleTransformer.preference", "up");
+			assertSameMappings(instrumentName, props, instruments.get(instrumentName));
+		}
+	}
+
+	private static void assertSameMappings(String message, Properties props, Instrument instrument) {
+		ScaleTransformer scaleTransformer = new ScaleTransformer();
+		scaleTransformer.configure(props, instrument);
+		TreeMapMappings expected = new TreeMapMappings(scaleTransformer.getTransformScale(), instrument);
+		Map<Pitch, Pitch> mapUP = scaleTransformer.getTransformMapUP();
+		Map<Pitch, Pitch> mapDOWN = scaleTransformer.getTransformMapDOWN();
+		assertEquals(message, expected.transformMapUP.size(), mapUP.size());
+		for(Pitch p : Scales.FULL_RANGE_CHROMATIC_SCALE.getPitches()) {
+			String pitchMessage = message + " " + p;
+			if(expected.transformMapUP.get(p) == null) {
+				assertTrue(pitchMessage + " mapped", mapUP.get(p) == null && mapDOWN.get(p) == null);
+				continue;
+			}
+			assertSamePitch(pitchMessage + " UP", expected.transformMapUP.get(p), mapUP.get(p));
+			assertSamePitch(pitchMessage + " DOWN", expected.transformMapDOWN.get(p), mapDOWN.get(p));
+
+			Note note = new Note(new Pitch(p), ScoreFixture.QUARTER);
+			scaleTransformer.transformNote(note);
+			assertSamePitch(pitchMessage + " transformNote", expected.transformNote(p, scaleTransformer.getPreference()), note.getPitch());
+		}
+	}
+
+	private static void assertSamePitch(String message, Pitch expected, Pitch actual) {
+		assertTrue(message + " not mapped", actual != null);
+		assertEquals(message, expected.toString(), actual.toString());
+		assertEquals(message, expected.getMidiNumber(), actual.getMidiNumber());
+	}
+
+	/**
+	 * The mappings as ScaleTransformer built them before they were compiled to tables.
+	 */
+	static class TreeMapMappings {
+		static Pitch E4 = new Pitch("E4");
+		static Pitch G4 = new Pitch("G4");
+		static Pitch B4 = new Pitch("B4");
+		static Pitch D5 = new Pitch("D5");
+		static Pitch F5 = new Pitch("F5");
+
+		Map<Pitch, Pitch> transformMapUP = new TreeMap<Pitch, Pitch>();
+		Map<Pitch, Pitch> transformMapDOWN = new TreeMap<Pitch, Pitch>();
+		private Instrument instrument;
+		private PitchRange pitchRange;
+
+		TreeMapMappings(Scale transformScale, Instrument instrument) {
+			this.instrument = instrument;
+			pitchRange = instrument.getPitchRange();
+			if(transformScale.getMode() != null && transformScale.getMode().equals(Scales.DISCRETE)) {
+				createTransformMapsForUnpitched();
+			}
+			else {
+				createTransformMaps(transformScale);
+			}
+		}
+
+		private void createTransformMaps(Scale transformScale) {
+			int scaleSize = transformScale.size();
+			Matrix<Integer> diffMod12 = new Matrix<Integer>(12, scaleSize);
+			Matrix<Integer> diffRaw = new Matrix<Integer>(12, scaleSize);
+			Matrix<Integer> minMaxMod12 = new Matrix<Integer>(12, 2);
+			List<Integer> octaveAdjust = new ArrayList<Integer>();
+
+			List<Pitch> chromaticPitches =  Scales.CHROMATIC_12TONE_SCALE.getPitches();
+			int irow = 0; int icol = 0;
+			for(Pitch pitch : chromaticPitches) {
+				for(Pitch scalePitch : transformScale.getPitches()) {
+					int rawdiff = pitch.difference(scalePitch);
+					int diff = rawdiff % 12;
+					if(diff < 0) { diff+=12;}
+					diffMod12.setValue(irow, icol, diff);
+					diffRaw.setValue(irow, icol, rawdiff);
+					icol++;
+				}
+				irow++;
+				icol=0;
+			}
+			for(int rowNumber = 0; rowNumber <12; rowNumber++) {
+				int indMax = diffMod12.indexOf(0, rowNumber);
+				if(indMax < 0 ) {
+					indMax = diffMod12.getMaxValueInRow(rowNumber);
+				}
+				int indMin = diffMod12.getMinValueInRow(rowNumber);
+				minMaxMod12.setValue(rowNumber, 0, diffMod12.index(rowNumber, indMin));
+				minMaxMod12.setValue(rowNumber, 1, diffMod12.index(rowNumber, indMax));
+				int indRawMax = diffRaw.getMaxValueInRow(rowNumber);
+				int indRawMin = diffRaw.getMinValueInRow(rowNumber);
+				if(diffRaw.index(rowNumber, indRawMax).intValue() < 0) {
+					octaveAdjust.add(1);
+				}
+				else if(diffRaw.index(rowNumber, indRawMin).intValue() > 0) {
+					octaveAdjust.add(-1);
+				}
+				else {
+					octaveAdjust.add(0);
+				}
+			}
+			Map<Pitch, Pitch> transformMapUPTemp = new TreeMap<Pitch, Pitch>();
+			Map<Pitch, Pitch> transformMapDOWNTemp = new TreeMap<Pitch, Pitch>();
+			Map<Pitch, Integer> octaveAdjustMapTemp = new TreeMap<Pitch, Integer>();
+			List<Pitch> transformScalePitches = transformScale.getPitches();
+			for(int rowNumber = 0; rowNumber <12; rowNumber++) {
+				Pitch cpitch = chromaticPitches.get(rowNumber);
+				int indMin = diffMod12.indexOf(minMaxMod12.index(rowNumber, 0), rowNumber);
+				int indMax =  diffMod12.indexOf(minMaxMod12.index(rowNumber, 1), rowNumber);
+				transformMapUPTemp.put(cpitch, transformScalePitches.get(indMin));
+				transformMapDOWNTemp.put(cpitch, transformScalePitches.get(indMax));
+				octaveAdjustMapTemp.put(cpitch, octaveAdjust.get(rowNumber));
+			}
+			for(Pitch p : Scales.FULL_RANGE_CHROMATIC_SCALE.getPitches()) {
+				int rangestep = p.getRangeStep() %12;
+				Pitch pNeutral = new Pitch(p.getStep(), rangestep, -1, p.getAlteration());
+				int octaveAdj = octaveAdjustMapTemp.get(pNeutral);
+				int octaveAdjUP = (octaveAdj > 0) ? octaveAdj : 0;
+				int octaveAdjDOWN = (octaveAdj < 0) ? octaveAdj : 0;
+				Pitch mpup = transformMapUPTemp.get(pNeutral);
+				Pitch mpdown = transformMapDOWNTemp.get(pNeutral);
+				transformMapUP.put(p, new Pitch(mpup.getStep(),  p.getOctave() + octaveAdjUP, mpup.getAlteration()));
+				transformMapDOWN.put(p, new Pitch(mpdown.getStep(),  p.getOctave() + octaveAdjDOWN, mpdown.getAlteration()));
+			}
+		}
+
+		private void createTransformMapsForUnpitched() {
+			for(Pitch p : Scales.FULL_RANGE_CHROMATIC_SCALE.getPitches()) {
+				int rangeStep = p.getRangeStep();
+				Pitch mappedUp = null;
+				Pitch mappedDown = null;
+				if(p.compareTo(pitchRange.getLow()) < 0) {
+					mappedUp = mappedDown = pitchRange.getLow();
+				}
+				else if(p.compareTo(pitchRange.getHigh()) > 0) {
+					mappedUp = mappedDown = pitchRange.getHigh();
+				}
+				else if(instrument.getPitchClass().equals(PitchClass.DISCRETE_1LINE)) {
+					mappedUp = mappedDown = E4;
+				}
+				else if(instrument.getPitchClass().equals(PitchClass.DISCRETE_2LINE)) {
+					switch(rangeStep) {
+					case 52: mappedUp = mappedDown = E4; break;
+					case 53:
+					case 54: mappedUp = G4; mappedDown = E4; break;
+					default: mappedUp = mappedDown = G4;
+					}
+				}
+				else if(instrument.getPitchClass().equals(PitchClass.DISCRETE_5LINE)) {
+					switch(rangeStep) {
+					case 52: mappedUp = mappedDown = E4; break;
+					case 53:
+					case 54: mappedUp = G4; mappedDown = E4; break;
+					case 55: mappedUp = mappedDown = G4; break;
+					case 56:
+					case 57:
+					case 58: mappedUp = B4; mappedDown = G4; break;
+					case 59: mappedUp = mappedDown = B4; break;
+					case 60:
+					case 61: mappedUp = D5; mappedDown = B4; break;
+					case 62: mappedUp = mappedDown = D5; break;
+					case 63:
+					case 64: mappedUp = F5; mappedDown = D5; break;
+					default: mappedUp = mappedDown = F5;
+					}
+				}
+				if(mappedUp != null) {
+					transformMapUP.put(p, mappedUp);
+					transformMapDOWN.put(p, mappedDown);
+				}
+			}
+		}
+
+		/**
+		 * ScaleTransformer.transformNote as it was, for Preference Up or Down.
+		 * @param notePitch
+		 * @param pref
+		 * @return the transformed Pitch
+		 */
+		Pitch transformNote(Pitch notePitch, Preference pref) {
+			Pitch closestUp = transformMapUP.get(notePitch);
+			Pitch closestDown = transformMapDOWN.get(notePitch);
+			int diffUp = Math.abs(closestUp.difference(notePitch));
+			int diffDown = Math.abs(closestDown.difference(notePitch));
+			Pitch newNotePitch = null;
+			if(diffUp == diffDown) {
+				if(closestUp.compareTo(pitchRange.getHigh()) > 0) {
+					newNotePitch = closestDown;
+				}
+				else if(closestDown.compareTo(pitchRange.getLow()) < 0) {
+					newNotePitch = closestUp;
+				}
+				else {
+					newNotePitch = (pref == Preference.Up) ? closestUp : closestDown;
+				}
+			}
+			else if(diffUp < diffDown) {
+				newNotePitch = closestUp;
+				if(newNotePitch.compareTo(pitchRange.getHigh()) > 0) {
+					newNotePitch = closestDown;
+				}
+			}
+			else {
+				newNotePitch = closestDown;
+				if(newNotePitch.compareTo(pitchRange.getLow()) < 0) {
+					newNotePitch = closestUp;
+				}
+			}
+			return newNotePitch;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package junit;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.action.ScoreAnalysis;
+import org.dwbzen.music.element.Chord;
+import org.dwbzen.music.element.Note;
+import org.dwbzen.music.element.Pitch;
+
+public class ScoreAnalysisTest extends TestCase {
+
+	public void testNotesAndIntervals() {
+		ScoreAnalysis sa = new ScoreAnalysis("Flute");
+		Note c4 = new Note(new Pitch("C4"), 4);
+		Note cSharp4 = new Note(new Pitch("C#4"), 4);
+		Note e5 = new Note(new Pitch("E5"), 8);
+		sa.addNote(c4);
+		sa.addInterval(c4.getInterval(cSharp4));
+		sa.addNote(cSharp4);
+		sa.addInterval(cSharp4.getInterval(e5));
+		sa.addNote(e5);
+		sa.addInterval(e5.getInterval(c4));
+		sa.addNote(c4);
+
+		Map<String, Integer> noteCounts = sa.getNoteCounts();
+		assertEquals(Integer.valueOf(2), noteCounts.get("C4"));
+		assertEquals(Integer.valueOf(1), noteCounts.get("Db4"));	// sharps are counted as flats
+		assertEquals(Integer.valueOf(1), noteCounts.get("E5"));
+		assertEquals(Integer.valueOf(2), sa.getPitchCounts().get("C"));
+		assertEquals(2, sa.getDurationCounts().size());
+
+		Integer[] counts = sa.getIntervals().get(4);		// E5 to C4 is down 16 steps
+		assertEquals(Integer.valueOf(1), counts[ScoreAnalysis.DOWN]);
+		assertEquals(Integer.valueOf(1), counts[ScoreAnalysis.TOTAL]);
+		counts = sa.getAbsoluteIntervals().get(15);		// C#4 to E5 is up 15 steps
+		assertEquals(Integer.valueOf(1), counts[ScoreAnalysis.UP]);
+		assertEquals(3, sa.getIntervals().size());
+	}
+
+	public void testChord() {
+		ScoreAnalysis sa = new ScoreAnalysis("Piano");
+		sa.addChord(Chord.createChord(new String[] {"C3", "E3", "G3", "Bb3", "C4"}, 4));
+		assertEquals(1, sa.getChordCount());
+		assertEquals(5, sa.getNoteCounts().values().stream().mapToInt(Integer::intValue).sum());
+		Map<Integer, Integer> chordIntervals = sa.getChordIntervals();
+		assertEquals(Integer.valueOf(2), chordIntervals.get(3));	// E3-G3, G3-Bb3
+		assertEquals(Integer.valueOf(1), chordIntervals.get(12));
+		Map<Integer, Integer> pitchClassSets = sa.getPitchClassSets();
+		assertEquals(1, pitchClassSets.size());
+		assertEquals("C E G Bb", ScoreAnalysis.pitchClassSetToString(pitchClassSets.keySet().iterator().next()));
+	}
+
+	public void testMerge() {
+		ScoreAnalysis part1 = new ScoreAnalysis("Flute");
+		ScoreAnalysis part2 = new ScoreAnalysis("Oboe");
+		part1.addNote(new Note(new Pitch("A4"), 4));
+		part1.addInterval(7);
+		part2.addNote(new Note(new Pitch("A4"), 4));
+		part2.addInterval(-19);
+		ScoreAnalysis score = new ScoreAnalysis().merge(part1).merge(part2);
+		assertEquals(Integer.valueOf(2), score.getNoteCounts().get("A4"));
+		assertEquals(Integer.valueOf(2), score.getIntervals().get(7)[ScoreAnalysis.TOTAL]);
+		assertEquals(Integer.valueOf(1), score.getAbsoluteIntervals().get(19)[ScoreAnalysis.DOWN]);
+		assertEquals(Integer.valueOf(2), score.getDurationCounts().values().iterator().next());
+		assertEquals(Integer.valueOf(1), part1.getNoteCounts().get("A4"));
+	}
+}
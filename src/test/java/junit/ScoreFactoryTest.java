@@ -0,0 +1,121 @@
+package junit;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.IMeasureSink;
+import org.dwbzen.music.ScoreFactory;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.util.Configuration;
+import org.dwbzen.util.SeededRandom;
+import org.dwbzen.util.messaging.LocalTransport;
+import org.dwbzen.util.messaging.MessageProducerImpl;
+import org.dwbzen.util.messaging.SessionImpl;
+import org.dwbzen.util.music.InstrumentMaker;
+import org.dwbzen.util.music.RandomDataSource;
+
+public class ScoreFactoryTest extends TestCase {
+	static final String NAMESPACE = "ScoreFactoryTest.";
+	static final long PART_TIMEOUT = 3;	// seconds
+
+	/**
+	 * Flute completes, Oboe fails and Clarinet and Bassoon hang until they're cancelled.
+	 * The Score has the Flute part, the hung parts are each given partTimeout from when they were submitted
+	 * rather than one after the other, and the DataLoader sending to a cancelled part stops.
+	 */
+	public void testFailedAndTimedOutParts() throws Exception {
+		InstrumentMaker instrumentMaker = new InstrumentMaker("Flute,Oboe,Clarinet,Bassoon");
+		Map<String, Instrument> instruments = instrumentMaker.get();
+		Configuration configuration = instrumentMaker.getConfiguration();
+		Properties configProperties = configuration.getProperties();
+		configProperties.setProperty("dataSource.transport", "local");
+		configProperties.setProperty("dataSource.transport.local.namespace", NAMESPACE);
+		configProperties.setProperty("score.execution.mode", "parallel");
+		configProperties.setProperty("score.execution.parallelism", String.valueOf(instruments.size()));
+		configProperties.setProperty("score.execution.partTimeout", String.valueOf(PART_TIMEOUT));
+
+		SessionImpl session = new SessionImpl();
+		MessageProducer fluteProducer = createProducer(session, configProperties, "Flute");
+		SeededRandom.run(new SeededRandom(42L), () -> new RandomDataSource(configuration, "Flute", 200).stream().forEach(message -> {
+			try {
+				fluteProducer.send(session.createTextMessage(message));
+			} catch (JMSException e) {
+				fail(e.toString());
+			}
+		}));
+		((MessageProducerImpl)fluteProducer).flush();
+
+		// a DataLoader for Clarinet that sends more than its queue holds
+		MessageProducer clarinetProducer = createProducer(session, configProperties, "Clarinet");
+		AtomicReference<JMSException> loaderFailure = new AtomicReference<JMSException>();
+		Thread loader = new Thread(() -> {
+			try {
+				for(int i=0; i<LocalTransport.getBatchSize() * LocalTransport.getCapacity() * 2; i++) {
+					clarinetProducer.send(session.createTextMessage("{}"));
+				}
+			} catch (JMSException e) {
+				loaderFailure.set(e);
+			}
+		});
+		loader.start();
+
+		ScoreFactory scoreFactory = new ScoreFactory(configuration, instruments, 4, "ScoreFactoryTest", "1");
+		scoreFactory.setMeasureSinks(scorePart -> {
+			switch(scorePart.getPartName()) {
+			case "Oboe":
+				return new IMeasureSink() {
+					@Override
+					public void startPart(ScorePartEntity scorePartEntity) {
+						throw new IllegalStateException("Oboe fails");
+					}
+					@Override
+					public void accept(ScorePartEntity scorePartEntity, Measure measure) {
+					}
+				};
+			case "Clarinet":
+			case "Bassoon":
+				return new IMeasureSink() {
+					@Override
+					public void startPart(ScorePartEntity scorePartEntity) {
+						try {
+							Thread.sleep(60000);
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(scorePartEntity.getPartName() + " cancelled");
+						}
+					}
+					@Override
+					public void accept(ScorePartEntity scorePartEntity, Measure measure) {
+					}
+				};
+			default:
+				return IMeasureSink.COLLECT;
+			}
+		});
+		long start = System.currentTimeMillis();
+		Score score = scoreFactory.createScore(true);
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertEquals(List.of("Flute"), score.getInstrumentNames());
+		assertEquals(1, score.getScoreParts().size());
+		assertTrue(score.getScoreParts().values().iterator().next().getMeasures().size() >= 1);
+		assertTrue("waited " + elapsed + " ms", elapsed < PART_TIMEOUT * 1000 * 3 / 2);
+
+		loader.join(5000);
+		assertFalse("DataLoader is still blocked", loader.isAlive());
+		assertTrue(loaderFailure.get() != null);
+		session.close();
+	}
+
+	private static MessageProducer createProducer(SessionImpl session, Properties configProperties, String partName) throws JMSException {
+		return session.createProducer(session.createQueue(LocalTransport.queueName(configProperties, partName + ".queue")));
+	}
+}
@@ -0,0 +1,59 @@
+package junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.ScoreFarm;
+
+public class ScoreFarmTest extends TestCase {
+	static final long MASTER_SEED = 1234L;
+
+	private List<File> directories = new ArrayList<File>();
+
+	@Override
+	protected void tearDown() throws IOException {
+		for(File directory : directories) {
+			Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).map(p -> p.toFile()).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Two runs with the same master seed write the same files, byte for byte.
+	 */
+	public void testSameSeedSameScores() throws Exception {
+		File first = produce("first");
+		File second = produce("second");
+		String[] fileNames = first.list();
+		Arrays.sort(fileNames);
+		String[] secondFileNames = second.list();
+		Arrays.sort(secondFileNames);
+		assertTrue(Arrays.equals(fileNames, secondFileNames));
+		assertTrue(Arrays.asList(fileNames).contains("farm_0002.xml"));
+		for(String fileName : fileNames) {
+			assertTrue(fileName, Arrays.equals(read(first, fileName), read(second, fileName)));
+		}
+	}
+
+	private File produce(String name) throws Exception {
+		File directory = Files.createTempDirectory("ScoreFarmTest_" + name).toFile();
+		directories.add(directory);
+		ScoreFarm scoreFarm = new ScoreFarm(MASTER_SEED);
+		scoreFarm.setCount(2);
+		scoreFarm.setThreads(2);
+		scoreFarm.setMeasures(4);
+		scoreFarm.setOutputDirectory(directory);
+		scoreFarm.setName("farm");
+		assertEquals(0, scoreFarm.run());
+		return directory;
+	}
+
+	private static byte[] read(File directory, String fileName) throws IOException {
+		return Files.readAllBytes(new File(directory, fileName).toPath());
+	}
+}
@@ -0,0 +1,78 @@
+package junit;
+
+import java.util.Map;
+
+import org.dwbzen.music.ScorePart;
+import org.dwbzen.music.element.Duration;
+import org.dwbzen.music.element.Key;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Note;
+import org.dwbzen.music.element.Pitch;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.Tempo;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.util.music.InstrumentMaker;
+
+/**
+ * A small two part Score for the writer and player tests: two measures of 4/4 at 120,
+ * a Flute with an E4 half note tied across the bar line, and a SnareDrum (unpitched).
+ * Durations are in units of 480 per measure, so a quarter note is 120.
+ */
+public class ScoreFixture {
+
+	public static final String FLUTE = "Flute";
+	public static final String SNARE_DRUM = "SnareDrum";
+	public static final int DIVISIONS = 480;
+	public static final int QUARTER = DIVISIONS / 4;
+
+	public static Score createScore() {
+		InstrumentMaker instrumentMaker = new InstrumentMaker(FLUTE + "," + SNARE_DRUM);
+		Map<String, Instrument> instruments = instrumentMaker.get();
+		Score score = new Score(instrumentMaker.getConfiguration(), "Fixture");
+		score.setWorkNumber("1");
+		score.addCreator("composer", "music-framework");
+
+		ScorePart flute = addPart(score, instruments.get(FLUTE));
+		Measure m1 = createMeasure(flute, 1);
+		Measure m2 = createMeasure(flute, 2);
+		m1.accept(new Note(new Pitch("C4"), QUARTER));
+		m1.accept(new Note(new Pitch("D4"), QUARTER));
+		Note tiedFrom = new Note(new Pitch("E4"), 2 * QUARTER);
+		Note tiedTo = new Note(tiedFrom, true);
+		tiedTo.setDuration(new Duration(QUARTER));
+		m1.accept(tiedFrom);
+		m2.accept(tiedTo);
+		m2.accept(new Note(new Pitch("F4"), QUARTER));
+		m2.accept(new Note(new Pitch("G4"), 2 * QUARTER));
+
+		ScorePart snareDrum = addPart(score, instruments.get(SNARE_DRUM));
+		m1 = createMeasure(snareDrum, 1);
+		m2 = createMeasure(snareDrum, 2);
+		for(int i=0; i<4; i++) {
+			m1.accept(new Note(new Pitch("C5"), QUARTER));
+		}
+		m2.accept(new Note(new Pitch("C5"), DIVISIONS));
+		return score;
+	}
+
+	static ScorePart addPart(Score score, Instrument instrument) {
+		ScorePart scorePart = new ScorePart(score, instrument.getName(), instrument);
+		scorePart.setScoreKey(Key.C_MAJOR);
+		scorePart.getScorePartEntity().setScoreKey(Key.C_MAJOR);
+		score.addPart(scorePart);
+		score.getInstrumentNames().add(instrument.getName());
+		return scorePart;
+	}
+
+	static Measure createMeasure(ScorePart scorePart, int number) {
+		Measure measure = Measure.createInstance(scorePart);
+		measure.setDivisions(DIVISIONS);
+		measure.setBeats(4);
+		measure.setBeatNote(4);
+		measure.setKey(Key.C_MAJOR);
+		measure.setTempo(new Tempo(120));
+		measure.setNumber(number);
+		scorePart.getScorePartEntity().addMeasure(measure);
+		return measure;
+	}
+}
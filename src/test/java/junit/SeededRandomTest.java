@@ -0,0 +1,36 @@
+package junit;
+
+import junit.framework.TestCase;
+import org.dwbzen.util.SeededRandom;
+
+public class SeededRandomTest extends TestCase {
+
+	public void testSameSeedSameSequence() {
+		SeededRandom r1 = new SeededRandom(42L);
+		SeededRandom r2 = new SeededRandom(42L);
+		for(int i=0; i<100; i++) {
+			assertEquals(r1.nextInt(0, 100), r2.nextInt(0, 100));
+			assertEquals(r1.nextDouble(), r2.nextDouble());
+			assertEquals(r1.nextBoolean(), r2.nextBoolean());
+		}
+	}
+
+	public void testDeriveIsIndependentOfUse() {
+		SeededRandom parent = new SeededRandom(7L);
+		long first = parent.derive("ScorePart.Piano").nextLong();
+		parent.nextLong();
+		parent.nextInt(10);
+		assertEquals(first, parent.derive("ScorePart.Piano").nextLong());
+		assertFalse(first == parent.derive("ScorePart.Cello").nextLong());
+		assertTrue(SeededRandom.UNSEEDED.derive("ScorePart.Piano") == SeededRandom.UNSEEDED);
+	}
+
+	public void testCurrent() throws Exception {
+		assertFalse(SeededRandom.current().isSeeded());
+		SeededRandom random = new SeededRandom(1L);
+		long seed = SeededRandom.call(random, () -> SeededRandom.current().getSeed());
+		assertEquals(1L, seed);
+		SeededRandom.run(random, () -> assertTrue(SeededRandom.current() == random));
+		assertTrue(SeededRandom.current() == SeededRandom.UNSEEDED);
+	}
+}
@@ -0,0 +1,86 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.action.SongAnalyzer;
+import org.dwbzen.music.action.SongAnalyzer.KeyType;
+import org.dwbzen.music.action.SongNGramEngine;
+import org.dwbzen.music.element.song.Song;
+import org.dwbzen.util.music.SongManager;
+
+public class SongNGramEngineTest extends TestCase {
+	static final String SONGS_DIRECTORY = "src/main/resources/data/music/songs/";
+	static final String[] SONG_NAMES = {"Penny Lane", "Getting Better", "Lovely Rita", "Fixing a Hole", "Good Morning"};
+
+	public void testSameAsMemeCollector() {
+		Map<String, Song> songs = loadSongs();
+		SongAnalyzer expected = collect(songs);
+		SongAnalyzer actual = new SongAnalyzer(new LinkedHashMap<String, Song>(songs));
+		actual.analyze();
+		assertFalse(expected.getAnalysisResults().get(KeyType.FORMULA).get(2).isEmpty());
+		assertEquals(expected.getAnalysisResults(), actual.getAnalysisResults());
+	}
+
+	/**
+	 * With 2 bits per token only 4 distinct keys can be packed, so the KeyTypes are counted by String key,
+	 * some after the first Song has been packed.
+	 */
+	public void testStringKeyed() {
+		Map<String, Song> songs = loadSongs();
+		SongAnalyzer expected = collect(songs);
+		SongNGramEngine engine = new SongNGramEngine(SongAnalyzer.analysisTypes, 1, 5, 2);
+		List<Song> songList = new ArrayList<Song>(songs.values());
+		engine.analyze(songList.subList(0, 1));
+		engine.analyze(songList.subList(1, songList.size()));
+		for(KeyType keyType : SongAnalyzer.analysisTypes) {
+			assertTrue(engine.isStringKeyed(keyType));
+			for(int mlen = 1; mlen <= 5; mlen++) {
+				TreeMap<String, Integer> counts = new TreeMap<String, Integer>();
+				for(SongNGramEngine.NGram ngram : engine.getNGrams(keyType, mlen).values()) {
+					counts.put(ngram.getKey(), ngram.getCount());
+				}
+				assertEquals(expected.getAnalysisResults().get(keyType).get(mlen), counts);
+			}
+		}
+	}
+
+	public void testBitsPerToken() {
+		assertEquals(SongNGramEngine.BITS_PER_TOKEN, new SongNGramEngine(SongAnalyzer.analysisTypes, 1, 5).getBitsPerToken());
+		assertEquals(16, new SongNGramEngine(SongAnalyzer.analysisTypes, 1, 4).getBitsPerToken());
+		assertEquals(31, new SongNGramEngine(SongAnalyzer.analysisTypes, 1, 1).getBitsPerToken());
+		try {
+			new SongNGramEngine(SongAnalyzer.analysisTypes, 1, 5, 13);
+			fail("5 tokens of 13 bits don't fit in a long");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 *
+	 * @param songs
+	 * @return a SongAnalyzer that's collected the Songs one at a time with memeCollector
+	 */
+	private static SongAnalyzer collect(Map<String, Song> songs) {
+		SongAnalyzer songAnalyzer = new SongAnalyzer(new LinkedHashMap<String, Song>(songs));
+		for(Song song : songs.values()) {
+			songAnalyzer.analyze(song);
+		}
+		return songAnalyzer;
+	}
+
+	private static Map<String, Song> loadSongs() {
+		Map<String, Song> songs = new LinkedHashMap<String, Song>();
+		for(String songName : SONG_NAMES) {
+			SongManager songManager = new SongManager(null, SONGS_DIRECTORY + songName + ".json", null);
+			songManager.loadSongs();
+			songs.putAll(songManager.getSongs());
+		}
+		return songs;
+	}
+}
@@ -0,0 +1,276 @@
+package junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+import org.dwbzen.music.element.Chord;
+import org.dwbzen.music.element.Measurable;
+import org.dwbzen.music.element.Measurable.TieType;
+import org.dwbzen.music.element.Measure;
+import org.dwbzen.music.element.Note;
+import org.dwbzen.music.element.Score;
+import org.dwbzen.music.element.ScorePartEntity;
+import org.dwbzen.music.instrument.Instrument;
+import org.dwbzen.music.transform.ChordTransformer;
+import org.dwbzen.music.transform.ExplodeTransformer;
+import org.dwbzen.music.transform.IPartTransformer;
+import org.dwbzen.music.transform.ITransformer;
+import org.dwbzen.music.transform.ITransformer.Scope;
+import org.dwbzen.music.transform.Layer;
+import org.dwbzen.music.transform.ScaleTransformer;
+import org.dwbzen.music.transform.TransformerPipeline;
+import org.dwbzen.util.SeededRandom;
+
+public class TransformerPipelineTest extends TestCase {
+
+	public void testFuse() {
+		List<IPartTransformer> stages = createTransformers(ScoreFixture.createScore());
+		List<List<IPartTransformer>> traversals = TransformerPipeline.fuse(stages);
+		assertEquals(6, traversals.size());
+		assertEquals(List.of(stages.get(0)), traversals.get(0));
+		assertEquals(List.of(stages.get(1)), traversals.get(1));
+		assertEquals(List.of(stages.get(2)), traversals.get(2));
+		assertEquals(List.of(stages.get(3), stages.get(4)), traversals.get(3));
+		assertEquals(List.of(stages.get(5)), traversals.get(4));
+		assertEquals(List.of(stages.get(6)), traversals.get(5));
+	}
+
+	/**
+	 * Pentatonic minor on A is A C D F G. Rounding up the Flute's C4 D4 E4~E4 F4 G4 gives
+	 * C4 D4 F4~F4 F4 G4, rounding down again changes nothing and the ChordTransformer doesn't either.
+	 * The SnareDrum has a 1-line staff so every note is E4, whichever way it's rounded.
+	 * Both parts have transformers, so they're transformed in parallel.
+	 */
+	public void testExpectedPitches() {
+		for(long seed : new long[] {42L, 1234L}) {
+			Score score = ScoreFixture.createScore();
+			Instrument flute = score.getScorePartEntityForInstrument(ScoreFixture.FLUTE).getInstrument();
+			Properties props = score.getConfigProperties();
+			List<IPartTransformer> transformers = new ArrayList<IPartTransformer>();
+			ScaleTransformer scaleUp = new ScaleTransformer();
+			scaleUp.configure(props, flute);
+			transformers.add(scaleUp);
+			ScaleTransformer scaleDown = new ScaleTransformer();
+			scaleDown.configure(props, flute);
+			scaleDown.setPreference(ITransformer.Preference.Down);
+			transformers.add(scaleDown);
+			ChordTransformer chordTransformer = new ChordTransformer();
+			chordTransformer.configure(props, flute);
+			transformers.add(chordTransformer);
+			transformers.add(createSnareDrumTransformer(score));
+			TransformerPipeline pipeline = new TransformerPipeline(transformers);
+			assertTrue(pipeline.isParallel());
+			
+			SeededRandom.run(new SeededRandom(seed), () -> pipeline.transform(layer(score)));
+			assertEquals("C4 D4 F4 | F4 F4 G4", pitches(score, ScoreFixture.FLUTE));
+			assertEquals("START STOP", ties(score, ScoreFixture.FLUTE));
+			assertEquals("E4 E4 E4 E4 | E4", pitches(score, ScoreFixture.SNARE_DRUM));
+			for(ScorePartEntity scorePartEntity : score.getParts().values()) {
+				for(Measure measure : scorePartEntity.getMeasures()) {
+					assertEquals(ScoreFixture.DIVISIONS, duration(measure));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The Flute part has a note tied across the bar line, and the random ScaleTransformers
+	 * and ExplodeTransformer draw random numbers. The pipeline, fused and in parallel, must give the same
+	 * result as applying each transformer to each part in turn, each with the random documented by TransformerPipeline.
+	 */
+	public void testSameAsSequential() {
+		String sequential = transform(false);
+		assertEquals(sequential, transform(false));
+		assertEquals(sequential, transform(true));
+		assertFalse(sequential.equals(transform(null)));
+	}
+
+	/**
+	 * Whatever the explode and random stages do, the last stage rounds the Flute down to Pentatonic minor
+	 * and each Measure keeps its duration.
+	 */
+	public void testRandomStages() {
+		Score score = ScoreFixture.createScore();
+		List<IPartTransformer> transformers = createTransformers(score);
+		SeededRandom.run(new SeededRandom(42L), () -> new TransformerPipeline(transformers).transform(layer(score)));
+		List<Integer> pentatonicMinor = List.of(9, 0, 2, 5, 7);	// A C D F G
+		int notes = 0;
+		for(Measure measure : score.getScorePartEntityForInstrument(ScoreFixture.FLUTE).getMeasures()) {
+			assertEquals(ScoreFixture.DIVISIONS, duration(measure));
+			for(Note note : notes(measure)) {
+				assertTrue(note.toString(), pentatonicMinor.contains(note.getPitch().getMidiNumber() % 12));
+				notes++;
+			}
+		}
+		assertTrue(notes >= 6);
+		assertEquals("E4 E4 E4 E4 | E4", pitches(score, ScoreFixture.SNARE_DRUM));
+	}
+
+	/**
+	 *
+	 * @param pipeline true to use a TransformerPipeline, false to apply each transformer to each part in turn, null to not transform
+	 * @return the parts of the transformed ScoreFixture
+	 */
+	private static String transform(Boolean pipeline) {
+		Score score = ScoreFixture.createScore();
+		List<IPartTransformer> transformers = createTransformers(score);
+		Layer layer = layer(score);
+		SeededRandom.run(new SeededRandom(42L), () -> {
+			if(pipeline == null) {
+				return;
+			}
+			if(pipeline) {
+				new TransformerPipeline(transformers).transform(layer);
+			}
+			else {
+				for(IPartTransformer transformer : transformers) {
+					applyInTurn(transformer, score);
+				}
+			}
+		});
+		StringBuilder sb = new StringBuilder();
+		for(ScorePartEntity scorePartEntity : score.getParts().values()) {
+			sb.append(scorePartEntity.toString());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Applies a transformer to each part it applies to, a Measure at a time, with the SeededRandom
+	 * it gets from a TransformerPipeline: drawn from the current random, derived by part name.
+	 * @param transformer
+	 * @param score
+	 */
+	private static void applyInTurn(IPartTransformer transformer, Score score) {
+		SeededRandom random = new SeededRandom(SeededRandom.current().nextLong());
+		for(ScorePartEntity scorePartEntity : score.getParts().values()) {
+			if(!transformer.appliesTo(scorePartEntity)) {
+				continue;
+			}
+			SeededRandom.run(random.derive(scorePartEntity.getPartName()), () -> {
+				transformer.startPart(scorePartEntity);
+				for(Measure measure : scorePartEntity.getMeasures()) {
+					transformer.startMeasure(measure);
+					if(transformer.getScope() == Scope.MEASURE) {
+						transformer.transform(measure);
+					}
+					else {
+						for(Measurable measurable : measure.getMeasureables()) {
+							transformer.transform(measurable, measure);
+						}
+					}
+					transformer.endMeasure(measure);
+				}
+				transformer.endPart(scorePartEntity);
+			});
+		}
+	}
+
+	private static Layer layer(Score score) {
+		Layer layer = new Layer("pipeline");
+		layer.setScore(score);
+		return layer;
+	}
+
+	private static List<Note> notes(Measure measure) {
+		List<Note> notes = new ArrayList<Note>();
+		for(Measurable measurable : measure.getMeasureables()) {
+			if(measurable instanceof Chord) {
+				notes.addAll(((Chord)measurable).getNotes());
+			}
+			else {
+				notes.add((Note)measurable);
+			}
+		}
+		return notes;
+	}
+
+	/**
+	 *
+	 * @param score
+	 * @param instrumentName
+	 * @return the pitches of the part, Measures separated by |
+	 */
+	private static String pitches(Score score, String instrumentName) {
+		List<String> measures = new ArrayList<String>();
+		for(Measure measure : score.getScorePartEntityForInstrument(instrumentName).getMeasures()) {
+			measures.add(notes(measure).stream().map(note -> note.getPitch().toString()).collect(Collectors.joining(" ")));
+		}
+		return String.join(" | ", measures);
+	}
+
+	/**
+	 *
+	 * @param score
+	 * @param instrumentName
+	 * @return the tie types of the part's tied notes
+	 */
+	private static String ties(Score score, String instrumentName) {
+		List<String> ties = new ArrayList<String>();
+		for(Measure measure : score.getScorePartEntityForInstrument(instrumentName).getMeasures()) {
+			for(Note note : notes(measure)) {
+				if(note.getTieType() != TieType.NONE) {
+					ties.add(note.getTieType().toString());
+				}
+			}
+		}
+		return String.join(" ", ties);
+	}
+
+	private static int duration(Measure measure) {
+		return measure.getMeasureables().stream().mapToInt(measurable -> measurable.getDuration().getDurationUnits()).sum();
+	}
+
+	/**
+	 *
+	 * @param score
+	 * @return SnareDrum ScaleTransformer as configured: 1-line unpitched percussion, random preference
+	 */
+	private static ScaleTransformer createSnareDrumTransformer(Score score) {
+		ScaleTransformer snareDrum = new ScaleTransformer();
+		snareDrum.configure(score.getConfigProperties(), score.getScorePartEntityForInstrument(ScoreFixture.SNARE_DRUM).getInstrument());
+		return snareDrum;
+	}
+
+	/**
+	 *
+	 * @param score
+	 * @return Flute transformers: scale up, scale random, explode, scale up, scale down, chord
+	 * and the SnareDrum's ScaleTransformer
+	 */
+	private static List<IPartTransformer> createTransformers(Score score) {
+		Instrument flute = score.getScorePartEntityForInstrument(ScoreFixture.FLUTE).getInstrument();
+		Properties props = score.getConfigProperties();
+		Properties randomProps = new Properties();
+		randomProps.putAll(props);
+		randomProps.setProperty("score.transformers.Flute.ScaleTransformer.scale", "Hirajoshi Japan");
+		randomProps.setProperty("score.transformers.Flute.ScaleTransformer.root", "A");
+		randomProps.setProperty("score.transformers.Flute.ScaleTransformer.preference", "random");
+
+		List<IPartTransformer> transformers = new ArrayList<IPartTransformer>();
+		ScaleTransformer scaleUp = new ScaleTransformer();
+		scaleUp.configure(props, flute);
+		transformers.add(scaleUp);
+		ScaleTransformer scaleRandom = new ScaleTransformer();
+		scaleRandom.configure(randomProps, flute);
+		transformers.add(scaleRandom);
+		ExplodeTransformer explode = new ExplodeTransformer();
+		explode.configure(props, flute);
+		transformers.add(explode);
+		ScaleTransformer scaleUp2 = new ScaleTransformer();
+		scaleUp2.configure(props, flute);
+		transformers.add(scaleUp2);
+		ScaleTransformer scaleDown = new ScaleTransformer();
+		scaleDown.configure(props, flute);
+		scaleDown.setPreference(ITransformer.Preference.Down);
+		transformers.add(scaleDown);
+		ChordTransformer chordTransformer = new ChordTransformer();
+		chordTransformer.configure(props, flute);
+		transformers.add(chordTransformer);
+		transformers.add(createSnareDrumTransformer(score));
+		return transformers;
+	}
+}